@@ -17,24 +17,22 @@
 package org.opencb.opencga.analysis.old.execution.plugins.hist;
 
 import org.apache.commons.lang3.StringUtils;
-import org.opencb.biodata.models.core.Region;
-import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
-import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.analysis.old.execution.plugins.OpenCGAAnalysis;
 import org.opencb.opencga.catalog.old.models.tool.Execution;
 import org.opencb.opencga.catalog.old.models.tool.Manifest;
 import org.opencb.opencga.catalog.old.models.tool.Option;
 import org.opencb.opencga.storage.core.manager.variant.VariantStorageManager;
-import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
-import java.util.*;
+import java.util.Collections;
+import java.util.Map;
 
 import static java.util.Arrays.asList;
 
@@ -87,10 +85,6 @@ public class VariantHistogramAnalysis extends OpenCGAAnalysis {
     }
 
     protected int run(Query query, int interval, Path outdir, String fileName) throws Exception {
-        //ParallelTaskRunner<Variant, Pair<Region, Integer>> ?
-
-        Region region = new Region("", 0, 0);
-        List<Variant> variants = new ArrayList<>();
         PrintStream out;
         File file = outdir.toAbsolutePath().toFile();
         boolean stdout = file.isDirectory() && StringUtils.isEmpty(fileName);
@@ -103,32 +97,19 @@ public class VariantHistogramAnalysis extends OpenCGAAnalysis {
             out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)));
         }
         try {
+            // Computed in parallel region chunks by the storage engine
+            QueryResult<ObjectMap> histogram = getVariantStorageManager().histogram(query, interval, getSessionId());
             out.println("#CHR\tSTART\tEND\tCOUNT");
-            QueryOptions options = new QueryOptions(QueryOptions.SORT, true)
-                    .append(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES, VariantField.ANNOTATION));
-            getVariantStorageManager().iterable(getSessionId()).forEach(query, variant -> {
-                if (checkVariant(variant)) {
-                    if (region.overlaps(variant.getChromosome(), variant.getStart(), variant.getEnd())) {
-                        variants.add(variant);
-                    } else {
-                        if (!variants.isEmpty()) {
-                            out.print(region.getChromosome());
-                            out.print('\t');
-                            out.print(region.getStart());
-                            out.print('\t');
-                            out.print(region.getEnd());
-                            out.print('\t');
-                            out.print(variants.size());
-                            out.println();
-                        }
-                        region.setChromosome(variant.getChromosome());
-                        region.setStart(variant.getStart() / interval * interval);
-                        region.setEnd(region.getStart() + interval);
-                        variants.clear();
-                        variants.add(variant);
-                    }
-                }
-            }, options);
+            for (ObjectMap window : histogram.getResult()) {
+                out.print(window.getString("chromosome"));
+                out.print('\t');
+                out.print(window.getInt("start"));
+                out.print('\t');
+                out.print(window.getInt("end"));
+                out.print('\t');
+                out.print(window.getLong("count"));
+                out.println();
+            }
         } finally {
             if (!stdout) {
                 out.close();
@@ -137,8 +118,4 @@ public class VariantHistogramAnalysis extends OpenCGAAnalysis {
         return 0;
     }
 
-    private boolean checkVariant(Variant variant) {
-        return true;
-    }
-
 }
@@ -17,30 +17,25 @@
 package org.opencb.opencga.analysis.old.execution.plugins.ibs;
 
 import org.apache.commons.lang3.StringUtils;
-import org.opencb.biodata.tools.variant.algorithm.IdentityByState;
-import org.opencb.biodata.tools.variant.algorithm.IdentityByStateClustering;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
-import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.analysis.old.execution.plugins.OpenCGAAnalysis;
-import org.opencb.opencga.catalog.db.api.SampleDBAdaptor;
 import org.opencb.opencga.catalog.managers.CatalogManager;
-import org.opencb.opencga.core.models.Sample;
 import org.opencb.opencga.catalog.old.models.tool.Execution;
 import org.opencb.opencga.catalog.old.models.tool.Manifest;
 import org.opencb.opencga.catalog.old.models.tool.Option;
-import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
-import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.analysis.GenotypeMatrix;
+import org.opencb.opencga.storage.core.variant.analysis.IdentityByStateCalculator;
 
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -52,6 +47,11 @@ public class IbsAnalysis extends OpenCGAAnalysis {
 
     public static final String OUTDIR = "outdir";
     public static final String SAMPLES = "samples";
+    public static final String REGION = "region";
+    public static final String MIN_MAF = "minMaf";
+    public static final String THREADS = "threads";
+    public static final String MAX_VARIANTS = "maxVariants";
+    public static final int DEFAULT_MAX_VARIANTS = 1000000;
     public static final String PLUGIN_ID = "ibs_plugin";
     private final Manifest manifest;
 
@@ -61,7 +61,11 @@ public class IbsAnalysis extends OpenCGAAnalysis {
                         new Execution("default", "default", "", Collections.emptyList(), Collections.emptyList(), OUTDIR,
                                 Arrays.asList(
                                         new Option(OUTDIR, "", true),
-                                        new Option(SAMPLES, "", false)
+                                        new Option(SAMPLES, "", false),
+                                        new Option(REGION, "", false),
+                                        new Option(MIN_MAF, "", false),
+                                        new Option(THREADS, "", false),
+                                        new Option(MAX_VARIANTS, "", false)
                                 ), Collections.emptyList(), null, null)
                 ), null, null);
     }
@@ -78,53 +82,59 @@ public class IbsAnalysis extends OpenCGAAnalysis {
 
     @Override
     public int run(Map<String, Path> input, Path outdir, ObjectMap params) throws Exception {
+        CatalogManager catalogManager = getCatalogManager();
+        String sessionId = getSessionId();
+        long studyId = getStudyId();
+
+        // Only biallelic SNVs are encoded by the matrix
+        Query query = new Query(VariantQueryParam.STUDY.key(), studyId)
+                .append(VariantQueryParam.TYPE.key(), VariantType.SNV.toString());
+        if (StringUtils.isNotEmpty(params.getString(SAMPLES))) {
+            query.append(VariantQueryParam.INCLUDE_SAMPLE.key(), params.getAsStringList(SAMPLES));
+        }
+        if (StringUtils.isNotEmpty(params.getString(REGION))) {
+            query.append(VariantQueryParam.REGION.key(), params.getString(REGION));
+        }
+
+        double minMaf = params.getDouble(MIN_MAF, 0);
+        if (minMaf > 0) {
+            // Discard rare variants using the stats of the whole study. The matrix filters again with the selected samples
+            query.append(VariantQueryParam.STATS_MAF.key(), StudyEntry.DEFAULT_COHORT + ">=" + minMaf);
+        }
+
+        // The matrix is allocated at once for all the variants
+        int maxVariants = params.getInt(MAX_VARIANTS, DEFAULT_MAX_VARIANTS);
+        long numVariants = getVariantStorageManager().count(query, sessionId).first();
+        if (numVariants > maxVariants) {
+            throw new IllegalArgumentException("Unable to compute IBS with " + numVariants + " variants. Max " + maxVariants
+                    + ". Use the params '" + REGION + "' or '" + MIN_MAF + "' to reduce the number of variants,"
+                    + " or increase '" + MAX_VARIANTS + "'");
+        }
+        try (GenotypeMatrix matrix = GenotypeMatrix.fromQuery(getVariantStorageManager().iterable(sessionId), query,
+                GenotypeMatrix.DEFAULT_ENCODER, (int) numVariants, false)) {
+            IdentityByStateCalculator calculator = new IdentityByStateCalculator(matrix, minMaf);
+            int threads = params.getInt(THREADS, Runtime.getRuntime().availableProcessors());
+
+            if ("-".equals(outdir.getFileName().toString())) {
+                calculator.run(new IdentityByStateCalculator.TsvWriter(System.out), threads,
+                        IdentityByStateCalculator.DEFAULT_TILE_SIZE);
+            } else {
+                Path outfile;
+                if (outdir.toAbsolutePath().toFile().isDirectory()) {
+                    String alias = catalogManager.getStudyManager().get(String.valueOf(studyId), null, sessionId).first().getId();
+                    outfile = outdir.resolve(alias + ".genome.gz");
+                } else {
+                    outfile = outdir;
+                }
+
+                try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(outfile.toFile()))) {
+                    calculator.run(new IdentityByStateCalculator.TsvWriter(outputStream), threads,
+                            IdentityByStateCalculator.DEFAULT_TILE_SIZE);
+                }
+            }
+        }
+
         return 0;
-//        CatalogManager catalogManager = getCatalogManager();
-//        String sessionId = getSessionId();
-//        long studyId = getStudyId();
-//
-//        IdentityByStateClustering ibsc = new IdentityByStateClustering();
-//        List<String> samples;
-//        Query query = new Query(VariantQueryParam.STUDY.key(), studyId);
-//        QueryOptions options = new QueryOptions(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
-//
-//        Query samplesQuery = new Query();
-//        if (StringUtils.isNotEmpty(params.getString(SAMPLES))) {
-//            String userId = catalogManager.getUserManager().getUserId(sessionId);
-//            List<Long> sampleIds = catalogManager.getSampleManager().getIds(params.getAsStringList(SAMPLES), String.valueOf(studyId),
-//                    userId)
-//                    .getResourceIds();
-//            samplesQuery.append(SampleDBAdaptor.QueryParams.UID.key(), sampleIds);
-//            query.append(VariantQueryParam.INCLUDE_SAMPLE.key(), sampleIds);
-//        }
-//        samples = catalogManager.getSampleManager().get(studyId, samplesQuery, new QueryOptions(), sessionId)
-//                .getResult()
-//                .stream()
-//                .map(Sample::getId)
-//                .collect(Collectors.toList());
-//
-//
-//        List<IdentityByState> identityByStateList;
-//        try (VariantDBIterator iterator = getVariantStorageManager().iterable(sessionId).iterator(query, options)) {
-//            identityByStateList = ibsc.countIBS(iterator, samples);
-//        }
-//        if ("-".equals(outdir.getFileName().toString())) {
-//            ibsc.write(System.out, identityByStateList, samples);
-//        } else {
-//            Path outfile;
-//            if (outdir.toAbsolutePath().toFile().isDirectory()) {
-//                String alias = catalogManager.getStudyManager().get(String.valueOf((Long) studyId), null, sessionId).first().getId();
-//                outfile = outdir.resolve(alias + ".genome.gz");
-//            } else {
-//                outfile = outdir;
-//            }
-//
-//            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(outfile.toFile()))) {
-//                ibsc.write(outputStream, identityByStateList, samples);
-//            }
-//        }
-//
-//        return 0;
     }
 
 }
@@ -45,6 +45,7 @@ public class AdminCliOptionsParser extends CliOptionsParser {
     private final ServerCommandOptions serverCommandOptions;
     private final AdminCliOptionsParser.MetaCommandOptions metaCommandOptions;
     private final MigrationCommandOptions migrationCommandOptions;
+    private final StorageCommandOptions storageCommandOptions;
 
 
     public AdminCliOptionsParser() {
@@ -107,6 +108,12 @@ public class AdminCliOptionsParser extends CliOptionsParser {
         JCommander migrationSubCommands = this.jCommander.getCommands().get("migration");
         migrationSubCommands.addCommand("v1.3.0", this.migrationCommandOptions.getMigrateV130CommandOptions());
         migrationSubCommands.addCommand("v1.4.0", this.migrationCommandOptions.getMigrateV140CommandOptions());
+        migrationSubCommands.addCommand("compact-genotypes", this.migrationCommandOptions.getCompactGenotypesCommandOptions());
+
+        this.storageCommandOptions = new StorageCommandOptions();
+        this.jCommander.addCommand("storage", this.storageCommandOptions);
+        JCommander storageSubCommands = this.jCommander.getCommands().get("storage");
+        storageSubCommands.addCommand("region-split-advisor", this.storageCommandOptions.regionSplitAdvisorCommandOptions);
 
     }
 
@@ -277,6 +284,17 @@ public class AdminCliOptionsParser extends CliOptionsParser {
         }
     }
 
+    @Parameters(commandNames = {"storage"}, commandDescription = "Inspect the variant storage backends")
+    public class StorageCommandOptions extends CommandOptions {
+
+        public RegionSplitAdvisorCommandOptions regionSplitAdvisorCommandOptions;
+        public AdminCommonCommandOptions commonOptions = AdminCliOptionsParser.this.commonCommandOptions;
+
+        public StorageCommandOptions() {
+            this.regionSplitAdvisorCommandOptions = new RegionSplitAdvisorCommandOptions();
+        }
+    }
+
     /**
      * Auxiliary class for Database connection.
      */
@@ -351,6 +369,10 @@ public class AdminCliOptionsParser extends CliOptionsParser {
 
         @Parameter(names = {"--reset"}, description = "Remove existing indexes before creting the new one")
         public boolean reset;
+
+        @Parameter(names = {"--annotations"}, description = "Rebuild the values of the indexed variables of all the variable sets in the "
+                + "annotated entries, creating the missing annotation indexes")
+        public boolean annotations;
     }
 
     @Parameters(commandNames = {"clean"}, commandDescription = "Query audit data from Catalog database")
@@ -690,6 +712,31 @@ public class AdminCliOptionsParser extends CliOptionsParser {
         public boolean background;
     }
 
+    /*
+     * STORAGE SUB-COMMANDS
+     */
+    @Parameters(commandNames = {"region-split-advisor"}, commandDescription = "Report the region size skew of an HBase table, and "
+            + "propose the splits and merges to balance it, as HBase shell commands. Nothing is applied")
+    public class RegionSplitAdvisorCommandOptions {
+
+        @ParametersDelegate
+        public AdminCommonCommandOptions commonOptions = AdminCliOptionsParser.this.commonCommandOptions;
+
+        @Parameter(names = {"--table"}, description = "HBase table name", required = true, arity = 1)
+        public String table;
+
+        @Parameter(names = {"--target-region-size-mb"}, description = "Target region size. Default: mean region size", arity = 1)
+        public Double targetRegionSizeMB;
+
+        @Parameter(names = {"--split-factor"}, description = "Split regions bigger than this factor times the target size. Default: 2",
+                arity = 1)
+        public Double splitFactor;
+
+        @Parameter(names = {"--merge-factor"}, description = "Merge adjacent regions smaller than this factor times the target size. "
+                + "Default: 0.5", arity = 1)
+        public Double mergeFactor;
+    }
+
     @Parameters( commandNames = {"update"}, commandDescription = "Update secret key|algorithm" )
     public class MetaKeyCommandOptions extends CatalogDatabaseCommandOptions {
         @ParametersDelegate
@@ -770,4 +817,8 @@ public class AdminCliOptionsParser extends CliOptionsParser {
     public MigrationCommandOptions getMigrationCommandOptions() {
         return migrationCommandOptions;
     }
+
+    public StorageCommandOptions getStorageCommandOptions() {
+        return storageCommandOptions;
+    }
 }
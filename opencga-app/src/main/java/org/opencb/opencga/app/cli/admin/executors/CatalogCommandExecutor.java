@@ -208,6 +208,12 @@ public class CatalogCommandExecutor extends AdminCommandExecutor {
                 catalogManager.getCatalogDatabase(), configuration.getCatalog().getDatabase().getHosts());
 
         catalogManager.installIndexes(token);
+
+        if (catalogCommandOptions.indexCatalogCommandOptions.annotations) {
+            logger.info("Rebuilding the annotation indexes");
+            long modifiedCount = catalogManager.rebuildAnnotationIndexes(token);
+            logger.info("{} annotated entries updated", modifiedCount);
+        }
     }
 
     private void daemons() throws Exception {
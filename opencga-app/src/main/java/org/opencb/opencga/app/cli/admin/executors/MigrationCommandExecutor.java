@@ -2,6 +2,7 @@ package org.opencb.opencga.app.cli.admin.executors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.opencga.app.cli.admin.executors.migration.AnnotationSetMigration;
+import org.opencb.opencga.app.cli.admin.executors.migration.GenotypeCompactionMigration;
 import org.opencb.opencga.app.cli.admin.executors.migration.NewProjectMetadataMigration;
 import org.opencb.opencga.app.cli.admin.executors.migration.NewVariantMetadataMigration;
 import org.opencb.opencga.app.cli.admin.options.MigrationCommandOptions;
@@ -11,7 +12,6 @@ import org.opencb.opencga.catalog.managers.CatalogManager;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
-import java.nio.file.Paths;
 
 /**
  * Created on 08/09/17.
@@ -40,6 +40,9 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
             case "v1.4.0":
                 v1_4_0();
                 break;
+            case "compact-genotypes":
+                compactGenotypes();
+                break;
             default:
                 logger.error("Subcommand '{}' not valid", subCommandString);
                 break;
@@ -53,8 +56,14 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
         if (options.files != null && !options.files.isEmpty()) {
             // Just migrate files. Do not even connect to Catalog!
             NewVariantMetadataMigration migration = new NewVariantMetadataMigration(storageConfiguration, null, options);
-            for (String file : options.files) {
-                migration.migrateVariantFileMetadataFile(Paths.get(file));
+            migration.migrateVariantFileMetadataFiles(options.files);
+        } else if (options.executionOptions.dryRun) {
+            setCatalogDatabaseCredentials(options, options.commonOptions);
+
+            try (CatalogManager catalogManager = new CatalogManager(configuration)) {
+                String sessionId = catalogManager.getUserManager().login("admin", options.commonOptions.adminPassword);
+                logger.info("Dry-run. Catalog javascript migration is not estimated");
+                new NewVariantMetadataMigration(storageConfiguration, catalogManager, options).migrate(sessionId);
             }
         } else {
             setCatalogDatabaseCredentials(options, options.commonOptions);
@@ -126,6 +135,11 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
             default:
                 break;
         }
+        if (options.executionOptions.dryRun) {
+            logger.info("Dry-run. Only the annotation migration is estimated");
+            skipCatalogJS = true;
+            skipStorage = true;
+        }
 
         setCatalogDatabaseCredentials(options, options.commonOptions);
 
@@ -176,7 +190,7 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
                 logger.info("Starting annotation migration for 1.4.0");
 
                 // Migrate annotationSets
-                new AnnotationSetMigration(catalogManager).migrate();
+                new AnnotationSetMigration(catalogManager, options.executionOptions).migrate();
 
                 logger.info("Finished annotation migration");
             }
@@ -188,5 +202,16 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
         }
     }
 
+    private void compactGenotypes() throws Exception {
+        MigrationCommandOptions.CompactGenotypesCommandOptions options = migrationCommandOptions.getCompactGenotypesCommandOptions();
+
+        setCatalogDatabaseCredentials(options, options.commonOptions);
+
+        try (CatalogManager catalogManager = new CatalogManager(configuration)) {
+            String sessionId = catalogManager.getUserManager().getSystemTokenForUser("admin", options.commonOptions.adminPassword);
+
+            new GenotypeCompactionMigration(storageConfiguration, catalogManager, options).migrate(sessionId);
+        }
+    }
 
 }
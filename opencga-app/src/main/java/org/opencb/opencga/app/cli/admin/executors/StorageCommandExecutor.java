@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.app.cli.admin.executors;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.app.cli.admin.AdminCliOptionsParser;
+import org.opencb.opencga.storage.core.config.StorageEngineConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Executes the admin commands over the variant storage backends.
+ */
+public class StorageCommandExecutor extends AdminCommandExecutor {
+
+    // Hadoop classes are only available with the storage-hadoop profile, so they are loaded by name, as the storage engines
+    private static final String HADOOP_STORAGE_ENGINE_ID = "hadoop";
+    private static final String HBASE_REGION_SPLIT_ADVISOR = "org.opencb.opencga.storage.hadoop.utils.HBaseRegionSplitAdvisor";
+
+    private AdminCliOptionsParser.StorageCommandOptions storageCommandOptions;
+
+    public StorageCommandExecutor(AdminCliOptionsParser.StorageCommandOptions storageCommandOptions) {
+        super(storageCommandOptions.commonOptions);
+        this.storageCommandOptions = storageCommandOptions;
+    }
+
+    @Override
+    public void execute() throws Exception {
+        logger.debug("Executing storage command line");
+
+        String subCommandString = storageCommandOptions.getParsedSubCommand();
+        switch (subCommandString) {
+            case "region-split-advisor":
+                regionSplitAdvisor();
+                break;
+            default:
+                logger.error("Subcommand not valid");
+                break;
+        }
+    }
+
+    private void regionSplitAdvisor() throws Exception {
+        AdminCliOptionsParser.RegionSplitAdvisorCommandOptions options = storageCommandOptions.regionSplitAdvisorCommandOptions;
+
+        // Connect using the configuration of the hadoop storage engine
+        ObjectMap params = new ObjectMap();
+        StorageEngineConfiguration engineConfiguration = storageConfiguration.getStorageEngine(HADOOP_STORAGE_ENGINE_ID);
+        // Returns the default engine if missing
+        if (engineConfiguration != null && HADOOP_STORAGE_ENGINE_ID.equals(engineConfiguration.getId())
+                && engineConfiguration.getVariant() != null && engineConfiguration.getVariant().getOptions() != null) {
+            params.putAll(engineConfiguration.getVariant().getOptions());
+        }
+        params.putIfNotNull("target_region_size_mb", options.targetRegionSizeMB);
+        params.putIfNotNull("split_factor", options.splitFactor);
+        params.putIfNotNull("merge_factor", options.mergeFactor);
+        params.putAll(options.commonOptions.params);
+
+        Class<?> advisor;
+        try {
+            advisor = Class.forName(HBASE_REGION_SPLIT_ADVISOR);
+        } catch (ClassNotFoundException e) {
+            throw new StorageEngineException("Missing storage engine '" + HADOOP_STORAGE_ENGINE_ID + "' in the classpath", e);
+        }
+        try {
+            advisor.getMethod("advise", String.class, ObjectMap.class, PrintStream.class).invoke(null, options.table, params, System.out);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
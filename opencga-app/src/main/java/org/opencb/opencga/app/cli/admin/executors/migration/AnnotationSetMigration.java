@@ -9,6 +9,7 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.datastore.mongodb.GenericDocumentComplexConverter;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.app.cli.admin.options.MigrationCommandOptions;
 import org.opencb.opencga.catalog.db.mongodb.AnnotationMongoDBAdaptor;
 import org.opencb.opencga.catalog.db.mongodb.MongoDBAdaptorFactory;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
@@ -21,108 +22,162 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Executes all migration scripts related with the issue #772
  * Created on 31/01/18.
  *
+ * Each study is migrated independently, in parallel, and checkpointed in the migration collection once finished. Every entry is
+ * migrated with a single update, so an interrupted migration can always be resumed.
+ *
  * @author Pedro Furio;
  */
 public class AnnotationSetMigration {
 
+    private static final String MIGRATION_ID = "v1.4.0_annotationSets";
+    private static final String OLD_ANNOTATION_SETS = "annotationSets";
+    private static final String STUDY_ID = "_studyId";
+
     private Map<Long, VariableSet> variableSetMap;
     private MongoDBAdaptorFactory dbAdaptorFactory;
     private GenericDocumentComplexConverter<AnnotableForMigration> converter;
+    private MigrationRunner runner;
     private final Logger logger = LoggerFactory.getLogger(AnnotationSetMigration.class);
 
     public AnnotationSetMigration(CatalogManager catalogManager) throws CatalogDBException {
+        this(catalogManager, new MigrationCommandOptions.MigrationExecutionOptions());
+    }
+
+    public AnnotationSetMigration(CatalogManager catalogManager, MigrationCommandOptions.MigrationExecutionOptions options)
+            throws CatalogDBException {
         this.dbAdaptorFactory = new MongoDBAdaptorFactory(catalogManager.getConfiguration());
-        this.variableSetMap = new HashMap<>();
+        this.variableSetMap = new ConcurrentHashMap<>();
         this.converter = new GenericDocumentComplexConverter<>(AnnotableForMigration.class);
+        this.runner = new MigrationRunner(dbAdaptorFactory.getMigrationCollection(), MIGRATION_ID, options);
     }
 
-    public void migrate() throws CatalogException {
-        logger.info("Starting migration of annotations from samples...");
-        MongoCursor<Document> iterator = getAnnotatedDocuments(dbAdaptorFactory.getCatalogSampleDBAdaptor().getSampleCollection(), true);
-        migrateAnnotations(dbAdaptorFactory.getCatalogSampleDBAdaptor(),
-                dbAdaptorFactory.getCatalogSampleDBAdaptor().getSampleCollection(), iterator);
-
-        logger.info("Starting migration of annotations from individuals...");
-        iterator = getAnnotatedDocuments(dbAdaptorFactory.getCatalogIndividualDBAdaptor().getIndividualCollection(), true);
-        migrateAnnotations(dbAdaptorFactory.getCatalogIndividualDBAdaptor(),
-                dbAdaptorFactory.getCatalogIndividualDBAdaptor().getIndividualCollection(), iterator);
-
-        logger.info("Starting migration of annotations from cohorts...");
-        iterator = getAnnotatedDocuments(dbAdaptorFactory.getCatalogCohortDBAdaptor().getCohortCollection(), false);
-        migrateAnnotations(dbAdaptorFactory.getCatalogCohortDBAdaptor(),
-                dbAdaptorFactory.getCatalogCohortDBAdaptor().getCohortCollection(), iterator);
-
-        logger.info("Starting migration of annotations from families...");
-        iterator = getAnnotatedDocuments(dbAdaptorFactory.getCatalogFamilyDBAdaptor().getFamilyCollection(), true);
-        migrateAnnotations(dbAdaptorFactory.getCatalogFamilyDBAdaptor(),
-                dbAdaptorFactory.getCatalogFamilyDBAdaptor().getFamilyCollection(), iterator);
+    public void migrate() throws Exception {
+        migrate("samples", dbAdaptorFactory.getCatalogSampleDBAdaptor(),
+                dbAdaptorFactory.getCatalogSampleDBAdaptor().getSampleCollection(), true);
+        migrate("individuals", dbAdaptorFactory.getCatalogIndividualDBAdaptor(),
+                dbAdaptorFactory.getCatalogIndividualDBAdaptor().getIndividualCollection(), true);
+        migrate("cohorts", dbAdaptorFactory.getCatalogCohortDBAdaptor(),
+                dbAdaptorFactory.getCatalogCohortDBAdaptor().getCohortCollection(), false);
+        migrate("families", dbAdaptorFactory.getCatalogFamilyDBAdaptor(),
+                dbAdaptorFactory.getCatalogFamilyDBAdaptor().getFamilyCollection(), true);
+
+        if (runner.isDryRun()) {
+            runner.printEstimations();
+        }
     }
 
-    private void migrateAnnotations(AnnotationMongoDBAdaptor dbAdaptor, MongoDBCollection collection, MongoCursor<Document> iterator)
-            throws CatalogException {
-
-        Bson update = Updates.unset("annotationSets");
-
-        while(iterator.hasNext()) {
-            Document next = iterator.next();
-            AnnotableForMigration annotable = converter.convertToDataModelType(next);
-
-            // Remove old annotationSets field from the entry
-            Document query = new Document("_id", next.get("_id"));
-            collection.update(query, update, new QueryOptions());
-
-            List<ObjectMap> annotationSetAsMap = annotable.getAnnotationSetAsMap();
-
-            try {
-                for (ObjectMap annotationSetMap : annotationSetAsMap) {
-                    String annotationSetName = annotationSetMap.getString("name");
-                    long variableSetId = annotationSetMap.getLong("variableSetId");
-                    Map<String, Object> annotations = annotationSetMap.getMap("annotations");
+    private void migrate(String entity, AnnotationMongoDBAdaptor dbAdaptor, MongoDBCollection collection, boolean version)
+            throws Exception {
+        List<String> studies = new ArrayList<>();
+        for (Object studyUid : collection.distinct(STUDY_ID, getQuery(version, null)).getResult()) {
+            studies.add(String.valueOf(studyUid));
+        }
 
-                    VariableSet variableSet = getVariableSet(variableSetId);
+        if (runner.isDryRun()) {
+            long count = collection.count(getQuery(version, null)).first();
+            try (MongoCursor<Document> iterator = getAnnotatedDocuments(collection, version, null)) {
+                runner.estimate("Annotations from " + entity, count, studies.size(), iterator,
+                        document -> getMigrationUpdate(dbAdaptor, document));
+            }
+            return;
+        }
 
-                    AnnotationSet annotationSet = new AnnotationSet(annotationSetName, variableSet.getId(), annotations,
-                            Collections.emptyMap());
-                    AnnotationUtils.checkAnnotationSet(variableSet, annotationSet, null, true);
+        logger.info("Starting migration of annotations from " + entity + "...");
+        runner.run(entity, studies, studyUid -> migrateAnnotations(dbAdaptor, collection, version, Long.valueOf(studyUid)));
+    }
 
-                    dbAdaptor.createAnnotationSetForMigration(next.get("_id"), variableSet, annotationSet);
+    private long migrateAnnotations(AnnotationMongoDBAdaptor dbAdaptor, MongoDBCollection collection, boolean version, long studyUid)
+            throws CatalogException {
+        long numMigrated = 0;
+        List<Bson> queries = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        List<Bson> updates = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        try (MongoCursor<Document> iterator = getAnnotatedDocuments(collection, version, studyUid)) {
+            while (iterator.hasNext()) {
+                Document next = iterator.next();
+
+                // Only update the entry if it has not been migrated yet
+                queries.add(new Document("_id", next.get("_id")).append(OLD_ANNOTATION_SETS, new Document("$exists", true)));
+                updates.add(getMigrationUpdate(dbAdaptor, next));
+
+                if (queries.size() == MigrationRunner.BATCH_SIZE) {
+                    numMigrated += collection.update(queries, updates, new QueryOptions()).first().getModifiedCount();
+                    queries.clear();
+                    updates.clear();
                 }
-            } catch (CatalogException e) {
-                update = new Document()
-                        .append("$set", new Document("annotationSets", next.get("annotationSets")))
-                        .append("$unset", new Document(AnnotationMongoDBAdaptor.AnnotationSetParams.ANNOTATION_SETS.key(), ""));
-                // Restore annotations
-                collection.update(query, update, new QueryOptions());
-
-                throw e;
             }
+        }
+        if (!queries.isEmpty()) {
+            numMigrated += collection.update(queries, updates, new QueryOptions()).first().getModifiedCount();
+        }
+        return numMigrated;
+    }
 
+    /**
+     * Build the update replacing the old annotationSets field with the new annotation model. The annotation sets are validated
+     * before writing anything, so a failure never leaves an entry half migrated.
+     *
+     * @param dbAdaptor Entity DBAdaptor
+     * @param document  Entry with the old annotationSets field
+     * @return Update to apply
+     * @throws CatalogException if any annotation set is not valid
+     */
+    private Bson getMigrationUpdate(AnnotationMongoDBAdaptor dbAdaptor, Document document) throws CatalogException {
+        AnnotableForMigration annotable = converter.convertToDataModelType(document);
+
+        Map<String, VariableSet> variableSets = new HashMap<>();
+        List<AnnotationSet> annotationSetList = new ArrayList<>();
+        for (ObjectMap annotationSetMap : annotable.getAnnotationSetAsMap()) {
+            String annotationSetName = annotationSetMap.getString("name");
+            long variableSetId = annotationSetMap.getLong("variableSetId");
+            Map<String, Object> annotations = annotationSetMap.getMap("annotations");
+
+            VariableSet variableSet = getVariableSet(variableSetId);
+
+            AnnotationSet annotationSet = new AnnotationSet(annotationSetName, variableSet.getId(), annotations,
+                    Collections.emptyMap());
+            AnnotationUtils.checkAnnotationSet(variableSet, annotationSet, null, true);
+
+            variableSets.put(variableSet.getId(), variableSet);
+            annotationSetList.add(annotationSet);
         }
+
+        return Updates.combine(Updates.unset(OLD_ANNOTATION_SETS),
+                dbAdaptor.getAnnotationSetsForMigrationUpdate(variableSets, annotationSetList));
     }
 
     private VariableSet getVariableSet(long variableSetId) throws CatalogDBException {
-        if (!this.variableSetMap.containsKey(variableSetId)) {
-            QueryResult<VariableSet> variableSet = dbAdaptorFactory.getCatalogStudyDBAdaptor().getVariableSet(variableSetId,
+        VariableSet variableSet = this.variableSetMap.get(variableSetId);
+        if (variableSet == null) {
+            QueryResult<VariableSet> queryResult = dbAdaptorFactory.getCatalogStudyDBAdaptor().getVariableSet(variableSetId,
                     new QueryOptions());
-            if (variableSet.getNumResults() == 0) {
+            if (queryResult.getNumResults() == 0) {
                 throw new CatalogDBException("Variable set " + variableSetId + " not found. Migration of annotationSets failed");
             }
-            variableSetMap.put(variableSetId, variableSet.first());
+            variableSet = queryResult.first();
+            variableSetMap.put(variableSetId, variableSet);
         }
-        return variableSetMap.get(variableSetId);
+        return variableSet;
     }
 
-    private MongoCursor<Document> getAnnotatedDocuments(MongoDBCollection sampleCollection, boolean version) {
-        Document queryDocument = new Document("annotationSets", new Document("$exists", true).append("$ne", Collections.emptyList()));
+    private Document getQuery(boolean version, Long studyUid) {
+        Document queryDocument = new Document(OLD_ANNOTATION_SETS, new Document("$exists", true).append("$ne", Collections.emptyList()));
         if (version) {
             queryDocument.append("_lastOfVersion", true);
         }
-        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Arrays.asList("annotationSets", "id", "_studyId"));
-        return sampleCollection.nativeQuery().find(queryDocument, options).iterator();
+        if (studyUid != null) {
+            queryDocument.append(STUDY_ID, studyUid);
+        }
+        return queryDocument;
+    }
+
+    private MongoCursor<Document> getAnnotatedDocuments(MongoDBCollection collection, boolean version, Long studyUid) {
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Arrays.asList(OLD_ANNOTATION_SETS, "id", STUDY_ID));
+        return collection.nativeQuery().find(getQuery(version, studyUid), options).iterator();
     }
 }
@@ -0,0 +1,128 @@
+package org.opencb.opencga.app.cli.admin.executors.migration;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.app.cli.admin.options.MigrationCommandOptions;
+import org.opencb.opencga.catalog.db.api.ProjectDBAdaptor;
+import org.opencb.opencga.catalog.managers.CatalogManager;
+import org.opencb.opencga.core.models.DataStore;
+import org.opencb.opencga.core.models.File;
+import org.opencb.opencga.core.models.Project;
+import org.opencb.opencga.core.models.Study;
+import org.opencb.opencga.storage.core.StorageEngineFactory;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.manager.variant.operations.StorageOperation;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Compacts (or expands) the genotypes of the variants stored in MongoDB for the existing studies.
+ * See {@link MongoDBVariantStorageEngine#compactGenotypes(String, boolean)}.
+ *
+ * Each study is migrated independently, in parallel. The progress is not stored, as compacting or expanding the genotypes
+ * again is idempotent, so an interrupted migration is resumed by executing it again.
+ */
+public class GenotypeCompactionMigration {
+
+    private final StorageConfiguration storageConfiguration;
+    private final CatalogManager catalogManager;
+    private final List<String> studies;
+    private final boolean compact;
+    private final MigrationRunner runner;
+    private final Logger logger = LoggerFactory.getLogger(GenotypeCompactionMigration.class);
+
+    public GenotypeCompactionMigration(StorageConfiguration storageConfiguration, CatalogManager catalogManager,
+                                       MigrationCommandOptions.CompactGenotypesCommandOptions options) {
+        this.storageConfiguration = storageConfiguration;
+        this.catalogManager = catalogManager;
+        this.studies = options.studies;
+        this.compact = !options.expand;
+        this.runner = new MigrationRunner(null, compact ? "compact_genotypes" : "expand_genotypes", options.executionOptions);
+    }
+
+    public void migrate(String sessionId) throws Exception {
+        StorageEngineFactory storageEngineFactory = StorageEngineFactory.get(storageConfiguration);
+
+        List<Project> projects = catalogManager.getProjectManager().get(new Query(), new QueryOptions(
+                QueryOptions.INCLUDE, Arrays.asList(
+                ProjectDBAdaptor.QueryParams.ID.key(),
+                ProjectDBAdaptor.QueryParams.FQN.key(),
+                ProjectDBAdaptor.QueryParams.STUDY.key()
+        )), sessionId).getResult();
+
+        // Storage studies to migrate, by key "dbName:studyName"
+        Map<String, MongoDBVariantStorageEngine> engines = new LinkedHashMap<>();
+        Set<DataStore> dataStores = new HashSet<>();
+        for (Project project : projects) {
+            for (Study study : project.getStudies()) {
+                DataStore dataStore = StorageOperation.getDataStore(catalogManager, study.getFqn(), File.Bioformat.VARIANT, sessionId);
+                if (!dataStore.getStorageEngine().equals(MongoDBVariantStorageEngine.STORAGE_ENGINE_ID) || !dataStores.add(dataStore)) {
+                    continue;
+                }
+                MongoDBVariantStorageEngine engine = (MongoDBVariantStorageEngine) storageEngineFactory
+                        .getVariantStorageEngine(dataStore.getStorageEngine(), dataStore.getDbName());
+                for (String studyName : engine.getStudyConfigurationManager().getStudyNames(null)) {
+                    if (studies == null || studies.isEmpty() || studies.contains(studyName)) {
+                        engines.put(dataStore.getDbName() + ':' + studyName, engine);
+                    }
+                }
+            }
+        }
+
+        if (engines.isEmpty()) {
+            logger.info("Nothing to migrate!");
+            return;
+        }
+
+        if (runner.isDryRun()) {
+            for (Map.Entry<String, MongoDBVariantStorageEngine> entry : engines.entrySet()) {
+                estimate(entry.getValue(), getStudyName(entry.getKey()), engines.size());
+            }
+            runner.printEstimations();
+        } else {
+            runner.run(compact ? "Compact genotypes" : "Expand genotypes", engines.keySet(),
+                    key -> engines.get(key).compactGenotypes(getStudyName(key), compact));
+        }
+    }
+
+    private void estimate(MongoDBVariantStorageEngine engine, String studyName, int parallelism) throws Exception {
+        StudyConfiguration sc = engine.getStudyConfigurationManager().getStudyConfiguration(studyName, null).first();
+        int studyId = sc.getStudyId();
+        MongoDBCollection variantsCollection = engine.getDBAdaptor().getVariantsCollection();
+
+        Bson query = eq(DocumentToVariantConverter.STUDIES_FIELD + '.' + DocumentToStudyVariantEntryConverter.STUDYID_FIELD, studyId);
+        Bson projection = Projections.include(
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + DocumentToStudyVariantEntryConverter.STUDYID_FIELD,
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD,
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD);
+        long count = variantsCollection.count(query).first();
+        try (MongoCursor<Document> iterator = variantsCollection.nativeQuery().find(query, projection, new QueryOptions()).iterator()) {
+            runner.estimate("Variants from study " + studyName, count, parallelism, iterator, document -> {
+                for (Document study : (List<Document>) document.get(DocumentToVariantConverter.STUDIES_FIELD)) {
+                    if (study.getInteger(DocumentToStudyVariantEntryConverter.STUDYID_FIELD) == studyId) {
+                        DocumentToSamplesConverter.compactGenotypes(study, compact);
+                    }
+                }
+            });
+        }
+    }
+
+    private static String getStudyName(String key) {
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+}
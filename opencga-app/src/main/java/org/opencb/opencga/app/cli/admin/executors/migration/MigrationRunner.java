@@ -0,0 +1,224 @@
+package org.opencb.opencga.app.cli.admin.executors.migration;
+
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.bson.Document;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.app.cli.admin.options.MigrationCommandOptions;
+import org.opencb.opencga.core.common.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Runs the steps of a migration in parallel, storing the progress in the migration collection of catalog so an interrupted
+ * migration can be resumed, skipping the parts already migrated.
+ *
+ * In dry-run mode nothing is executed. Instead, the migrations count the documents to be migrated and time the conversion of a
+ * sample of them, and the runner reports the estimated time of each step.
+ */
+public class MigrationRunner {
+
+    public static final int BATCH_SIZE = 100;
+    public static final int SAMPLE_SIZE = 50;
+
+    private static final String MIGRATION = "migration";
+    private static final String STEP = "step";
+    private static final String KEY = "key";
+    private static final String COUNT = "count";
+    private static final String DATE = "date";
+
+    private final MongoDBCollection migrationCollection;
+    private final String migrationId;
+    private final int numThreads;
+    private final boolean dryRun;
+    private final Map<String, Estimation> estimations;
+    private final Logger logger = LoggerFactory.getLogger(MigrationRunner.class);
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Migrate one of the parts of a step.
+         *
+         * @param key Part to migrate
+         * @return Number of migrated documents
+         * @throws Exception if the migration fails
+         */
+        long run(String key) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface SampleTask<T> {
+        void run(T element) throws Exception;
+    }
+
+    /**
+     * Creates a new runner. If the restart option is given, the progress of previous executions is discarded.
+     *
+     * @param migrationCollection Collection where to store the progress. If null, the progress is not stored.
+     * @param migrationId         Migration identifier
+     * @param options             Execution options
+     */
+    public MigrationRunner(MongoDBCollection migrationCollection, String migrationId,
+                           MigrationCommandOptions.MigrationExecutionOptions options) {
+        this.migrationCollection = migrationCollection;
+        this.migrationId = migrationId;
+        this.numThreads = Math.max(1, options.numThreads);
+        this.dryRun = options.dryRun;
+        this.estimations = new LinkedHashMap<>();
+
+        if (options.restart && migrationCollection != null && !dryRun) {
+            logger.info("Discarding progress from previous executions of migration " + migrationId);
+            migrationCollection.remove(eq(MIGRATION, migrationId), new QueryOptions(MongoDBCollection.MULTI, true));
+        }
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * Run a step of the migration over all the given keys in parallel. Keys migrated by previous executions are skipped.
+     * The step fails if any of the keys fails, but the keys successfully migrated are checkpointed anyway.
+     *
+     * @param step Step name
+     * @param keys Parts of the step that can be migrated independently. e.g. studies
+     * @param task Task to migrate each part
+     * @throws Exception if the migration of any key fails
+     */
+    public void run(String step, Collection<String> keys, Task task) throws Exception {
+        if (dryRun) {
+            throw new IllegalStateException("Migration steps can not be run in dry-run mode");
+        }
+        List<String> pendingKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (isDone(step, key)) {
+                logger.info("Skip " + step + " of '" + key + "'. Already migrated");
+            } else {
+                pendingKeys.add(key);
+            }
+        }
+        if (pendingKeys.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(numThreads, pendingKeys.size()));
+        try {
+            Map<String, Future<Long>> futures = new LinkedHashMap<>();
+            for (String key : pendingKeys) {
+                futures.put(key, executorService.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    long count = task.run(key);
+                    markDone(step, key, count);
+                    logger.info("Finished " + step + " of '" + key + "'. " + count + " documents migrated in "
+                            + DurationFormatUtils.formatDurationHMS(System.currentTimeMillis() - start));
+                    return count;
+                }));
+            }
+
+            Exception exception = null;
+            for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    logger.error("Error in " + step + " of '" + entry.getKey() + "'", e.getCause());
+                    if (exception == null) {
+                        exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    } else {
+                        exception.addSuppressed(e.getCause());
+                    }
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Estimate the time required by a step. Reads up to {@link #SAMPLE_SIZE} elements from the iterator, timing both the read and
+     * the given sample task, which must not modify any data.
+     *
+     * @param step         Step name
+     * @param numDocuments Total number of documents to migrate in this step
+     * @param parallelism  Number of parts of the step that can be migrated in parallel
+     * @param sample       Iterator over the documents to migrate
+     * @param sampleTask   Conversion applied to each sampled document
+     * @param <T>          Sampled element type
+     * @throws Exception if the sample task fails
+     */
+    public <T> void estimate(String step, long numDocuments, int parallelism, Iterator<T> sample, SampleTask<T> sampleTask)
+            throws Exception {
+        Estimation estimation = estimations.computeIfAbsent(step, k -> new Estimation());
+        estimation.numDocuments += numDocuments;
+        estimation.parallelism = Math.max(estimation.parallelism, parallelism);
+        long start = System.nanoTime();
+        while (estimation.sampledDocuments < SAMPLE_SIZE && sample.hasNext()) {
+            sampleTask.run(sample.next());
+            estimation.sampledDocuments++;
+        }
+        estimation.sampledNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Log the estimations collected in dry-run mode.
+     */
+    public void printEstimations() {
+        long totalMillis = 0;
+        for (Map.Entry<String, Estimation> entry : estimations.entrySet()) {
+            Estimation estimation = entry.getValue();
+            long millis = estimation.getEstimatedMillis(numThreads);
+            totalMillis += millis;
+            logger.info("[DRY-RUN] " + entry.getKey() + ": " + estimation.numDocuments + " documents to migrate. Estimated time: "
+                    + (estimation.sampledDocuments == 0
+                    ? "unknown (not sampled)"
+                    : DurationFormatUtils.formatDurationHMS(millis) + " (sampled " + estimation.sampledDocuments + " documents)"));
+        }
+        logger.info("[DRY-RUN] Migration " + migrationId + ". Estimated time: " + DurationFormatUtils.formatDurationHMS(totalMillis)
+                + ". Writes are not included in the estimation.");
+    }
+
+    private boolean isDone(String step, String key) {
+        return migrationCollection != null
+                && migrationCollection.count(new Document("_id", getId(step, key))).first() > 0;
+    }
+
+    private void markDone(String step, String key, long count) {
+        if (migrationCollection == null) {
+            return;
+        }
+        Document document = new Document("_id", getId(step, key))
+                .append(MIGRATION, migrationId)
+                .append(STEP, step)
+                .append(KEY, key)
+                .append(COUNT, count)
+                .append(DATE, TimeUtils.getDate());
+        migrationCollection.update(eq("_id", document.get("_id")), document,
+                new QueryOptions(MongoDBCollection.UPSERT, true).append(MongoDBCollection.REPLACE, true));
+    }
+
+    private String getId(String step, String key) {
+        return migrationId + ":" + step + ":" + key;
+    }
+
+    private static class Estimation {
+        private long numDocuments;
+        private long sampledDocuments;
+        private long sampledNanos;
+        private int parallelism = 1;
+
+        long getEstimatedMillis(int numThreads) {
+            if (sampledDocuments == 0) {
+                return 0;
+            }
+            double nanosPerDocument = ((double) sampledNanos) / sampledDocuments;
+            return (long) (nanosPerDocument * numDocuments / Math.min(numThreads, parallelism) / 1000000);
+        }
+    }
+}
@@ -3,10 +3,12 @@ package org.opencb.opencga.app.cli.admin.executors.migration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
 import com.google.common.base.Throwables;
+import com.mongodb.client.MongoCursor;
 import htsjdk.variant.vcf.VCFHeaderLineCount;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import org.apache.avro.generic.GenericRecord;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.legacy.VariantGlobalStats;
 import org.opencb.biodata.models.variant.avro.legacy.VariantSource;
@@ -25,6 +27,9 @@ import org.opencb.opencga.app.cli.admin.options.MigrationCommandOptions;
 import org.opencb.opencga.catalog.db.api.DBIterator;
 import org.opencb.opencga.catalog.db.api.FileDBAdaptor;
 import org.opencb.opencga.catalog.db.api.ProjectDBAdaptor;
+import org.opencb.opencga.catalog.db.mongodb.FileMongoDBAdaptor;
+import org.opencb.opencga.catalog.db.mongodb.MongoDBAdaptorFactory;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.utils.FileMetadataReader;
@@ -78,17 +83,29 @@ public class NewVariantMetadataMigration {
     private final CatalogManager catalogManager;
     protected static final QueryOptions UPSER_OPTIONS = new QueryOptions(MongoDBCollection.UPSERT, true).append(MongoDBCollection.REPLACE, true);
     protected static final QueryOptions REPLACE_OPTIONS = new QueryOptions(MongoDBCollection.REPLACE, true);
+    private static final String MIGRATION_ID = "v1.3.0_variantMetadata";
     private final boolean skipDiskFiles;
     private boolean createBackup;
+    private final FileMongoDBAdaptor fileDBAdaptor;
+    private final MigrationRunner runner;
 
     public NewVariantMetadataMigration(StorageConfiguration storageConfiguration, CatalogManager catalogManager,
-                                       MigrationCommandOptions.MigrateV1_3_0CommandOptions options) {
+                                       MigrationCommandOptions.MigrateV1_3_0CommandOptions options) throws CatalogDBException {
         this.storageConfiguration = storageConfiguration;
         this.catalogManager = catalogManager;
         objectMapper = new ObjectMapper()
                 .addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
         createBackup = options.createBackup;
         skipDiskFiles = options.skipDiskFiles;
+        if (catalogManager == null) {
+            // Nothing to checkpoint without catalog
+            fileDBAdaptor = null;
+            runner = new MigrationRunner(null, MIGRATION_ID, options.executionOptions);
+        } else {
+            MongoDBAdaptorFactory dbAdaptorFactory = new MongoDBAdaptorFactory(catalogManager.getConfiguration());
+            fileDBAdaptor = dbAdaptorFactory.getCatalogFileDBAdaptor();
+            runner = new MigrationRunner(dbAdaptorFactory.getMigrationCollection(), MIGRATION_ID, options.executionOptions);
+        }
     }
 
     /**
@@ -99,10 +116,12 @@ public class NewVariantMetadataMigration {
      *  - VariantSource stored at Variant Databases
      *  - VariantStudyMetadata to VariantFileHeader at StudyConfiguration
      *
+     * Studies and variant databases are migrated in parallel. Each one is checkpointed once migrated, so an interrupted migration
+     * can be resumed.
+     *
      * @param sessionId      Admin session id
      */
-    public void migrate(String sessionId) throws CatalogException, IOException {
-        VariantSourceToVariantFileMetadataConverter converter = new VariantSourceToVariantFileMetadataConverter();
+    public void migrate(String sessionId) throws Exception {
         StorageEngineFactory.configure(storageConfiguration);
 
         Query vcfFilesQuery = new Query()
@@ -118,23 +137,33 @@ public class NewVariantMetadataMigration {
                 ProjectDBAdaptor.QueryParams.ID.key()
         )), sessionId).getResult();
 
+        Map<String, Study> studies = new LinkedHashMap<>();
         Set<DataStore> dataStores = new HashSet<>();
         for (Project project : projects) {
-            logger.info("Migrating project " + project.getName());
             for (Study study : project.getStudies()) {
+                studies.put(study.getFqn(), study);
+                DataStore dataStore = StorageOperation.getDataStore(catalogManager, study.getFqn(), File.Bioformat.VARIANT, sessionId);
+                dataStores.add(dataStore);
+            }
+        }
+
+        if (runner.isDryRun()) {
+            estimateCatalog(sessionId, vcfFilesQuery, metadataFilesQuery, studies.values());
+        } else {
+            runner.run("catalog", studies.keySet(), studyFqn -> {
+                Study study = studies.get(studyFqn);
                 logger.info("Migrating study " + study.getName());
 
                 // Migrate catalog metadata information from file entries
-                migrateCatalogFileMetadata(sessionId, converter, vcfFilesQuery, study);
+                long count = migrateCatalogFileMetadata(sessionId, new VariantSourceToVariantFileMetadataConverter(), vcfFilesQuery,
+                        study);
 
                 if (!skipDiskFiles) {
                     // Migrate metadata files from FileSystem
-                    migrateMetadataFiles(sessionId, metadataFilesQuery, study);
+                    count += migrateMetadataFiles(sessionId, metadataFilesQuery, study);
                 }
-
-                DataStore dataStore = StorageOperation.getDataStore(catalogManager, study.getFqn(), File.Bioformat.VARIANT, sessionId);
-                dataStores.add(dataStore);
-            }
+                return count;
+            });
         }
 
         StorageEtlConfiguration etlConfiguration = storageConfiguration.getStorageEngine(MongoDBVariantStorageEngine.STORAGE_ENGINE_ID).getVariant();
@@ -148,74 +177,165 @@ public class NewVariantMetadataMigration {
             throw Throwables.propagate(e);
         }
         try (MongoDataStoreManager manager = new MongoDataStoreManager(credentials.getDataStoreServerAddresses())) {
+            Map<String, MongoDataStore> mongoDataStores = new LinkedHashMap<>();
             for (DataStore dataStore : dataStores) {
                 if (dataStore.getStorageEngine().equals(MongoDBVariantStorageEngine.STORAGE_ENGINE_ID)) {
-                    MongoDataStore mongoDataStore = manager.get(dataStore.getDbName(), credentials.getMongoDBConfiguration());
+                    mongoDataStores.put(dataStore.getDbName(), manager.get(dataStore.getDbName(), credentials.getMongoDBConfiguration()));
+                }
+            }
 
-                    migrateFilesCollection(mongoDataStore, options);
+            if (runner.isDryRun()) {
+                for (MongoDataStore mongoDataStore : mongoDataStores.values()) {
+                    estimateStorage(mongoDataStore, options, mongoDataStores.size());
+                }
+                runner.printEstimations();
+            } else {
+                runner.run("storage", mongoDataStores.keySet(), dbName -> {
+                    MongoDataStore mongoDataStore = mongoDataStores.get(dbName);
+                    return migrateFilesCollection(mongoDataStore, options) + migrateStudiesCollection(mongoDataStore, options);
+                });
+            }
+        }
+    }
 
-                    migrateStudiesCollection(mongoDataStore, options);
+    /**
+     * Migrate a list of VariantSource files from disk, in parallel.
+     *
+     * @param files Files to migrate
+     * @throws Exception if any file fails
+     */
+    public void migrateVariantFileMetadataFiles(List<String> files) throws Exception {
+        runner.run("files", files, file -> {
+            migrateVariantFileMetadataFile(Paths.get(file));
+            return 1;
+        });
+    }
+
+    private void estimateCatalog(String sessionId, Query vcfFilesQuery, Query metadataFilesQuery, Collection<Study> studies)
+            throws Exception {
+        for (Study study : studies) {
+            long count = catalogManager.getFileManager().count(study.getFqn(), vcfFilesQuery, sessionId).getNumTotalResults();
+            VariantSourceToVariantFileMetadataConverter converter = new VariantSourceToVariantFileMetadataConverter();
+            try (DBIterator<File> iterator = catalogManager.getFileManager()
+                    .iterator(study.getFqn(), vcfFilesQuery, getCatalogFileQueryOptions(), sessionId)) {
+                runner.estimate("Catalog files", count, studies.size(), iterator, file -> getCatalogFileUpdateParams(converter, file));
+            }
+
+            if (!skipDiskFiles) {
+                count = catalogManager.getFileManager().count(study.getFqn(), metadataFilesQuery, sessionId).getNumTotalResults();
+                try (DBIterator<File> iterator = catalogManager.getFileManager()
+                        .iterator(study.getFqn(), metadataFilesQuery, new QueryOptions("lazy", true), sessionId)) {
+                    runner.estimate("Metadata files from disk", count, studies.size(), iterator, file -> {
+                        Path metaFile = Paths.get(file.getUri());
+                        if (VariantReaderUtils.isMetaFile(metaFile.toString()) && metaFile.toFile().exists()) {
+                            try (InputStream inputStream = new GZIPInputStream(new FileInputStream(metaFile.toFile()))) {
+                                converter.convert(objectMapper.readValue(inputStream, VariantSource.class));
+                            } catch (UnrecognizedPropertyException e) {
+                                // Already migrated
+                                logger.debug("File " + metaFile + " already migrated");
+                            }
+                        }
+                    });
                 }
             }
         }
     }
 
-    private void migrateCatalogFileMetadata(String sessionId, VariantSourceToVariantFileMetadataConverter converter, Query vcfFilesQuery, Study study) throws IOException, CatalogException {
-        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, "name,id,path,uri"
-                + ",attributes." + FileMetadataReader.VARIANT_SOURCE
-                + ",attributes." + FileMetadataReader.VARIANT_FILE_METADATA
-                + ",stats." + FileMetadataReader.VARIANT_STATS
-                + ",stats." + FileMetadataReader.VARIANT_FILE_STATS)
-                .append("lazy", true);
+    private void estimateStorage(MongoDataStore mongoDataStore, ObjectMap options, int parallelism) throws Exception {
+        MongoDBCollection filesCollection = mongoDataStore.getCollection(
+                options.getString(COLLECTION_FILES.key(), COLLECTION_FILES.defaultValue()));
+        GenericDocumentComplexConverter<VariantSource> variantSourceConverter = new GenericDocumentComplexConverter<>(VariantSource.class);
+        variantSourceConverter.getObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
+        VariantSourceToVariantFileMetadataConverter variantFileMetadataConverter = new VariantSourceToVariantFileMetadataConverter();
+
+        long count = filesCollection.count(exists("fileId", true)).first();
+        try (MongoCursor<Document> iterator = filesCollection.nativeQuery()
+                .find(exists("fileId", true), new QueryOptions()).iterator()) {
+            runner.estimate("Variant files", count, parallelism, iterator,
+                    document -> variantFileMetadataConverter.convert(variantSourceConverter.convertToDataModelType(document)));
+        }
+
+        MongoDBCollection studiesCollection = mongoDataStore.getCollection(
+                options.getString(COLLECTION_STUDIES.key(), COLLECTION_STUDIES.defaultValue()));
+        count = studiesCollection.count(exists("variantMetadata", true)).first();
+        runner.estimate("Variant studies", count, parallelism, Collections.emptyIterator(), document -> { });
+    }
+
+    private long migrateCatalogFileMetadata(String sessionId, VariantSourceToVariantFileMetadataConverter converter, Query vcfFilesQuery, Study study) throws IOException, CatalogException {
         int alreadyMigratedFile = 0;
         int migratedFiles = 0;
+        Map<Long, ObjectMap> batch = new HashMap<>();
         try (DBIterator<File> iterator = catalogManager.getFileManager()
-                .iterator(study.getId(), vcfFilesQuery, options, sessionId)) {
+                .iterator(study.getFqn(), vcfFilesQuery, getCatalogFileQueryOptions(), sessionId)) {
             while (iterator.hasNext()) {
                 File file = iterator.next();
-                logger.info("Migrating file " + file.getName());
-
-                ObjectMap parameters = new ObjectMap();
-                if (!file.getAttributes().containsKey(FileMetadataReader.VARIANT_FILE_METADATA)) {
-                    VariantSource variantSource = getObject(file.getAttributes(), FileMetadataReader.VARIANT_SOURCE, VariantSource.class);
-                    VariantFileMetadata fileMetadata = converter.convert(variantSource);
-
-                    parameters.append(FileDBAdaptor.QueryParams.ATTRIBUTES.key(), new ObjectMap(FileMetadataReader.VARIANT_FILE_METADATA, fileMetadata));
-                }
-
-                if (!file.getStats().containsKey(FileMetadataReader.VARIANT_FILE_STATS)) {
-                    VariantGlobalStats globalStats = getObject(file.getStats(), FileMetadataReader.VARIANT_STATS, VariantGlobalStats.class);
-                    if (globalStats != null) {
-                        VariantSetStats variantSetStats = converter.convertStats(globalStats);
-                        parameters.append(FileDBAdaptor.QueryParams.STATS.key(), new ObjectMap(FileMetadataReader.VARIANT_FILE_STATS, variantSetStats));
-                    }
-                }
+                logger.debug("Migrating file " + file.getName());
 
+                ObjectMap parameters = getCatalogFileUpdateParams(converter, file);
                 if (parameters.isEmpty()) {
                     alreadyMigratedFile++;
                 } else {
                     migratedFiles++;
-                    catalogManager.getFileManager().update(null, String.valueOf(file.getId()), parameters, null, sessionId);
+                    batch.put(file.getUid(), parameters);
+                    if (batch.size() == MigrationRunner.BATCH_SIZE) {
+                        fileDBAdaptor.updateForMigration(batch);
+                        batch.clear();
+                    }
                 }
             }
         }
+        if (!batch.isEmpty()) {
+            fileDBAdaptor.updateForMigration(batch);
+        }
         if (migratedFiles == 0) {
-            logger.info("Nothing to do!");
+            logger.info("Nothing to do in study " + study.getFqn() + "!");
         } else {
-            logger.info("Number of migrated files: " + migratedFiles +
+            logger.info("Number of migrated files in study " + study.getFqn() + ": " + migratedFiles +
                     (alreadyMigratedFile == 0 ? "" : ". Number of already migrated files (skipped): " + alreadyMigratedFile));
         }
+        return migratedFiles;
     }
 
-    private void migrateMetadataFiles(String sessionId, Query metadataFilesQuery, Study study) throws IOException, CatalogException {
+    private QueryOptions getCatalogFileQueryOptions() {
+        return new QueryOptions(QueryOptions.INCLUDE, "name,id,uid,path,uri"
+                + ",attributes." + FileMetadataReader.VARIANT_SOURCE
+                + ",attributes." + FileMetadataReader.VARIANT_FILE_METADATA
+                + ",stats." + FileMetadataReader.VARIANT_STATS
+                + ",stats." + FileMetadataReader.VARIANT_FILE_STATS)
+                .append("lazy", true);
+    }
+
+    private ObjectMap getCatalogFileUpdateParams(VariantSourceToVariantFileMetadataConverter converter, File file) throws IOException {
+        ObjectMap parameters = new ObjectMap();
+        if (!file.getAttributes().containsKey(FileMetadataReader.VARIANT_FILE_METADATA)) {
+            VariantSource variantSource = getObject(file.getAttributes(), FileMetadataReader.VARIANT_SOURCE, VariantSource.class);
+            VariantFileMetadata fileMetadata = converter.convert(variantSource);
+
+            parameters.append(FileDBAdaptor.QueryParams.ATTRIBUTES.key(), new ObjectMap(FileMetadataReader.VARIANT_FILE_METADATA, fileMetadata));
+        }
+
+        if (!file.getStats().containsKey(FileMetadataReader.VARIANT_FILE_STATS)) {
+            VariantGlobalStats globalStats = getObject(file.getStats(), FileMetadataReader.VARIANT_STATS, VariantGlobalStats.class);
+            if (globalStats != null) {
+                VariantSetStats variantSetStats = converter.convertStats(globalStats);
+                parameters.append(FileDBAdaptor.QueryParams.STATS.key(), new ObjectMap(FileMetadataReader.VARIANT_FILE_STATS, variantSetStats));
+            }
+        }
+        return parameters;
+    }
+
+    private long migrateMetadataFiles(String sessionId, Query metadataFilesQuery, Study study) throws IOException, CatalogException {
+        long count = 0;
         try (DBIterator<File> iterator = catalogManager.getFileManager()
-                .iterator(study.getId(), metadataFilesQuery, new QueryOptions("lazy", true), sessionId)) {
+                .iterator(study.getFqn(), metadataFilesQuery, new QueryOptions("lazy", true), sessionId)) {
             while (iterator.hasNext()) {
                 File file = iterator.next();
                 Path metaFile = Paths.get(file.getUri());
                 migrateVariantFileMetadataFile(metaFile);
+                count++;
             }
         }
+        return count;
     }
 
     public void migrateVariantFileMetadataFile(Path metaFile) throws IOException {
@@ -270,7 +390,7 @@ public class NewVariantMetadataMigration {
         }
     }
 
-    private void migrateFilesCollection(MongoDataStore mongoDataStore, ObjectMap options) {
+    private long migrateFilesCollection(MongoDataStore mongoDataStore, ObjectMap options) {
         String filesCollectionName = options.getString(COLLECTION_FILES.key(), COLLECTION_FILES.defaultValue());
         MongoDBCollection filesCollection = mongoDataStore.getCollection(filesCollectionName);
         MongoDBCollection filesBkCollection = mongoDataStore.getCollection(filesCollectionName + BACKUP_COLLECTION_SUFIX);
@@ -282,23 +402,22 @@ public class NewVariantMetadataMigration {
         variantSourceConverter.getObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
 
         logger.info("Migrate '" + filesCollectionName + "' collection from db " + mongoDataStore.getDatabaseName());
+        BulkReplacement replacement = new BulkReplacement(filesCollection, filesBkCollection);
         for (Document document : filesCollection.nativeQuery().find(exists("fileId", true), new QueryOptions())) {
-            logger.info("Migrate VariantSource " + document.getString("studyName"));
-
-            // Save backup
-            filesBkCollection.update(eq("_id", document.get("_id")), document, UPSER_OPTIONS);
+            logger.debug("Migrate VariantSource " + document.getString("studyName"));
 
             // Migrate
             VariantSource variantSource = variantSourceConverter.convertToDataModelType(document);
             VariantFileMetadata variantFileMetadata = variantFileMetadataConverter.convert(variantSource);
             Document newDocument = documentToVariantFileMetadataConverter.convertToStorageType(variantSource.getStudyId(), variantFileMetadata);
 
-            // Save new version
-            filesCollection.update(eq("_id", newDocument.get("_id")), newDocument, REPLACE_OPTIONS);
+            // Save backup and new version
+            replacement.add(document, newDocument);
         }
+        return replacement.flush();
     }
 
-    private void migrateStudiesCollection(MongoDataStore mongoDataStore, ObjectMap options) {
+    private long migrateStudiesCollection(MongoDataStore mongoDataStore, ObjectMap options) {
         String studiesCollectionName = options.getString(COLLECTION_STUDIES.key(), COLLECTION_STUDIES.defaultValue());
         MongoDBCollection studiesCollection = mongoDataStore.getCollection(studiesCollectionName);
         MongoDBCollection studiesBkCollection = mongoDataStore.getCollection(studiesCollectionName + BACKUP_COLLECTION_SUFIX);
@@ -308,14 +427,14 @@ public class NewVariantMetadataMigration {
         variantFileHeaderConverter.getObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
 
         logger.info("Migrate '" + studiesCollectionName + "' collection from db " + mongoDataStore.getDatabaseName());
+        BulkReplacement replacement = new BulkReplacement(studiesCollection, studiesBkCollection);
         for (Document studyConfigurationDocument : studiesCollection.nativeQuery().find(exists("variantMetadata", true), new QueryOptions())) {
             Document variantMetadataObject = studyConfigurationDocument.get("variantMetadata", Document.class);
             if (variantMetadataObject == null) {
                 continue;
             }
             logger.info("Migrate StudyConfiguration " + studyConfigurationDocument.getString("studyName"));
-            // Save backup
-            studiesBkCollection.update(eq("_id", studyConfigurationDocument.get("_id")), studyConfigurationDocument, UPSER_OPTIONS);
+            Document backupDocument = new Document(studyConfigurationDocument);
 
             //Migrate model
             VariantStudyMetadata variantStudyMetadata = variantStudyMetadataConverter.convertToDataModelType(variantMetadataObject);
@@ -345,10 +464,52 @@ public class NewVariantMetadataMigration {
                     -> variantFileHeader.getComplexLines().add(
                             new VariantFileHeaderComplexLine("contig", contig, null, null, null, Collections.singletonMap("length", String.valueOf(length)))));
 
-            // Save new version
+            // Save backup and new version
             studyConfigurationDocument.remove("variantMetadata");
             studyConfigurationDocument.put("variantHeader", variantFileHeaderConverter.convertToStorageType(variantFileHeader));
-            studiesCollection.update(eq("_id", studyConfigurationDocument.get("_id")), studyConfigurationDocument, REPLACE_OPTIONS);
+            replacement.add(backupDocument, studyConfigurationDocument);
+        }
+        return replacement.flush();
+    }
+
+    /**
+     * Replaces documents in batches, writing the backup of each batch with a bulk operation before replacing the documents.
+     */
+    private static class BulkReplacement {
+        private final MongoDBCollection collection;
+        private final MongoDBCollection backupCollection;
+        private final List<Bson> backupQueries = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        private final List<Document> backupDocuments = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        private final List<Bson> queries = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        private final List<Document> documents = new ArrayList<>(MigrationRunner.BATCH_SIZE);
+        private long count;
+
+        BulkReplacement(MongoDBCollection collection, MongoDBCollection backupCollection) {
+            this.collection = collection;
+            this.backupCollection = backupCollection;
+        }
+
+        void add(Document backupDocument, Document newDocument) {
+            backupQueries.add(eq("_id", backupDocument.get("_id")));
+            backupDocuments.add(backupDocument);
+            queries.add(eq("_id", newDocument.get("_id")));
+            documents.add(newDocument);
+            if (documents.size() == MigrationRunner.BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        long flush() {
+            if (!documents.isEmpty()) {
+                backupCollection.update(backupQueries, backupDocuments, UPSER_OPTIONS);
+                collection.update(queries, documents, REPLACE_OPTIONS);
+                count += documents.size();
+                backupQueries.clear();
+                backupDocuments.clear();
+                queries.clear();
+                documents.clear();
+            }
+            return count;
         }
     }
 
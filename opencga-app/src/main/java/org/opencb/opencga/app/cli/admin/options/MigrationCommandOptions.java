@@ -19,6 +19,7 @@ public class MigrationCommandOptions extends GeneralCliOptions {
 
     private final MigrateV1_3_0CommandOptions migrateV130CommandOptions;
     private final MigrateV1_4_0CommandOptions migrateV140CommandOptions;
+    private final CompactGenotypesCommandOptions compactGenotypesCommandOptions;
     private final AdminCliOptionsParser.AdminCommonCommandOptions commonOptions;
 
     public MigrationCommandOptions(JCommander jCommander, AdminCliOptionsParser.AdminCommonCommandOptions commonOptions) {
@@ -26,6 +27,7 @@ public class MigrationCommandOptions extends GeneralCliOptions {
         this.commonOptions = commonOptions;
         this.migrateV130CommandOptions = new MigrateV1_3_0CommandOptions();
         this.migrateV140CommandOptions = new MigrateV1_4_0CommandOptions();
+        this.compactGenotypesCommandOptions = new CompactGenotypesCommandOptions();
     }
 
     @Parameters(commandNames = {"v1.3.0"}, commandDescription = "Migrate OpenCGA from version 1.2.x to 1.3.0")
@@ -43,6 +45,9 @@ public class MigrationCommandOptions extends GeneralCliOptions {
         @Parameter(names = {"--files"}, description = "VariantSource files to migrate into VariantFileMetadata. Don't do any operation in catalog.", variableArity = true)
         public List<String> files;
 
+        @ParametersDelegate
+        public MigrationExecutionOptions executionOptions = new MigrationExecutionOptions();
+
     }
 
     @Parameters(commandNames = {"v1.4.0"}, commandDescription = "Migrate OpenCGA from version 1.3.x to 1.4.0")
@@ -54,6 +59,42 @@ public class MigrationCommandOptions extends GeneralCliOptions {
         @Parameter(names = {"--what"}, description = "Select which parts will be migrated. Options: ALL, CATALOG, STORAGE, ANNOTATIONS, "
                 + "CATALOG_NO_ANNOTATIONS")
         public Migrate what = Migrate.ALL;
+
+        @ParametersDelegate
+        public MigrationExecutionOptions executionOptions = new MigrationExecutionOptions();
+    }
+
+    @Parameters(commandNames = {"compact-genotypes"}, commandDescription = "Compact the genotypes of the variants stored in MongoDB, "
+            + "storing the dense lists of samples of each genotype as bitmaps")
+    public class CompactGenotypesCommandOptions extends AdminCliOptionsParser.CatalogDatabaseCommandOptions {
+
+        @ParametersDelegate
+        public AdminCliOptionsParser.AdminCommonCommandOptions commonOptions = MigrationCommandOptions.this.commonOptions;
+
+        @Parameter(names = {"--study"}, description = "Variant storage studies to migrate. By default, all the studies",
+                variableArity = true)
+        public List<String> studies;
+
+        @Parameter(names = {"--expand"}, description = "Expand the compacted genotypes back to lists of samples. Required before "
+                + "removing files from a study")
+        public boolean expand;
+
+        @ParametersDelegate
+        public MigrationExecutionOptions executionOptions = new MigrationExecutionOptions();
+    }
+
+    public static class MigrationExecutionOptions {
+
+        @Parameter(names = {"--num-threads"}, description = "Number of studies to migrate in parallel")
+        public int numThreads = 4;
+
+        @Parameter(names = {"--dry-run"}, description = "Do not modify anything. Report the number of documents to migrate and an "
+                + "estimation of the time required, based on the conversion of a sample of documents")
+        public boolean dryRun;
+
+        @Parameter(names = {"--restart"}, description = "Discard the progress stored by previous executions and migrate everything "
+                + "again. By default, interrupted migrations are resumed")
+        public boolean restart;
     }
 
     public enum Migrate {
@@ -72,6 +113,10 @@ public class MigrationCommandOptions extends GeneralCliOptions {
         return migrateV140CommandOptions;
     }
 
+    public CompactGenotypesCommandOptions getCompactGenotypesCommandOptions() {
+        return compactGenotypesCommandOptions;
+    }
+
     public AdminCliOptionsParser.AdminCommonCommandOptions getCommonOptions() {
         return commonOptions;
     }
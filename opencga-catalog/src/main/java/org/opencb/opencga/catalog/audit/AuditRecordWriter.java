@@ -0,0 +1,453 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.catalog.db.api.AuditDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper;
+
+/**
+ * Writes audit records into the {@link AuditDBAdaptor}.
+ *
+ * In {@link Mode#SYNC} mode, each record is inserted before returning. In the asynchronous modes, records are added
+ * to a bounded queue, and a background thread inserts them in bulk, every {@code batchSize} records or every
+ * {@code flushInterval} milliseconds. Pending records are flushed on {@link #close()} and on JVM shutdown.
+ *
+ * In {@link Mode#ASYNC} mode, records are dropped if the queue is full or if the insert fails.
+ * In {@link Mode#ASYNC_SPILL} mode, every queued record is first appended to a local write-ahead file, which is truncated
+ * once the queue is empty and all the records are inserted. Records that do not fit in the queue, or that failed to be
+ * inserted, are appended to a spill file, that is inserted again when the queue is idle. After a crash, the write-ahead file
+ * is moved to the spill file, so records may be inserted twice, but never lost.
+ */
+public class AuditRecordWriter implements AutoCloseable {
+
+    public enum Mode {
+        SYNC,
+        ASYNC,
+        ASYNC_SPILL
+    }
+
+    public static final String WAL_FILE_NAME = "audit.wal";
+    public static final String SPILL_FILE_NAME = "audit.spill";
+    private static final String REPLAY_FILE_NAME = "audit.spill.replay";
+
+    private final AuditDBAdaptor auditDBAdaptor;
+    private final Mode mode;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushInterval;
+    private final BlockingQueue<AuditRecord> queue;
+    private final Path walFile;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final ObjectMapper objectMapper;
+    // Protects the files and the WAL - queue consistency
+    private final Object fileLock = new Object();
+    private BufferedWriter walWriter;
+    private Thread flusher;
+    private Thread shutdownHook;
+    private volatile boolean closed = false;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    protected static Logger logger = LoggerFactory.getLogger(AuditRecordWriter.class);
+
+    /**
+     * Creates a new audit record writer. Starts the background thread in the asynchronous modes.
+     *
+     * @param auditDBAdaptor Audit DB adaptor
+     * @param mode           Durability mode
+     * @param queueSize      Max number of records waiting to be inserted
+     * @param batchSize      Max number of records per insert
+     * @param flushInterval  Max time in milliseconds that a record can wait in the queue
+     * @param spillDir       Directory for the write-ahead and spill files. Only used in {@link Mode#ASYNC_SPILL}
+     * @throws IOException   if the spill directory can not be used
+     */
+    public AuditRecordWriter(AuditDBAdaptor auditDBAdaptor, Mode mode, int queueSize, int batchSize, long flushInterval,
+                             Path spillDir) throws IOException {
+        this.auditDBAdaptor = auditDBAdaptor;
+        this.mode = mode;
+        this.queueCapacity = Math.max(1, queueSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = Math.max(1, flushInterval);
+        this.objectMapper = getDefaultObjectMapper();
+
+        if (mode == Mode.ASYNC_SPILL) {
+            Files.createDirectories(spillDir);
+            walFile = spillDir.resolve(WAL_FILE_NAME);
+            spillFile = spillDir.resolve(SPILL_FILE_NAME);
+            replayFile = spillDir.resolve(REPLAY_FILE_NAME);
+            recover();
+            walWriter = Files.newBufferedWriter(walFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } else {
+            walFile = null;
+            spillFile = null;
+            replayFile = null;
+        }
+
+        if (mode == Mode.SYNC) {
+            queue = null;
+        } else {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            flusher = new Thread(this::flushLoop, "audit-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            shutdownHook = new Thread(this::close, "audit-flusher-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+        logger.debug("Audit record writer in mode {}", mode);
+    }
+
+    /**
+     * Write an audit record.
+     *
+     * @param auditRecord Audit record
+     * @throws CatalogDBException if the record could not be inserted in {@link Mode#SYNC} mode
+     */
+    public void write(AuditRecord auditRecord) throws CatalogDBException {
+        if (mode == Mode.SYNC || closed) {
+            insert(auditRecord);
+            return;
+        }
+        if (mode == Mode.ASYNC) {
+            if (!queue.offer(auditRecord)) {
+                if (dropped.getAndIncrement() % 1000 == 0) {
+                    logger.warn("Audit queue full. Dropped {} audit records so far", dropped.get());
+                }
+            }
+        } else {
+            try {
+                synchronized (fileLock) {
+                    // Only this method adds elements to the queue, and always within this lock
+                    if (queue.remainingCapacity() > 0) {
+                        append(walWriter, auditRecord);
+                        queue.add(auditRecord);
+                    } else {
+                        spill(Collections.singletonList(auditRecord));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to write audit record into local file. Insert it now", e);
+                insert(auditRecord);
+                return;
+            }
+        }
+        if (closed) {
+            // Closed while adding the record. If the final drain from close() did not take it, nobody else will.
+            // The queue is locked on each drainTo, poll and remove, so only one of them gets the record.
+            if (queue.remove(auditRecord)) {
+                insert(auditRecord);
+            }
+        }
+    }
+
+    /**
+     * Flush the pending records and stop the background thread.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (mode == Mode.SYNC) {
+            return;
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Records added while closing
+        List<AuditRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        if (mode == Mode.ASYNC_SPILL) {
+            synchronized (fileLock) {
+                try {
+                    walWriter.close();
+                } catch (IOException e) {
+                    logger.warn("Error closing audit write-ahead file " + walFile, e);
+                }
+            }
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignore) {
+                // Shutdown in progress
+            }
+        }
+        logger.info("Audit record writer closed. {}", getStats().toJson());
+    }
+
+    public ObjectMap getStats() {
+        return new ObjectMap()
+                .append("mode", mode)
+                .append("queueSize", queue == null ? 0 : queue.size())
+                .append("queueCapacity", queue == null ? 0 : queueCapacity)
+                .append("written", written.get())
+                .append("dropped", dropped.get())
+                .append("spilled", spilled.get())
+                .append("failedFlushes", failedFlushes.get());
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    private void flushLoop() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                AuditRecord auditRecord = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (auditRecord == null) {
+                    if (!closed && mode == Mode.ASYNC_SPILL) {
+                        replaySpilled();
+                    }
+                    continue;
+                }
+                batch.add(auditRecord);
+                long deadline = System.currentTimeMillis() + flushInterval;
+                queue.drainTo(batch, batchSize - batch.size());
+                while (batch.size() < batchSize && !closed) {
+                    long wait = deadline - System.currentTimeMillis();
+                    auditRecord = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                    if (auditRecord == null) {
+                        break;
+                    }
+                    batch.add(auditRecord);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error flushing audit records", e);
+            }
+        }
+    }
+
+    private void flush(List<AuditRecord> batch) {
+        List<AuditRecord> failed;
+        try {
+            failed = insertBatch(batch);
+        } catch (CatalogDBException | RuntimeException e) {
+            logger.warn("Error inserting " + batch.size() + " audit records", e);
+            failed = batch;
+        }
+        if (!failed.isEmpty()) {
+            failedFlushes.incrementAndGet();
+            if (mode == Mode.ASYNC_SPILL) {
+                logger.warn("Spill {} audit records not inserted to {}", failed.size(), spillFile);
+                try {
+                    synchronized (fileLock) {
+                        spill(failed);
+                    }
+                } catch (IOException io) {
+                    logger.error("Error spilling audit records. Lost " + failed.size() + " audit records", io);
+                    dropped.addAndGet(failed.size());
+                }
+            } else {
+                logger.error("Error inserting audit records. Lost {} audit records", failed.size());
+                dropped.addAndGet(failed.size());
+            }
+        }
+        if (mode == Mode.ASYNC_SPILL) {
+            synchronized (fileLock) {
+                if (queue.isEmpty()) {
+                    // Every record in the write-ahead file is either inserted or spilled
+                    try {
+                        walWriter.close();
+                        walWriter = Files.newBufferedWriter(walFile, StandardCharsets.UTF_8,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    } catch (IOException e) {
+                        logger.warn("Error truncating audit write-ahead file " + walFile, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert a batch of records.
+     *
+     * @param batch Records to insert
+     * @return The records that were not inserted. Empty if all of them were inserted.
+     * @throws CatalogDBException if the records could not be inserted
+     */
+    private List<AuditRecord> insertBatch(List<AuditRecord> batch) throws CatalogDBException {
+        List<AuditRecord> inserted = auditDBAdaptor.insertAuditRecords(batch).getResult();
+        written.addAndGet(inserted.size());
+        if (inserted.size() == batch.size()) {
+            return Collections.emptyList();
+        }
+        Set<AuditRecord> insertedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        insertedSet.addAll(inserted);
+        List<AuditRecord> failed = new ArrayList<>(batch.size() - inserted.size());
+        for (AuditRecord auditRecord : batch) {
+            if (!insertedSet.contains(auditRecord)) {
+                failed.add(auditRecord);
+            }
+        }
+        return failed;
+    }
+
+    private void insert(AuditRecord auditRecord) throws CatalogDBException {
+        auditDBAdaptor.insertAuditRecord(auditRecord);
+        written.incrementAndGet();
+    }
+
+    // Must be called within the fileLock
+    private void spill(List<AuditRecord> auditRecords) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            for (AuditRecord auditRecord : auditRecords) {
+                append(writer, auditRecord);
+            }
+        }
+        spilled.addAndGet(auditRecords.size());
+    }
+
+    private void append(BufferedWriter writer, AuditRecord auditRecord) throws IOException {
+        writer.write(objectMapper.writeValueAsString(auditRecord));
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Insert the records from the spill file. Records that fail to be inserted go back to the spill file.
+     */
+    private void replaySpilled() {
+        try {
+            synchronized (fileLock) {
+                if (Files.notExists(replayFile)) {
+                    if (Files.notExists(spillFile) || Files.size(spillFile) == 0) {
+                        return;
+                    }
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            logger.info("Insert audit records from spill file");
+            List<AuditRecord> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                boolean success = true;
+                String line;
+                while (success && (line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    batch.add(objectMapper.readValue(line, AuditRecord.class));
+                    if (batch.size() == batchSize) {
+                        success = replay(batch, reader);
+                        batch.clear();
+                    }
+                }
+                if (success && !batch.isEmpty()) {
+                    replay(batch, reader);
+                }
+            }
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            logger.error("Error reading audit spill file " + replayFile, e);
+        }
+    }
+
+    private boolean replay(List<AuditRecord> batch, BufferedReader reader) throws IOException {
+        List<AuditRecord> failed;
+        try {
+            failed = insertBatch(batch);
+        } catch (CatalogDBException | RuntimeException e) {
+            logger.warn("Error inserting " + batch.size() + " spilled audit records", e);
+            failed = batch;
+        }
+        if (failed.isEmpty()) {
+            return true;
+        }
+        failedFlushes.incrementAndGet();
+        logger.warn("Unable to insert {} spilled audit records. Try again later", failed.size());
+        // Put back the records not inserted from this batch, and the rest of the file
+        List<AuditRecord> remaining = new ArrayList<>(failed);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                remaining.add(objectMapper.readValue(line, AuditRecord.class));
+            }
+        }
+        synchronized (fileLock) {
+            spill(remaining);
+            // Not new spilled records
+            spilled.addAndGet(-remaining.size());
+        }
+        return false;
+    }
+
+    /**
+     * Move the records from a write-ahead file of a previous execution to the spill file.
+     */
+    private void recover() throws IOException {
+        if (Files.exists(replayFile)) {
+            appendFile(replayFile, spillFile);
+        }
+        if (Files.exists(walFile) && Files.size(walFile) > 0) {
+            logger.warn("Found audit records from a previous execution at {}. Some of them may be inserted twice.", walFile);
+            appendFile(walFile, spillFile);
+        }
+    }
+
+    private void appendFile(Path from, Path to) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(to, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+             BufferedReader reader = Files.newBufferedReader(from, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.delete(from);
+    }
+}
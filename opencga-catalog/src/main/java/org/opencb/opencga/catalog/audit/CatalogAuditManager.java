@@ -18,6 +18,7 @@ package org.opencb.opencga.catalog.audit;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -28,10 +29,15 @@ import org.opencb.opencga.catalog.db.DBAdaptorFactory;
 import org.opencb.opencga.catalog.db.api.AuditDBAdaptor;
 import org.opencb.opencga.catalog.exceptions.CatalogAuthorizationException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.core.config.Audit;
 import org.opencb.opencga.core.config.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.opencb.opencga.catalog.audit.AuditRecord.Resource;
@@ -42,17 +48,46 @@ import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
-public class CatalogAuditManager implements AuditManager {
+public class CatalogAuditManager implements AuditManager, AutoCloseable {
 
     protected static Logger logger = LoggerFactory.getLogger(CatalogAuditManager.class);
     private final AuditDBAdaptor auditDBAdaptor;
+    private final AuditRecordWriter auditRecordWriter;
     private final AuthenticationManager authenticationManager;
 
     private static final String ROOT = "admin";
 
-    public CatalogAuditManager(DBAdaptorFactory catalogDBAdaptorFactory, Configuration configuration) {
+    public CatalogAuditManager(DBAdaptorFactory catalogDBAdaptorFactory, Configuration configuration) throws CatalogException {
         this.auditDBAdaptor = catalogDBAdaptorFactory.getCatalogAuditDbAdaptor();
         this.authenticationManager = new CatalogAuthenticationManager(catalogDBAdaptorFactory, configuration);
+        this.auditRecordWriter = buildAuditRecordWriter(auditDBAdaptor, configuration.getAudit());
+    }
+
+    private static AuditRecordWriter buildAuditRecordWriter(AuditDBAdaptor auditDBAdaptor, Audit audit) throws CatalogException {
+        if (audit == null) {
+            audit = new Audit();
+        }
+        AuditRecordWriter.Mode mode;
+        try {
+            mode = StringUtils.isEmpty(audit.getMode())
+                    ? AuditRecordWriter.Mode.SYNC
+                    : AuditRecordWriter.Mode.valueOf(audit.getMode().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new CatalogException("Unknown audit mode '" + audit.getMode() + "'. Available modes: "
+                    + Arrays.toString(AuditRecordWriter.Mode.values()), e);
+        }
+        Path spillDir;
+        if (StringUtils.isEmpty(audit.getSpillDir())) {
+            spillDir = Paths.get(System.getProperty("java.io.tmpdir"), "opencga-audit");
+        } else {
+            spillDir = Paths.get(audit.getSpillDir());
+        }
+        try {
+            return new AuditRecordWriter(auditDBAdaptor, mode, audit.getQueueSize(), audit.getBatchSize(), audit.getFlushInterval(),
+                    spillDir);
+        } catch (IOException e) {
+            throw new CatalogException("Unable to use audit spill directory " + spillDir, e);
+        }
     }
 
     /**
@@ -64,7 +99,24 @@ public class CatalogAuditManager implements AuditManager {
         AuditRecord auditRecord = new AuditRecord(id, resource, action, importance, toObjectMap(before), toObjectMap(after),
                 System.currentTimeMillis(), userId, description, attributes);
         logger.debug("{}", action, auditRecord);
-        auditDBAdaptor.insertAuditRecord(auditRecord).first();
+        auditRecordWriter.write(auditRecord);
+    }
+
+    /**
+     * Get the state of the audit record writer: mode, queued records and number of written, dropped and spilled records.
+     *
+     * @return Audit writer stats
+     */
+    public ObjectMap getStats() {
+        return auditRecordWriter.getStats();
+    }
+
+    /**
+     * Flush the pending audit records.
+     */
+    @Override
+    public void close() {
+        auditRecordWriter.close();
     }
 
     private ObjectMap toObjectMap(Object object) {
@@ -65,6 +65,15 @@ public abstract class AuthenticationManager {
         return jwtManager.getUser(token);
     }
 
+    /**
+     * Invalidate the cached validation of all the tokens of the user. Tokens will be validated again on the next use.
+     *
+     * @param userId user.
+     */
+    public void invalidateTokens(String userId) {
+        jwtManager.invalidateTokens(userId);
+    }
+
     /**
      * Change users password. Could throw "UnsupportedOperationException" depending if the implementation supports password changes.
      *
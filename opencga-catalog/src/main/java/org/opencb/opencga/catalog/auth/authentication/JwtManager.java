@@ -32,6 +32,7 @@ public class JwtManager {
 
     private String secretKey;
     private Long expiration;
+    private TokenCache tokenCache;
     private Logger logger;
 
     JwtManager(Configuration configuration) {
@@ -39,6 +40,13 @@ public class JwtManager {
 
         this.secretKey = this.configuration.getAdmin().getSecretKey();
         this.expiration = this.configuration.getAuthentication().getExpiration();
+        Integer tokenCacheSize = this.configuration.getAuthentication().getTokenCacheSize();
+        if (tokenCacheSize == null) {
+            tokenCacheSize = TokenCache.DEFAULT_MAX_SIZE;
+        }
+        if (tokenCacheSize > 0) {
+            this.tokenCache = TokenCache.getInstance(tokenCacheSize);
+        }
 
         logger = LoggerFactory.getLogger(JwtManager.class);
     }
@@ -91,19 +99,51 @@ public class JwtManager {
     }
 
     void validateToken(String jwtKey) throws CatalogAuthenticationException {
-        parseClaims(jwtKey);
+        getToken(jwtKey);
     }
 
     String getAudience(String jwtKey) throws CatalogAuthenticationException {
-        return parseClaims(jwtKey).getBody().getAudience();
+        return getToken(jwtKey).getAudience();
     }
 
     String getUser(String jwtKey) throws CatalogAuthenticationException {
-        return parseClaims(jwtKey).getBody().getSubject();
+        return getToken(jwtKey).getUserId();
     }
 
     Date getExpiration(String jwtKey) throws CatalogAuthenticationException {
-        return parseClaims(jwtKey).getBody().getExpiration();
+        return getToken(jwtKey).getExpiration();
+    }
+
+    void invalidateTokens(String userId) {
+        if (tokenCache != null) {
+            tokenCache.invalidateUser(userId);
+        }
+    }
+
+    TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    private TokenCache.Token getToken(String jwtKey) throws CatalogAuthenticationException {
+        if (tokenCache == null) {
+            return toToken(parseClaims(jwtKey));
+        }
+        // Tokens can not be validated without a secret key. Let the parser fail
+        if (StringUtils.isEmpty(secretKey) || StringUtils.isEmpty(jwtKey)) {
+            return toToken(parseClaims(jwtKey));
+        }
+        String key = tokenCache.key(secretKey, jwtKey);
+        TokenCache.Token token = tokenCache.get(key);
+        if (token == null) {
+            token = toToken(parseClaims(jwtKey));
+            tokenCache.put(key, token);
+        }
+        return token;
+    }
+
+    private TokenCache.Token toToken(Jws<Claims> claims) {
+        Claims body = claims.getBody();
+        return new TokenCache.Token(body.getSubject(), body.getAudience(), body.getExpiration());
     }
 
     private Jws<Claims> parseClaims(String jwtKey) throws CatalogAuthenticationException {
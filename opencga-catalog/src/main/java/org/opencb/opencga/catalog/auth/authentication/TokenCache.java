@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.auth.authentication;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of already validated tokens, shared by all the {@link JwtManager} of the JVM.
+ *
+ * Tokens are indexed by a digest of the token and the secret key used to validate it, so tokens are never kept in memory,
+ * and a token validated with a different secret key is never accepted. Entries are evicted when the token expires, when
+ * the tokens of the user are invalidated (see {@link #invalidateUser(String)}), or when the cache is full (LRU).
+ */
+public final class TokenCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static TokenCache instance;
+
+    private final int maxSize;
+    private final Map<String, Token> tokens;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+
+    TokenCache(int maxSize) {
+        this.maxSize = maxSize;
+        tokens = new LinkedHashMap<String, Token>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Token> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by all the JwtManagers. The size is given by the first caller.
+     *
+     * @param maxSize   Max number of tokens to keep
+     * @return          the shared cache
+     */
+    static synchronized TokenCache getInstance(int maxSize) {
+        if (instance == null) {
+            instance = new TokenCache(maxSize);
+        }
+        return instance;
+    }
+
+    /**
+     * Get the stats of the shared cache.
+     *
+     * @return  Hit, miss and eviction counters. Empty if the cache is not in use.
+     */
+    public static ObjectMap getSharedStats() {
+        TokenCache tokenCache;
+        synchronized (TokenCache.class) {
+            tokenCache = instance;
+        }
+        return tokenCache == null ? new ObjectMap() : tokenCache.getStats();
+    }
+
+    String key(String secretKey, String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(secretKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] bytes = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Token get(String key) {
+        Token token;
+        synchronized (tokens) {
+            token = tokens.get(key);
+            if (token != null && token.isExpired()) {
+                tokens.remove(key);
+                expired.incrementAndGet();
+                token = null;
+            }
+        }
+        if (token == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return token;
+    }
+
+    void put(String key, Token token) {
+        if (token.isExpired()) {
+            return;
+        }
+        synchronized (tokens) {
+            tokens.put(key, token);
+        }
+    }
+
+    void invalidateUser(String userId) {
+        synchronized (tokens) {
+            int size = tokens.size();
+            tokens.values().removeIf(token -> userId.equals(token.getUserId()));
+            invalidated.addAndGet(size - tokens.size());
+        }
+    }
+
+    ObjectMap getStats() {
+        int size;
+        synchronized (tokens) {
+            size = tokens.size();
+        }
+        return new ObjectMap()
+                .append("size", size)
+                .append("maxSize", maxSize)
+                .append("hits", hits.get())
+                .append("misses", misses.get())
+                .append("expired", expired.get())
+                .append("invalidated", invalidated.get());
+    }
+
+    static class Token {
+        private final String userId;
+        private final String audience;
+        private final Date expiration;
+
+        Token(String userId, String audience, Date expiration) {
+            this.userId = userId;
+            this.audience = audience;
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+        }
+
+        String getUserId() {
+            return userId;
+        }
+
+        String getAudience() {
+            return audience;
+        }
+
+        Date getExpiration() {
+            return expiration;
+        }
+    }
+}
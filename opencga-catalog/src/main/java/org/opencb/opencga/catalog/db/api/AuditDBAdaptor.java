@@ -91,6 +91,16 @@ public interface AuditDBAdaptor {
 
     QueryResult<AuditRecord> insertAuditRecord(AuditRecord auditRecord) throws CatalogDBException;
 
+    /**
+     * Insert multiple audit records. The order of the insertions is not guaranteed.
+     * A failing record does not prevent the insertion of the rest of the records.
+     *
+     * @param auditRecords  Audit records to insert
+     * @return the inserted records. Records that could not be inserted are not included.
+     * @throws CatalogDBException if the records could not be inserted
+     */
+    QueryResult<AuditRecord> insertAuditRecords(List<AuditRecord> auditRecords) throws CatalogDBException;
+
     QueryResult<AuditRecord> get(Query query, QueryOptions queryOptions) throws CatalogDBException;
 
     QueryResult groupBy(Query query, List<String> fields, QueryOptions options) throws CatalogDBException;
@@ -213,6 +213,25 @@ public interface FileDBAdaptor extends AnnotationSetDBAdaptor<File> {
      */
     QueryResult<File> insert(long studyId, File file, List<VariableSet> variableSetList, QueryOptions options) throws CatalogDBException;
 
+    /**
+     * Inserts a list of files in the database with one unordered bulk write. Files with a path already existing in the study are skipped.
+     * Files must have the uid already assigned. Disk usage of the study is not updated, so it should only be used for external files.
+     *
+     * @param studyId Id of the study where the files belong to.
+     * @param files Files to be inserted in the database.
+     * @return A QueryResult object containing the inserted files. Skipped files are not included.
+     * @throws CatalogDBException when the files could not be inserted due to other reasons.
+     */
+    QueryResult<File> insert(long studyId, List<File> files) throws CatalogDBException;
+
+    /**
+     * Reserves a range of consecutive uids for new files.
+     *
+     * @param numIds Number of uids to reserve.
+     * @return First uid of the range.
+     */
+    long getNewUids(int numIds);
+
     /***
      * Retrieves the file from the database containing the fileId given.
      *
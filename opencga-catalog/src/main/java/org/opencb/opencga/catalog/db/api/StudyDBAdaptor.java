@@ -29,6 +29,7 @@ import org.opencb.opencga.core.models.acls.permissions.StudyAclEntry;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.opencb.commons.datastore.core.QueryParam.Type.*;
 
@@ -248,6 +249,25 @@ public interface StudyDBAdaptor extends DBAdaptor<Study> {
     QueryResult<VariableSet> removeFieldFromVariableSet(long variableSetId, String name, String user)
             throws CatalogDBException, CatalogAuthorizationException;
 
+    /**
+     * Set the variables of the variable set whose values are stored in typed and indexed fields of the annotated entries.
+     *
+     * @param variableSetId variable set id.
+     * @param indexedVariables Ids of the variables to be indexed. An empty set removes the current indexed variables.
+     * @return the updated variableSet.
+     * @throws CatalogDBException catalogDBException.
+     */
+    QueryResult<VariableSet> setIndexedVariables(long variableSetId, Set<String> indexedVariables) throws CatalogDBException;
+
+    /**
+     * Create the indexes and rebuild the typed values of the indexed variables of the variable set in all the annotated entries.
+     *
+     * @param variableSetId variable set id.
+     * @return the number of entries modified.
+     * @throws CatalogDBException catalogDBException.
+     */
+    QueryResult<Long> rebuildAnnotationIndex(long variableSetId) throws CatalogDBException;
+
     QueryResult<VariableSet> getVariableSet(long variableSetId, QueryOptions options) throws CatalogDBException;
 
     /**
@@ -382,6 +402,7 @@ public interface StudyDBAdaptor extends DBAdaptor<Study> {
         DESCRIPTION("description", TEXT, ""),
         VARIABLE("variables", TEXT_ARRAY, ""),
         VARIABLE_NAME("variables.name", TEXT, ""),
+        INDEXED_VARIABLES("indexedVariables", TEXT_ARRAY, ""),
         ATTRIBUTES("attributes", TEXT, "Format: <key><operation><stringValue> where <operation> is [<|<=|>|>=|==|!=|~|!~]"),
         NATTRIBUTES("nattributes", DECIMAL, "Format: <key><operation><numericalValue> where <operation> is [<|<=|>|>=|==|!=|~|!~]"),
         BATTRIBUTES("battributes", BOOLEAN, "Format: <key><operation><true|false> where <operation> is [==|!=]"),
@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.catalog.db.mongodb;
 
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
@@ -57,6 +58,8 @@ import static org.opencb.opencga.catalog.managers.AnnotationSetManager.*;
  */
 public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor implements AnnotationSetDBAdaptor<T> {
 
+    private static final int REBUILD_ANNOTATION_INDEX_BATCH_SIZE = 500;
+
     private final AnnotationConverter annotationConverter;
 
     AnnotationMongoDBAdaptor(Logger logger) {
@@ -72,6 +75,8 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
     public enum AnnotationSetParams implements QueryParam {
         ANNOTATION_SETS("customAnnotationSets", TEXT_ARRAY, ""),
         PRIVATE_VARIABLE_SET_MAP("_vsMap", TEXT_ARRAY, ""),
+        // Typed values of the indexed variables: _annotationIndex.<variableSetUid>.<variableId>
+        PRIVATE_ANNOTATION_INDEX("_annotationIndex", TEXT_ARRAY, ""),
 
         // The variables stored as will appear inside the array
         ID("id", TEXT, ""),
@@ -170,6 +175,50 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
         if (queryResult.first().getModifiedCount() != 1) {
             throw CatalogDBException.alreadyExists("AnnotationSet", "name", annotationSet.getId());
         }
+
+        updateAnnotationIndex(new Document("_id", id), Collections.singletonList(variableSet));
+    }
+
+    /**
+     * Build the update adding all the annotation sets of an entry at once, so migrations can apply it with bulk operations.
+     * Only meant to be used by migrations.
+     *
+     * @param variableSetMap Map of variable set id - variable set containing the variable sets of all the annotation sets.
+     * @param annotationSetList Annotation sets to be added to the entry.
+     * @return The update to be applied to the entry.
+     * @throws CatalogDBException if any variable set is not found, there are repeated annotation set names or a unique variable set
+     * is annotated more than once.
+     */
+    public Bson getAnnotationSetsForMigrationUpdate(Map<String, VariableSet> variableSetMap, List<AnnotationSet> annotationSetList)
+            throws CatalogDBException {
+        Set<String> annotationSetNames = new HashSet<>();
+        Map<String, VariableSet> annotatedVariableSets = new LinkedHashMap<>();
+        List<Document> documentList = new ArrayList<>();
+        for (AnnotationSet annotationSet : annotationSetList) {
+            if (!annotationSetNames.add(annotationSet.getId())) {
+                throw CatalogDBException.alreadyExists("AnnotationSet", "name", annotationSet.getId());
+            }
+            VariableSet variableSet = variableSetMap.get(annotationSet.getVariableSetId());
+            if (variableSet == null) {
+                throw new CatalogDBException("Variable set " + annotationSet.getVariableSetId() + " not found");
+            }
+            if (annotatedVariableSets.put(variableSet.getId(), variableSet) != null && variableSet.isUnique()) {
+                throw new CatalogDBException("Repeated annotation for a unique VariableSet");
+            }
+            documentList.addAll(annotationConverter.annotationToDB(variableSet, annotationSet.getId(), annotationSet.getAnnotations()));
+        }
+
+        List<Bson> updates = new ArrayList<>();
+        updates.add(Updates.pushEach(AnnotationSetParams.ANNOTATION_SETS.key(), documentList));
+        for (VariableSet variableSet : annotatedVariableSets.values()) {
+            updates.add(Updates.set(AnnotationSetParams.PRIVATE_VARIABLE_SET_MAP.key() + "." + variableSet.getUid(),
+                    variableSet.getId()));
+        }
+        Document annotationIndex = annotationConverter.annotationIndexToDB(documentList, new ArrayList<>(annotatedVariableSets.values()));
+        for (Map.Entry<String, Object> entry : annotationIndex.entrySet()) {
+            updates.add(Updates.set(AnnotationSetParams.PRIVATE_ANNOTATION_INDEX.key() + "." + entry.getKey(), entry.getValue()));
+        }
+        return Updates.combine(updates);
     }
 
     /**
@@ -375,7 +424,121 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
 
             // 3. Add new list of annotations
             addNewAnnotations(entryId, annotationDocumentList, isVersioned);
+        } else {
+            return;
+        }
+
+        // Keep the typed values of the indexed variables in sync with the new annotations
+        Document queryDocument = new Document(PRIVATE_UID, entryId);
+        if (isVersioned) {
+            queryDocument.append(LAST_OF_VERSION, true);
+        }
+        updateAnnotationIndex(queryDocument, variableSetList);
+    }
+
+    private void updateAnnotationIndex(Document queryDocument, List<VariableSet> variableSetList) throws CatalogDBException {
+        List<VariableSet> indexedVariableSetList = new ArrayList<>();
+        if (variableSetList != null) {
+            for (VariableSet variableSet : variableSetList) {
+                if (AnnotationUtils.hasIndexedVariables(variableSet)) {
+                    indexedVariableSetList.add(variableSet);
+                }
+            }
+        }
+        if (indexedVariableSetList.isEmpty()) {
+            return;
+        }
+
+        QueryResult<Document> queryResult = getCollection().find(queryDocument,
+                new QueryOptions(QueryOptions.INCLUDE, AnnotationSetParams.ANNOTATION_SETS.key()));
+        for (Document document : queryResult.getResult()) {
+            getCollection().update(new Document("_id", document.get("_id")), getAnnotationIndexUpdate(document, indexedVariableSetList),
+                    new QueryOptions());
+        }
+    }
+
+    /**
+     * Build the update setting the typed values of the indexed variables of the variable sets given, or removing them if the entry
+     * does not have any value for those variables.
+     *
+     * @param document Entry document containing the annotation sets.
+     * @param variableSetList List of variable sets to update.
+     * @return The update to be applied to the entry.
+     */
+    private Bson getAnnotationIndexUpdate(Document document, List<VariableSet> variableSetList) {
+        Document annotationIndex = annotationConverter.annotationIndexToDB(
+                (List<Document>) document.get(AnnotationSetParams.ANNOTATION_SETS.key()), variableSetList);
+
+        List<Bson> updates = new ArrayList<>(variableSetList.size());
+        for (VariableSet variableSet : variableSetList) {
+            String key = AnnotationSetParams.PRIVATE_ANNOTATION_INDEX.key() + "." + variableSet.getUid();
+            Object value = annotationIndex.get(String.valueOf(variableSet.getUid()));
+            if (value != null) {
+                updates.add(Updates.set(key, value));
+            } else {
+                updates.add(Updates.unset(key));
+            }
+        }
+        return Updates.combine(updates);
+    }
+
+    static String getAnnotationIndexKey(long variableSetUid, String variableId) {
+        return AnnotationSetParams.PRIVATE_ANNOTATION_INDEX.key() + "." + variableSetUid + "." + variableId;
+    }
+
+    /**
+     * Create the indexes over the typed values of the indexed variables of the variable set. Indexes are built in background.
+     *
+     * @param variableSet Variable set.
+     */
+    public void createAnnotationIndexes(VariableSet variableSet) {
+        if (!AnnotationUtils.hasIndexedVariables(variableSet)) {
+            return;
+        }
+        for (String variableId : variableSet.getIndexedVariables()) {
+            Document keys = new Document(PRIVATE_STUDY_ID, 1).append(getAnnotationIndexKey(variableSet.getUid(), variableId), 1);
+            getCollection().createIndex(keys, new ObjectMap(MongoDBCollection.BACKGROUND, true));
+        }
+    }
+
+    /**
+     * Rebuild the typed values of the indexed variables of the variable set for all the entries already annotated. Entries holding
+     * values of variables no longer indexed are also cleaned.
+     *
+     * @param variableSet Variable set.
+     * @return A query result containing the number of entries modified.
+     * @throws CatalogDBException if there is any unexpected error.
+     */
+    public QueryResult<Long> rebuildAnnotationIndex(VariableSet variableSet) throws CatalogDBException {
+        long startTime = startQuery();
+
+        Bson query = Filters.exists(AnnotationSetParams.PRIVATE_ANNOTATION_INDEX.key() + "." + variableSet.getUid());
+        if (AnnotationUtils.hasIndexedVariables(variableSet)) {
+            query = Filters.or(query, Filters.eq(AnnotationSetParams.ANNOTATION_SETS_VARIABLE_SET_ID.key(), variableSet.getUid()));
         }
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, AnnotationSetParams.ANNOTATION_SETS.key());
+        List<VariableSet> variableSetList = Collections.singletonList(variableSet);
+
+        long modifiedCount = 0;
+        List<Bson> queries = new ArrayList<>(REBUILD_ANNOTATION_INDEX_BATCH_SIZE);
+        List<Bson> updates = new ArrayList<>(REBUILD_ANNOTATION_INDEX_BATCH_SIZE);
+        try (MongoCursor<Document> iterator = getCollection().nativeQuery().find(query, options).iterator()) {
+            while (iterator.hasNext()) {
+                Document document = iterator.next();
+                queries.add(Filters.eq("_id", document.get("_id")));
+                updates.add(getAnnotationIndexUpdate(document, variableSetList));
+                if (queries.size() == REBUILD_ANNOTATION_INDEX_BATCH_SIZE) {
+                    modifiedCount += getCollection().update(queries, updates, new QueryOptions()).first().getModifiedCount();
+                    queries.clear();
+                    updates.clear();
+                }
+            }
+        }
+        if (!queries.isEmpty()) {
+            modifiedCount += getCollection().update(queries, updates, new QueryOptions()).first().getModifiedCount();
+        }
+
+        return endQuery("Rebuild annotation index", startTime, Collections.singletonList(modifiedCount));
     }
 
     private void removePrivateVariableMap(long entryId, Map<String, String> privateVariableMapToSet, boolean isVersioned)
@@ -687,7 +850,9 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
                         new Document()
                                 .append(AnnotationSetParams.VARIABLE_SET_ID.key(), variableSetId)
                                 .append(AnnotationSetParams.ID.key(), Pattern.compile("^" + fieldId))
-                ));
+                ))
+                // Remove the typed values of the field as well, in case it was indexed
+                .append("$unset", new Document(getAnnotationIndexKey(variableSetId, fieldId), ""));
 
         Document query = new Document(AnnotationSetParams.ANNOTATION_SETS.key(), new Document("$elemMatch",
                 new Document()
@@ -858,6 +1023,22 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
                                     + key);
                         }
 
+                        // Negations are resolved over the annotation array, as the typed values of the indexed variables merge all the
+                        // annotation sets of the entry
+                        boolean indexed = variableTypeMap.containsKey(Constants.PRIVATE_ANNOTATION_INDEXED_VARIABLES)
+                                && variableTypeMap.getAsStringList(Constants.PRIVATE_ANNOTATION_INDEXED_VARIABLES)
+                                .contains(variableSet + ":" + key);
+                        if (indexed && !valueString.contains("!")) {
+                            // Query the typed values of the indexed variable so the index can be used
+                            try {
+                                addCompQueryFilter(type, getAnnotationIndexKey(variableTypeMap.getLong(variableSet), key),
+                                        Arrays.asList(valueString.split(",")), documentList);
+                            } catch (CatalogDBException e) {
+                                throw new CatalogDBException("Variable " + key + ": " + e.getMessage(), e);
+                            }
+                            continue;
+                        }
+
                         List<Document> valueList;
                         try {
                              valueList = addCompQueryFilter(type, AnnotationSetParams.VALUE.key(), Arrays.asList(valueString.split(",")),
@@ -18,6 +18,7 @@ package org.opencb.opencga.catalog.db.mongodb;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.model.Filters;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -41,10 +42,12 @@ import java.util.*;
 public class AuditMongoDBAdaptor extends MongoDBAdaptor implements AuditDBAdaptor {
 
     private final MongoDBCollection auditCollection;
+    private final MongoDBAdaptorFactory dbAdaptorFactory;
 
-    public AuditMongoDBAdaptor(MongoDBCollection auditCollection) {
+    public AuditMongoDBAdaptor(MongoDBCollection auditCollection, MongoDBAdaptorFactory dbAdaptorFactory) {
         super(LoggerFactory.getLogger(AuditMongoDBAdaptor.class));
         this.auditCollection = auditCollection;
+        this.dbAdaptorFactory = dbAdaptorFactory;
     }
 
     @Override
@@ -57,6 +60,35 @@ public class AuditMongoDBAdaptor extends MongoDBAdaptor implements AuditDBAdapto
         return endQuery("insertAuditRecord", startQuery, Collections.singletonList(auditRecord));
     }
 
+    @Override
+    public QueryResult<AuditRecord> insertAuditRecords(List<AuditRecord> auditRecords) throws CatalogDBException {
+        long startQuery = startQuery();
+
+        List<Document> documents = new ArrayList<>(auditRecords.size());
+        for (AuditRecord auditRecord : auditRecords) {
+            documents.add(MongoDBUtils.getMongoDBDocument(auditRecord, "AuditRecord"));
+        }
+        // Unordered bulk insert. All the records not failing are inserted.
+        List<BulkWriteError> writeErrors = MongoDBUtils.insertUnordered(
+                dbAdaptorFactory.getNativeCollection(MongoDBAdaptorFactory.AUDIT_COLLECTION), documents);
+        if (writeErrors.isEmpty()) {
+            return endQuery("insertAuditRecords", startQuery, auditRecords);
+        }
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError writeError : writeErrors) {
+            failed.add(writeError.getIndex());
+        }
+        List<AuditRecord> inserted = new ArrayList<>(auditRecords.size() - failed.size());
+        for (int i = 0; i < auditRecords.size(); i++) {
+            if (!failed.contains(i)) {
+                inserted.add(auditRecords.get(i));
+            }
+        }
+        logger.warn("Unable to insert {} of {} audit records: {}", failed.size(), auditRecords.size(), writeErrors.get(0).getMessage());
+
+        return endQuery("insertAuditRecords", startQuery, inserted);
+    }
+
     @Override
     public QueryResult<AuditRecord> get(Query query, QueryOptions queryOptions) throws CatalogDBException {
         long startTime = startQuery();
@@ -16,8 +16,10 @@
 
 package org.opencb.opencga.catalog.db.mongodb;
 
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Updates;
@@ -141,6 +143,59 @@ public class FileMongoDBAdaptor extends AnnotationMongoDBAdaptor<File> implement
         return endQuery("Create file", startTime, get(newFileId, options));
     }
 
+    @Override
+    public QueryResult<File> insert(long studyId, List<File> files) throws CatalogDBException {
+        long startTime = startQuery();
+        if (files.isEmpty()) {
+            return endQuery("Insert files", startTime, Collections.emptyList());
+        }
+
+        List<Document> documents = new ArrayList<>(files.size());
+        Date date = TimeUtils.getDate();
+        for (File file : files) {
+            file.setStudyUid(studyId);
+            if (StringUtils.isEmpty(file.getUuid())) {
+                file.setUuid(UUIDUtils.generateOpenCGAUUID(UUIDUtils.Entity.FILE));
+            }
+            Document fileDocument = fileConverter.convertToStorageType(file, Collections.emptyList());
+            if (StringUtils.isNotEmpty(file.getCreationDate())) {
+                fileDocument.put(PRIVATE_CREATION_DATE, TimeUtils.toDate(file.getCreationDate()));
+            } else {
+                fileDocument.put(PRIVATE_CREATION_DATE, date);
+            }
+            fileDocument.put(PERMISSION_RULES_APPLIED, Collections.emptyList());
+            documents.add(fileDocument);
+        }
+
+        // Unordered bulk write. All the documents not failing are inserted.
+        List<BulkWriteError> writeErrors = insertUnordered(dbAdaptorFactory.getNativeCollection(MongoDBAdaptorFactory.FILE_COLLECTION),
+                documents);
+        if (writeErrors.isEmpty()) {
+            return endQuery("Insert files", startTime, files);
+        }
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError writeError : writeErrors) {
+            if (ErrorCategory.fromErrorCode(writeError.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                throw new CatalogDBException("Error inserting files: " + writeError.getMessage());
+            }
+            failed.add(writeError.getIndex());
+        }
+        List<File> inserted = new ArrayList<>(files.size() - failed.size());
+        for (int i = 0; i < files.size(); i++) {
+            if (!failed.contains(i)) {
+                inserted.add(files.get(i));
+            }
+        }
+        logger.debug("Skipped {} files already existing in the study", failed.size());
+
+        return endQuery("Insert files", startTime, inserted);
+    }
+
+    @Override
+    public long getNewUids(int numIds) {
+        return dbAdaptorFactory.getCatalogMetaDBAdaptor().getNewAutoIncrementIds(numIds);
+    }
+
     @Override
     public long getId(long studyId, String path) throws CatalogDBException {
         Query query = new Query(QueryParams.STUDY_UID.key(), studyId).append(QueryParams.PATH.key(), path);
@@ -277,6 +332,33 @@ public class FileMongoDBAdaptor extends AnnotationMongoDBAdaptor<File> implement
         return update(query, parameters, Collections.emptyList(), queryOptions);
     }
 
+    /**
+     * Update a set of files with a single bulk operation, each one with its own parameters. Only meant to be used by migrations.
+     *
+     * @param parametersMap Map of file uid - parameters to update.
+     * @return The number of modified files.
+     * @throws CatalogDBException if any of the parameters is not valid.
+     */
+    public QueryResult<Long> updateForMigration(Map<Long, ObjectMap> parametersMap) throws CatalogDBException {
+        long startTime = startQuery();
+
+        List<Bson> queries = new ArrayList<>(parametersMap.size());
+        List<Bson> updates = new ArrayList<>(parametersMap.size());
+        for (Map.Entry<Long, ObjectMap> entry : parametersMap.entrySet()) {
+            Document updateDocument = getValidatedUpdateParams(entry.getValue(), QueryOptions.empty()).toFinalUpdateDocument();
+            if (!updateDocument.isEmpty()) {
+                queries.add(Filters.eq(PRIVATE_UID, entry.getKey()));
+                updates.add(updateDocument);
+            }
+        }
+        if (queries.isEmpty()) {
+            return endQuery("Update files", startTime, Collections.singletonList(0L));
+        }
+
+        long modifiedCount = fileCollection.update(queries, updates, new QueryOptions()).first().getModifiedCount();
+        return endQuery("Update files", startTime, Collections.singletonList(modifiedCount));
+    }
+
     private UpdateDocument getValidatedUpdateParams(ObjectMap parameters, QueryOptions queryOptions) throws CatalogDBException {
         UpdateDocument document = new UpdateDocument();
 
@@ -66,6 +66,20 @@ public class MetaMongoDBAdaptor extends MongoDBAdaptor implements MetaDBAdaptor
         return getNewAutoIncrementId("idCounter"); //, metaCollection
     }
 
+    /**
+     * Reserve a range of consecutive ids with one single update.
+     *
+     * @param numIds Number of ids to reserve
+     * @return First id of the range
+     */
+    public long getNewAutoIncrementIds(int numIds) {
+        Bson inc = Updates.inc("idCounter", (long) numIds);
+        QueryOptions queryOptions = new QueryOptions("returnNew", true);
+        QueryResult<Document> result = metaCollection.findAndUpdate(METADATA_QUERY, new Document("idCounter", true), null, inc,
+                queryOptions);
+        return result.getResult().get(0).getLong("idCounter") - numIds + 1;
+    }
+
     public long getNewAutoIncrementId(String field) { //, MongoDBCollection metaCollection
         Bson query = METADATA_QUERY;
         Document projection = new Document(field, true);
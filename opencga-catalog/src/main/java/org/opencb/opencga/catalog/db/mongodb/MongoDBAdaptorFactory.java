@@ -19,6 +19,7 @@ package org.opencb.opencga.catalog.db.mongodb;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DuplicateKeyException;
+import com.mongodb.client.MongoCollection;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.opencb.commons.datastore.core.DataStoreServerAddress;
@@ -78,6 +79,7 @@ public class MongoDBAdaptorFactory implements DBAdaptorFactory {
     public static final String INTERPRETATION_COLLECTION = "interpretation";
     public static final String METADATA_COLLECTION = "metadata";
     public static final String AUDIT_COLLECTION = "audit";
+    public static final String MIGRATION_COLLECTION = "migration";
     static final String METADATA_OBJECT_ID = "METADATA";
     private final MongoDataStoreManager mongoManager;
     private final MongoDBConfiguration configuration;
@@ -330,6 +332,25 @@ public class MongoDBAdaptorFactory implements DBAdaptorFactory {
         return auditDBAdaptor;
     }
 
+    /**
+     * Collection storing the progress of the migrations, so an interrupted migration can be resumed. Only used by migrations.
+     *
+     * @return the migration collection.
+     */
+    /**
+     * Native collection from the driver, for the operations not supported by the {@link MongoDBCollection}, like unordered bulk writes.
+     *
+     * @param collectionName Collection name
+     * @return The native collection
+     */
+    MongoCollection<Document> getNativeCollection(String collectionName) {
+        return db.getDb().getCollection(collectionName);
+    }
+
+    public MongoDBCollection getMigrationCollection() {
+        return db.getCollection(MIGRATION_COLLECTION);
+    }
+
     private void connect() throws CatalogDBException {
         db = mongoManager.get(database, configuration);
         if (db == null) {
@@ -381,7 +402,7 @@ public class MongoDBAdaptorFactory implements DBAdaptorFactory {
         clinicalDBAdaptor = new ClinicalAnalysisMongoDBAdaptor(clinicalCollection, this);
         interpretationDBAdaptor = new InterpretationMongoDBAdaptor(interpretationCollection, this);
         metaDBAdaptor = new MetaMongoDBAdaptor(metaCollection, this);
-        auditDBAdaptor = new AuditMongoDBAdaptor(auditCollection);
+        auditDBAdaptor = new AuditMongoDBAdaptor(auditCollection, this);
     }
 
 }
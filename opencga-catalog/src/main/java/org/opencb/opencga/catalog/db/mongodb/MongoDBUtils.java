@@ -22,8 +22,12 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Updates;
 import com.mongodb.util.JSON;
 import org.bson.Document;
@@ -89,6 +93,26 @@ class MongoDBUtils {
      * Helper methods
      ********************/
 
+    /**
+     * Insert the documents with one unordered bulk write. A failing document does not prevent the insertion of the rest.
+     *
+     * @param collection Native collection
+     * @param documents  Documents to insert
+     * @return The errors of the documents not inserted, with the index of each document in the input list.
+     *         Empty if all the documents were inserted.
+     */
+    static List<BulkWriteError> insertUnordered(MongoCollection<Document> collection, List<Document> documents) {
+        if (documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            collection.insertMany(documents, new InsertManyOptions().ordered(false));
+            return Collections.emptyList();
+        } catch (MongoBulkWriteException e) {
+            return e.getWriteErrors();
+        }
+    }
+
     static User parseUser(QueryResult<Document> result) throws CatalogDBException {
         return parseObject(result, User.class);
     }
@@ -50,6 +50,7 @@ import javax.annotation.Nullable;
 import java.net.URI;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -714,8 +715,11 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         checkVariableInVariableSet(variableSet.first(), name);
 
         Bson bsonQuery = Filters.eq(QueryParams.VARIABLE_SET_UID.key(), variableSetId);
-        Bson update = Updates.pull(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.VARIABLE.key(),
-                Filters.eq("id", name));
+        Bson update = Updates.combine(
+                Updates.pull(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.VARIABLE.key(), Filters.eq("id", name)),
+                // The variable, or any variable nested in it, is no longer indexed
+                Updates.pull(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.INDEXED_VARIABLES.key(),
+                        Pattern.compile("^" + Pattern.quote(name) + "(\\.|$)")));
         QueryResult<UpdateResult> queryResult = studyCollection.update(bsonQuery, update, null);
         if (queryResult.first().getModifiedCount() != 1) {
             throw new CatalogDBException("Remove field from Variable Set. Could not remove the field " + name
@@ -732,6 +736,39 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         return endQuery("Remove field from Variable Set", startTime, getVariableSet(variableSetId, null));
     }
 
+    @Override
+    public QueryResult<VariableSet> setIndexedVariables(long variableSetId, Set<String> indexedVariables) throws CatalogDBException {
+        long startTime = startQuery();
+
+        Bson bsonQuery = Filters.eq(QueryParams.VARIABLE_SET_UID.key(), variableSetId);
+        Bson update = Updates.set(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.INDEXED_VARIABLES.key(),
+                new ArrayList<>(indexedVariables));
+        QueryResult<UpdateResult> queryResult = studyCollection.update(bsonQuery, update, null);
+        if (queryResult.first().getMatchedCount() == 0) {
+            throw CatalogDBException.updateError("VariableSet", variableSetId);
+        }
+
+        return endQuery("Set indexed variables", startTime, getVariableSet(variableSetId, null));
+    }
+
+    @Override
+    public QueryResult<Long> rebuildAnnotationIndex(long variableSetId) throws CatalogDBException {
+        long startTime = startQuery();
+
+        VariableSet variableSet = getVariableSet(variableSetId, null).first();
+        List<AnnotationMongoDBAdaptor<?>> dbAdaptors = Arrays.asList(dbAdaptorFactory.getCatalogSampleDBAdaptor(),
+                dbAdaptorFactory.getCatalogCohortDBAdaptor(), dbAdaptorFactory.getCatalogIndividualDBAdaptor(),
+                dbAdaptorFactory.getCatalogFamilyDBAdaptor(), dbAdaptorFactory.getCatalogFileDBAdaptor());
+
+        long modifiedCount = 0;
+        for (AnnotationMongoDBAdaptor<?> dbAdaptor : dbAdaptors) {
+            dbAdaptor.createAnnotationIndexes(variableSet);
+            modifiedCount += dbAdaptor.rebuildAnnotationIndex(variableSet).first();
+        }
+
+        return endQuery("Rebuild annotation index", startTime, Collections.singletonList(modifiedCount));
+    }
+
     private Variable getVariable(VariableSet variableSet, String variableId) throws CatalogDBException {
         for (Variable variable : variableSet.getVariables()) {
             if (variable.getId().equals(variableId)) {
@@ -17,6 +17,7 @@ public class AnnotableConverter<T extends Annotable> extends GenericDocumentComp
 
     private static final String ANNOTATION_SETS = AnnotationMongoDBAdaptor.AnnotationSetParams.ANNOTATION_SETS.key();
     private static final String PRIVATE_VS_MAP =  AnnotationMongoDBAdaptor.AnnotationSetParams.PRIVATE_VARIABLE_SET_MAP.key();
+    private static final String PRIVATE_ANNOTATION_INDEX = AnnotationMongoDBAdaptor.AnnotationSetParams.PRIVATE_ANNOTATION_INDEX.key();
 
     private AnnotationConverter annotationConverter;
 
@@ -54,6 +55,11 @@ public class AnnotableConverter<T extends Annotable> extends GenericDocumentComp
         document.put(ANNOTATION_SETS, documentList);
         document.put(PRIVATE_VS_MAP, privateVariableSetMap);
 
+        Document annotationIndex = annotationConverter.annotationIndexToDB(documentList, variableSetList);
+        if (!annotationIndex.isEmpty()) {
+            document.put(PRIVATE_ANNOTATION_INDEX, annotationIndex);
+        }
+
         return document;
     }
 
@@ -4,6 +4,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bson.Document;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.catalog.db.mongodb.AnnotationMongoDBAdaptor;
+import org.opencb.opencga.catalog.utils.AnnotationUtils;
 import org.opencb.opencga.catalog.utils.Constants;
 import org.opencb.opencga.core.models.AnnotationSet;
 import org.opencb.opencga.core.models.Variable;
@@ -267,6 +268,133 @@ public class AnnotationConverter {
         return annotationSetMap.entrySet().stream().map(Map.Entry::getValue).collect(Collectors.toList());
     }
 
+    /**
+     * Builds the typed projection of the indexed variables from the annotation documents of an entry.
+     *
+     * @param annotationList List of annotation documents as stored in the entry.
+     * @param variableSetList List of variable sets. Only the variable sets with indexed variables will be considered.
+     * @return A document of the form {variableSetUid: {variableId: values}} where the values of every indexed variable are converted to
+     * the type of the variable. Nested variables are stored as nested documents. Variable sets without any value will not be present.
+     */
+    public Document annotationIndexToDB(List<Document> annotationList, List<VariableSet> variableSetList) {
+        Document annotationIndex = new Document();
+        if (annotationList == null || annotationList.isEmpty() || variableSetList == null) {
+            return annotationIndex;
+        }
+
+        Map<Long, VariableSet> indexedVariableSetMap = new HashMap<>();
+        for (VariableSet variableSet : variableSetList) {
+            if (AnnotationUtils.hasIndexedVariables(variableSet)) {
+                indexedVariableSetMap.put(variableSet.getUid(), variableSet);
+            }
+        }
+        if (indexedVariableSetMap.isEmpty()) {
+            return annotationIndex;
+        }
+
+        // Map of variableSetUid - variableId - values. All the annotation sets of the same variable set are merged
+        Map<Long, Map<String, Set<Object>>> valueMap = new HashMap<>();
+        for (Document annotationDocument : annotationList) {
+            long variableSetUid = ((Number) annotationDocument.get(VARIABLE_SET)).longValue();
+            VariableSet variableSet = indexedVariableSetMap.get(variableSetUid);
+            String variableId = annotationDocument.getString(ID);
+            if (variableSet == null || !variableSet.getIndexedVariables().contains(variableId)) {
+                continue;
+            }
+
+            Variable.VariableType type = getVariableType(variableSet, variableId);
+            Set<Object> values = valueMap.computeIfAbsent(variableSetUid, k -> new HashMap<>())
+                    .computeIfAbsent(variableId, k -> new LinkedHashSet<>());
+            addIndexValues(annotationDocument.get(VALUE), type, values);
+        }
+
+        for (Map.Entry<Long, Map<String, Set<Object>>> variableSetEntry : valueMap.entrySet()) {
+            Document variableSetIndex = new Document();
+            for (Map.Entry<String, Set<Object>> variableEntry : variableSetEntry.getValue().entrySet()) {
+                if (variableEntry.getValue().isEmpty()) {
+                    continue;
+                }
+                Object value = variableEntry.getValue().size() == 1
+                        ? variableEntry.getValue().iterator().next()
+                        : new ArrayList<>(variableEntry.getValue());
+
+                // Mongo does not accept dots in the field names, so nested variables are stored in nested documents
+                String[] keys = StringUtils.split(variableEntry.getKey(), ".");
+                Document level = variableSetIndex;
+                for (int i = 0; i < keys.length - 1; i++) {
+                    level = (Document) level.computeIfAbsent(keys[i], k -> new Document());
+                }
+                level.put(keys[keys.length - 1], value);
+            }
+            if (!variableSetIndex.isEmpty()) {
+                annotationIndex.put(String.valueOf(variableSetEntry.getKey()), variableSetIndex);
+            }
+        }
+
+        return annotationIndex;
+    }
+
+    private Variable.VariableType getVariableType(VariableSet variableSet, String variableId) {
+        Set<Variable> variables = variableSet.getVariables();
+        Variable variable = null;
+        for (String key : StringUtils.split(variableId, ".")) {
+            variable = null;
+            if (variables != null) {
+                for (Variable tmpVariable : variables) {
+                    if (key.equals(tmpVariable.getId())) {
+                        variable = tmpVariable;
+                        break;
+                    }
+                }
+            }
+            if (variable == null) {
+                return null;
+            }
+            variables = variable.getVariableSet();
+        }
+        return variable == null ? null : variable.getType();
+    }
+
+    private void addIndexValues(Object value, Variable.VariableType type, Set<Object> values) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Collection) {
+            // Arrays are flattened so the index field is a plain multikey field
+            for (Object element : (Collection) value) {
+                addIndexValues(element, type, values);
+            }
+            return;
+        }
+        if (type == null) {
+            values.add(value);
+            return;
+        }
+        try {
+            switch (type) {
+                case BOOLEAN:
+                    values.add(value instanceof Boolean ? value : Boolean.valueOf(String.valueOf(value)));
+                    break;
+                case INTEGER:
+                    values.add(value instanceof Number ? ((Number) value).longValue() : Long.valueOf(String.valueOf(value)));
+                    break;
+                case DOUBLE:
+                    values.add(value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(String.valueOf(value)));
+                    break;
+                case CATEGORICAL:
+                case TEXT:
+                    values.add(String.valueOf(value));
+                    break;
+                default:
+                    values.add(value);
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Could not convert the value {} to {}. Storing the value as it is", value, type);
+            values.add(value);
+        }
+    }
+
     private Document createAnnotationDocument(VariableLevel variableLevel, Map<String, Object> annotations) {
         Document document = new Document();
         if (annotations == null) {
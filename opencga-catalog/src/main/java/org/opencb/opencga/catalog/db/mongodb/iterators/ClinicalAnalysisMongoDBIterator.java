@@ -34,14 +34,18 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
     private QueryOptions somaticQueryOptions;
     private QueryOptions germlineQueryOptions;
 
+    // Entities already obtained, by uid
+    private Map<Long, Document> memberCache;
+    private Map<Long, Document> familyCache;
+    private Map<Long, Document> somaticCache;
+    private Map<Long, Document> germlineCache;
+
     private QueryOptions options;
 
     private Queue<Document> clinicalAnalysisListBuffer;
 
     private Logger logger;
 
-    private static final int BUFFER_SIZE = 100;
-
     private static final String UID = ClinicalAnalysisDBAdaptor.QueryParams.UID.key();
     private static final String VERSION = FamilyDBAdaptor.QueryParams.VERSION.key();
 
@@ -65,6 +69,11 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
         this.germlineQueryOptions = createInnerQueryOptions(ClinicalAnalysisDBAdaptor.QueryParams.GERMLINE.key(), true);
 
         this.clinicalAnalysisListBuffer= new LinkedList<>();
+        this.memberCache = MongoDBBatchPrefetcher.newCache();
+        this.familyCache = MongoDBBatchPrefetcher.newCache();
+        this.somaticCache = MongoDBBatchPrefetcher.newCache();
+        this.germlineCache = MongoDBBatchPrefetcher.newCache();
+        this.prefetcher = new MongoDBBatchPrefetcher(mongoCursor, this::fetchNextBatch);
         this.logger = LoggerFactory.getLogger(ClinicalAnalysisMongoDBIterator.class);
     }
 
@@ -89,25 +98,18 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
     @Override
     public boolean hasNext() {
         if (clinicalAnalysisListBuffer.isEmpty()) {
-            fetchNextBatch();
+            clinicalAnalysisListBuffer.addAll(prefetcher.nextBatch());
         }
         return !clinicalAnalysisListBuffer.isEmpty();
     }
 
-    private void fetchNextBatch() {
+    private void fetchNextBatch(List<Document> clinicalDocuments) {
         Set<Long> memberSet = new HashSet<>();
         Set<Long> familySet = new HashSet<>();
         Set<Long> somaticSet = new HashSet<>();
         Set<Long> germlineSet = new HashSet<>();
 
-        // Get next BUFFER_SIZE documents
-        int counter = 0;
-        while (mongoCursor.hasNext() && counter < BUFFER_SIZE) {
-            Document clinicalDocument = (Document) mongoCursor.next();
-
-            clinicalAnalysisListBuffer.add(clinicalDocument);
-            counter++;
-
+        for (Document clinicalDocument : clinicalDocuments) {
             // Extract the proband
             Document member = (Document) clinicalDocument.get(ClinicalAnalysisDBAdaptor.QueryParams.PROBAND.key());
             if (member != null && !options.getBoolean(NATIVE_QUERY)
@@ -138,6 +140,7 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
         }
 
         Map<Long, Document> memberMap = new HashMap<>();
+        memberSet = getFromCache(memberSet, memberCache, memberMap);
         if (!memberSet.isEmpty()) {
             // Obtain all those members
             Query query = new Query()
@@ -157,9 +160,11 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
 
             // Map each member uid to the member entry
             memberList.forEach(member -> memberMap.put(member.getLong(UID), member));
+            memberList.forEach(member -> memberCache.put(member.getLong(UID), member));
         }
 
         Map<Long, Document> familyMap = new HashMap<>();
+        familySet = getFromCache(familySet, familyCache, familyMap);
         if (!familySet.isEmpty()) {
             // Obtain all those families
             Query query = new Query()
@@ -179,9 +184,11 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
 
             // Map each member uid to the member entry
             familyList.forEach(family -> familyMap.put(family.getLong(UID), family));
+            familyList.forEach(family -> familyCache.put(family.getLong(UID), family));
         }
 
         Map<Long, Document> fileMap = new HashMap<>();
+        germlineSet = getFromCache(germlineSet, germlineCache, fileMap);
         if (!germlineSet.isEmpty()) {
             // Obtain all those germline files
             Query query = new Query()
@@ -201,9 +208,11 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
 
             // Map each member uid to the member entry
             germlineList.forEach(file -> fileMap.put(file.getLong(UID), file));
+            germlineList.forEach(file -> germlineCache.put(file.getLong(UID), file));
         }
 
-        if (!germlineSet.isEmpty()) {
+        somaticSet = getFromCache(somaticSet, somaticCache, fileMap);
+        if (!somaticSet.isEmpty()) {
             // Obtain all those somatic files
             Query query = new Query()
                     .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
@@ -222,12 +231,13 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
 
             // Map each member uid to the member entry
             somaticList.forEach(file -> fileMap.put(file.getLong(UID), file));
+            somaticList.forEach(file -> somaticCache.put(file.getLong(UID), file));
         }
 
         if (!familyMap.isEmpty() || !memberMap.isEmpty() || !fileMap.isEmpty()) {
 
             // Add the members and families obtained to the corresponding clinical analyses
-            clinicalAnalysisListBuffer.forEach(clinicalAnalysis -> {
+            clinicalDocuments.forEach(clinicalAnalysis -> {
                 Document completeProband = null;
                 Document origMember = (Document) clinicalAnalysis.get(ClinicalAnalysisDBAdaptor.QueryParams.PROBAND.key());
 
@@ -282,6 +292,20 @@ public class ClinicalAnalysisMongoDBIterator<E> extends MongoDBIterator<E>  {
         }
     }
 
+    // Move the documents already obtained to the map, and return the uids that still need to be queried
+    private Set<Long> getFromCache(Set<Long> uids, Map<Long, Document> cache, Map<Long, Document> documentMap) {
+        Set<Long> missingUids = new HashSet<>(uids.size());
+        for (Long uid : uids) {
+            Document document = cache.get(uid);
+            if (document != null) {
+                documentMap.put(uid, document);
+            } else {
+                missingUids.add(uid);
+            }
+        }
+        return missingUids;
+    }
+
     private QueryOptions createInnerQueryOptions(String fieldProjectionKey, boolean nativeQuery) {
         QueryOptions queryOptions = new QueryOptions(NATIVE_QUERY, nativeQuery);
 
@@ -28,13 +28,13 @@ public class FamilyMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
 
     private IndividualDBAdaptor individualDBAdaptor;
     private QueryOptions individualQueryOptions;
+    // Members already obtained, by uid and version
+    private Map<String, Document> memberCache;
 
     private Queue<Document> familyListBuffer;
 
     private Logger logger;
 
-    private static final int BUFFER_SIZE = 100;
-
 
     public FamilyMongoDBIterator(MongoCursor mongoCursor, AnnotableConverter<? extends Annotable> converter,
                                  Function<Document, Document> filter, IndividualDBAdaptor individualDBAdaptor,
@@ -48,6 +48,8 @@ public class FamilyMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         this.individualQueryOptions = createFamilyQueryOptions();
 
         this.familyListBuffer = new LinkedList<>();
+        this.memberCache = MongoDBBatchPrefetcher.newCache();
+        this.prefetcher = new MongoDBBatchPrefetcher(mongoCursor, this::fetchNextBatch);
         this.logger = LoggerFactory.getLogger(FamilyMongoDBIterator.class);
     }
 
@@ -72,22 +74,15 @@ public class FamilyMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
     @Override
     public boolean hasNext() {
         if (familyListBuffer.isEmpty()) {
-            fetchNextBatch();
+            familyListBuffer.addAll(prefetcher.nextBatch());
         }
         return !familyListBuffer.isEmpty();
     }
 
-    private void fetchNextBatch() {
+    private void fetchNextBatch(List<Document> familyDocuments) {
         Set<String> memberVersions = new HashSet<>();
 
-        // Get next BUFFER_SIZE documents
-        int counter = 0;
-        while (mongoCursor.hasNext() && counter < BUFFER_SIZE) {
-            Document familyDocument = (Document) mongoCursor.next();
-
-            familyListBuffer.add(familyDocument);
-            counter++;
-
+        for (Document familyDocument : familyDocuments) {
             // Extract all the members
             Object members = familyDocument.get(FamilyMongoDBAdaptor.QueryParams.MEMBERS.key());
             if (members != null && !options.getBoolean(NATIVE_QUERY)) {
@@ -104,30 +99,42 @@ public class FamilyMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         }
 
         if (!memberVersions.isEmpty()) {
-            // Obtain all those members
-
+            // Only the members not obtained for previous batches are queried
+            List<Document> memberList = new ArrayList<>(memberVersions.size());
             List<Long> uidList = new ArrayList<>(memberVersions.size());
             List<Integer> versionList = new ArrayList<>(memberVersions.size());
             memberVersions.forEach(s -> {
-                String[] split = StringUtils.splitByWholeSeparatorPreserveAllTokens(s, "__");
-                uidList.add(Long.valueOf(split[0]));
-                versionList.add(Integer.valueOf(split[1]));
+                Document member = memberCache.get(s);
+                if (member != null) {
+                    memberList.add(member);
+                } else {
+                    String[] split = StringUtils.splitByWholeSeparatorPreserveAllTokens(s, "__");
+                    uidList.add(Long.valueOf(split[0]));
+                    versionList.add(Integer.valueOf(split[1]));
+                }
             });
 
-            Query query = new Query()
-                    .append(IndividualDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
-                    .append(IndividualDBAdaptor.QueryParams.UID.key(), uidList)
-                    .append(IndividualDBAdaptor.QueryParams.VERSION.key(), versionList);
-            List<Document> memberList;
-            try {
-                if (user != null) {
-                    memberList = individualDBAdaptor.nativeGet(query, individualQueryOptions, user).getResult();
-                } else {
-                    memberList = individualDBAdaptor.nativeGet(query, individualQueryOptions).getResult();
+            if (!uidList.isEmpty()) {
+                // Obtain all those members
+                Query query = new Query()
+                        .append(IndividualDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                        .append(IndividualDBAdaptor.QueryParams.UID.key(), uidList)
+                        .append(IndividualDBAdaptor.QueryParams.VERSION.key(), versionList);
+                List<Document> newMemberList;
+                try {
+                    if (user != null) {
+                        newMemberList = individualDBAdaptor.nativeGet(query, individualQueryOptions, user).getResult();
+                    } else {
+                        newMemberList = individualDBAdaptor.nativeGet(query, individualQueryOptions).getResult();
+                    }
+                } catch (CatalogDBException | CatalogAuthorizationException e) {
+                    logger.warn("Could not obtain the members associated to the families: {}", e.getMessage(), e);
+                    return;
                 }
-            } catch (CatalogDBException | CatalogAuthorizationException e) {
-                logger.warn("Could not obtain the members associated to the families: {}", e.getMessage(), e);
-                return;
+
+                newMemberList.forEach(member -> memberCache.put(String.valueOf(member.get(FamilyDBAdaptor.QueryParams.UID.key())) + "__"
+                        + String.valueOf(member.get(FamilyDBAdaptor.QueryParams.VERSION.key())), member));
+                memberList.addAll(newMemberList);
             }
 
             // Map each member uid - version to the member entry
@@ -142,7 +149,7 @@ public class FamilyMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
             );
 
             // Add the members obtained to the corresponding families
-            familyListBuffer.forEach(family -> {
+            familyDocuments.forEach(family -> {
                 List<Document> tmpMemberList = new ArrayList<>();
                 List<Document> members = (List<Document>) family.get(FamilyMongoDBAdaptor.QueryParams.MEMBERS.key());
 
@@ -26,13 +26,13 @@ public class FileMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
 
     private SampleDBAdaptor sampleDBAdaptor;
     private QueryOptions sampleQueryOptions;
+    // Samples already obtained, by uid
+    private Map<Long, Document> sampleCache;
 
     private Queue<Document> fileListBuffer;
 
     private Logger logger;
 
-    private static final int BUFFER_SIZE = 100;
-
     public FileMongoDBIterator(MongoCursor mongoCursor,  AnnotableConverter<? extends Annotable> converter,
                                Function<Document, Document> filter, SampleDBAdaptor sampleMongoDBAdaptor,
                                long studyUid, String user, QueryOptions options) {
@@ -45,6 +45,8 @@ public class FileMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         this.sampleQueryOptions = createSampleQueryOptions();
 
         this.fileListBuffer = new LinkedList<>();
+        this.sampleCache = MongoDBBatchPrefetcher.newCache();
+        this.prefetcher = new MongoDBBatchPrefetcher(mongoCursor, this::fetchNextBatch);
         this.logger = LoggerFactory.getLogger(FileMongoDBIterator.class);
     }
 
@@ -84,22 +86,15 @@ public class FileMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
     @Override
     public boolean hasNext() {
         if (fileListBuffer.isEmpty()) {
-            fetchNextBatch();
+            fileListBuffer.addAll(prefetcher.nextBatch());
         }
         return !fileListBuffer.isEmpty();
     }
 
-    private void fetchNextBatch() {
+    private void fetchNextBatch(List<Document> fileDocuments) {
         Set<Long> sampleSet = new HashSet<>();
 
-        // Get next BUFFER_SIZE documents
-        int counter = 0;
-        while (mongoCursor.hasNext() && counter < BUFFER_SIZE) {
-            Document fileDocument = (Document) mongoCursor.next();
-
-            fileListBuffer.add(fileDocument);
-            counter++;
-
+        for (Document fileDocument : fileDocuments) {
             // Extract all the samples
             Object samples = fileDocument.get(FileDBAdaptor.QueryParams.SAMPLES.key());
             if (samples != null && !options.getBoolean(NATIVE_QUERY)) {
@@ -111,30 +106,43 @@ public class FileMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         }
 
         if (!sampleSet.isEmpty()) {
-            // Obtain all those samples
-            Query query = new Query()
-                    .append(SampleDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
-                    .append(SampleDBAdaptor.QueryParams.UID.key(), new ArrayList<>(sampleSet));
-            List<Document> sampleList;
-            try {
-                if (user != null) {
-                    sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions, user).getResult();
+            // Map each sample uid to the sample entry. Only the samples not obtained for previous batches are queried
+            Map<Long, Document> sampleMap = new HashMap<>(sampleSet.size());
+            List<Long> missingSamples = new ArrayList<>(sampleSet.size());
+            for (Long uid : sampleSet) {
+                Document sample = sampleCache.get(uid);
+                if (sample != null) {
+                    sampleMap.put(uid, sample);
                 } else {
-                    sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions).getResult();
+                    missingSamples.add(uid);
                 }
-            } catch (CatalogDBException | CatalogAuthorizationException e) {
-                logger.warn("Could not obtain the samples associated to the files: {}", e.getMessage(), e);
-                return;
             }
 
-            // Map each sample uid - version to the sample entry
-            Map<Long, Document> sampleMap = new HashMap<>(sampleList.size());
-            sampleList.forEach(sample ->
-                    sampleMap.put(sample.getLong(SampleDBAdaptor.QueryParams.UID.key()), sample)
-            );
+            if (!missingSamples.isEmpty()) {
+                // Obtain all those samples
+                Query query = new Query()
+                        .append(SampleDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                        .append(SampleDBAdaptor.QueryParams.UID.key(), missingSamples);
+                List<Document> sampleList;
+                try {
+                    if (user != null) {
+                        sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions, user).getResult();
+                    } else {
+                        sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions).getResult();
+                    }
+                } catch (CatalogDBException | CatalogAuthorizationException e) {
+                    logger.warn("Could not obtain the samples associated to the files: {}", e.getMessage(), e);
+                    return;
+                }
+
+                sampleList.forEach(sample -> {
+                    sampleMap.put(sample.getLong(SampleDBAdaptor.QueryParams.UID.key()), sample);
+                    sampleCache.put(sample.getLong(SampleDBAdaptor.QueryParams.UID.key()), sample);
+                });
+            }
 
             // Add the samples obtained to the corresponding files
-            fileListBuffer.forEach(fileDocument -> {
+            fileDocuments.forEach(fileDocument -> {
                 List<Document> tmpSampleList = new ArrayList<>();
                 List<Document> samples = (List<Document>) fileDocument.get(FileDBAdaptor.QueryParams.SAMPLES.key());
 
@@ -30,6 +30,8 @@ public class IndividualMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
 
     private SampleDBAdaptor sampleDBAdaptor;
     private QueryOptions sampleQueryOptions;
+    // Samples already obtained, by uid and version
+    private Map<String, Document> sampleCache;
 
     private IndividualDBAdaptor individualDBAdaptor;
 
@@ -37,8 +39,6 @@ public class IndividualMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
 
     private Logger logger;
 
-    private static final int BUFFER_SIZE = 100;
-
     public IndividualMongoDBIterator(MongoCursor mongoCursor, AnnotableConverter<? extends Annotable> converter,
                                      Function<Document, Document> filter, MongoDBAdaptorFactory dbAdaptorFactory,
                                      long studyUid, String user, QueryOptions options) {
@@ -53,6 +53,8 @@ public class IndividualMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         this.individualDBAdaptor = dbAdaptorFactory.getCatalogIndividualDBAdaptor();
 
         this.individualListBuffer = new LinkedList<>();
+        this.sampleCache = MongoDBBatchPrefetcher.newCache();
+        this.prefetcher = new MongoDBBatchPrefetcher(mongoCursor, this::fetchNextBatch);
         this.logger = LoggerFactory.getLogger(IndividualMongoDBIterator.class);
     }
 
@@ -76,23 +78,16 @@ public class IndividualMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
     @Override
     public boolean hasNext() {
         if (individualListBuffer.isEmpty()) {
-            fetchNextBatch();
+            individualListBuffer.addAll(prefetcher.nextBatch());
         }
         return !individualListBuffer.isEmpty();
     }
 
-    private void fetchNextBatch() {
+    private void fetchNextBatch(List<Document> individualDocuments) {
         Set<String> sampleVersions = new HashSet<>();
         Map<Long, List<Document>> individualMap = new HashMap<>();
 
-        // Get next BUFFER_SIZE documents
-        int counter = 0;
-        while (mongoCursor.hasNext() && counter < BUFFER_SIZE) {
-            Document individualDocument = (Document) mongoCursor.next();
-
-            individualListBuffer.add(individualDocument);
-            counter++;
-
+        for (Document individualDocument : individualDocuments) {
             // Extract all the samples
             Object samples = individualDocument.get(IndividualDBAdaptor.QueryParams.SAMPLES.key());
             if (samples != null && !options.getBoolean(NATIVE_QUERY)) {
@@ -154,41 +149,49 @@ public class IndividualMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         }
 
         if (!sampleVersions.isEmpty()) {
-            // Obtain all those samples
-
+            // Map each sample uid - version to the sample entry. Only the samples not obtained for previous batches are queried
+            Map<String, Document> sampleMap = new HashMap<>(sampleVersions.size());
             List<Long> uidList = new ArrayList<>(sampleVersions.size());
             List<Integer> versionList = new ArrayList<>(sampleVersions.size());
             sampleVersions.forEach(s -> {
-                String[] split = StringUtils.splitByWholeSeparatorPreserveAllTokens(s, "__");
-                uidList.add(Long.valueOf(split[0]));
-                versionList.add(Integer.valueOf(split[1]));
+                Document sample = sampleCache.get(s);
+                if (sample != null) {
+                    sampleMap.put(s, sample);
+                } else {
+                    String[] split = StringUtils.splitByWholeSeparatorPreserveAllTokens(s, "__");
+                    uidList.add(Long.valueOf(split[0]));
+                    versionList.add(Integer.valueOf(split[1]));
+                }
             });
 
-            Query query = new Query()
-                    .append(SampleDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
-                    .append(SampleDBAdaptor.QueryParams.UID.key(), uidList)
-                    .append(SampleDBAdaptor.QueryParams.VERSION.key(), versionList);
-            List<Document> sampleList;
-            try {
-                if (user != null) {
-                    sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions, user).getResult();
-                } else {
-                    sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions).getResult();
+            if (!uidList.isEmpty()) {
+                // Obtain all those samples
+                Query query = new Query()
+                        .append(SampleDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                        .append(SampleDBAdaptor.QueryParams.UID.key(), uidList)
+                        .append(SampleDBAdaptor.QueryParams.VERSION.key(), versionList);
+                List<Document> sampleList;
+                try {
+                    if (user != null) {
+                        sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions, user).getResult();
+                    } else {
+                        sampleList = sampleDBAdaptor.nativeGet(query, sampleQueryOptions).getResult();
+                    }
+                } catch (CatalogDBException | CatalogAuthorizationException e) {
+                    logger.warn("Could not obtain the samples associated to the individuals: {}", e.getMessage(), e);
+                    return;
                 }
-            } catch (CatalogDBException | CatalogAuthorizationException e) {
-                logger.warn("Could not obtain the samples associated to the individuals: {}", e.getMessage(), e);
-                return;
-            }
 
-            // Map each sample uid - version to the sample entry
-            Map<String, Document> sampleMap = new HashMap<>(sampleList.size());
-            sampleList.forEach(sample ->
-                    sampleMap.put(String.valueOf(sample.get(IndividualDBAdaptor.QueryParams.UID.key())) + "__"
-                            + String.valueOf(sample.get(IndividualDBAdaptor.QueryParams.VERSION.key())), sample)
-            );
+                sampleList.forEach(sample -> {
+                    String key = String.valueOf(sample.get(IndividualDBAdaptor.QueryParams.UID.key())) + "__"
+                            + String.valueOf(sample.get(IndividualDBAdaptor.QueryParams.VERSION.key()));
+                    sampleMap.put(key, sample);
+                    sampleCache.put(key, sample);
+                });
+            }
 
             // Add the samples obtained to the corresponding individuals
-            individualListBuffer.forEach(individual -> {
+            individualDocuments.forEach(individual -> {
                 List<Document> tmpSampleList = new ArrayList<>();
                 List<Document> samples = (List<Document>) individual.get(IndividualMongoDBAdaptor.QueryParams.SAMPLES.key());
 
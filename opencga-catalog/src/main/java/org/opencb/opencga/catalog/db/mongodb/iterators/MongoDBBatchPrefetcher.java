@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.db.mongodb.iterators;
+
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads a MongoDB cursor in batches for the iterators that need to dereference other entities.
+ *
+ * While the caller consumes one batch, the next one is read from the cursor and dereferenced in background, so the cursor
+ * fetching and the dereference queries overlap with the consumption. Only one batch is prepared at a time, so the cursor and
+ * the dereference function are never used concurrently. The size of the batches adapts to the size of the documents.
+ *
+ * Each prefetcher owns a single background thread, released on {@link #close()}, when the cursor is exhausted, or after
+ * some time idle if the iterator is never closed.
+ */
+public class MongoDBBatchPrefetcher {
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final int MIN_BATCH_SIZE = 10;
+    static final int MAX_BATCH_SIZE = 1000;
+    // Approximate size of each batch of documents in memory
+    static final long TARGET_BATCH_BYTES = 4 * 1024 * 1024;
+    // Max number of dereferenced documents cached by each iterator
+    static final int MAX_CACHE_SIZE = 10000;
+
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final MongoCursor mongoCursor;
+    private final Consumer<List<Document>> dereference;
+    private final Logger logger;
+
+    private ThreadPoolExecutor executor;
+    private Future<List<Document>> nextBatch;
+    private volatile boolean exhausted;
+    private volatile int batchSize;
+
+    /**
+     * Creates a new prefetcher. Nothing is read until the first batch is requested.
+     *
+     * @param mongoCursor Cursor to read
+     * @param dereference Function completing each batch of documents with the referenced entities
+     */
+    public MongoDBBatchPrefetcher(MongoCursor mongoCursor, Consumer<List<Document>> dereference) {
+        this.mongoCursor = mongoCursor;
+        this.dereference = dereference;
+        this.logger = LoggerFactory.getLogger(MongoDBBatchPrefetcher.class);
+        this.batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Get the next batch of dereferenced documents, and start preparing the following one in background.
+     *
+     * @return Next batch of documents. Empty if there are no more documents.
+     */
+    public List<Document> nextBatch() {
+        List<Document> batch;
+        if (nextBatch == null) {
+            if (exhausted) {
+                return Collections.emptyList();
+            }
+            // First batch. Nothing to overlap with
+            batch = readBatch();
+        } else {
+            batch = getNextBatch();
+            nextBatch = null;
+        }
+        if (exhausted) {
+            shutdownExecutor();
+        } else {
+            nextBatch = getExecutor().submit(this::readBatch);
+        }
+        return batch;
+    }
+
+    /**
+     * Wait for the batch being prepared in background, if any. Must be called before closing the cursor.
+     */
+    public void close() {
+        if (nextBatch != null) {
+            try {
+                nextBatch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.debug("Error prefetching documents: {}", e.getCause().getMessage());
+            }
+            nextBatch = null;
+        }
+        exhausted = true;
+        shutdownExecutor();
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            // One thread is enough, as only one batch is prepared at a time
+            executor = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "catalog-iterator-prefetch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    private List<Document> getNextBatch() {
+        try {
+            return nextBatch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the next batch of documents", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private List<Document> readBatch() {
+        int size = batchSize;
+        List<Document> batch = new ArrayList<>(size);
+        while (batch.size() < size && mongoCursor.hasNext()) {
+            batch.add((Document) mongoCursor.next());
+        }
+        if (batch.size() < size) {
+            exhausted = true;
+        }
+        if (batch.isEmpty()) {
+            return batch;
+        }
+
+        // Adapt the size of the next batch to the size of the documents, before the dereference makes them bigger
+        int documentSize = new RawBsonDocument(batch.get(0), new DocumentCodec()).getByteBuffer().remaining();
+        batchSize = (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, TARGET_BATCH_BYTES / Math.max(1, documentSize)));
+
+        dereference.accept(batch);
+        return batch;
+    }
+
+    /**
+     * Creates a cache for the dereferenced documents. The dereference function is never called concurrently, so the cache does not
+     * need to be synchronized.
+     *
+     * The cached documents are copied on {@code put} and on {@code get}, so a document returned to the caller of the iterator is
+     * never shared with the batch being prepared in background.
+     *
+     * @param <K> Key type
+     * @return A LRU map bounded to {@link #MAX_CACHE_SIZE} documents
+     */
+    public static <K> Map<K, Document> newCache() {
+        return new LinkedHashMap<K, Document>(16, 0.75f, true) {
+            @Override
+            public Document get(Object key) {
+                Document document = super.get(key);
+                return document == null ? null : copy(document);
+            }
+
+            @Override
+            public Document put(K key, Document value) {
+                return super.put(key, copy(value));
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Document> eldest) {
+                return size() > MAX_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Deep copy of a document. Nested documents and lists are copied, other values are considered immutable.
+     *
+     * @param document Document to copy
+     * @return Copy of the document
+     */
+    static Document copy(Document document) {
+        Document copy = new Document();
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Document) {
+            return copy((Document) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object o : list) {
+                copy.add(copyValue(o));
+            }
+            return copy;
+        } else {
+            return value;
+        }
+    }
+}
@@ -37,6 +37,8 @@ public class MongoDBIterator<E> implements DBIterator<E> {
     protected MongoCursor mongoCursor;
     protected GenericDocumentComplexConverter<E> converter;
     protected Function<Document, Document> filter;
+    // Used by the iterators reading the cursor in batches
+    protected MongoDBBatchPrefetcher prefetcher;
 
     private static final String SEPARATOR = "__";
 
@@ -81,6 +83,9 @@ public class MongoDBIterator<E> implements DBIterator<E> {
 
     @Override
     public void close() {
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
         mongoCursor.close();
     }
 
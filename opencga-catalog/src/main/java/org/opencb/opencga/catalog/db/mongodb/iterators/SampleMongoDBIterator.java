@@ -32,8 +32,6 @@ public class SampleMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
 
     private Logger logger;
 
-    private static final int BUFFER_SIZE = 100;
-
     public SampleMongoDBIterator(MongoCursor mongoCursor, AnnotableConverter<? extends Annotable> converter,
                                  Function<Document, Document> filter, IndividualDBAdaptor individualDBAdaptor,
                                  long studyUid, String user, QueryOptions options) {
@@ -46,6 +44,7 @@ public class SampleMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
         this.individualQueryOptions = createIndividualQueryOptions();
 
         this.sampleListBuffer = new LinkedList<>();
+        this.prefetcher = new MongoDBBatchPrefetcher(mongoCursor, this::fetchNextBatch);
         this.logger = LoggerFactory.getLogger(SampleMongoDBIterator.class);
     }
 
@@ -93,22 +92,15 @@ public class SampleMongoDBIterator<E> extends AnnotableMongoDBIterator<E> {
     @Override
     public boolean hasNext() {
         if (sampleListBuffer.isEmpty()) {
-            fetchNextBatch();
+            sampleListBuffer.addAll(prefetcher.nextBatch());
         }
         return !sampleListBuffer.isEmpty();
     }
 
-    private void fetchNextBatch() {
-        Map<Long, Document> sampleUidMap = new HashMap<>(BUFFER_SIZE);
-
-        // Get next BUFFER_SIZE documents
-        int counter = 0;
-        while (mongoCursor.hasNext() && counter < BUFFER_SIZE) {
-            Document sampleDocument = (Document) mongoCursor.next();
-
-            sampleListBuffer.add(sampleDocument);
-            counter++;
+    private void fetchNextBatch(List<Document> sampleDocuments) {
+        Map<Long, Document> sampleUidMap = new HashMap<>(sampleDocuments.size());
 
+        for (Document sampleDocument : sampleDocuments) {
             // Extract the sample uids
             if (!options.getBoolean(NATIVE_QUERY) && !options.getBoolean("lazy")) {
                 // Extract the sample uid
@@ -403,6 +403,13 @@ public abstract class AnnotationSetManager<R extends PrivateStudyUid> extends Re
                         parameters.put(ANNOTATION_SETS, finalAnnotationList);
 
                     } else if (action == ParamUtils.UpdateAction.REMOVE) {
+                        // The variable sets are needed to clean up the typed values of the indexed variables (if any)
+                        QueryResult<Study> studyQueryResult = studyDBAdaptor.get(resource.getStudy().getUid(),
+                                new QueryOptions(QueryOptions.INCLUDE, StudyDBAdaptor.QueryParams.VARIABLE_SET.key()));
+                        if (studyQueryResult.getNumResults() > 0) {
+                            variableSetList = studyQueryResult.first().getVariableSets();
+                        }
+
                         for (Object annotationSetObject : ((List) annotationSetsObject)) {
                             AnnotationSet annotationSet;
                             try {
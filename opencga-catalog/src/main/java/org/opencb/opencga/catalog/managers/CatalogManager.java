@@ -19,6 +19,9 @@ package org.opencb.opencga.catalog.managers;
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.commons.datastore.core.DataStoreServerAddress;
 import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.datastore.mongodb.MongoDataStore;
 import org.opencb.commons.datastore.mongodb.MongoDataStoreManager;
 import org.opencb.commons.utils.CollectionUtils;
@@ -27,6 +30,7 @@ import org.opencb.opencga.catalog.audit.CatalogAuditManager;
 import org.opencb.opencga.catalog.auth.authorization.AuthorizationManager;
 import org.opencb.opencga.catalog.auth.authorization.CatalogAuthorizationManager;
 import org.opencb.opencga.catalog.db.DBAdaptorFactory;
+import org.opencb.opencga.catalog.db.api.StudyDBAdaptor;
 import org.opencb.opencga.catalog.db.mongodb.MongoDBAdaptorFactory;
 import org.opencb.opencga.catalog.exceptions.CatalogAuthorizationException;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
@@ -34,9 +38,12 @@ import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.exceptions.CatalogIOException;
 import org.opencb.opencga.catalog.io.CatalogIOManager;
 import org.opencb.opencga.catalog.io.CatalogIOManagerFactory;
+import org.opencb.opencga.catalog.utils.AnnotationUtils;
 import org.opencb.opencga.catalog.utils.ParamUtils;
 import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.core.config.Configuration;
+import org.opencb.opencga.core.models.Study;
+import org.opencb.opencga.core.models.VariableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -193,6 +200,36 @@ public class CatalogManager implements AutoCloseable {
         catalogDBAdaptorFactory.createIndexes();
     }
 
+    /**
+     * Rebuild the typed values of the indexed variables of all the variable sets, creating the missing indexes.
+     *
+     * @param token Admin token.
+     * @return Number of entries modified.
+     * @throws CatalogException if the user is not the admin.
+     */
+    public long rebuildAnnotationIndexes(String token) throws CatalogException {
+        if (!ROOT.equals(userManager.getUserId(token))) {
+            throw new CatalogAuthorizationException("Only the admin can rebuild the annotation indexes");
+        }
+        StudyDBAdaptor studyDBAdaptor = catalogDBAdaptorFactory.getCatalogStudyDBAdaptor();
+        QueryResult<Study> studyQueryResult = studyDBAdaptor.get(new Query(),
+                new QueryOptions(QueryOptions.INCLUDE, StudyDBAdaptor.QueryParams.VARIABLE_SET.key()));
+
+        long modifiedCount = 0;
+        for (Study study : studyQueryResult.getResult()) {
+            if (study.getVariableSets() == null) {
+                continue;
+            }
+            for (VariableSet variableSet : study.getVariableSets()) {
+                if (AnnotationUtils.hasIndexedVariables(variableSet)) {
+                    logger.info("Rebuilding annotation index of variable set {} from study {}", variableSet.getId(), study.getFqn());
+                    modifiedCount += studyDBAdaptor.rebuildAnnotationIndex(variableSet.getUid()).first();
+                }
+            }
+        }
+        return modifiedCount;
+    }
+
     public void deleteCatalogDB(boolean force) throws CatalogException, URISyntaxException {
         if (!force) {
             userManager.validatePassword("admin", configuration.getAdmin().getPassword(), true);
@@ -253,6 +290,10 @@ public class CatalogManager implements AutoCloseable {
 
     @Override
     public void close() throws CatalogException {
+        if (auditManager != null) {
+            // Flush pending audit records before closing the database
+            auditManager.close();
+        }
         catalogDBAdaptorFactory.close();
     }
 
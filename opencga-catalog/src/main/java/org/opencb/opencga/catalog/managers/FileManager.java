@@ -64,7 +64,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import static org.opencb.opencga.catalog.auth.authorization.CatalogAuthorizationManager.checkPermissions;
@@ -89,6 +93,8 @@ public class FileManager extends AnnotationSetManager<File> {
     public static final String DELETE_EXTERNAL_FILES = "DELETE_EXTERNAL_FILES";
     public static final String FORCE_DELETE = "FORCE_DELETE";
 
+    private static final int DEFAULT_BULK_LINK_BATCH_SIZE = 1000;
+
     public static final String GET_NON_DELETED_FILES = Status.READY + "," + File.FileStatus.TRASHED + "," + File.FileStatus.STAGE + ","
             + File.FileStatus.MISSING;
     public static final String GET_NON_TRASHED_FILES = Status.READY + "," + File.FileStatus.STAGE + "," + File.FileStatus.MISSING;
@@ -783,9 +789,15 @@ public class FileManager extends AnnotationSetManager<File> {
             throw new CatalogException("The file introduced is not a directory.");
         }
 
-        // Call recursive method
-        FileTree fileTree = getTree(fileQueryResult.first(), query, queryOptions, maxDepth, resource.getStudy().getUid(),
-                resource.getUser());
+        FileTree fileTree;
+        if (query.containsKey(FileDBAdaptor.QueryParams.PATH.key())) {
+            // The path filter can not be combined with the path prefix. Call recursive method
+            fileTree = getTree(fileQueryResult.first(), query, queryOptions, maxDepth, resource.getStudy().getUid(),
+                    resource.getUser());
+        } else {
+            fileTree = getTreeFromPathPrefix(fileQueryResult.first(), query, queryOptions, maxDepth, resource.getStudy().getUid(),
+                    resource.getUser());
+        }
 
         int dbTime = (int) (System.currentTimeMillis() - startTime);
         int numResults = countFilesInTree(fileTree);
@@ -2313,6 +2325,95 @@ public class FileManager extends AnnotationSetManager<File> {
         return fileTree;
     }
 
+    /**
+     * Build the tree of a folder with one single query, looking for all the files with the path of the folder as prefix.
+     * Permissions are checked by the query. Files within a folder not returned by the query (because it does not match the query,
+     * or the user does not have permissions) are discarded, as the recursive version would do.
+     */
+    private FileTree getTreeFromPathPrefix(File folder, Query query, QueryOptions queryOptions, int maxDepth, long studyId,
+                                           String userId) throws CatalogException {
+        if (maxDepth == 0) {
+            return null;
+        }
+        authorizationManager.checkFilePermission(studyId, folder.getUid(), userId, FileAclEntry.FilePermissions.VIEW);
+
+        String folderPath = folder.getPath();
+        // Files up to maxDepth levels under the folder. Directories from the last level will be discarded.
+        // The folder path may contain regex metacharacters, so it has to be quoted.
+        String regexPath;
+        if (maxDepth > 0) {
+            regexPath = "~^" + Pattern.quote(folderPath) + "([^/]+/){0," + (maxDepth - 1) + "}[^/]+/?$";
+        } else {
+            regexPath = "~^" + Pattern.quote(folderPath) + ".+";
+        }
+        Query treeQuery = new Query(query);
+        treeQuery.remove(FileDBAdaptor.QueryParams.DIRECTORY.key());
+        treeQuery.put(FileDBAdaptor.QueryParams.PATH.key(), regexPath);
+
+        boolean excludePath = false;
+        QueryOptions treeOptions = new QueryOptions(queryOptions);
+        if (treeOptions.containsKey(QueryOptions.INCLUDE)) {
+            List<String> include = new ArrayList<>(treeOptions.getAsStringList(QueryOptions.INCLUDE));
+            if (!include.contains(FileDBAdaptor.QueryParams.PATH.key())) {
+                include.add(FileDBAdaptor.QueryParams.PATH.key());
+                excludePath = true;
+            }
+            treeOptions.put(QueryOptions.INCLUDE, include);
+        } else if (treeOptions.containsKey(QueryOptions.EXCLUDE)) {
+            List<String> exclude = new ArrayList<>(treeOptions.getAsStringList(QueryOptions.EXCLUDE));
+            if (exclude.remove(FileDBAdaptor.QueryParams.PATH.key())) {
+                excludePath = true;
+                if (exclude.isEmpty()) {
+                    treeOptions.remove(QueryOptions.EXCLUDE);
+                } else {
+                    treeOptions.put(QueryOptions.EXCLUDE, exclude);
+                }
+            }
+        }
+
+        FileTree fileTree = new FileTree(folder);
+        // Children of each folder, by path
+        Map<String, List<FileTree>> childrenMap = new HashMap<>();
+        childrenMap.put(folderPath, new ArrayList<>());
+        List<FileTree> nodes = new ArrayList<>();
+        try (DBIterator<File> iterator = fileDBAdaptor.iterator(treeQuery, treeOptions, userId)) {
+            while (iterator.hasNext()) {
+                File file = iterator.next();
+                String path = file.getPath();
+                // The regex may match other paths if the folder path contains special characters
+                if (path == null || path.length() <= folderPath.length() || !path.startsWith(folderPath)) {
+                    continue;
+                }
+                FileTree node = new FileTree(file);
+                if (file.getType().equals(File.Type.DIRECTORY)) {
+                    // Directories from the last level are not returned.
+                    if (maxDepth > 0 && StringUtils.countMatches(path.substring(folderPath.length()), '/') >= maxDepth) {
+                        continue;
+                    }
+                    List<FileTree> children = new ArrayList<>();
+                    node.setChildren(children);
+                    childrenMap.put(path, children);
+                }
+                nodes.add(node);
+            }
+        }
+
+        // Link every node with its parent. Nodes whose parent was not returned are discarded.
+        for (FileTree node : nodes) {
+            String path = node.getFile().getPath();
+            List<FileTree> siblings = childrenMap.get(getParentPath(path));
+            if (siblings != null) {
+                siblings.add(node);
+            }
+            if (excludePath) {
+                node.getFile().setPath(null);
+            }
+        }
+        fileTree.setChildren(childrenMap.get(folderPath));
+
+        return fileTree;
+    }
+
     private int countFilesInTree(FileTree fileTree) {
         int count = 1;
         for (FileTree tree : fileTree.getChildren()) {
@@ -2806,6 +2907,8 @@ public class FileManager extends AnnotationSetManager<File> {
                 throw new CatalogException("Cannot link " + externalPathDestiny.getFileName().toString() + ". A file with the same name "
                         + "was found in the same path.");
             }
+        } else if (params.getBoolean("bulk", false)) {
+            return bulkLink(study, userId, normalizedUri, externalPathDestinyStr, description, params, sessionId);
         } else {
             // This list will contain the list of transformed files detected during the link
             List<File> transformedFiles = new ArrayList<>();
@@ -2968,6 +3071,212 @@ public class FileManager extends AnnotationSetManager<File> {
         }
     }
 
+    /**
+     * Link a whole directory registering the files in batches.
+     *
+     * The directory is walked in parallel and the files are inserted in catalog with bulk writes, all of them inheriting the
+     * permissions of the destination folder. Files already registered under the destination path are skipped, so an interrupted
+     * link can be resumed. The root folder is registered at the end, so a partial link is never reported as already linked.
+     * Only the headers of variant and alignment files are read.
+     *
+     * @param study                  Study
+     * @param userId                 User linking the files
+     * @param normalizedUri          Directory to be linked
+     * @param externalPathDestinyStr Catalog path of the linked directory
+     * @param description            Description of the new files
+     * @param params                 Link params. "bulkBatchSize" and "bulkThreads" are read.
+     * @param sessionId              Session id
+     * @return The first 100 files linked from the uri
+     * @throws CatalogException CatalogException
+     * @throws IOException      If the directory could not be walked
+     */
+    private QueryResult<File> bulkLink(Study study, String userId, URI normalizedUri, String externalPathDestinyStr, String description,
+                                       ObjectMap params, String sessionId) throws CatalogException, IOException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        int batchSize = Math.max(1, params.getInt("bulkBatchSize", DEFAULT_BULK_LINK_BATCH_SIZE));
+        int numThreads = Math.max(1, params.getInt("bulkThreads", Runtime.getRuntime().availableProcessors()));
+
+        // We obtain the permissions set in the destination folder only once. All the new files and folders will inherit them
+        long parentFileId = fileDBAdaptor.getId(study.getUid(), getParentPath(externalPathDestinyStr));
+        QueryResult<FileAclEntry> allFileAcls = authorizationManager.getAllFileAcls(study.getUid(), parentFileId, userId, true);
+        int release = catalogManager.getStudyManager().getCurrentRelease(study, userId);
+
+        // Files registered by a previous execution
+        Set<String> registeredPaths = new HashSet<>();
+        Query query = new Query()
+                .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
+                .append(FileDBAdaptor.QueryParams.PATH.key(), "~^" + Pattern.quote(externalPathDestinyStr));
+        try (DBIterator<File> iterator = fileDBAdaptor.iterator(query,
+                new QueryOptions(QueryOptions.INCLUDE, FileDBAdaptor.QueryParams.PATH.key()))) {
+            while (iterator.hasNext()) {
+                registeredPaths.add(iterator.next().getPath());
+            }
+        }
+
+        // Walk the directory and build the files in parallel
+        Path pathOrigin = Paths.get(normalizedUri);
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        List<File> files;
+        try {
+            List<Path> paths = pool.submit(new LinkDirectoryWalker(pathOrigin)).get();
+            files = pool.submit(() -> paths.parallelStream()
+                    .map(path -> createLinkedFile(pathOrigin, path, externalPathDestinyStr, description, release))
+                    .filter(Objects::nonNull)
+                    .filter(file -> !registeredPaths.contains(file.getPath()))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogException("Interrupted while walking " + normalizedUri, e);
+        } catch (ExecutionException e) {
+            throw new CatalogException("Error walking " + normalizedUri, e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        logger.info("Found {} new files to link from {} in {}s. {} files were already registered", files.size(), normalizedUri,
+                stopWatch.getTime(TimeUnit.MILLISECONDS) / 1000.0, registeredPaths.size());
+
+        // Parents first, but leave the root folder for the end
+        files.sort(Comparator.comparing((File file) -> file.getPath().equals(externalPathDestinyStr)).thenComparing(File::getPath));
+
+        List<File> linkedFiles = new ArrayList<>();
+        long numInserted = 0;
+        for (int i = 0; i < files.size(); i += batchSize) {
+            List<File> batch = files.subList(i, Math.min(files.size(), i + batchSize));
+            long uid = fileDBAdaptor.getNewUids(batch.size());
+            for (File file : batch) {
+                file.setUid(uid);
+                uid++;
+                checkHooks(file, study.getFqn(), HookConfiguration.Stage.CREATE);
+            }
+            // Continue only with the files actually inserted. The rest were registered concurrently by someone else.
+            List<File> inserted = fileDBAdaptor.insert(study.getUid(), batch).getResult();
+            numInserted += inserted.size();
+
+            // Propagate ACLs
+            if (allFileAcls != null && allFileAcls.getNumResults() > 0 && !inserted.isEmpty()) {
+                List<Long> uids = inserted.stream().map(File::getUid).collect(Collectors.toList());
+                authorizationManager.replicateAcls(study.getUid(), uids, allFileAcls.getResult(), Entity.FILE);
+            }
+            linkedFiles.addAll(inserted);
+            logger.debug("Linked {}/{} files", i + batch.size(), files.size());
+        }
+
+        // Read the headers of the variant and alignment files
+        List<File> transformedFiles = new ArrayList<>();
+        for (File file : linkedFiles) {
+            if (file.getType() == File.Type.DIRECTORY) {
+                continue;
+            }
+            if (file.getBioformat() == File.Bioformat.VARIANT || file.getBioformat() == File.Bioformat.ALIGNMENT) {
+                try {
+                    this.file.setMetadataInformation(file, file.getUri(), new QueryOptions(), sessionId, false);
+                } catch (CatalogException e) {
+                    logger.error("Unable to read the metadata of {} : {}", file.getPath(), e.getMessage());
+                }
+            }
+            if (isTransformedFile(file.getName())) {
+                logger.info("Detected transformed file {}", file.getPath());
+                transformedFiles.add(file);
+            }
+        }
+
+        // Try to link transformed files with their corresponding original files if any
+        try {
+            if (transformedFiles.size() > 0) {
+                matchUpVariantFiles(study.getFqn(), transformedFiles, sessionId);
+            }
+        } catch (CatalogException e) {
+            logger.warn("Matching avro to variant file: {}", e.getMessage());
+        }
+
+        auditManager.recordCreation(AuditRecord.Resource.file, externalPathDestinyStr, userId, null, "Bulk link",
+                new ObjectMap("uri", normalizedUri.toString())
+                        .append("linked", numInserted)
+                        .append("alreadyRegistered", registeredPaths.size()));
+        logger.info("Linked {} files from {} in {}s", numInserted, normalizedUri, stopWatch.getTime(TimeUnit.MILLISECONDS) / 1000.0);
+
+        query = new Query()
+                .append(FileDBAdaptor.QueryParams.URI.key(), "~^" + normalizedUri)
+                .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
+                .append(FileDBAdaptor.QueryParams.STATUS_NAME.key(), "!=" + File.FileStatus.TRASHED + ";!=" + Status.DELETED + ";!="
+                        + File.FileStatus.REMOVED)
+                .append(FileDBAdaptor.QueryParams.EXTERNAL.key(), true);
+
+        // Limit the number of results and only some fields
+        QueryOptions queryOptions = new QueryOptions()
+                .append(QueryOptions.LIMIT, 100);
+        return fileDBAdaptor.get(query, queryOptions);
+    }
+
+    private File createLinkedFile(Path pathOrigin, Path path, String externalPathDestinyStr, String description, int release) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            logger.warn("Skip {}. Unable to read attributes : {}", path, e.getMessage());
+            return null;
+        }
+
+        URI uri = path.toUri();
+        String destinyPath = externalPathDestinyStr + pathOrigin.relativize(path).toString();
+        File file;
+        if (attributes.isDirectory()) {
+            if (!destinyPath.endsWith("/")) {
+                destinyPath += "/";
+            }
+            file = new File(path.getFileName().toString(), File.Type.DIRECTORY, File.Format.PLAIN, File.Bioformat.NONE, uri,
+                    destinyPath, null, TimeUtils.getTime(), TimeUtils.getTime(), description, new File.FileStatus(File.FileStatus.READY),
+                    true, 0, null, new Experiment(), Collections.emptyList(), new Job(), Collections.emptyList(), null, release,
+                    Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+        } else {
+            // Same format detection used by the FileMetadataReader
+            File.Format format = org.opencb.opencga.catalog.managers.FileUtils.detectFormat(uri);
+            File.Bioformat bioformat = org.opencb.opencga.catalog.managers.FileUtils.detectBioformat(uri);
+            file = new File(path.getFileName().toString(), File.Type.FILE, format, bioformat, uri, destinyPath, null,
+                    TimeUtils.getTime(), TimeUtils.getTime(), description, new File.FileStatus(File.FileStatus.READY), true,
+                    attributes.size(), null, new Experiment(), Collections.emptyList(), new Job(), Collections.emptyList(), null, release,
+                    Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+        }
+        file.setUuid(UUIDUtils.generateOpenCGAUUID(UUIDUtils.Entity.FILE));
+        return file;
+    }
+
+    /**
+     * Lists all the files and folders under a directory, walking the subdirectories in parallel. Symbolic links are not followed.
+     */
+    private static class LinkDirectoryWalker extends RecursiveTask<List<Path>> {
+
+        private final Path directory;
+
+        LinkDirectoryWalker(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> paths = new ArrayList<>();
+            paths.add(directory);
+            List<LinkDirectoryWalker> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        LinkDirectoryWalker subTask = new LinkDirectoryWalker(path);
+                        subTask.fork();
+                        subTasks.add(subTask);
+                    } else {
+                        paths.add(path);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                logger.warn("Skip {}. Unable to list the directory : {}", directory, e.getMessage());
+            }
+            for (LinkDirectoryWalker subTask : subTasks) {
+                paths.addAll(subTask.join());
+            }
+            return paths;
+        }
+    }
+
     private void checkHooks(File file, String fqn, HookConfiguration.Stage stage) throws CatalogException {
 
         Map<String, Map<String, List<HookConfiguration>>> hooks = this.configuration.getHooks();
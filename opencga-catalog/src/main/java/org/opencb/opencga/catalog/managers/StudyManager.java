@@ -1086,6 +1086,51 @@ public class StudyManager extends AbstractManager {
         return queryResult;
     }
 
+    /**
+     * Set the variables of the variable set whose values will also be stored in typed and indexed fields of the annotated entries, so
+     * annotation queries over them can use an index. The values of the entries already annotated are rebuilt.
+     *
+     * @param studyStr Study id.
+     * @param variableSetStr Variable set id.
+     * @param indexedVariables List of variables to index. Nested variables are referred using dots (object.variable). An empty list
+     *                         removes all the indexed variables.
+     * @param sessionId Session id.
+     * @return The updated variable set.
+     * @throws CatalogException if the user does not have permissions or any of the variables cannot be indexed.
+     */
+    public QueryResult<VariableSet> updateIndexedVariables(String studyStr, String variableSetStr, List<String> indexedVariables,
+                                                           String sessionId) throws CatalogException {
+        MyResourceId resource = getVariableSetId(variableSetStr, studyStr, sessionId);
+        String userId = resource.getUser();
+
+        authorizationManager.checkCanCreateUpdateDeleteVariableSets(resource.getStudyId(), userId);
+        VariableSet variableSet = studyDBAdaptor.getVariableSet(resource.getResourceId(), QueryOptions.empty()).first();
+        variableSet.setIndexedVariables(new LinkedHashSet<>(ParamUtils.defaultObject(indexedVariables, Collections::emptyList)));
+        AnnotationUtils.checkIndexedVariables(variableSet);
+
+        QueryResult<VariableSet> queryResult = studyDBAdaptor.setIndexedVariables(resource.getResourceId(),
+                variableSet.getIndexedVariables());
+        studyDBAdaptor.rebuildAnnotationIndex(resource.getResourceId());
+        auditManager.recordUpdate(AuditRecord.Resource.variableSet, resource.getResourceId(), userId,
+                new ObjectMap(StudyDBAdaptor.VariableSetParams.INDEXED_VARIABLES.key(), variableSet.getIndexedVariables()), null, null);
+        return queryResult;
+    }
+
+    /**
+     * Rebuild the typed values of the indexed variables of the variable set in all the annotated entries, creating the missing indexes.
+     *
+     * @param studyStr Study id.
+     * @param variableSetStr Variable set id.
+     * @param sessionId Session id.
+     * @return The number of entries modified.
+     * @throws CatalogException if the user does not have permissions.
+     */
+    public QueryResult<Long> rebuildAnnotationIndex(String studyStr, String variableSetStr, String sessionId) throws CatalogException {
+        MyResourceId resource = getVariableSetId(variableSetStr, studyStr, sessionId);
+        authorizationManager.checkCanCreateUpdateDeleteVariableSets(resource.getStudyId(), resource.getUser());
+        return studyDBAdaptor.rebuildAnnotationIndex(resource.getResourceId());
+    }
+
     public QueryResult<VariableSet> renameFieldFromVariableSet(String studyStr, String variableSetStr, String oldName, String newName,
                                                                String sessionId) throws CatalogException {
         throw new UnsupportedOperationException("Operation not yet supported");
@@ -134,6 +134,7 @@ public class UserManager extends AbstractManager {
         userDBAdaptor.checkId(userId);
         String authOrigin = getAuthenticationOriginId(userId);
         authenticationManagerMap.get(authOrigin).changePassword(userId, oldPassword, newPassword);
+        authenticationManagerMap.get(INTERNAL_AUTHORIZATION).invalidateTokens(userId);
         userDBAdaptor.updateUserLastModified(userId);
     }
 
@@ -305,6 +306,7 @@ public class UserManager extends AbstractManager {
             }
 
             QueryResult<User> deletedUser = userDBAdaptor.delete(userId, options);
+            authenticationManagerMap.get(INTERNAL_AUTHORIZATION).invalidateTokens(userId);
             auditManager.recordDeletion(AuditRecord.Resource.user, userId, userId, deletedUser.first(), null, null);
             deletedUsers.add(deletedUser);
         }
@@ -339,7 +341,9 @@ public class UserManager extends AbstractManager {
         checkSessionId(userId, sessionId);
 
         String authOrigin = getAuthenticationOriginId(userId);
-        return authenticationManagerMap.get(authOrigin).resetPassword(userId);
+        QueryResult queryResult = authenticationManagerMap.get(authOrigin).resetPassword(userId);
+        authenticationManagerMap.get(INTERNAL_AUTHORIZATION).invalidateTokens(userId);
+        return queryResult;
     }
 
     public void validatePassword(String userId, String password, boolean throwException) throws CatalogException {
@@ -18,7 +18,11 @@ package org.opencb.opencga.catalog.monitor;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.QueryResponse;
+import org.opencb.opencga.catalog.audit.AuditManager;
+import org.opencb.opencga.catalog.audit.CatalogAuditManager;
+import org.opencb.opencga.catalog.auth.authentication.TokenCache;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -71,6 +75,43 @@ public class AdminWebService {
         return createOkResponse("Test OK");
     }
 
+    @GET
+    @Path("/audit/stats")
+    @Produces("application/json")
+    public Response auditStats() {
+        if (server == null || server.getCatalogManager() == null) {
+            return buildResponse(Response.status(Response.Status.SERVICE_UNAVAILABLE));
+        }
+        AuditManager auditManager = server.getCatalogManager().getAuditManager();
+        ObjectMap stats;
+        if (auditManager instanceof CatalogAuditManager) {
+            stats = ((CatalogAuditManager) auditManager).getStats();
+        } else {
+            stats = new ObjectMap();
+        }
+        try {
+            ObjectMapper jsonObjectMapper = getDefaultObjectMapper();
+            return buildResponse(Response.ok(jsonObjectMapper.writer().writeValueAsString(stats), MediaType.APPLICATION_JSON_TYPE));
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+            return buildResponse(Response.serverError());
+        }
+    }
+
+    @GET
+    @Path("/auth/tokenCache/stats")
+    @Produces("application/json")
+    public Response tokenCacheStats() {
+        try {
+            ObjectMapper jsonObjectMapper = getDefaultObjectMapper();
+            return buildResponse(Response.ok(jsonObjectMapper.writer().writeValueAsString(TokenCache.getSharedStats()),
+                    MediaType.APPLICATION_JSON_TYPE));
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+            return buildResponse(Response.serverError());
+        }
+    }
+
     public static MonitorService getServer() {
         return server;
     }
@@ -161,6 +161,10 @@ public class MonitorService {
         exit = true;
     }
 
+    public CatalogManager getCatalogManager() {
+        return catalogManager;
+    }
+
     public void blockUntilShutdown() throws InterruptedException {
         if (server != null) {
             // Blocking the main thread
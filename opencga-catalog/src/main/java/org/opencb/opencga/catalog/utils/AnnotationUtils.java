@@ -61,6 +61,30 @@ public class AnnotationUtils {
         }
     }
 
+    /**
+     * Checks the indexed variables of the variable set correspond to existing variables of a primitive type. Variables nested in
+     * objects are referred using dots (object.variable).
+     *
+     * @param variableSet Variable set.
+     * @throws CatalogException if any of the indexed variables does not exist or is an object.
+     */
+    public static void checkIndexedVariables(VariableSet variableSet) throws CatalogException {
+        if (!hasIndexedVariables(variableSet)) {
+            return;
+        }
+        Map<String, QueryParam.Type> variableMap = getVariableMap(variableSet);
+        for (String indexedVariable : variableSet.getIndexedVariables()) {
+            if (!variableMap.containsKey(indexedVariable)) {
+                throw new CatalogException("Variable " + indexedVariable + " cannot be indexed. Only existing variables of a primitive "
+                        + "type can be indexed in the variable set " + variableSet.getId());
+            }
+        }
+    }
+
+    public static boolean hasIndexedVariables(VariableSet variableSet) {
+        return variableSet != null && variableSet.getIndexedVariables() != null && !variableSet.getIndexedVariables().isEmpty();
+    }
+
     public static void checkVariable(Variable variable) throws CatalogException {
         List<String> acceptedValues = new LinkedList<>();
         if (variable.getAllowedValues() != null) {
@@ -620,6 +644,7 @@ public class AnnotationUtils {
 
         List<String> annotationList = new ArrayList<>(originalAnnotationList.size());
         ObjectMap queriedVariableTypeMap = new ObjectMap();
+        List<String> queriedIndexedVariables = new ArrayList<>();
 
         boolean confidentialPermissionChecked = false;
 
@@ -699,6 +724,11 @@ public class AnnotationUtils {
                 annotationList.add(variableSetString + ":" + key + valueString);
                 queriedVariableTypeMap.put(variableSetString + ":" + key, variableTypeMap.get(variableSetString).get(key));
                 queriedVariableTypeMap.put(variableSetString, variableSetMap.get(variableSetString).getUid());
+
+                Set<String> indexedVariables = variableSetMap.get(variableSetString).getIndexedVariables();
+                if (indexedVariables != null && indexedVariables.contains(key)) {
+                    queriedIndexedVariables.add(variableSetString + ":" + key);
+                }
             } else {
                 throw new CatalogException("Annotation format from " + annotation + " not accepted. Supported format contains "
                         + "[variableSet:]variable=value");
@@ -708,6 +738,9 @@ public class AnnotationUtils {
         if (!annotationList.isEmpty()) {
             query.put(Constants.ANNOTATION, StringUtils.join(annotationList, ";"));
         }
+        if (!queriedIndexedVariables.isEmpty()) {
+            queriedVariableTypeMap.put(Constants.PRIVATE_ANNOTATION_INDEXED_VARIABLES, queriedIndexedVariables);
+        }
         if (!queriedVariableTypeMap.isEmpty()) {
             query.put(Constants.PRIVATE_ANNOTATION_PARAM_TYPES, queriedVariableTypeMap);
         }
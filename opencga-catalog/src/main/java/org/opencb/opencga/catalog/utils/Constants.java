@@ -96,6 +96,12 @@ public class Constants {
      */
     public static final String PRIVATE_ANNOTATION_PARAM_TYPES = "_annotationTypes";
 
+    /**
+     * Key of the PRIVATE_ANNOTATION_PARAM_TYPES map containing the list of queried variables (variableSet:variable) that are indexed in
+     * their variable set, so the DBAdaptor layer can query their typed projection instead of the generic annotation array.
+     */
+    public static final String PRIVATE_ANNOTATION_INDEXED_VARIABLES = "_indexedVariables";
+
     /**
      * Boolean indicating if the annotations have to be returned flattened or not. Default: false
      */
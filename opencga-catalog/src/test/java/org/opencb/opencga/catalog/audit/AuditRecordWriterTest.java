@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.audit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.catalog.db.api.AuditDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper;
+
+public class AuditRecordWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSync() throws Exception {
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        try (AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.SYNC, 10, 10, 1000, null)) {
+            writer.write(newRecord(1));
+            assertEquals(1, dbAdaptor.records.size());
+            assertEquals(0, dbAdaptor.bulkInserts.get());
+        }
+    }
+
+    @Test
+    public void testAsyncFlushOnClose() throws Exception {
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC, 1000, 10, 60000, null);
+        for (int i = 0; i < 95; i++) {
+            writer.write(newRecord(i));
+        }
+        writer.close();
+
+        assertEquals(95, dbAdaptor.records.size());
+        assertTrue(dbAdaptor.bulkInserts.get() >= 10);
+        assertEquals(95L, writer.getStats().getLong("written"));
+        assertEquals(0L, writer.getStats().getLong("dropped"));
+    }
+
+    @Test
+    public void testAsyncWriteWhileClosing() throws Exception {
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC, 100000, 10, 60000, null);
+        int numThreads = 4;
+        int recordsPerThread = 5000;
+        CountDownLatch started = new CountDownLatch(numThreads);
+        List<Thread> threads = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        writer.write(newRecord(i));
+                    }
+                } catch (CatalogDBException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        writer.close();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Records written after the final drain of close() are not lost
+        assertEquals(numThreads * recordsPerThread, dbAdaptor.records.size());
+        assertEquals(0L, writer.getStats().getLong("dropped"));
+    }
+
+    @Test
+    public void testAsyncDropWhenFull() throws Exception {
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        dbAdaptor.fail.set(true);
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC, 5, 5, 10, null);
+        for (int i = 0; i < 100; i++) {
+            writer.write(newRecord(i));
+        }
+        writer.close();
+
+        ObjectMap stats = writer.getStats();
+        assertEquals(0, dbAdaptor.records.size());
+        assertEquals(100L, stats.getLong("dropped"));
+    }
+
+    @Test
+    public void testAsyncSpill() throws Exception {
+        Path spillDir = temporaryFolder.newFolder().toPath();
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        dbAdaptor.fail.set(true);
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC_SPILL, 5, 5, 10, spillDir);
+        for (int i = 0; i < 20; i++) {
+            writer.write(newRecord(i));
+        }
+        writer.close();
+
+        ObjectMap stats = writer.getStats();
+        assertEquals(0, dbAdaptor.records.size());
+        assertEquals(0L, stats.getLong("dropped"));
+        assertEquals(20L, stats.getLong("spilled"));
+        assertEquals(20, Files.readAllLines(spillDir.resolve(AuditRecordWriter.SPILL_FILE_NAME)).size());
+
+        // Spilled records are inserted by the next writer
+        dbAdaptor.fail.set(false);
+        writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC_SPILL, 5, 5, 10, spillDir);
+        for (int i = 0; i < 100 && dbAdaptor.records.size() < 20; i++) {
+            Thread.sleep(50);
+        }
+        writer.write(newRecord(20));
+        writer.close();
+
+        assertEquals(21, dbAdaptor.records.size());
+        assertFalse(Files.exists(spillDir.resolve(AuditRecordWriter.SPILL_FILE_NAME)));
+    }
+
+    @Test
+    public void testAsyncSpillPartialFailure() throws Exception {
+        Path spillDir = temporaryFolder.newFolder().toPath();
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        dbAdaptor.rejected.add(2);
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC_SPILL, 5, 5, 10, spillDir);
+        for (int i = 0; i < 5; i++) {
+            writer.write(newRecord(i));
+        }
+        writer.close();
+
+        // Only the record not inserted is spilled
+        assertEquals(4, dbAdaptor.records.size());
+        assertEquals(1L, writer.getStats().getLong("spilled"));
+        assertEquals(1, Files.readAllLines(spillDir.resolve(AuditRecordWriter.SPILL_FILE_NAME)).size());
+
+        // And it is the only one replayed
+        dbAdaptor.rejected.clear();
+        writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC_SPILL, 5, 5, 10, spillDir);
+        for (int i = 0; i < 100 && dbAdaptor.records.size() < 5; i++) {
+            Thread.sleep(50);
+        }
+        writer.close();
+
+        assertEquals(5, dbAdaptor.records.size());
+        assertEquals(new HashSet<>(Arrays.asList(0, 1, 2, 3, 4)),
+                dbAdaptor.records.stream().map(AuditRecord::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void testAsyncSpillRecoverWriteAheadFile() throws Exception {
+        Path spillDir = temporaryFolder.newFolder().toPath();
+        // Write-ahead file left by a previous execution
+        Files.write(spillDir.resolve(AuditRecordWriter.WAL_FILE_NAME),
+                Collections.singletonList(getDefaultObjectMapper().writeValueAsString(newRecord(0))));
+
+        InMemoryAuditDBAdaptor dbAdaptor = new InMemoryAuditDBAdaptor();
+        AuditRecordWriter writer = new AuditRecordWriter(dbAdaptor, AuditRecordWriter.Mode.ASYNC_SPILL, 5, 5, 10, spillDir);
+        for (int i = 0; i < 100 && dbAdaptor.records.size() < 1; i++) {
+            Thread.sleep(50);
+        }
+        writer.close();
+
+        assertEquals(1, dbAdaptor.records.size());
+        assertEquals(AuditRecord.Resource.sample, dbAdaptor.records.get(0).getResource());
+    }
+
+    private AuditRecord newRecord(int id) {
+        return new AuditRecord(id, AuditRecord.Resource.sample, AuditRecord.Action.create, AuditRecord.Magnitude.low, null,
+                new ObjectMap("id", id), System.currentTimeMillis(), "user", "", null);
+    }
+
+    private static class InMemoryAuditDBAdaptor implements AuditDBAdaptor {
+        private final List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger bulkInserts = new AtomicInteger();
+        private final AtomicBoolean fail = new AtomicBoolean(false);
+        // Ids of the records failing on bulk inserts, without failing the rest of the batch
+        private final Set<Object> rejected = Collections.synchronizedSet(new HashSet<>());
+
+        @Override
+        public QueryResult<AuditRecord> insertAuditRecord(AuditRecord auditRecord) throws CatalogDBException {
+            if (fail.get()) {
+                throw new CatalogDBException("Database not available");
+            }
+            records.add(auditRecord);
+            return new QueryResult<>("insertAuditRecord", 0, 1, 1, "", "", Collections.singletonList(auditRecord));
+        }
+
+        @Override
+        public QueryResult<AuditRecord> insertAuditRecords(List<AuditRecord> auditRecords) throws CatalogDBException {
+            if (fail.get()) {
+                throw new CatalogDBException("Database not available");
+            }
+            bulkInserts.incrementAndGet();
+            List<AuditRecord> inserted = auditRecords.stream()
+                    .filter(auditRecord -> !rejected.contains(auditRecord.getId()))
+                    .collect(Collectors.toList());
+            records.addAll(inserted);
+            return new QueryResult<>("insertAuditRecords", 0, inserted.size(), inserted.size(), "", "", inserted);
+        }
+
+        @Override
+        public QueryResult<AuditRecord> get(Query query, QueryOptions queryOptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public QueryResult groupBy(Query query, List<String> fields, QueryOptions options) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -23,7 +23,10 @@ import org.opencb.opencga.catalog.exceptions.CatalogAuthenticationException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.config.Configuration;
 
+import java.util.Date;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 /**
@@ -71,6 +74,42 @@ public class JwtSessionManagerTest extends GenericTest {
         jwtSessionManager.validateToken(jwtToken);
     }
 
+    @Test
+    public void testTokenCache() throws CatalogException {
+        TokenCache tokenCache = jwtSessionManager.getTokenCache();
+        long hits = tokenCache.getStats().getLong("hits");
+
+        String token = jwtSessionManager.createJWTToken("cachedUser", 60L);
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals("OpenCGA users", jwtSessionManager.getAudience(token));
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals(hits + 2, tokenCache.getStats().getLong("hits"));
+
+        jwtSessionManager.invalidateTokens("cachedUser");
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals(hits + 2, tokenCache.getStats().getLong("hits"));
+    }
+
+    @Test
+    public void testTokenCacheExpiration() throws Exception {
+        TokenCache tokenCache = new TokenCache(2);
+        String key = tokenCache.key("12345", "token");
+        tokenCache.put(key, new TokenCache.Token("user", "OpenCGA users", new Date(System.currentTimeMillis() + 100)));
+        assertNotNull(tokenCache.get(key));
+        Thread.sleep(200);
+        assertNull(tokenCache.get(key));
+        assertEquals(1, tokenCache.getStats().getLong("expired"));
+
+        // Bounded
+        tokenCache.put(tokenCache.key("12345", "token1"), new TokenCache.Token("user", "OpenCGA users", null));
+        tokenCache.put(tokenCache.key("12345", "token2"), new TokenCache.Token("user", "OpenCGA users", null));
+        tokenCache.put(tokenCache.key("12345", "token3"), new TokenCache.Token("user", "OpenCGA users", null));
+        assertEquals(2, tokenCache.getStats().getInt("size"));
+        assertNull(tokenCache.get(tokenCache.key("12345", "token1")));
+        assertNull(tokenCache.get(tokenCache.key("54321", "token3")));
+        assertNotNull(tokenCache.get(tokenCache.key("12345", "token3")));
+    }
+
     @Test
     public void testNonExpiringToken() throws CatalogException {
         String nonExpiringToken = jwtSessionManager.createJWTToken("System", -1L);
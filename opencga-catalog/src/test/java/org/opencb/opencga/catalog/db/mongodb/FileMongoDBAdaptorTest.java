@@ -81,6 +81,29 @@ public class FileMongoDBAdaptorTest extends MongoDBAdaptorTest {
         }
     }
 
+    @Test
+    public void insertFilesSkipExistingTest() throws CatalogException {
+        long studyId = user3.getProjects().get(0).getStudies().get(0).getUid();
+        String existingPath = user3.getProjects().get(0).getStudies().get(0).getFiles().get(0).getPath();
+        long existingUid = catalogFileDBAdaptor.getId(studyId, existingPath);
+
+        List<File> files = new ArrayList<>();
+        long uid = catalogFileDBAdaptor.getNewUids(3);
+        for (String path : Arrays.asList("bulk/a.txt", existingPath, "bulk/b.txt")) {
+            File file = new File(path.substring(path.lastIndexOf('/') + 1), File.Type.FILE, File.Format.PLAIN, File.Bioformat.NONE, path,
+                    "", new File.FileStatus(File.FileStatus.READY), 10, 1);
+            file.setUid(uid++);
+            files.add(file);
+        }
+
+        // The existing file in the middle of the batch does not prevent the insertion of the next ones
+        List<File> inserted = catalogFileDBAdaptor.insert(studyId, files).getResult();
+        assertEquals(Arrays.asList("bulk/a.txt", "bulk/b.txt"), inserted.stream().map(File::getPath).collect(Collectors.toList()));
+        assertEquals(files.get(0).getUid(), catalogFileDBAdaptor.getId(studyId, "bulk/a.txt"));
+        assertEquals(files.get(2).getUid(), catalogFileDBAdaptor.getId(studyId, "bulk/b.txt"));
+        assertEquals(existingUid, catalogFileDBAdaptor.getId(studyId, existingPath));
+    }
+
     @Test
     public void getFileTest() throws CatalogDBException {
         File file = user3.getProjects().get(0).getStudies().get(0).getFiles().get(0);
@@ -259,4 +259,41 @@ public class AnnotableConverterTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void annotationIndexToDB() throws Exception {
+        Set<Variable> nestedSet = new HashSet<>();
+        nestedSet.add(new Variable().setId("b").setType(Variable.VariableType.DOUBLE));
+        Set<Variable> rootSet = new HashSet<>();
+        rootSet.add(new Variable().setId("age").setType(Variable.VariableType.INTEGER));
+        rootSet.add(new Variable().setId("tags").setMultiValue(true).setType(Variable.VariableType.TEXT));
+        rootSet.add(new Variable().setId("name").setType(Variable.VariableType.TEXT));
+        rootSet.add(new Variable().setId("a").setType(Variable.VariableType.OBJECT).setVariableSet(nestedSet));
+
+        VariableSet indexedVs = new VariableSet().setVariables(rootSet).setUid(1)
+                .setIndexedVariables(new HashSet<>(Arrays.asList("age", "tags", "a.b")));
+        VariableSet notIndexedVs = new VariableSet().setVariables(rootSet).setUid(2);
+
+        Map<String, Object> myMap = new HashMap<>();
+        myMap.put("age", "5");
+        myMap.put("tags", Arrays.asList("x", "y", "x"));
+        myMap.put("name", "sample");
+        myMap.put("a", new ObjectMap("b", 3));
+
+        AnnotationConverter annotationConverter = new AnnotationConverter();
+        List<Document> annotationList = new ArrayList<>();
+        annotationList.addAll(annotationConverter.annotationToDB(indexedVs, "annot1", myMap));
+        annotationList.addAll(annotationConverter.annotationToDB(notIndexedVs, "annot2", myMap));
+
+        Document annotationIndex = annotationConverter.annotationIndexToDB(annotationList, Arrays.asList(indexedVs, notIndexedVs));
+        assertEquals(1, annotationIndex.size());
+
+        Document variableSetIndex = (Document) annotationIndex.get("1");
+        assertEquals(3, variableSetIndex.size());
+        assertEquals(5L, variableSetIndex.get("age"));
+        assertEquals(Arrays.asList("x", "y"), variableSetIndex.get("tags"));
+        assertEquals(new Document("b", 3.0), variableSetIndex.get("a"));
+        assertFalse(variableSetIndex.containsKey("name"));
+
+        assertTrue(annotationConverter.annotationIndexToDB(annotationList, Collections.singletonList(notIndexedVs)).isEmpty());
+    }
+}
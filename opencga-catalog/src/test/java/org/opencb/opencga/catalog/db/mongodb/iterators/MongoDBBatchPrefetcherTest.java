@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.db.mongodb.iterators;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MongoDBBatchPrefetcherTest {
+
+    @Test
+    public void testNextBatch() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            documents.add(new Document("uid", (long) i));
+        }
+        List<Integer> batchSizes = new ArrayList<>();
+        MongoDBBatchPrefetcher prefetcher = new MongoDBBatchPrefetcher(new ListMongoCursor(documents), batch -> {
+            batchSizes.add(batch.size());
+            batch.forEach(document -> document.put("dereferenced", true));
+        });
+
+        List<Document> read = new ArrayList<>();
+        for (List<Document> batch = prefetcher.nextBatch(); !batch.isEmpty(); batch = prefetcher.nextBatch()) {
+            read.addAll(batch);
+        }
+        prefetcher.close();
+
+        assertEquals(documents.size(), read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertEquals(i, read.get(i).getLong("uid").longValue());
+            assertTrue(read.get(i).getBoolean("dereferenced"));
+        }
+        // Small documents. Batches grow up to the max size
+        assertEquals(MongoDBBatchPrefetcher.DEFAULT_BATCH_SIZE, batchSizes.get(0).intValue());
+        assertEquals(150, batchSizes.get(1).intValue());
+        assertTrue(prefetcher.nextBatch().isEmpty());
+    }
+
+    @Test
+    public void testCache() {
+        Map<Long, Document> cache = MongoDBBatchPrefetcher.newCache();
+        for (long i = 0; i < MongoDBBatchPrefetcher.MAX_CACHE_SIZE + 10; i++) {
+            cache.put(i, new Document("uid", i));
+        }
+        assertEquals(MongoDBBatchPrefetcher.MAX_CACHE_SIZE, cache.size());
+        assertFalse(cache.containsKey(0L));
+    }
+
+    @Test
+    public void testCacheCopies() {
+        Map<Long, Document> cache = MongoDBBatchPrefetcher.newCache();
+        Document document = new Document("uid", 1L).append("attributes", new Document("key", "value"))
+                .append("list", new ArrayList<>(Arrays.asList(new Document("id", "a"))));
+        cache.put(1L, document);
+
+        // Changes in the original document or in the returned copies do not reach the cache
+        document.get("attributes", Document.class).put("key", "other");
+        Document cached = cache.get(1L);
+        assertEquals("value", cached.get("attributes", Document.class).getString("key"));
+        cached.get("attributes", Document.class).put("key", "other");
+        ((List<Document>) cached.get("list")).get(0).put("id", "b");
+        ((List<Document>) cached.get("list")).add(new Document());
+
+        Document cachedAgain = cache.get(1L);
+        assertNotSame(cached, cachedAgain);
+        assertEquals("value", cachedAgain.get("attributes", Document.class).getString("key"));
+        assertEquals(1, ((List<Document>) cachedAgain.get("list")).size());
+        assertEquals("a", ((List<Document>) cachedAgain.get("list")).get(0).getString("id"));
+    }
+
+    @Test
+    public void testCloseReleasesThread() throws Exception {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            documents.add(new Document("uid", (long) i));
+        }
+        MongoDBBatchPrefetcher prefetcher = new MongoDBBatchPrefetcher(new ListMongoCursor(documents), batch -> { });
+        prefetcher.nextBatch();
+        prefetcher.nextBatch();
+        assertTrue(countPrefetchThreads() > 0);
+        prefetcher.close();
+
+        for (int i = 0; i < 100 && countPrefetchThreads() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, countPrefetchThreads());
+    }
+
+    private static long countPrefetchThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("catalog-iterator-prefetch") && thread.isAlive())
+                .count();
+    }
+
+    private static class ListMongoCursor implements MongoCursor<Document> {
+        private final Iterator<Document> iterator;
+
+        ListMongoCursor(List<Document> documents) {
+            iterator = documents.iterator();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Document next() {
+            return iterator.next();
+        }
+
+        @Override
+        public Document tryNext() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return null;
+        }
+    }
+}
@@ -195,6 +195,30 @@ public class FileManagerTest extends AbstractManagerTest {
         link(uri, "data", studyFqn, new ObjectMap(), sessionIdUser);
     }
 
+    @Test
+    public void testBulkLinkFolder() throws CatalogException, IOException {
+        URI uri = Paths.get(getStudyURI()).resolve("data").toUri();
+        ObjectMap params = new ObjectMap("parents", true).append("bulk", true).append("bulkBatchSize", 2);
+        QueryResult<File> allFiles = link(uri, "test/myLinkedFolder/", studyFqn, params, sessionIdUser);
+        assertEquals(6, allFiles.getNumResults());
+        for (File file : allFiles.getResult()) {
+            assertTrue(file.isExternal());
+            assertTrue(file.getPath().startsWith("test/myLinkedFolder/data/"));
+        }
+
+        QueryResult<File> folderQueryResult = catalogManager.getFileManager().get(studyFqn, new Query(FileDBAdaptor.QueryParams.PATH.key(),
+                "test/myLinkedFolder/data/test/folder/"), null, sessionIdUser);
+        assertEquals(1, folderQueryResult.getNumResults());
+        assertEquals(File.Type.DIRECTORY, folderQueryResult.first().getType());
+
+        // Linking again the same uri returns the same files
+        QueryResult<File> sameAllFiles = link(uri, "test/myLinkedFolder/", studyFqn, params, sessionIdUser);
+        assertEquals(allFiles.getNumResults(), sameAllFiles.getNumResults());
+        for (int i = 0; i < allFiles.getNumResults(); i++) {
+            assertEquals(allFiles.getResult().get(i).getUid(), sameAllFiles.getResult().get(i).getUid());
+        }
+    }
+
     @Test
     public void testLinkNormalizedUris() throws CatalogException, IOException, URISyntaxException {
         Path path = Paths.get(getStudyURI().resolve("data"));
@@ -632,6 +656,26 @@ public class FileManagerTest extends AbstractManagerTest {
         assertEquals(1, fileTree.getNumResults());
     }
 
+    @Test
+    public void testGetTreeViewMaxDepth() throws CatalogException {
+        catalogManager.getFileManager().create(studyFqn, new File().setPath("tree/a/b/c/file1.txt"), true, "content", null, sessionIdUser);
+        catalogManager.getFileManager().create(studyFqn, new File().setPath("tree/a/file2.txt"), true, "content", null, sessionIdUser);
+
+        FileManager fileManager = catalogManager.getFileManager();
+        assertEquals(1, fileManager.getTree("tree/", studyFqn, new Query(), new QueryOptions(), 1, sessionIdUser).getNumResults());
+        assertEquals(3, fileManager.getTree("tree/", studyFqn, new Query(), new QueryOptions(), 2, sessionIdUser).getNumResults());
+        assertEquals(6, fileManager.getTree("tree/", studyFqn, new Query(), new QueryOptions(), 10, sessionIdUser).getNumResults());
+
+        FileTree fileTree = fileManager.getTree("tree/", studyFqn, new Query(),
+                new QueryOptions(QueryOptions.INCLUDE, FileDBAdaptor.QueryParams.NAME.key()), 10, sessionIdUser).first();
+        assertEquals(1, fileTree.getChildren().size());
+        FileTree a = fileTree.getChildren().get(0);
+        assertEquals("a", a.getFile().getName());
+        assertNull(a.getFile().getPath());
+        assertEquals(new HashSet<>(Arrays.asList("b", "file2.txt")),
+                a.getChildren().stream().map(child -> child.getFile().getName()).collect(Collectors.toSet()));
+    }
+
     @Test
     public void renameFileTest() throws CatalogException {
         QueryResult<File> queryResult1 = catalogManager.getFileManager().create(studyFqn, new File().setPath("data/file.txt"), true,
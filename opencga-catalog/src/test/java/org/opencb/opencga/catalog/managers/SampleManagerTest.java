@@ -872,6 +872,34 @@ public class SampleManagerTest extends AbstractManagerTest {
         assertEquals(2, samples.size());
     }
 
+    @Test
+    public void testQuerySamplesIndexedAnnotations() throws CatalogException {
+        catalogManager.getStudyManager().updateIndexedVariables(studyFqn, "vs", Arrays.asList("AGE", "ALIVE"), sessionIdUser);
+
+        Query query = new Query(ANNOTATION.key(), "vs:AGE>30");
+        List<Sample> samples = catalogManager.getSampleManager().get(studyFqn, query, null, sessionIdUser).getResult();
+        assertEquals(3, samples.size());
+
+        query = new Query(ANNOTATION.key(), "vs:AGE>30;vs:ALIVE=true");
+        samples = catalogManager.getSampleManager().get(studyFqn, query, null, sessionIdUser).getResult();
+        assertEquals(2, samples.size());
+
+        // Negations are not resolved through the index
+        query = new Query(ANNOTATION.key(), "vs:AGE!=6;" + Constants.VARIABLE_SET + "=vs");
+        samples = catalogManager.getSampleManager().get(studyFqn, query, null, sessionIdUser).getResult();
+        assertEquals(7, samples.size());
+
+        // New annotations are indexed as well
+        Sample sample = new Sample().setId("s_10");
+        sample.setAnnotationSets(Collections.singletonList(new AnnotationSet("annot1", "vs",
+                new ObjectMap("NAME", "s_10").append("AGE", 31).append("ALIVE", true).append("PHEN", "CASE"))));
+        catalogManager.getSampleManager().create(studyFqn, sample, new QueryOptions(), sessionIdUser);
+
+        query = new Query(ANNOTATION.key(), "vs:AGE>30");
+        samples = catalogManager.getSampleManager().get(studyFqn, query, null, sessionIdUser).getResult();
+        assertEquals(4, samples.size());
+    }
+
     @Test
     public void testUpdateAnnotation() throws CatalogException {
         Sample sample = catalogManager.getSampleManager().get(studyFqn, s_1, null, sessionIdUser).first();
@@ -25,6 +25,9 @@ public class RestConfig {
     private int batchQuerySize;
     private int timeout;
     private int defaultLimit;
+    private int concurrentRequests;
+    private int maxIdsPerRequest;
+    private int retries;
 
     public RestConfig() {
     }
@@ -71,4 +74,31 @@ public class RestConfig {
         this.defaultLimit = defaultLimit;
         return this;
     }
+
+    public int getConcurrentRequests() {
+        return concurrentRequests;
+    }
+
+    public RestConfig setConcurrentRequests(int concurrentRequests) {
+        this.concurrentRequests = concurrentRequests;
+        return this;
+    }
+
+    public int getMaxIdsPerRequest() {
+        return maxIdsPerRequest;
+    }
+
+    public RestConfig setMaxIdsPerRequest(int maxIdsPerRequest) {
+        this.maxIdsPerRequest = maxIdsPerRequest;
+        return this;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public RestConfig setRetries(int retries) {
+        this.retries = retries;
+        return this;
+    }
 }
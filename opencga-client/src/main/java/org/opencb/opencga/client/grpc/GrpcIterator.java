@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.grpc;
+
+import io.grpc.Context;
+
+import java.util.Iterator;
+
+/**
+ * Iterator over the results of a gRPC server-streaming call. Messages are requested to the server as they are consumed.
+ * Closing the iterator before consuming all the results cancels the call, so the server stops reading.
+ *
+ * @param <T> Result type
+ */
+public class GrpcIterator<T> implements Iterator<T>, AutoCloseable {
+
+    @FunctionalInterface
+    public interface Converter<R, T> {
+        T convert(R r) throws Exception;
+    }
+
+    private final Iterator<?> iterator;
+    private final Converter<Object, T> converter;
+    private final Context.CancellableContext context;
+
+    @SuppressWarnings("unchecked")
+    <R> GrpcIterator(Iterator<R> iterator, Converter<R, T> converter, Context.CancellableContext context) {
+        this.iterator = iterator;
+        this.converter = (Converter<Object, T>) converter;
+        this.context = context;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        Object next = iterator.next();
+        try {
+            return converter.convert(next);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to read the response from the server", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.cancel(null);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.grpc;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import ga4gh.Reads;
+import io.grpc.CallOptions;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel.BasicRequest;
+import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel.StringResponse;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.client.config.ClientConfiguration;
+import org.opencb.opencga.core.models.File;
+import org.opencb.opencga.core.models.Individual;
+import org.opencb.opencga.core.models.Sample;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper;
+
+/**
+ * Client for the streaming methods of the OpenCGA gRPC server. Results are read lazily, following the gRPC flow control, so
+ * there is no limit in the number of results, and the iterators can be closed at any time to cancel the call.
+ *
+ * The gRPC stubs are generated in opencga-server, so the methods are described here using the messages shared through biodata.
+ */
+public class OpenCGAGrpcClient implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 9091;
+
+    private static final String CATALOG_SERVICE = "protobuf.opencb.service.CatalogService";
+    private static final String ALIGNMENT_SERVICE = "ga4gh.service.AlignmentService";
+
+    private static final MethodDescriptor<BasicRequest, StringResponse> SAMPLES_METHOD = catalogMethod("samples");
+    private static final MethodDescriptor<BasicRequest, StringResponse> INDIVIDUALS_METHOD = catalogMethod("individuals");
+    private static final MethodDescriptor<BasicRequest, StringResponse> FILES_METHOD = catalogMethod("files");
+    private static final MethodDescriptor<BasicRequest, Reads.ReadAlignment> ALIGNMENTS_METHOD =
+            MethodDescriptor.<BasicRequest, Reads.ReadAlignment>newBuilder()
+                    .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+                    .setFullMethodName(MethodDescriptor.generateFullMethodName(ALIGNMENT_SERVICE, "stream"))
+                    .setRequestMarshaller(ProtoUtils.marshaller(BasicRequest.getDefaultInstance()))
+                    .setResponseMarshaller(ProtoUtils.marshaller(Reads.ReadAlignment.getDefaultInstance()))
+                    .build();
+
+    private final ManagedChannel channel;
+    private final String sessionId;
+    private long timeoutMillis;
+
+    private final Logger logger = LoggerFactory.getLogger(OpenCGAGrpcClient.class);
+
+    public OpenCGAGrpcClient(String sessionId, ClientConfiguration clientConfiguration) {
+        String[] split = clientConfiguration.getGrpc().getHost().split(":");
+        String host = split[0];
+        int port = split.length == 2 ? Integer.parseInt(split[1]) : DEFAULT_PORT;
+
+        logger.debug("Connecting to gRPC server at {}:{}", host, port);
+        this.channel = ManagedChannelBuilder.forAddress(host, port)
+                .usePlaintext(true)
+                .build();
+        this.sessionId = sessionId;
+    }
+
+    OpenCGAGrpcClient(String sessionId, ManagedChannel channel) {
+        this.channel = channel;
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * Set a deadline for the calls started from now on. Calls exceeding the deadline are cancelled, and their iterators will
+     * throw a StatusRuntimeException with status DEADLINE_EXCEEDED.
+     *
+     * @param timeout Maximum duration of each call. Zero or negative for no deadline
+     * @param unit    Time unit of the timeout
+     * @return this
+     */
+    public OpenCGAGrpcClient setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public GrpcIterator<Sample> samples(String study, Query query, QueryOptions options) {
+        return catalogIterator(SAMPLES_METHOD, study, query, options, Sample.class);
+    }
+
+    public GrpcIterator<Individual> individuals(String study, Query query, QueryOptions options) {
+        return catalogIterator(INDIVIDUALS_METHOD, study, query, options, Individual.class);
+    }
+
+    public GrpcIterator<File> files(String study, Query query, QueryOptions options) {
+        return catalogIterator(FILES_METHOD, study, query, options, File.class);
+    }
+
+    /**
+     * Stream the alignments of a file. The region must be given in the query, as in the REST alignment query.
+     *
+     * @param study   Study
+     * @param file    Alignment file
+     * @param query   Query, containing the region
+     * @param options Query options
+     * @return An iterator over the alignments
+     */
+    public GrpcIterator<Reads.ReadAlignment> alignments(String study, String file, Query query, QueryOptions options) {
+        Query alignmentQuery = new Query(query).append("fileId", file);
+        return call(ALIGNMENTS_METHOD, buildRequest(study, alignmentQuery, options), readAlignment -> readAlignment);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channel.shutdown().awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private <T> GrpcIterator<T> catalogIterator(MethodDescriptor<BasicRequest, StringResponse> method, String study, Query query,
+                                                QueryOptions options, Class<T> clazz) {
+        ObjectReader objectReader = getDefaultObjectMapper().readerFor(clazz);
+        return call(method, buildRequest(study, query, options), response -> objectReader.readValue(response.getValue()));
+    }
+
+    private <R, T> GrpcIterator<T> call(MethodDescriptor<BasicRequest, R> method, BasicRequest request,
+                                        GrpcIterator.Converter<R, T> converter) {
+        CallOptions callOptions = CallOptions.DEFAULT;
+        if (timeoutMillis > 0) {
+            callOptions = callOptions.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // The call is bound to this context, so cancelling the context cancels the call
+        Context.CancellableContext context = Context.current().withCancellation();
+        Context previous = context.attach();
+        try {
+            Iterator<R> iterator = ClientCalls.blockingServerStreamingCall(channel, method, callOptions, request);
+            return new GrpcIterator<>(iterator, converter, context);
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    private BasicRequest buildRequest(String study, Query query, QueryOptions options) {
+        BasicRequest.Builder builder = BasicRequest.newBuilder();
+        putAll(query, builder.getMutableQuery());
+        putAll(options, builder.getMutableOptions());
+        if (study != null) {
+            builder.putQuery("study", study);
+        }
+        if (sessionId != null) {
+            builder.putQuery("sid", sessionId);
+        }
+        return builder.build();
+    }
+
+    private void putAll(ObjectMap objectMap, Map<String, String> map) {
+        if (objectMap != null) {
+            for (String key : objectMap.keySet()) {
+                if (objectMap.get(key) != null) {
+                    map.put(key, objectMap.getString(key));
+                }
+            }
+        }
+    }
+
+    private static MethodDescriptor<BasicRequest, StringResponse> catalogMethod(String methodName) {
+        return MethodDescriptor.<BasicRequest, StringResponse>newBuilder()
+                .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+                .setFullMethodName(MethodDescriptor.generateFullMethodName(CATALOG_SERVICE, methodName))
+                .setRequestMarshaller(ProtoUtils.marshaller(BasicRequest.getDefaultInstance()))
+                .setResponseMarshaller(ProtoUtils.marshaller(StringResponse.getDefaultInstance()))
+                .build();
+    }
+}
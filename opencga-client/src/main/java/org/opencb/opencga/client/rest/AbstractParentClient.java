@@ -17,6 +17,7 @@
 package org.opencb.opencga.client.rest;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -35,6 +36,7 @@ import org.opencb.opencga.core.results.VariantQueryResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -43,9 +45,12 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -65,6 +70,16 @@ public abstract class AbstractParentClient {
     private static int batchSize = 2000;
     private static int defaultLimit = 2000;
     private static final int DEFAULT_SKIP = 0;
+    private static final long RETRY_BACKOFF = 500;
+    private int concurrentRequests = 1;
+    private int maxIdsPerRequest;
+    private int retries;
+    private ExecutorService executorService;
+
+    // Per call params overriding the configuration
+    public static final String CONCURRENT_REQUESTS = "concurrentRequests";
+    public static final String RETRIES = "retries";
+
     protected static final String GET = "GET";
     protected static final String POST = "POST";
 
@@ -96,6 +111,11 @@ public abstract class AbstractParentClient {
             if (configuration.getRest().getDefaultLimit() > 0) {
                 defaultLimit = configuration.getRest().getDefaultLimit();
             }
+            if (configuration.getRest().getConcurrentRequests() > 0) {
+                concurrentRequests = configuration.getRest().getConcurrentRequests();
+            }
+            maxIdsPerRequest = Math.max(0, configuration.getRest().getMaxIdsPerRequest());
+            retries = Math.max(0, configuration.getRest().getRetries());
         }
     }
 
@@ -125,9 +145,43 @@ public abstract class AbstractParentClient {
             params = new ObjectMap(paramsMap);
         }
 
+        // Per call options. These are not sent to the server
+        int concurrency = Math.max(1, params.getInt(CONCURRENT_REQUESTS, concurrentRequests));
+        int retries = Math.max(0, params.getInt(RETRIES, this.retries));
+        params.remove(CONCURRENT_REQUESTS);
+        params.remove(RETRIES);
+
         client.property(ClientProperties.CONNECT_TIMEOUT, 1000);
         client.property(ClientProperties.READ_TIMEOUT, timeout);
 
+        // Long lists of ids are split in several requests, sent concurrently. Results are merged keeping the order of the ids
+        if (method.equalsIgnoreCase(GET) && StringUtils.isNotEmpty(id1) && maxIdsPerRequest > 0) {
+            List<String> idGroups = splitIds(id1, maxIdsPerRequest);
+            if (idGroups.size() > 1) {
+                List<QueryResponse<T>> queryResponses = executeConcurrently(idGroups, concurrency,
+                        ids -> executePaginated(buildPath(category1, ids, category2, id2, action), action, new ObjectMap(params), method,
+                                clazz, 1, retries));
+                QueryResponse<T> finalQueryResponse = queryResponses.get(0);
+                if (finalQueryResponse.getResponse() == null) {
+                    finalQueryResponse.setResponse(new ArrayList<>());
+                }
+                for (QueryResponse<T> queryResponse : queryResponses.subList(1, queryResponses.size())) {
+                    if (queryResponse.getResponse() != null) {
+                        finalQueryResponse.getResponse().addAll(queryResponse.getResponse());
+                    }
+                    if (StringUtils.isEmpty(finalQueryResponse.getError()) && StringUtils.isNotEmpty(queryResponse.getError())) {
+                        finalQueryResponse.setError(queryResponse.getError());
+                    }
+                }
+                return finalQueryResponse;
+            }
+        }
+
+        WebTarget path = buildPath(category1, id1, category2, id2, action);
+        return executePaginated(path, action, params, method, clazz, concurrency, retries);
+    }
+
+    private WebTarget buildPath(String category1, String id1, String category2, String id2, String action) {
         // Build the basic URL
         WebTarget path = client
                 .target(configuration.getRest().getHost())
@@ -136,7 +190,6 @@ public abstract class AbstractParentClient {
                 .path("v1")
                 .path(category1);
 
-        // TODO we still have to check if there are multiple IDs, the limit is 200 pero query, this can be parallelized
         // Some WS do not have IDs such as 'create'
         if (StringUtils.isNotEmpty(id1)) {
             path = path.path(id1);
@@ -151,8 +204,27 @@ public abstract class AbstractParentClient {
         }
 
         // Add the last URL part, the 'action'
-        path = path.path(action);
+        return path.path(action);
+    }
 
+    /**
+     * Fetch all the required results in pages of batchSize results.
+     *
+     * The first page is always fetched alone. If more pages are needed, GET requests fetch up to "concurrency" pages at a time.
+     *
+     * @param path        Path of the WS.
+     * @param action      Action of the WS.
+     * @param params      Params to be passed to the WS.
+     * @param method      Method by which the query will be done (GET or POST).
+     * @param clazz       Expected return class.
+     * @param concurrency Max number of pages fetched at a time.
+     * @param retries     Number of times a failed GET request is retried.
+     * @param <T>         Expected return class.
+     * @return A queryResponse object containing the results of all the pages.
+     * @throws IOException if the path is wrong and cannot be converted to a proper url.
+     */
+    private <T> QueryResponse<T> executePaginated(WebTarget path, String action, ObjectMap params, String method, Class<T> clazz,
+                                                  int concurrency, int retries) throws IOException {
         int numRequiredFeatures = params.getInt(QueryOptions.LIMIT, defaultLimit);
         int limit = Math.min(numRequiredFeatures, batchSize);
 
@@ -167,11 +239,11 @@ public abstract class AbstractParentClient {
             params.put(QueryOptions.TIMEOUT, timeout);
 
             if (!action.equals("upload")) {
-                queryResponse = callRest(path, params, clazz, method);
+                queryResponse = callRest(path, params, clazz, method, retries);
             } else {
                 queryResponse = callUploadRest(path, params, clazz);
             }
-            int numResults = queryResponse.getResponse().isEmpty() ? 0 : queryResponse.getResponse().get(0).getNumResults();
+            int numResults = getNumResults(queryResponse);
 
             if (finalQueryResponse == null) {
                 finalQueryResponse = queryResponse;
@@ -189,6 +261,11 @@ public abstract class AbstractParentClient {
 
             // DO NOT CHANGE THE ORDER OF THE FOLLOWING CODE
             skip += numResults;
+            if (concurrency > 1 && method.equalsIgnoreCase(GET) && !action.equals("upload")) {
+                fetchPagesConcurrently(path, params, clazz, finalQueryResponse, skip, numRequiredFeatures - numTotalResults, concurrency,
+                        retries);
+                break;
+            }
             if (skip + batchSize < numRequiredFeatures) {
                 limit = batchSize;
             } else {
@@ -199,6 +276,169 @@ public abstract class AbstractParentClient {
         return finalQueryResponse;
     }
 
+    private <T> void fetchPagesConcurrently(WebTarget path, ObjectMap params, Class<T> clazz, QueryResponse<T> finalQueryResponse,
+                                            int skip, int pending, int concurrency, int retries) throws IOException {
+        QueryResult<T> finalQueryResult = finalQueryResponse.getResponse().get(0);
+        // Do not ask for more pages than needed if the server returned the total number of results
+        if (finalQueryResult.getNumTotalResults() > 0) {
+            pending = (int) Math.min(pending, Math.max(0, finalQueryResult.getNumTotalResults() - skip));
+        }
+
+        while (pending > 0) {
+            List<int[]> pages = new ArrayList<>(concurrency);
+            while (pages.size() < concurrency && pending > 0) {
+                int limit = Math.min(batchSize, pending);
+                pages.add(new int[]{skip, limit});
+                skip += limit;
+                pending -= limit;
+            }
+
+            List<QueryResponse<T>> queryResponses = executeConcurrently(pages, concurrency, page -> {
+                ObjectMap pageParams = new ObjectMap(params);
+                pageParams.put(QueryOptions.SKIP, page[0]);
+                pageParams.put(QueryOptions.LIMIT, page[1]);
+                return callRest(path, pageParams, clazz, GET, retries);
+            });
+
+            // Merge in order. Stop at the first incomplete page
+            for (int i = 0; i < pages.size(); i++) {
+                int numResults = getNumResults(queryResponses.get(i));
+                if (numResults > 0) {
+                    finalQueryResult.getResult().addAll(queryResponses.get(i).getResponse().get(0).getResult());
+                }
+                if (numResults < pages.get(i)[1]) {
+                    pending = 0;
+                    break;
+                }
+            }
+            finalQueryResult.setNumResults(finalQueryResult.getResult().size());
+        }
+    }
+
+    private int getNumResults(QueryResponse<?> queryResponse) {
+        return queryResponse.getResponse() == null || queryResponse.getResponse().isEmpty()
+                ? 0
+                : queryResponse.getResponse().get(0).getNumResults();
+    }
+
+    /**
+     * Execute one call per input, sending at most "concurrency" requests at a time.
+     *
+     * @param inputs      Inputs of each call.
+     * @param concurrency Max number of concurrent requests.
+     * @param restCall    Call to execute for each input.
+     * @param <I>         Input type.
+     * @param <R>         Result type.
+     * @return The result of each call, in the same order as the inputs.
+     * @throws IOException if any of the calls failed.
+     */
+    private <I, R> List<R> executeConcurrently(List<I> inputs, int concurrency, RestCall<I, R> restCall) throws IOException {
+        List<R> results = new ArrayList<>(inputs.size());
+        if (concurrency <= 1 || inputs.size() <= 1) {
+            for (I input : inputs) {
+                results.add(restCall.call(input));
+            }
+            return results;
+        }
+
+        ExecutorService executorService = getExecutorService(concurrency);
+        for (int i = 0; i < inputs.size(); i += concurrency) {
+            List<Future<R>> futures = new ArrayList<>(concurrency);
+            for (I input : inputs.subList(i, Math.min(inputs.size(), i + concurrency))) {
+                futures.add(executorService.submit(() -> restCall.call(input)));
+            }
+            try {
+                for (Future<R> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new InterruptedIOException("Interrupted while waiting for the REST responses");
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else {
+                    throw new IOException(e.getCause());
+                }
+            }
+        }
+        return results;
+    }
+
+    private synchronized ExecutorService getExecutorService(int concurrency) {
+        if (executorService == null) {
+            // Daemon threads, so the pool does not need to be closed. All the requests share the same client and connections
+            executorService = Executors.newFixedThreadPool(Math.max(concurrency, concurrentRequests), runnable -> {
+                Thread thread = new Thread(runnable, "rest-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executorService;
+    }
+
+    /**
+     * Split a list of comma separated ids in groups of at most maxIds ids.
+     *
+     * @param ids    Comma separated ids.
+     * @param maxIds Max number of ids per group.
+     * @return List of comma separated groups of ids.
+     */
+    static List<String> splitIds(String ids, int maxIds) {
+        String[] split = ids.split(",");
+        if (maxIds <= 0 || split.length <= maxIds) {
+            return Collections.singletonList(ids);
+        }
+        List<String> groups = new ArrayList<>(split.length / maxIds + 1);
+        for (int i = 0; i < split.length; i += maxIds) {
+            groups.add(String.join(",", Arrays.asList(split).subList(i, Math.min(split.length, i + maxIds))));
+        }
+        return groups;
+    }
+
+    @FunctionalInterface
+    private interface RestCall<I, R> {
+        R call(I input) throws IOException;
+    }
+
+    /**
+     * Call to WS using get or post method. Failed GET requests are retried.
+     *
+     * @param path    Path of the WS.
+     * @param params  Params to be passed to the WS.
+     * @param clazz   Expected return class.
+     * @param method  Method by which the query will be done (GET or POST).
+     * @param retries Number of times a failed GET request is retried.
+     * @return A queryResponse object containing the results of the query.
+     * @throws IOException if the path is wrong and cannot be converted to a proper url.
+     */
+    private <T> QueryResponse<T> callRest(WebTarget path, Map<String, Object> params, Class clazz, String method, int retries)
+            throws IOException {
+        int attempt = 0;
+        while (true) {
+            try {
+                return callRest(path, params, clazz, method);
+            } catch (ProcessingException | IOException e) {
+                if (attempt >= retries || !method.equalsIgnoreCase(GET) || e instanceof JsonProcessingException) {
+                    throw e;
+                }
+                long wait = RETRY_BACKOFF << attempt;
+                attempt++;
+                logger.warn("Error calling {}. Retry {}/{} in {}ms : {}", path.getUri(), attempt, retries, wait, e.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
     /**
      * Call to WS using get or post method.
      *
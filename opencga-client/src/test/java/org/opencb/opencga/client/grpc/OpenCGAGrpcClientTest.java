@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.catalog.db.api.SampleDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.catalog.managers.AbstractManagerTest;
+import org.opencb.opencga.core.models.File;
+import org.opencb.opencga.core.models.Sample;
+import org.opencb.opencga.server.grpc.CatalogGrpcService;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the {@link CatalogGrpcService} in process, and reads it with the {@link OpenCGAGrpcClient}, using its hand-built
+ * method descriptors.
+ */
+public class OpenCGAGrpcClientTest extends AbstractManagerTest {
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @Before
+    @Override
+    public void setUp() throws IOException, CatalogException {
+        super.setUp();
+        StorageConfiguration storageConfiguration = StorageConfiguration.load(getClass().getResource("/storage-configuration.yml")
+                .openStream());
+        String serverName = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(serverName)
+                .addService(new CatalogGrpcService(catalogManagerResource.getConfiguration(), storageConfiguration))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(serverName).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testStreamSamples() throws Exception {
+        OpenCGAGrpcClient client = new OpenCGAGrpcClient(sessionIdUser, channel);
+        List<String> expected = catalogManager.getSampleManager().get(studyFqn, new Query(), new QueryOptions(), sessionIdUser)
+                .getResult().stream().map(Sample::getId).collect(Collectors.toList());
+
+        List<String> actual = new ArrayList<>();
+        try (GrpcIterator<Sample> iterator = client.samples(studyFqn, new Query(), new QueryOptions())) {
+            iterator.forEachRemaining(sample -> actual.add(sample.getId()));
+        }
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testStreamSamplesQuery() throws Exception {
+        OpenCGAGrpcClient client = new OpenCGAGrpcClient(sessionIdUser, channel);
+
+        List<String> actual = new ArrayList<>();
+        try (GrpcIterator<Sample> iterator = client.samples(studyFqn, new Query(SampleDBAdaptor.QueryParams.ID.key(), s_1),
+                new QueryOptions())) {
+            iterator.forEachRemaining(sample -> actual.add(sample.getId()));
+        }
+
+        assertEquals(1, actual.size());
+        assertEquals(s_1, actual.get(0));
+    }
+
+    @Test
+    public void testStreamFilesCloseEarly() throws Exception {
+        OpenCGAGrpcClient client = new OpenCGAGrpcClient(sessionIdUser, channel);
+        long numFiles = catalogManager.getFileManager().count(studyFqn, new Query(), sessionIdUser).getNumTotalResults();
+        assertTrue(numFiles > 1);
+
+        try (GrpcIterator<File> iterator = client.files(studyFqn, new Query(), new QueryOptions())) {
+            assertTrue(iterator.hasNext());
+            assertNotNull(iterator.next().getPath());
+            // Closing before consuming all the results cancels the call
+        }
+
+        // The server is still usable
+        int count = 0;
+        try (GrpcIterator<File> iterator = client.files(studyFqn, new Query(), new QueryOptions())) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        assertEquals(numFiles, count);
+    }
+
+    @Test
+    public void testInvalidSession() throws Exception {
+        OpenCGAGrpcClient client = new OpenCGAGrpcClient("wrong_session_id", channel);
+
+        try (GrpcIterator<Sample> iterator = client.samples(studyFqn, new Query(), new QueryOptions())) {
+            iterator.hasNext();
+            fail("Expected StatusRuntimeException");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.INTERNAL, e.getStatus().getCode());
+        }
+    }
+
+    @Test
+    public void testDeadlineExceeded() throws Exception {
+        OpenCGAGrpcClient client = new OpenCGAGrpcClient(sessionIdUser, channel).setTimeout(1, TimeUnit.NANOSECONDS);
+
+        try (GrpcIterator<Sample> iterator = client.samples(studyFqn, new Query(), new QueryOptions())) {
+            iterator.forEachRemaining(sample -> { });
+            fail("Expected StatusRuntimeException");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, e.getStatus().getCode());
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResponse;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.client.config.ClientConfiguration;
+import org.opencb.opencga.client.config.RestConfig;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.ProcessingException;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class AbstractParentClientTest {
+
+    private static final int NUM_RESULTS = 25;
+    private static final int BATCH_SIZE = 10;
+
+    private Server server;
+    private ClientConfiguration configuration;
+    private final List<String> requestedIds = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server(0);
+        server.setHandler(new FakeWSHandler());
+        server.start();
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+        RestConfig restConfig = new RestConfig("http://localhost:" + port, BATCH_SIZE, 10000, 2000)
+                .setConcurrentRequests(4)
+                .setMaxIdsPerRequest(3)
+                .setRetries(0);
+        configuration = new ClientConfiguration(restConfig, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testSplitIds() {
+        assertEquals(Collections.singletonList("s1,s2,s3"), AbstractParentClient.splitIds("s1,s2,s3", 3));
+        assertEquals(Collections.singletonList("s1,s2,s3"), AbstractParentClient.splitIds("s1,s2,s3", 0));
+        assertEquals(Arrays.asList("s1,s2", "s3,s4", "s5"), AbstractParentClient.splitIds("s1,s2,s3,s4,s5", 2));
+        assertEquals(Arrays.asList("s1", "s2", "s3"), AbstractParentClient.splitIds("s1,s2,s3", 1));
+    }
+
+    @Test
+    public void testBatchedIds() throws Exception {
+        TestClient client = new TestClient(configuration);
+        List<String> ids = IntStream.range(0, 10).mapToObj(i -> "s" + i).collect(Collectors.toList());
+
+        QueryResponse<ObjectMap> response = client.info(String.join(",", ids), new ObjectMap());
+
+        assertEquals("", response.getError());
+        // Results merged in the order of the ids
+        assertEquals(ids, response.getResponse().stream().map(QueryResult::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("s0,s1,s2", "s3,s4,s5", "s6,s7,s8", "s9"), sorted(requestedIds));
+        assertEquals(4, requests.get());
+        assertTrue(maxActiveRequests.get() > 1);
+        assertTrue(maxActiveRequests.get() <= 4);
+    }
+
+    @Test
+    public void testBatchedIdsSerial() throws Exception {
+        TestClient client = new TestClient(configuration);
+        List<String> ids = IntStream.range(0, 10).mapToObj(i -> "s" + i).collect(Collectors.toList());
+
+        QueryResponse<ObjectMap> response = client.info(String.join(",", ids),
+                new ObjectMap(AbstractParentClient.CONCURRENT_REQUESTS, 1));
+
+        assertEquals(ids, response.getResponse().stream().map(QueryResult::getId).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("s0,s1,s2", "s3,s4,s5", "s6,s7,s8", "s9"), requestedIds);
+        assertEquals(1, maxActiveRequests.get());
+    }
+
+    @Test
+    public void testConcurrentPages() throws Exception {
+        TestClient client = new TestClient(configuration);
+
+        QueryResponse<ObjectMap> response = client.search(new ObjectMap(QueryOptions.LIMIT, NUM_RESULTS));
+
+        QueryResult<ObjectMap> result = response.first();
+        assertEquals(NUM_RESULTS, result.getNumResults());
+        // Pages merged in order
+        assertEquals(IntStream.range(0, NUM_RESULTS).boxed().collect(Collectors.toList()),
+                result.getResult().stream().map(o -> o.getInt("value")).collect(Collectors.toList()));
+        // First page alone, then the remaining 2 pages concurrently
+        assertEquals(3, requests.get());
+        assertTrue(maxActiveRequests.get() <= 2);
+    }
+
+    @Test
+    public void testConcurrentPagesSmallLimit() throws Exception {
+        TestClient client = new TestClient(configuration);
+
+        QueryResponse<ObjectMap> response = client.search(new ObjectMap(QueryOptions.LIMIT, 15));
+
+        assertEquals(15, response.first().getNumResults());
+        assertEquals(IntStream.range(0, 15).boxed().collect(Collectors.toList()),
+                response.first().getResult().stream().map(o -> o.getInt("value")).collect(Collectors.toList()));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        failures.set(2);
+        TestClient client = new TestClient(configuration);
+
+        QueryResponse<ObjectMap> response = client.search(new ObjectMap(QueryOptions.LIMIT, 5)
+                .append(AbstractParentClient.RETRIES, 2));
+
+        assertEquals(5, response.first().getNumResults());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testRetryFail() throws Exception {
+        failures.set(2);
+        TestClient client = new TestClient(configuration);
+
+        try {
+            client.search(new ObjectMap(QueryOptions.LIMIT, 5).append(AbstractParentClient.RETRIES, 1));
+            fail("Expected exception");
+        } catch (ProcessingException | IOException e) {
+            // Expected
+        }
+        assertEquals(2, requests.get());
+    }
+
+    private static List<String> sorted(List<String> list) {
+        List<String> copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static class TestClient extends AbstractParentClient {
+
+        TestClient(ClientConfiguration configuration) {
+            super("user", "token", configuration);
+        }
+
+        QueryResponse<ObjectMap> info(String ids, ObjectMap params) throws IOException {
+            return execute("samples", ids, "info", params, GET, ObjectMap.class);
+        }
+
+        QueryResponse<ObjectMap> search(ObjectMap params) throws IOException {
+            return execute("samples", "search", params, GET, ObjectMap.class);
+        }
+    }
+
+    /**
+     * Serves "samples/{ids}/info", with one result per id, and "samples/search", with NUM_RESULTS paginated results.
+     */
+    private class FakeWSHandler extends AbstractHandler {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                throws IOException {
+            requests.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                // Close the connection without response
+                baseRequest.setHandled(true);
+                baseRequest.getHttpChannel().abort(new IOException("Fail because reasons"));
+                return;
+            }
+            int active = activeRequests.incrementAndGet();
+            maxActiveRequests.accumulateAndGet(active, Math::max);
+            try {
+                // Give time to the concurrent requests to overlap
+                Thread.sleep(50);
+                List<QueryResult<ObjectMap>> results = new ArrayList<>();
+                String[] split = target.split("/");
+                if (target.endsWith("/info")) {
+                    String ids = split[split.length - 2];
+                    requestedIds.add(ids);
+                    for (String id : ids.split(",")) {
+                        results.add(new QueryResult<>(id, 0, 1, 1, "", "", Collections.singletonList(new ObjectMap("id", id))));
+                    }
+                } else {
+                    int skip = Integer.parseInt(request.getParameter(QueryOptions.SKIP));
+                    int limit = Integer.parseInt(request.getParameter(QueryOptions.LIMIT));
+                    List<ObjectMap> values = IntStream.range(skip, Math.min(NUM_RESULTS, skip + limit))
+                            .mapToObj(i -> new ObjectMap("value", i))
+                            .collect(Collectors.toList());
+                    results.add(new QueryResult<>("search", 0, values.size(), NUM_RESULTS, "", "", values));
+                }
+                response.setContentType("application/json");
+                response.setStatus(HttpServletResponse.SC_OK);
+                objectMapper.writeValue(response.getOutputStream(),
+                        new QueryResponse<>("v1", 0, "", "", new QueryOptions(), results));
+                baseRequest.setHandled(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                activeRequests.decrementAndGet();
+            }
+        }
+    }
+}
@@ -28,6 +28,12 @@ public class Audit {
     private String javaClass;
     private List<String> exclude;
 
+    private String mode = "SYNC";
+    private int queueSize = 10000;
+    private int batchSize = 200;
+    private long flushInterval = 1000;
+    private String spillDir;
+
     public Audit() {
     }
 
@@ -74,6 +80,51 @@ public class Audit {
         return this;
     }
 
+    public String getMode() {
+        return mode;
+    }
+
+    public Audit setMode(String mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public Audit setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Audit setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public Audit setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public String getSpillDir() {
+        return spillDir;
+    }
+
+    public Audit setSpillDir(String spillDir) {
+        this.spillDir = spillDir;
+        return this;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Audit{");
@@ -81,6 +132,11 @@ public class Audit {
         sb.append(", maxSize=").append(maxSize);
         sb.append(", javaClass='").append(javaClass).append('\'');
         sb.append(", exclude=").append(exclude);
+        sb.append(", mode='").append(mode).append('\'');
+        sb.append(", queueSize=").append(queueSize);
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", flushInterval=").append(flushInterval);
+        sb.append(", spillDir='").append(spillDir).append('\'');
         sb.append('}');
         return sb.toString();
     }
@@ -24,6 +24,7 @@ import java.util.List;
 
 public class Authentication {
     private Long expiration;
+    private Integer tokenCacheSize;
     private List<AuthenticationOrigin> authenticationOrigins;
 
     public Authentication() {
@@ -43,6 +44,15 @@ public class Authentication {
         return this;
     }
 
+    public Integer getTokenCacheSize() {
+        return tokenCacheSize;
+    }
+
+    public Authentication setTokenCacheSize(Integer tokenCacheSize) {
+        this.tokenCacheSize = tokenCacheSize;
+        return this;
+    }
+
     public List<AuthenticationOrigin> getAuthenticationOrigins() {
         return authenticationOrigins;
     }
@@ -56,6 +66,7 @@ public class Authentication {
     public String toString() {
         final StringBuilder sb = new StringBuilder("Authentication{");
         sb.append("expiration=").append(expiration);
+        sb.append(", tokenCacheSize=").append(tokenCacheSize);
         sb.append(", authenticationOrigins=").append(authenticationOrigins);
         sb.append('}');
         return sb.toString();
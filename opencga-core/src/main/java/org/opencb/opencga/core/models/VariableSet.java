@@ -32,6 +32,8 @@ public class VariableSet extends PrivateFields {
     private boolean confidential;
     private String description;
     private Set<Variable> variables;
+    // Ids of the variables whose values are also stored in typed and indexed fields of the annotated entries
+    private Set<String> indexedVariables;
 
     private int release;
     private Map<String, Object> attributes;
@@ -61,6 +63,7 @@ public class VariableSet extends PrivateFields {
         sb.append(", confidential=").append(confidential);
         sb.append(", description='").append(description).append('\'');
         sb.append(", variables=").append(variables);
+        sb.append(", indexedVariables=").append(indexedVariables);
         sb.append(", release=").append(release);
         sb.append(", attributes=").append(attributes);
         sb.append('}');
@@ -135,6 +138,15 @@ public class VariableSet extends PrivateFields {
         return this;
     }
 
+    public Set<String> getIndexedVariables() {
+        return indexedVariables;
+    }
+
+    public VariableSet setIndexedVariables(Set<String> indexedVariables) {
+        this.indexedVariables = indexedVariables;
+        return this;
+    }
+
     public int getRelease() {
         return release;
     }
@@ -18,7 +18,9 @@ package org.opencb.opencga.server.grpc;
 
 import ga4gh.Reads;
 import htsjdk.samtools.SAMRecord;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel.BasicRequest;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
@@ -26,6 +28,8 @@ import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.storage.core.alignment.iterators.AlignmentIterator;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.manager.AlignmentStorageManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Created by pfurio on 26/10/16.
@@ -35,6 +39,8 @@ public class AlignmentGrpcService extends AlignmentServiceGrpc.AlignmentServiceI
     private GenericGrpcService genericGrpcService;
     private AlignmentStorageManager alignmentStorageManager;
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     public AlignmentGrpcService(Configuration configuration, StorageConfiguration storageConfiguration) {
         genericGrpcService = new GenericGrpcService(configuration, storageConfiguration);
         alignmentStorageManager = new AlignmentStorageManager(genericGrpcService.catalogManager, GenericGrpcService.storageEngineFactory);
@@ -78,18 +84,29 @@ public class AlignmentGrpcService extends AlignmentServiceGrpc.AlignmentServiceI
         Query query = createQuery(request);
         QueryOptions queryOptions = createQueryOptions(request);
 
+        streamAlignments(query, queryOptions, responseObserver);
+    }
+
+    @Override
+    public void stream(BasicRequest request, StreamObserver<Reads.ReadAlignment> responseObserver) {
+        Query query = genericGrpcService.createQuery(request);
+        QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
+
+        streamAlignments(query, queryOptions, responseObserver);
+    }
+
+    private void streamAlignments(Query query, QueryOptions queryOptions, StreamObserver<Reads.ReadAlignment> responseObserver) {
         String studyIdStr = query.getString("study");
         String fileIdStr = query.getString("fileId");
         String sessionId = query.getString("sid");
 
-        try (AlignmentIterator<Reads.ReadAlignment> iterator =
-                     alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, Reads.ReadAlignment.class)) {
-            while (iterator.hasNext()) {
-                responseObserver.onNext(iterator.next());
-            }
-            responseObserver.onCompleted();
+        try {
+            AlignmentIterator<Reads.ReadAlignment> iterator =
+                    alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, Reads.ReadAlignment.class);
+            GrpcIteratorStreamer.stream(responseObserver, iterator, iterator, readAlignment -> readAlignment);
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error on get alignments", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
         }
     }
 
@@ -103,16 +120,14 @@ public class AlignmentGrpcService extends AlignmentServiceGrpc.AlignmentServiceI
         String fileIdStr = query.getString("fileId");
         String sessionId = query.getString("sid");
 
-        try (AlignmentIterator<SAMRecord> iterator =
-                     alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, SAMRecord.class)) {
-            while (iterator.hasNext()) {
-                ServiceTypesModel.StringResponse response =
-                        ServiceTypesModel.StringResponse.newBuilder().setValue(iterator.next().getSAMString()).build();
-                responseObserver.onNext(response);
-            }
-            responseObserver.onCompleted();
+        try {
+            AlignmentIterator<SAMRecord> iterator =
+                    alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, SAMRecord.class);
+            GrpcIteratorStreamer.stream(responseObserver, iterator, iterator,
+                    samRecord -> ServiceTypesModel.StringResponse.newBuilder().setValue(samRecord.getSAMString()).build());
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error on get alignments as SAM", e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
         }
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.grpc;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.catalog.db.api.DBIterator;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.core.config.Configuration;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper;
+
+/**
+ * Streams catalog entries without the size limits of the REST API. Each entry is sent as a JSON document.
+ */
+public class CatalogGrpcService extends CatalogServiceGrpc.CatalogServiceImplBase {
+
+    public static final String STUDY = "study";
+    public static final String SESSION_ID = "sid";
+
+    private GenericGrpcService genericGrpcService;
+    private final ObjectWriter objectWriter;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @FunctionalInterface
+    private interface IteratorFactory<T> {
+        DBIterator<T> iterator(String study, Query query, QueryOptions options, String sessionId) throws CatalogException;
+    }
+
+    public CatalogGrpcService(Configuration configuration, StorageConfiguration storageConfiguration) {
+        genericGrpcService = new GenericGrpcService(configuration, storageConfiguration);
+        objectWriter = getDefaultObjectMapper().writer();
+    }
+
+    @Override
+    public void samples(ServiceTypesModel.BasicRequest request, StreamObserver<ServiceTypesModel.StringResponse> responseObserver) {
+        stream("samples", request, responseObserver, genericGrpcService.catalogManager.getSampleManager()::iterator);
+    }
+
+    @Override
+    public void individuals(ServiceTypesModel.BasicRequest request,
+                            StreamObserver<ServiceTypesModel.StringResponse> responseObserver) {
+        stream("individuals", request, responseObserver, genericGrpcService.catalogManager.getIndividualManager()::iterator);
+    }
+
+    @Override
+    public void files(ServiceTypesModel.BasicRequest request, StreamObserver<ServiceTypesModel.StringResponse> responseObserver) {
+        stream("files", request, responseObserver, genericGrpcService.catalogManager.getFileManager()::iterator);
+    }
+
+    private <T> void stream(String entity, ServiceTypesModel.BasicRequest request,
+                            StreamObserver<ServiceTypesModel.StringResponse> responseObserver, IteratorFactory<T> iteratorFactory) {
+        try {
+            Query query = genericGrpcService.createQuery(request);
+            QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
+            String study = (String) query.remove(STUDY);
+            String sessionId = (String) query.remove(SESSION_ID);
+            logger.info("Stream {} query : {} , queryOptions : {}", entity, query.toJson(), queryOptions.toJson());
+
+            DBIterator<T> iterator = iteratorFactory.iterator(study, query, queryOptions, sessionId);
+            GrpcIteratorStreamer.stream(responseObserver, iterator, iterator,
+                    entry -> ServiceTypesModel.StringResponse.newBuilder().setValue(objectWriter.writeValueAsString(entry)).build());
+        } catch (Exception e) {
+            logger.error("Error on stream " + entity, e);
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+        }
+    }
+
+}
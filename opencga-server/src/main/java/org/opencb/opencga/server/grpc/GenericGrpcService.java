@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.server.grpc;
 
+import org.opencb.biodata.models.common.protobuf.service.ServiceTypesModel;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.catalog.managers.CatalogManager;
@@ -122,6 +123,26 @@ public class GenericGrpcService {
         return queryOptions;
     }
 
+    protected Query createQuery(ServiceTypesModel.BasicRequest request) {
+        Query query = new Query();
+        for (String key : request.getQueryMap().keySet()) {
+            if (request.getQueryMap().get(key) != null) {
+                query.put(key, request.getQueryMap().get(key));
+            }
+        }
+        return query;
+    }
+
+    protected QueryOptions createQueryOptions(ServiceTypesModel.BasicRequest request) {
+        QueryOptions queryOptions = new QueryOptions();
+        for (String key : request.getOptionsMap().keySet()) {
+            if (request.getOptionsMap().get(key) != null) {
+                queryOptions.put(key, request.getOptionsMap().get(key));
+            }
+        }
+        return queryOptions;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("GenericGrpcServer{");
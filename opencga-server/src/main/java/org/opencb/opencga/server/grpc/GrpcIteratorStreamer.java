@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.grpc;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+
+/**
+ * Streams the elements of an iterator to a gRPC client, honouring the flow control of the call: elements are only read from the
+ * iterator while the transport is ready to send them, so slow clients do not make the server buffer the whole result.
+ *
+ * The underlying iterator is closed as soon as the stream finishes, fails, or is cancelled by the client. Calls exceeding their
+ * deadline are cancelled by gRPC, so they also close the iterator.
+ *
+ * @param <T> Iterator element type
+ * @param <R> Response message type
+ */
+public final class GrpcIteratorStreamer<T, R> implements Runnable {
+
+    @FunctionalInterface
+    public interface Converter<T, R> {
+        R convert(T t) throws Exception;
+    }
+
+    private final ServerCallStreamObserver<R> responseObserver;
+    private final Iterator<T> iterator;
+    private final AutoCloseable closeable;
+    private final Converter<T, R> converter;
+    private boolean finished;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrpcIteratorStreamer.class);
+
+    private GrpcIteratorStreamer(StreamObserver<R> responseObserver, Iterator<T> iterator, AutoCloseable closeable,
+                                 Converter<T, R> converter) {
+        this.responseObserver = (ServerCallStreamObserver<R>) responseObserver;
+        this.iterator = iterator;
+        this.closeable = closeable;
+        this.converter = converter;
+    }
+
+    /**
+     * Start streaming the iterator. Must be called from the thread executing the gRPC method, before it returns.
+     *
+     * @param responseObserver Response observer of the gRPC method
+     * @param iterator         Iterator to stream
+     * @param closeable        Resource to close once the stream finishes. Usually, the iterator itself
+     * @param converter        Converts each element into the response message
+     * @param <T>              Iterator element type
+     * @param <R>              Response message type
+     */
+    public static <T, R> void stream(StreamObserver<R> responseObserver, Iterator<T> iterator, AutoCloseable closeable,
+                                     Converter<T, R> converter) {
+        GrpcIteratorStreamer<T, R> streamer = new GrpcIteratorStreamer<>(responseObserver, iterator, closeable, converter);
+        streamer.responseObserver.setOnCancelHandler(streamer::cancel);
+        streamer.responseObserver.setOnReadyHandler(streamer);
+        if (Context.current().getDeadline() != null) {
+            LOGGER.debug("Streaming with deadline {}", Context.current().getDeadline());
+        }
+        streamer.run();
+    }
+
+    /**
+     * Send elements until the transport is not ready, or the iterator is exhausted. Called every time the transport becomes ready.
+     */
+    @Override
+    public synchronized void run() {
+        if (finished) {
+            return;
+        }
+        try {
+            while (responseObserver.isReady() && !responseObserver.isCancelled() && iterator.hasNext()) {
+                responseObserver.onNext(converter.convert(iterator.next()));
+            }
+            if (!responseObserver.isCancelled() && !iterator.hasNext()) {
+                close();
+                responseObserver.onCompleted();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error streaming results", e);
+            close();
+            responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+        }
+    }
+
+    private synchronized void cancel() {
+        if (!finished) {
+            LOGGER.info("Stream cancelled by the client");
+            close();
+        }
+    }
+
+    private void close() {
+        finished = true;
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.warn("Error closing iterator", e);
+        }
+    }
+}
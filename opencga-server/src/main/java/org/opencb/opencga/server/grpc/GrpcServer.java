@@ -70,6 +70,7 @@ public class GrpcServer extends AbstractStorageServer {
                 .addService(new AdminGrpcService(configuration, storageConfiguration, this))
                 .addService(new VariantGrpcService(configuration, storageConfiguration))
                 .addService(new AlignmentGrpcService(configuration, storageConfiguration))
+                .addService(new CatalogGrpcService(configuration, storageConfiguration))
                 .build()
                 .start();
         logger.info("gRPC server started, listening on {}", port);
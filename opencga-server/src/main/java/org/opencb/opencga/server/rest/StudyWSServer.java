@@ -783,6 +783,10 @@ public class StudyWSServer extends OpenCGAWSServer {
 
                 queryResult = catalogManager.getStudyManager().createVariableSet(studyStr, params.id, params.name, params.unique,
                         params.confidential, params.description, null, params.variables, sessionId);
+                if (params.indexedVariables != null && !params.indexedVariables.isEmpty()) {
+                    queryResult = catalogManager.getStudyManager().updateIndexedVariables(studyStr, params.id, params.indexedVariables,
+                            sessionId);
+                }
             } else {
                 queryResult = catalogManager.getStudyManager().deleteVariableSet(studyStr, params.id, sessionId);
             }
@@ -831,6 +835,40 @@ public class StudyWSServer extends OpenCGAWSServer {
     }
 
 
+    @POST
+    @Path("/{study}/variableSets/{variableSet}/index/update")
+    @ApiOperation(value = "Set the variables of a VariableSet to be indexed", notes = "The values of the indexed variables are also "
+            + "stored in typed and indexed fields of the annotated entries, so annotation queries over them can use an index. The "
+            + "values of the entries already annotated are rebuilt.")
+    public Response updateIndexedVariables(
+            @ApiParam(value = "Study [[user@]project:]study") @PathParam("study") String studyStr,
+            @ApiParam(value = "VariableSet id of the VariableSet to be updated") @PathParam("variableSet") String variableSetId,
+            @ApiParam(value = "Comma separated list of variables to be indexed. Nested variables are referred using dots "
+                    + "(object.variable). Leave it empty to remove all the indexed variables.") @QueryParam("variables") String variables) {
+        try {
+            List<String> indexedVariables = StringUtils.isEmpty(variables)
+                    ? Collections.emptyList()
+                    : Arrays.asList(StringUtils.split(variables, ","));
+            return createOkResponse(catalogManager.getStudyManager().updateIndexedVariables(studyStr, variableSetId, indexedVariables,
+                    sessionId));
+        } catch (Exception e) {
+            return createErrorResponse(e);
+        }
+    }
+
+    @POST
+    @Path("/{study}/variableSets/{variableSet}/index/rebuild")
+    @ApiOperation(value = "Rebuild the indexed variables of a VariableSet in all the annotated entries", response = Long.class)
+    public Response rebuildAnnotationIndex(
+            @ApiParam(value = "Study [[user@]project:]study") @PathParam("study") String studyStr,
+            @ApiParam(value = "VariableSet id") @PathParam("variableSet") String variableSetId) {
+        try {
+            return createOkResponse(catalogManager.getStudyManager().rebuildAnnotationIndex(studyStr, variableSetId, sessionId));
+        } catch (Exception e) {
+            return createErrorResponse(e);
+        }
+    }
+
     private static class VariableSetParameters {
         public Boolean unique;
         public Boolean confidential;
@@ -838,6 +876,7 @@ public class StudyWSServer extends OpenCGAWSServer {
         public String name;
         public String description;
         public List<Variable> variables;
+        public List<String> indexedVariables;
     }
 
     private static class UpdateableVariableSetParameters {
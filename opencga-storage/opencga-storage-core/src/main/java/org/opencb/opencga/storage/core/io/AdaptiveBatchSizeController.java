@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.io.DataReader;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Tunes the batch size of a {@link ParallelTaskRunner} at run time.
+ *
+ * The {@link ParallelTaskRunner} reads batches of a fixed size. Wrapping the {@link DataReader} with {@link #wrap(DataReader)}
+ * makes each read use the current batch size of the controller, and wrapping the tasks with {@link #wrap(Task)} measures
+ * the time taken to process each batch.
+ *
+ * Every few batches, the batch size is adjusted so a batch is processed in about the target time, within the configured bounds.
+ * The batch size is not increased while the read queue is full, and it is halved when the free heap is below
+ * the configured threshold. The queue capacity can not be modified once the {@link ParallelTaskRunner} is created,
+ * so it is chosen at start from the available heap. Every change is logged.
+ *
+ * If the controller is not enabled, wrap methods return the same object, and {@link #configure} does nothing.
+ */
+public class AdaptiveBatchSizeController {
+
+    private static final double MIN_CHANGE = 0.1;
+    private static final int MAX_GROWTH = 2;
+
+    private final String name;
+    private final boolean enabled;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetBatchTimeNanos;
+    private final double minFreeHeap;
+    private final int capacity;
+    private final int adjustInterval;
+
+    private final AtomicInteger batchSize;
+    private final AtomicLong batchesRead = new AtomicLong();
+    private final AtomicLong batchesProcessed = new AtomicLong();
+    private final AtomicInteger numAdjustments = new AtomicInteger();
+    private LongSupplier clock = System::nanoTime;
+
+    // Values measured since the last adjustment
+    private long windowNanos = 0;
+    private long windowElements = 0;
+    private long windowQueuedBatches = 0;
+    private int windowBatches = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizeController.class);
+
+    public AdaptiveBatchSizeController(String name, boolean enabled, int batchSize, int numTasks, int minBatchSize, int maxBatchSize,
+                                       long targetBatchTime, TimeUnit timeUnit, double minFreeHeap) {
+        this.name = name;
+        this.enabled = enabled;
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetBatchTimeNanos = timeUnit.toNanos(targetBatchTime);
+        this.minFreeHeap = minFreeHeap;
+        this.batchSize = new AtomicInteger(Math.min(this.maxBatchSize, Math.max(this.minBatchSize, batchSize)));
+        this.adjustInterval = Math.max(1, numTasks) * 2;
+
+        // Do not keep batches in the queue if there is no room for them
+        if (getFreeHeap() < minFreeHeap * 2) {
+            capacity = Math.max(1, numTasks);
+        } else {
+            capacity = Math.max(1, numTasks) * 2;
+        }
+
+        if (enabled) {
+            logger.info("Adaptive batch size for '{}' : initial batch size {}, bounds [{}, {}], target batch time {}ms, "
+                            + "min free heap {}, queue capacity {}",
+                    name, this.batchSize.get(), this.minBatchSize, this.maxBatchSize, TimeUnit.NANOSECONDS.toMillis(targetBatchTimeNanos),
+                    minFreeHeap, capacity);
+        }
+    }
+
+    /**
+     * Build a controller from the options {@link Options#ADAPTIVE_BATCH_SIZE} and related.
+     *
+     * @param name      Name of the pipeline, used in the logs
+     * @param options   Options
+     * @param batchSize Configured batch size. Initial value of the adaptive batch size
+     * @param numTasks  Number of tasks of the {@link ParallelTaskRunner}
+     * @return          new AdaptiveBatchSizeController
+     */
+    public static AdaptiveBatchSizeController fromOptions(String name, ObjectMap options, int batchSize, int numTasks) {
+        boolean enabled = options.getBoolean(Options.ADAPTIVE_BATCH_SIZE.key(), Options.ADAPTIVE_BATCH_SIZE.defaultValue());
+        int min = options.getInt(Options.ADAPTIVE_BATCH_SIZE_MIN.key(), Options.ADAPTIVE_BATCH_SIZE_MIN.defaultValue());
+        int max = options.getInt(Options.ADAPTIVE_BATCH_SIZE_MAX.key(), Options.ADAPTIVE_BATCH_SIZE_MAX.defaultValue());
+        long targetTime = options.getLong(Options.ADAPTIVE_BATCH_SIZE_TARGET_TIME.key(),
+                Options.ADAPTIVE_BATCH_SIZE_TARGET_TIME.<Integer>defaultValue());
+        double minFreeHeap = options.getDouble(Options.ADAPTIVE_BATCH_SIZE_MIN_FREE_HEAP.key(),
+                Options.ADAPTIVE_BATCH_SIZE_MIN_FREE_HEAP.defaultValue());
+        return new AdaptiveBatchSizeController(name, enabled, batchSize, numTasks, min, max, targetTime, TimeUnit.MILLISECONDS,
+                minFreeHeap);
+    }
+
+    /**
+     * Set the initial batch size and the queue capacity in the given config builder.
+     *
+     * @param builder   ParallelTaskRunner config builder
+     * @return          the same builder
+     */
+    public ParallelTaskRunner.Config.Builder configure(ParallelTaskRunner.Config.Builder builder) {
+        if (enabled) {
+            builder.setBatchSize(batchSize.get()).setCapacity(capacity);
+        }
+        return builder;
+    }
+
+    public <T> DataReader<T> wrap(DataReader<T> reader) {
+        if (!enabled) {
+            return reader;
+        }
+        return new DataReader<T>() {
+            @Override
+            public boolean open() {
+                return reader.open();
+            }
+
+            @Override
+            public boolean pre() {
+                return reader.pre();
+            }
+
+            @Override
+            public List<T> read(int ignoredBatchSize) {
+                List<T> batch = reader.read(batchSize.get());
+                if (batch != null && !batch.isEmpty()) {
+                    batchesRead.incrementAndGet();
+                }
+                return batch;
+            }
+
+            @Override
+            public boolean post() {
+                return reader.post();
+            }
+
+            @Override
+            public boolean close() {
+                logger.info("Adaptive batch size for '{}' : final batch size {} after {} batches and {} adjustments",
+                        name, batchSize.get(), batchesRead.get(), numAdjustments.get());
+                return reader.close();
+            }
+        };
+    }
+
+    public <T, R> Task<T, R> wrap(Task<T, R> task) {
+        if (!enabled) {
+            return task;
+        }
+        return new Task<T, R>() {
+            @Override
+            public void pre() throws Exception {
+                task.pre();
+            }
+
+            @Override
+            public List<R> apply(List<T> batch) throws Exception {
+                long start = clock.getAsLong();
+                List<R> result = task.apply(batch);
+                onBatchProcessed(batch.size(), clock.getAsLong() - start);
+                return result;
+            }
+
+            @Override
+            public List<R> drain() throws Exception {
+                return task.drain();
+            }
+
+            @Override
+            public void post() throws Exception {
+                task.post();
+            }
+        };
+    }
+
+    private synchronized void onBatchProcessed(int size, long nanos) {
+        long queuedBatches = batchesRead.get() - batchesProcessed.incrementAndGet();
+        windowNanos += nanos;
+        windowElements += size;
+        windowQueuedBatches += Math.max(0, queuedBatches);
+        windowBatches++;
+        if (windowBatches >= adjustInterval) {
+            adjust();
+            windowNanos = 0;
+            windowElements = 0;
+            windowQueuedBatches = 0;
+            windowBatches = 0;
+        }
+    }
+
+    private void adjust() {
+        int current = batchSize.get();
+        if (windowElements == 0) {
+            return;
+        }
+        double freeHeap = getFreeHeap();
+        double avgQueuedBatches = ((double) windowQueuedBatches) / windowBatches;
+        long avgBatchTimeNanos = windowNanos / windowBatches;
+        double nanosPerElement = Math.max(1, ((double) windowNanos) / windowElements);
+
+        int newSize;
+        if (freeHeap < minFreeHeap) {
+            newSize = current / 2;
+        } else {
+            newSize = (int) Math.min(Integer.MAX_VALUE, targetBatchTimeNanos / nanosPerElement);
+            newSize = Math.max(current / MAX_GROWTH, Math.min(current * MAX_GROWTH, newSize));
+            if (newSize > current && avgQueuedBatches >= capacity) {
+                // Tasks are not able to drain the queue. Bigger batches would only increase the memory usage.
+                newSize = current;
+            }
+        }
+        newSize = Math.max(minBatchSize, Math.min(maxBatchSize, newSize));
+
+        if (Math.abs(newSize - current) > current * MIN_CHANGE) {
+            batchSize.set(newSize);
+            numAdjustments.incrementAndGet();
+            logger.info("Adaptive batch size for '{}' : {} -> {} (batch time {}ms, queued batches {}/{}, free heap {}%)",
+                    name, current, newSize, TimeUnit.NANOSECONDS.toMillis(avgBatchTimeNanos), String.format("%.1f", avgQueuedBatches),
+                    capacity, (int) (freeHeap * 100));
+        }
+    }
+
+    private static double getFreeHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return ((double) (runtime.maxMemory() - used)) / runtime.maxMemory();
+    }
+
+    /**
+     * Replace the clock used to measure the batch time. For tests.
+     *
+     * @param clock Time source, in nanoseconds
+     * @return this
+     */
+    AdaptiveBatchSizeController setClock(LongSupplier clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.manager.variant;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short lived cache of catalog resolutions used by the {@link VariantCatalogQueryUtils}.
+ *
+ * Keys must contain the session id, so resolutions are never shared between users. Entries are discarded after the time to live
+ * or when the cache is full (LRU).
+ */
+public class CatalogResolutionCache {
+
+    public static final long DEFAULT_TTL = 10000;
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final char SEPARATOR = '\u0001';
+
+    private final long ttl;
+    private final int maxSize;
+    private final Map<String, Entry> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param ttl       Time to live of the entries, in milliseconds. Use 0 to disable the cache
+     * @param maxSize   Max number of entries
+     */
+    public CatalogResolutionCache(long ttl, int maxSize) {
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        cache = new LinkedHashMap<String, Entry>(Math.min(1024, Math.max(16, maxSize)), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CatalogResolutionCache.this.maxSize;
+            }
+        };
+    }
+
+    public static String key(String resource, String study, Integer release, String sessionId, String value) {
+        return new StringBuilder()
+                .append(resource).append(SEPARATOR)
+                .append(study).append(SEPARATOR)
+                .append(release).append(SEPARATOR)
+                .append(sessionId).append(SEPARATOR)
+                .append(value).toString();
+    }
+
+    public boolean isEnabled() {
+        return ttl > 0 && maxSize > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Object value = null;
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null) {
+                if (entry.expiration < System.currentTimeMillis()) {
+                    cache.remove(key);
+                } else {
+                    value = entry.value;
+                }
+            }
+        }
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return (T) value;
+    }
+
+    public void put(String key, Object value) {
+        if (!isEnabled() || value == null) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public ObjectMap getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new ObjectMap()
+                .append("size", size)
+                .append("maxSize", maxSize)
+                .append("ttl", ttl)
+                .append("hits", hits.get())
+                .append("misses", misses.get());
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiration;
+
+        private Entry(Object value, long expiration) {
+            this.value = value;
+            this.expiration = expiration;
+        }
+    }
+}
@@ -86,10 +86,16 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
     private final SampleFilterValidator sampleFilterValidator;
     private final GenotypeFilterValidator genotypeFilterValidator;
     private final CohortFilterValidator cohortFilterValidator;
+    private final CatalogResolutionCache resolutionCache;
     //    public static final QueryParam SAMPLE_FILTER_GENOTYPE = QueryParam.create("sampleFilterGenotype", "", QueryParam.Type.TEXT_ARRAY);
 
     public VariantCatalogQueryUtils(CatalogManager catalogManager) {
+        this(catalogManager, new CatalogResolutionCache(CatalogResolutionCache.DEFAULT_TTL, CatalogResolutionCache.DEFAULT_MAX_SIZE));
+    }
+
+    public VariantCatalogQueryUtils(CatalogManager catalogManager, CatalogResolutionCache resolutionCache) {
         super(catalogManager);
+        this.resolutionCache = resolutionCache;
         studyFilterValidator = new StudyFilterValidator();
         fileFilterValidator = new FileFilterValidator();
         sampleFilterValidator = new SampleFilterValidator();
@@ -118,6 +124,24 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
         String defaultStudyStr = getDefaultStudyId(studies);
         Integer release = getReleaseFilter(query, sessionId);
 
+        // Resolve all the values of the same resource with one single request
+        studyFilterValidator.prefetch(defaultStudyStr, release, sessionId,
+                studyFilterValidator.getValues(query, VariantQueryParam.STUDY),
+                studyFilterValidator.getValues(query, VariantQueryParam.INCLUDE_STUDY));
+        sampleFilterValidator.prefetch(defaultStudyStr, release, sessionId,
+                sampleFilterValidator.getValues(query, VariantQueryParam.SAMPLE),
+                sampleFilterValidator.getValues(query, VariantQueryParam.INCLUDE_SAMPLE),
+                genotypeFilterValidator.getValues(query, VariantQueryParam.GENOTYPE));
+        fileFilterValidator.prefetch(defaultStudyStr, release, sessionId,
+                fileFilterValidator.getValues(query, VariantQueryParam.FILE),
+                fileFilterValidator.getValues(query, VariantQueryParam.INCLUDE_FILE));
+        cohortFilterValidator.prefetch(defaultStudyStr, release, sessionId,
+                cohortFilterValidator.getValues(query, VariantQueryParam.COHORT),
+                cohortFilterValidator.getValues(query, VariantQueryParam.STATS_MAF),
+                cohortFilterValidator.getValues(query, VariantQueryParam.STATS_MGF),
+                cohortFilterValidator.getValues(query, VariantQueryParam.MISSING_ALLELES),
+                cohortFilterValidator.getValues(query, VariantQueryParam.MISSING_GENOTYPES));
+
         studyFilterValidator.processFilter(query, VariantQueryParam.STUDY, release, sessionId, defaultStudyStr);
         studyFilterValidator.processFilter(query, VariantQueryParam.INCLUDE_STUDY, release, sessionId, defaultStudyStr);
         sampleFilterValidator.processFilter(query, VariantQueryParam.SAMPLE, release, sessionId, defaultStudyStr);
@@ -218,19 +242,29 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
             if (StringUtils.isEmpty(defaultStudyStr)) {
                 throw VariantQueryException.missingStudyFor("family", familyId, null);
             }
-            Family family = catalogManager.getFamilyManager().get(defaultStudyStr, familyId, null, sessionId).first();
+            String familyKey = CatalogResolutionCache.key("family", defaultStudyStr, null, sessionId, familyId);
+            Family family = resolutionCache.get(familyKey);
+            if (family == null) {
+                family = catalogManager.getFamilyManager().get(defaultStudyStr, familyId, null, sessionId).first();
+                resolutionCache.put(familyKey, family);
+            }
 
             if (family.getMembers().isEmpty()) {
                 throw VariantQueryException.malformedParam(FAMILY, familyId, "Empty family");
             }
 
-            Set<Long> indexedSampleUids = catalogManager.getCohortManager()
-                    .get(defaultStudyStr, StudyEntry.DEFAULT_COHORT,
-                            new QueryOptions(INCLUDE, CohortDBAdaptor.QueryParams.SAMPLE_UIDS.key()), sessionId)
-                    .first()
-                    .getSamples()
-                    .stream()
-                    .map(Sample::getUid).collect(Collectors.toSet());
+            String indexedSamplesKey = CatalogResolutionCache.key("cohort", defaultStudyStr, null, sessionId, StudyEntry.DEFAULT_COHORT);
+            Set<Long> indexedSampleUids = resolutionCache.get(indexedSamplesKey);
+            if (indexedSampleUids == null) {
+                indexedSampleUids = catalogManager.getCohortManager()
+                        .get(defaultStudyStr, StudyEntry.DEFAULT_COHORT,
+                                new QueryOptions(INCLUDE, CohortDBAdaptor.QueryParams.SAMPLE_UIDS.key()), sessionId)
+                        .first()
+                        .getSamples()
+                        .stream()
+                        .map(Sample::getUid).collect(Collectors.toSet());
+                resolutionCache.put(indexedSamplesKey, Collections.unmodifiableSet(indexedSampleUids));
+            }
 
             boolean multipleSamplesPerIndividual = false;
             List<Long> sampleUids = new ArrayList<>();
@@ -424,7 +458,12 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
             if (StringUtils.isEmpty(defaultStudyStr)) {
                 throw VariantQueryException.missingStudyFor("panel", panelId, null);
             }
-            Panel panel = catalogManager.getPanelManager().get(defaultStudyStr, panelId, null, sessionId).first();
+            String panelKey = CatalogResolutionCache.key("panel", defaultStudyStr, null, sessionId, panelId);
+            Panel panel = resolutionCache.get(panelKey);
+            if (panel == null) {
+                panel = catalogManager.getPanelManager().get(defaultStudyStr, panelId, null, sessionId).first();
+                resolutionCache.put(panelKey, panel);
+            }
 
             List<String> geneNames = new ArrayList<>(panel.getDiseasePanel().getGenes().size());
             for (org.opencb.biodata.models.clinical.interpretation.DiseasePanel.GenePanel genePanel : panel.getDiseasePanel().getGenes()) {
@@ -441,6 +480,10 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
         return query;
     }
 
+    public CatalogResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
     public String getDefaultStudyId(Collection<String> studies) throws CatalogException {
         final String defaultStudyId;
         if (studies.size() == 1) {
@@ -481,6 +524,108 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
                 FileDBAdaptor.QueryParams.INDEX.key(),
                 FileDBAdaptor.QueryParams.RELEASE.key()));
 
+        private final String resource;
+
+        protected FilterValidator(String resource) {
+            this.resource = resource;
+        }
+
+        /**
+         * Get the values to be validated from a param of the query, if any.
+         * @param query        Query with the data
+         * @param param        Param to read
+         * @return             Values to validate. Empty if the param is not present, or has values ALL or NONE
+         */
+        protected List<String> getValues(Query query, VariantQueryParam param) {
+            if (VariantQueryUtils.isValidParam(query, param)) {
+                String valuesStr = query.getString(param.key());
+                if (!isNoneOrAll(valuesStr)) {
+                    return getValuesToValidate(splitValue(valuesStr, getQueryOperation(valuesStr)));
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        /**
+         * Resolve several lists of values with one single request to catalog, keeping the results in the resolution cache.
+         * Errors are ignored here, and will be thrown while processing the filter that contains the wrong value.
+         * @param defaultStudy Default study
+         * @param release      Release filter, if any
+         * @param sessionId    SessionId
+         * @param valuesList   Lists of values to resolve
+         */
+        @SafeVarargs
+        protected final void prefetch(String defaultStudy, Integer release, String sessionId, List<String>... valuesList) {
+            // Release checks must report the filter with the wrong value. Do not mix filters.
+            if (!resolutionCache.isEnabled() || release != null) {
+                return;
+            }
+            Set<String> values = new LinkedHashSet<>();
+            int numLists = 0;
+            for (List<String> list : valuesList) {
+                if (!list.isEmpty()) {
+                    values.addAll(list);
+                    numLists++;
+                }
+            }
+            // Nothing to batch
+            if (numLists <= 1) {
+                return;
+            }
+            try {
+                validateCached(defaultStudy, new ArrayList<>(values), release, null, sessionId);
+            } catch (CatalogException | RuntimeException e) {
+                // Ignore. Values will be validated one by one.
+            }
+        }
+
+        /**
+         * Validate the values. Resolves from catalog only the values not present in the resolution cache.
+         * @param defaultStudyStr Default study
+         * @param values       Values to validate
+         * @param release      Release filter, if any
+         * @param param        Param being validated
+         * @param sessionId    SessionId
+         * @return             Validated values, in the same order
+         * @throws CatalogException if there is any catalog error
+         */
+        protected final List<String> validateCached(String defaultStudyStr, List<String> values, Integer release,
+                                                    VariantQueryParam param, String sessionId)
+                throws CatalogException {
+            if (!resolutionCache.isEnabled()) {
+                return validate(defaultStudyStr, values, release, param, sessionId);
+            }
+            Map<String, String> validatedValuesMap = new HashMap<>();
+            List<String> missingValues = new ArrayList<>();
+            for (String value : values) {
+                String validatedValue = resolutionCache.get(key(defaultStudyStr, release, sessionId, value));
+                if (validatedValue == null) {
+                    if (!validatedValuesMap.containsKey(value)) {
+                        missingValues.add(value);
+                        validatedValuesMap.put(value, null);
+                    }
+                } else {
+                    validatedValuesMap.put(value, validatedValue);
+                }
+            }
+            if (!missingValues.isEmpty()) {
+                List<String> validatedValues = validate(defaultStudyStr, missingValues, release, param, sessionId);
+                for (int i = 0; i < missingValues.size(); i++) {
+                    validatedValuesMap.put(missingValues.get(i), validatedValues.get(i));
+                    resolutionCache.put(key(defaultStudyStr, release, sessionId, missingValues.get(i)), validatedValues.get(i));
+                }
+            }
+            List<String> validatedValues = new ArrayList<>(values.size());
+            for (String value : values) {
+                validatedValues.add(validatedValuesMap.get(value));
+            }
+            return validatedValues;
+        }
+
+        private String key(String defaultStudyStr, Integer release, String sessionId, String value) {
+            return CatalogResolutionCache.key(resource, defaultStudyStr, release, sessionId, value);
+        }
+
         /**
          * Splits the value from the query (if any) and translates the IDs to numerical Ids.
          * If a release value is given, checks that every element is part of that release.
@@ -502,7 +647,7 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
                 QueryOperation queryOperation = getQueryOperation(valuesStr);
                 List<String> rawValues = splitValue(valuesStr, queryOperation);
                 List<String> values = getValuesToValidate(rawValues);
-                List<String> validatedValues = validate(defaultStudy, values, release, param, sessionId);
+                List<String> validatedValues = validateCached(defaultStudy, values, release, param, sessionId);
 
                 StringBuilder sb = new StringBuilder();
                 for (int i = 0; i < rawValues.size(); i++) {
@@ -584,6 +729,10 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
 
     public class StudyFilterValidator extends FilterValidator {
 
+        public StudyFilterValidator() {
+            super("study");
+        }
+
         @Override
         protected List<String> validate(String defaultStudyStr, List<String> values, Integer release, VariantQueryParam param,
                                         String sessionId) throws CatalogException {
@@ -606,6 +755,10 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
 
     public class FileFilterValidator extends FilterValidator {
 
+        public FileFilterValidator() {
+            super("file");
+        }
+
         @Override
         protected List<String> validate(String defaultStudyStr, List<String> values, Integer release, VariantQueryParam param,
                                         String sessionId)
@@ -631,6 +784,10 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
 
     public class SampleFilterValidator extends FilterValidator {
 
+        public SampleFilterValidator() {
+            super("sample");
+        }
+
         @Override
         protected List<String> validate(String defaultStudyStr, List<String> values, Integer release, VariantQueryParam param,
                                         String sessionId) throws CatalogException {
@@ -669,6 +826,10 @@ public class VariantCatalogQueryUtils extends CatalogUtils {
 
     public class CohortFilterValidator extends FilterValidator {
 
+        public CohortFilterValidator() {
+            super("cohort");
+        }
+
         @Override
         protected List<String> validate(String defaultStudyStr, List<String> values, Integer release, VariantQueryParam param,
                                         String sessionId)
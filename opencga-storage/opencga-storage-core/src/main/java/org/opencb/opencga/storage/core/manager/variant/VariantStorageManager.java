@@ -443,6 +443,23 @@ public class VariantStorageManager extends StorageManager {
         });
     }
 
+    /**
+     * Count the variants of a query in fixed size windows, computed in parallel region chunks. Works for any storage engine.
+     *
+     * @param query     Query
+     * @param interval  Size of the windows
+     * @param sessionId User's session id
+     * @return Non empty windows, with the fields "chromosome", "start", "end" and "count"
+     * @throws CatalogException       if there is an error with Catalog
+     * @throws IOException            if there is an error checking the permissions
+     * @throws StorageEngineException if there is an error with the storage engine
+     */
+    public QueryResult<ObjectMap> histogram(Query query, int interval, String sessionId)
+            throws CatalogException, IOException, StorageEngineException {
+        return secure(query, new QueryOptions(QueryOptions.EXCLUDE, VariantField.STUDIES), sessionId,
+                engine -> engine.getAggregationExecutor().histogram(query, interval));
+    }
+
     public VariantIterable iterable(String sessionId) throws CatalogException, StorageEngineException {
         return (query, options) -> {
             try {
@@ -62,6 +62,7 @@ public class StudyConfiguration {
     private Map<Integer, LinkedHashSet<Integer>> samplesInFiles; //Use LinkedHashSet instead of Set to ensure sample order
     private Set<Integer> calculatedStats;
     private Set<Integer> invalidStats;
+    private Map<Integer, Set<Integer>> calculatedStatsSamples; //Samples used to calculate the stored stats of each cohort
 
     private Map<Integer, Integer> searchIndexedSampleSets;
     private Map<Integer, BatchFileOperation.Status> searchIndexedSampleSetsStatus;
@@ -98,6 +99,8 @@ public class StudyConfiguration {
         this.samplesInFiles = new HashMap<>(other.samplesInFiles);
         this.calculatedStats = new LinkedHashSet<>(other.calculatedStats);
         this.invalidStats = new LinkedHashSet<>(other.invalidStats);
+        this.calculatedStatsSamples = other.calculatedStatsSamples == null
+                ? new HashMap<>() : new HashMap<>(other.calculatedStatsSamples);
         this.searchIndexedSampleSets = other.searchIndexedSampleSets == null
                 ? new HashMap<>() : new HashMap<>(other.searchIndexedSampleSets);
         this.searchIndexedSampleSetsStatus = other.searchIndexedSampleSetsStatus == null
@@ -144,6 +147,7 @@ public class StudyConfiguration {
         this.samplesInFiles = new HashMap<>();
         this.calculatedStats = new LinkedHashSet<>();
         this.invalidStats = new LinkedHashSet<>();
+        this.calculatedStatsSamples = new HashMap<>();
         this.searchIndexedSampleSets = new HashMap<>();
         this.searchIndexedSampleSetsStatus = new HashMap<>();
         this.batches = new ArrayList<>();
@@ -284,6 +288,19 @@ public class StudyConfiguration {
         this.invalidStats = invalidStats;
     }
 
+    public Map<Integer, Set<Integer>> getCalculatedStatsSamples() {
+        if (calculatedStatsSamples == null) {
+            // Not present in study configurations stored by older versions
+            calculatedStatsSamples = new HashMap<>();
+        }
+        return calculatedStatsSamples;
+    }
+
+    public StudyConfiguration setCalculatedStatsSamples(Map<Integer, Set<Integer>> calculatedStatsSamples) {
+        this.calculatedStatsSamples = calculatedStatsSamples;
+        return this;
+    }
+
     public Map<Integer, Integer> getSearchIndexedSampleSets() {
         return searchIndexedSampleSets;
     }
@@ -56,6 +56,7 @@ import org.opencb.opencga.storage.core.metadata.local.FileStudyConfigurationAdap
 import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.annotation.DefaultVariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
@@ -170,6 +171,20 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         LOAD_BATCH_SIZE("load.batch.size", 100),
         LOAD_THREADS("load.threads", 6),
         LOAD_SPLIT_DATA("load.split-data", false),
+        EXPORT_THREADS("export.threads", 1),               // Number of region shards exported in parallel. 1 disables sharding
+        EXPORT_BATCH_SIZE("export.batch.size", 10),
+        EXPORT_PARQUET_ROW_GROUP_REGION_SIZE("export.parquet.rowGroup.regionSize", 1000000),   // Genomic window of each row group
+        EXPORT_PARQUET_ROW_GROUP_MAX_ROWS("export.parquet.rowGroup.maxRows", 100000),
+        EXPORT_PARQUET_ROW_GROUP_MAX_BYTES("export.parquet.rowGroup.maxBytes", 128 * 1024 * 1024),  // Buffered size of each row group
+        AGGREGATION_THREADS("aggregation.threads", 4),                // Region chunks aggregated in parallel by the storage-core executor
+        AGGREGATION_CHUNK_SIZE("aggregation.chunkSize", 5000000),
+
+        // Adaptive batch size. Tunes at run time the batch size of the pipelines that support it.
+        ADAPTIVE_BATCH_SIZE("batch.adaptive", false),
+        ADAPTIVE_BATCH_SIZE_MIN("batch.adaptive.min", 1),
+        ADAPTIVE_BATCH_SIZE_MAX("batch.adaptive.max", 10000),
+        ADAPTIVE_BATCH_SIZE_TARGET_TIME("batch.adaptive.targetTime", 2000),     // Target time in milliseconds to process one batch
+        ADAPTIVE_BATCH_SIZE_MIN_FREE_HEAP("batch.adaptive.minFreeHeap", 0.2),  // Reduce the batch size below this free heap fraction
 
         LOADED_GENOTYPES("loadedGenotypes", null),
 
@@ -182,6 +197,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         CALCULATE_STATS("calculateStats", false),          //Calculate stats on the postLoad step
         OVERWRITE_STATS("overwriteStats", false),          //Overwrite stats already present
         UPDATE_STATS("updateStats", false),                //Calculate missing stats
+        INCREMENTAL_STATS("incrementalStats", true),       //Update invalid stats from the genotypes of the added and removed samples
         ANNOTATE("annotate", false),
         INDEX_SEARCH("indexSearch", false),
 
@@ -1417,15 +1433,40 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public QueryResult rank(Query query, String field, int numResults, boolean asc) throws StorageEngineException {
-        return getDBAdaptor().rank(query, field, numResults, asc);
+        try {
+            return getDBAdaptor().rank(query, field, numResults, asc);
+        } catch (UnsupportedOperationException e) {
+            logger.debug("Rank not supported by the DBAdaptor. Using the VariantAggregationExecutor");
+            return getAggregationExecutor().rank(query, field, numResults, asc);
+        }
     }
 
     public QueryResult getFrequency(Query query, Region region, int regionIntervalSize) throws StorageEngineException {
-        return getDBAdaptor().getFrequency(query, region, regionIntervalSize);
+        try {
+            return getDBAdaptor().getFrequency(query, region, regionIntervalSize);
+        } catch (UnsupportedOperationException e) {
+            logger.debug("Frequency not supported by the DBAdaptor. Using the VariantAggregationExecutor");
+            return getAggregationExecutor().getFrequency(query, region, regionIntervalSize);
+        }
     }
 
     public QueryResult groupBy(Query query, String field, QueryOptions options) throws StorageEngineException {
-        return getDBAdaptor().groupBy(query, field, options);
+        try {
+            return getDBAdaptor().groupBy(query, field, options);
+        } catch (UnsupportedOperationException e) {
+            logger.debug("GroupBy not supported by the DBAdaptor. Using the VariantAggregationExecutor");
+            return getAggregationExecutor().groupBy(query, field, options);
+        }
+    }
+
+    /**
+     * Get an executor to compute aggregations in parallel region chunks, using only the iterator of the DBAdaptor.
+     *
+     * @return VariantAggregationExecutor
+     * @throws StorageEngineException if there is an error creating the DBAdaptor
+     */
+    public VariantAggregationExecutor getAggregationExecutor() throws StorageEngineException {
+        return new VariantAggregationExecutor(getDBAdaptor(), getStudyConfigurationManager(), getOptions());
     }
 
     public QueryResult groupBy(Query query, List<String> fields, QueryOptions options) throws StorageEngineException {
@@ -42,6 +42,7 @@ import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.opencga.storage.core.StoragePipeline;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.AdaptiveBatchSizeController;
 import org.opencb.opencga.storage.core.io.plain.StringDataReader;
 import org.opencb.opencga.storage.core.io.plain.StringDataWriter;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
@@ -241,11 +242,13 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             throw new StorageEngineException(e.getMessage(), e);
         }
 
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+        AdaptiveBatchSizeController batchSizeController =
+                AdaptiveBatchSizeController.fromOptions("transform", options, batchSize, numTasks);
+        ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
                 .setNumTasks(numTasks)
                 .setBatchSize(batchSize)
                 .setCapacity(capacity)
-                .setSorted(true)
+                .setSorted(true))
                 .build();
 
         logger.info("Transforming variants using {} into {} ...", parser, format);
@@ -334,8 +337,8 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             ParallelTaskRunner<String, ByteBuffer> ptr;
             try {
                 ptr = new ParallelTaskRunner<>(
-                        dataReader,
-                        taskSupplier,
+                        batchSizeController.wrap(dataReader),
+                        () -> batchSizeController.wrap(taskSupplier.get()),
                         dataWriter,
                         config
                 );
@@ -398,8 +401,8 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
 
             try {
                 ptr = new ParallelTaskRunner<>(
-                        dataReader,
-                        taskSupplier,
+                        batchSizeController.wrap(dataReader),
+                        () -> batchSizeController.wrap(taskSupplier.get()),
                         dataWriter,
                         config
                 );
@@ -0,0 +1,715 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.*;
+
+/**
+ * Matrix of genotypes of variants x samples, stored off-heap with 2 bits per call and a missing mask.
+ *
+ * All the samples are stored in one single direct buffer, allocated from the number of variants given to the {@link Builder}.
+ * Each sample is stored as three bit planes (low bit, high bit and missing mask), with one bit per variant. Operations over
+ * samples are resolved with bitwise operations over 64 variants at a time. The buffer is released with {@link #close()}.
+ *
+ * The meaning of the 2-bit codes is given by the {@link GenotypeEncoder} used to build the matrix. The default encoder uses
+ * {@link #HOM_REF}, {@link #HET}, {@link #HOM_ALT} and {@link #OTHER}.
+ */
+public class GenotypeMatrix implements AutoCloseable {
+
+    public static final int HOM_REF = 0;
+    public static final int HET = 1;
+    public static final int HOM_ALT = 2;
+    // Any other non missing genotype. Secondary alternates, polyploid genotypes...
+    public static final int OTHER = 3;
+    public static final int MISSING = -1;
+
+    public static final GenotypeEncoder DEFAULT_ENCODER = GenotypeMatrix::encodeGenotype;
+
+    // Indexes of the counts returned by compare
+    static final int IBS0 = 0;
+    static final int IBS1 = 1;
+    static final int IBS2 = 2;
+    static final int HET_HET = 3;
+    static final int HET_1 = 4;
+    static final int HET_2 = 5;
+    static final int PAIR_COUNTS = 6;
+
+    private static final int PLANES = 3;
+    private static final int LOW = 0;
+    private static final int HIGH = 1;
+    private static final int MISS = 2;
+
+    private final List<String> samples;
+    private final Map<String, Integer> samplesPosition;
+    private final List<String> variants;
+    // Original variants, only if kept by the builder
+    private final List<Variant> variantObjects;
+    private ByteBuffer data;
+    private LongBuffer buffer;
+    // Words allocated per plane
+    private final int numWords;
+    // Words with data per plane
+    private final int usedWords;
+
+    /**
+     * Encodes a genotype into a 2-bit code (0 to 3), or {@link #MISSING}.
+     */
+    @FunctionalInterface
+    public interface GenotypeEncoder {
+        int encode(String gt);
+    }
+
+    private GenotypeMatrix(List<String> samples, List<String> variants, List<Variant> variantObjects, ByteBuffer data,
+                           int numWords) {
+        this.samples = Collections.unmodifiableList(samples);
+        this.variants = Collections.unmodifiableList(variants);
+        this.variantObjects = variantObjects == null ? null : Collections.unmodifiableList(variantObjects);
+        this.data = data;
+        buffer = data.asLongBuffer();
+        this.numWords = numWords;
+        usedWords = (variants.size() + 63) >>> 6;
+        samplesPosition = new HashMap<>();
+        for (int i = 0; i < samples.size(); i++) {
+            samplesPosition.put(samples.get(i), i);
+        }
+    }
+
+    /**
+     * Build a genotype matrix from the result of a query. The query must return one single study.
+     *
+     * @param iterable     Variants source
+     * @param query        Query
+     * @param encoder      Genotype encoder
+     * @param maxVariants  Fail if the query returns more than this number of variants. The matrix is allocated for this size
+     * @param keepVariants Keep the variants returned by the query, to be returned by {@link #getVariant}
+     * @return Genotype matrix. Without samples if the query has no results
+     */
+    public static GenotypeMatrix fromQuery(VariantIterable iterable, Query query, GenotypeEncoder encoder, int maxVariants,
+                                           boolean keepVariants) {
+        if (maxVariants < 0) {
+            throw new IllegalArgumentException("Invalid maximum number of variants " + maxVariants);
+        }
+        QueryOptions options = new QueryOptions()
+                .append(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA))
+                .append(QueryOptions.LIMIT, maxVariants + 1);
+        Builder builder = null;
+        try (VariantDBIterator iterator = iterable.iterator(query, options)) {
+            int numVariants = 0;
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                if (numVariants == maxVariants) {
+                    throw new VariantQueryException("Error! Limit reached with more than " + maxVariants + " variants!");
+                }
+                if (builder == null) {
+                    if (variant.getStudies().size() != 1) {
+                        throw new VariantQueryException("Unable to process with " + variant.getStudies().size() + " studies.");
+                    }
+                    List<String> samples = variant.getStudies().get(0).getOrderedSamplesName();
+                    if (samples.isEmpty()) {
+                        throw new VariantQueryException("Unable to get samples!");
+                    }
+                    builder = new Builder(samples, encoder, maxVariants, keepVariants);
+                }
+                builder.add(variant);
+                numVariants++;
+            }
+        } catch (Exception e) {
+            if (builder != null) {
+                builder.discard();
+            }
+            if (e instanceof VariantQueryException) {
+                throw (VariantQueryException) e;
+            }
+            throw new VariantQueryException("Error building genotype matrix", e);
+        }
+        if (builder == null) {
+            builder = new Builder(Collections.emptyList(), encoder, 0, keepVariants);
+        }
+        return builder.build();
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    public int getNumSamples() {
+        return samples.size();
+    }
+
+    public int getNumVariants() {
+        return variants.size();
+    }
+
+    public String getVariantId(int variantIdx) {
+        return variants.get(variantIdx);
+    }
+
+    /**
+     * Get a variant of the matrix. If the variants were not kept by the builder, the variant is rebuilt from its id, without
+     * studies nor annotation.
+     *
+     * @param variantIdx Variant index
+     * @return Variant
+     */
+    public Variant getVariant(int variantIdx) {
+        if (variantObjects != null && variantObjects.get(variantIdx) != null) {
+            return variantObjects.get(variantIdx);
+        }
+        return new Variant(variants.get(variantIdx));
+    }
+
+    public int getSampleIdx(String sample) {
+        Integer idx = samplesPosition.get(sample);
+        if (idx == null) {
+            throw new IllegalArgumentException("Sample " + sample + " not found in matrix");
+        }
+        return idx;
+    }
+
+    /**
+     * Get the code of one call.
+     *
+     * @param variantIdx Variant index
+     * @param sampleIdx  Sample index
+     * @return Genotype code, or {@link #MISSING}
+     */
+    public int get(int variantIdx, int sampleIdx) {
+        int word = variantIdx >>> 6;
+        long bit = 1L << variantIdx;
+        if ((buffer.get(index(sampleIdx, MISS, word)) & bit) != 0) {
+            return MISSING;
+        }
+        int code = 0;
+        if ((buffer.get(index(sampleIdx, LOW, word)) & bit) != 0) {
+            code |= 1;
+        }
+        if ((buffer.get(index(sampleIdx, HIGH, word)) & bit) != 0) {
+            code |= 2;
+        }
+        return code;
+    }
+
+    /**
+     * Count the calls of a sample with any of the given codes.
+     *
+     * @param sampleIdx Sample index
+     * @param codes     Genotype codes. {@link #MISSING} counts missing calls
+     * @return Number of calls
+     */
+    public int count(int sampleIdx, int... codes) {
+        int count = 0;
+        for (int word = 0; word < usedWords; word++) {
+            count += Long.bitCount(matchWord(sampleIdx, word, codes));
+        }
+        return count;
+    }
+
+    /**
+     * Count the calls of each sample with any of the given codes.
+     *
+     * @param codes Genotype codes. {@link #MISSING} counts missing calls
+     * @return Number of calls for each sample
+     */
+    public int[] countPerSample(int... codes) {
+        int[] counts = new int[samples.size()];
+        for (int sampleIdx = 0; sampleIdx < counts.length; sampleIdx++) {
+            counts[sampleIdx] = count(sampleIdx, codes);
+        }
+        return counts;
+    }
+
+    /**
+     * Count the genotypes of each variant.
+     *
+     * @return For each variant, the number of calls with codes 0, 1, 2, 3 and missing
+     */
+    public int[][] genotypeCounts() {
+        int[][] counts = new int[variants.size()][5];
+        int[] codes = new int[1];
+        for (int code = MISSING; code <= OTHER; code++) {
+            codes[0] = code;
+            int countIdx = code == MISSING ? 4 : code;
+            for (int sampleIdx = 0; sampleIdx < samples.size(); sampleIdx++) {
+                for (int word = 0; word < usedWords; word++) {
+                    long match = matchWord(sampleIdx, word, codes);
+                    while (match != 0) {
+                        counts[(word << 6) + Long.numberOfTrailingZeros(match)][countIdx]++;
+                        match &= match - 1;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Get the variants where the sample has any of the given codes.
+     *
+     * @param sampleIdx Sample index
+     * @param codes     Genotype codes. {@link #MISSING} for missing calls
+     * @return Bit set of variant indexes
+     */
+    public BitSet getVariants(int sampleIdx, int... codes) {
+        long[] words = new long[usedWords];
+        for (int word = 0; word < usedWords; word++) {
+            words[word] = matchWord(sampleIdx, word, codes);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Get the samples with any of the given codes in at least one variant.
+     *
+     * @param codes Genotype codes
+     * @return Samples in matrix order
+     */
+    public List<String> getSamplesInAnyVariant(int... codes) {
+        List<String> result = new ArrayList<>();
+        int[] counts = countPerSample(codes);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                result.add(samples.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the samples with any of the given codes in all the variants.
+     *
+     * @param codes Genotype codes
+     * @return Samples in matrix order. Empty if there are no variants
+     */
+    public List<String> getSamplesInAllVariants(int... codes) {
+        List<String> result = new ArrayList<>();
+        if (variants.isEmpty()) {
+            return result;
+        }
+        int[] counts = countPerSample(codes);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == variants.size()) {
+                result.add(samples.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare the calls of two samples using the default encoding.
+     *
+     * Only variants with non missing calls in both samples are compared. Calls with code {@link #OTHER} are only equal
+     * to other calls with code {@link #OTHER}.
+     *
+     * @param sampleIdx1 First sample
+     * @param sampleIdx2 Second sample
+     * @return Number of variants with IBS0, IBS1 and IBS2
+     */
+    public int[] identityByState(int sampleIdx1, int sampleIdx2) {
+        int[] counts = new int[PAIR_COUNTS];
+        compare(sampleIdx1, sampleIdx2, null, counts);
+        return new int[]{counts[IBS0], counts[IBS1], counts[IBS2]};
+    }
+
+    /**
+     * Compare the calls of two samples using the default encoding, counting the IBS states and the heterozygous calls.
+     * Only variants with non missing calls in both samples, and present in the variants mask, are compared.
+     *
+     * @param sampleIdx1   First sample
+     * @param sampleIdx2   Second sample
+     * @param variantsMask Bit mask of variants to compare, as returned by {@link #getVariantsMask}. Null for all variants
+     * @param counts       Output array of length {@link #PAIR_COUNTS}
+     */
+    void compare(int sampleIdx1, int sampleIdx2, long[] variantsMask, int[] counts) {
+        compare(getPlanes(sampleIdx1), getPlanes(sampleIdx2), variantsMask, counts);
+    }
+
+    /**
+     * Copy the bit planes of a sample to the heap, to compare it many times.
+     *
+     * @param sampleIdx Sample index
+     * @return Low bits, high bits and missing mask, one after the other
+     */
+    long[] getPlanes(int sampleIdx) {
+        long[] planes = new long[PLANES * usedWords];
+        for (int plane = 0; plane < PLANES; plane++) {
+            for (int word = 0; word < usedWords; word++) {
+                planes[plane * usedWords + word] = buffer.get(index(sampleIdx, plane, word));
+            }
+        }
+        // Clear bits after the last variant
+        if (usedWords > 0) {
+            long lastMask = validMask(usedWords - 1);
+            planes[usedWords - 1] &= lastMask;
+            planes[2 * usedWords - 1] &= lastMask;
+            planes[3 * usedWords - 1] |= ~lastMask;
+        }
+        return planes;
+    }
+
+    /**
+     * Compare the bit planes of two samples, as returned by {@link #getPlanes}.
+     *
+     * @param planes1      Planes of the first sample
+     * @param planes2      Planes of the second sample
+     * @param variantsMask Bit mask of variants to compare. Null for all variants
+     * @param counts       Output array of length {@link #PAIR_COUNTS}
+     */
+    static void compare(long[] planes1, long[] planes2, long[] variantsMask, int[] counts) {
+        int words = planes1.length / PLANES;
+        int ibs0 = 0;
+        int ibs2 = 0;
+        int compared = 0;
+        int hetHet = 0;
+        int het1 = 0;
+        int het2 = 0;
+        for (int word = 0; word < words; word++) {
+            long valid = ~(planes1[MISS * words + word] | planes2[MISS * words + word]);
+            if (variantsMask != null) {
+                valid &= variantsMask[word];
+            }
+            if (valid == 0) {
+                continue;
+            }
+            long low1 = planes1[word];
+            long high1 = planes1[words + word];
+            long low2 = planes2[word];
+            long high2 = planes2[words + word];
+
+            // Opposite homozygous. HOM_REF (00) vs HOM_ALT (10)
+            long opposite = ~low1 & ~low2 & (high1 ^ high2);
+            long equal = ~(low1 ^ low2) & ~(high1 ^ high2);
+            long hetMask1 = low1 & ~high1 & valid;
+            long hetMask2 = low2 & ~high2 & valid;
+
+            compared += Long.bitCount(valid);
+            ibs0 += Long.bitCount(opposite & valid);
+            ibs2 += Long.bitCount(equal & valid);
+            hetHet += Long.bitCount(hetMask1 & hetMask2);
+            het1 += Long.bitCount(hetMask1);
+            het2 += Long.bitCount(hetMask2);
+        }
+        counts[IBS0] = ibs0;
+        counts[IBS1] = compared - ibs0 - ibs2;
+        counts[IBS2] = ibs2;
+        counts[HET_HET] = hetHet;
+        counts[HET_1] = het1;
+        counts[HET_2] = het2;
+    }
+
+    /**
+     * Get a bit mask of the variants with a minor allele frequency of at least the given value, using the default encoding.
+     * Calls with code {@link #OTHER} and missing calls are not taken into account.
+     *
+     * @param minMaf Minimum minor allele frequency
+     * @return Bit mask of variants, one bit per variant
+     */
+    public long[] getVariantsMask(double minMaf) {
+        long[] mask = new long[usedWords];
+        int[][] counts = genotypeCounts();
+        for (int variantIdx = 0; variantIdx < counts.length; variantIdx++) {
+            int[] c = counts[variantIdx];
+            int alleles = 2 * (c[HOM_REF] + c[HET] + c[HOM_ALT]);
+            if (alleles == 0) {
+                continue;
+            }
+            double af = (c[HET] + 2.0 * c[HOM_ALT]) / alleles;
+            if (Math.min(af, 1 - af) >= minMaf) {
+                mask[variantIdx >>> 6] |= 1L << variantIdx;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Release the off-heap memory of the matrix. The matrix can not be used after this.
+     */
+    @Override
+    public void close() {
+        if (data != null) {
+            buffer = null;
+            free(data);
+            data = null;
+        }
+    }
+
+    private long matchWord(int sampleIdx, int word, int[] codes) {
+        long low = buffer.get(index(sampleIdx, LOW, word));
+        long high = buffer.get(index(sampleIdx, HIGH, word));
+        long missing = buffer.get(index(sampleIdx, MISS, word));
+        long match = 0;
+        for (int code : codes) {
+            if (code == MISSING) {
+                match |= missing;
+            } else {
+                match |= ((code & 1) != 0 ? low : ~low) & ((code & 2) != 0 ? high : ~high) & ~missing;
+            }
+        }
+        return match & validMask(word);
+    }
+
+    private int index(int sampleIdx, int plane, int word) {
+        return index(sampleIdx, plane, word, numWords);
+    }
+
+    private static int index(int sampleIdx, int plane, int word, int numWords) {
+        return (sampleIdx * PLANES + plane) * numWords + word;
+    }
+
+    // Mask of the bits with data in the given word
+    private long validMask(int word) {
+        int remaining = variants.size() - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    /**
+     * Default genotype encoder. Phase is ignored.
+     *
+     * @param gt Genotype
+     * @return Genotype code
+     */
+    public static int encodeGenotype(String gt) {
+        if (gt == null || gt.isEmpty()) {
+            return MISSING;
+        }
+        int numAlleles = 0;
+        int numAlt = 0;
+        int alleleStart = 0;
+        for (int i = 0; i <= gt.length(); i++) {
+            if (i == gt.length() || gt.charAt(i) == '/' || gt.charAt(i) == '|') {
+                String allele = gt.substring(alleleStart, i);
+                switch (allele) {
+                    case "0":
+                        break;
+                    case "1":
+                        numAlt++;
+                        break;
+                    case ".":
+                        return MISSING;
+                    default:
+                        return OTHER;
+                }
+                numAlleles++;
+                alleleStart = i + 1;
+            }
+        }
+        if (numAlleles > 2) {
+            return OTHER;
+        } else if (numAlt == 0) {
+            return HOM_REF;
+        } else if (numAlt == numAlleles) {
+            return HOM_ALT;
+        } else {
+            return HET;
+        }
+    }
+
+    /**
+     * Streams variants into a new genotype matrix. The memory for all the variants is allocated at once, so the number of
+     * variants must be known in advance.
+     */
+    public static class Builder {
+        private final List<String> samples;
+        private final GenotypeEncoder encoder;
+        private final int capacity;
+        private final int numWords;
+        private final List<String> variants = new ArrayList<>();
+        private final List<Variant> variantObjects;
+        private ByteBuffer data;
+        private LongBuffer buffer;
+        // Cache sample positions of the last variant. Usually shared by all the variants from the same query
+        private Map<String, Integer> lastSamplesPosition;
+        private int[] lastSamplesIdx;
+
+        public Builder(List<String> samples, GenotypeEncoder encoder, int capacity) {
+            this(samples, encoder, capacity, false);
+        }
+
+        /**
+         * @param samples      Samples of the matrix
+         * @param encoder      Genotype encoder. Null for the {@link #DEFAULT_ENCODER}
+         * @param capacity     Maximum number of variants
+         * @param keepVariants Keep the variants added with {@link #add(Variant)}, to be returned by
+         *                     {@link GenotypeMatrix#getVariant}
+         */
+        public Builder(List<String> samples, GenotypeEncoder encoder, int capacity, boolean keepVariants) {
+            if (capacity < 0) {
+                throw new IllegalArgumentException("Invalid capacity " + capacity);
+            }
+            this.samples = new ArrayList<>(samples);
+            this.encoder = encoder == null ? DEFAULT_ENCODER : encoder;
+            this.capacity = capacity;
+            numWords = (capacity + 63) >>> 6;
+            variantObjects = keepVariants ? new ArrayList<>() : null;
+            long bytes = (long) samples.size() * PLANES * numWords * Long.BYTES;
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Genotype matrix of " + samples.size() + " samples and " + capacity
+                        + " variants is too big. Reduce the number of variants or samples");
+            }
+            data = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+            buffer = data.asLongBuffer();
+        }
+
+        public int getNumVariants() {
+            return variants.size();
+        }
+
+        /**
+         * Add the genotypes of a variant with one single study. Samples not present in the variant are added as missing.
+         *
+         * @param variant Variant
+         * @return this
+         */
+        public Builder add(Variant variant) {
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            Integer gtIdx = studyEntry.getFormatPositions().get("GT");
+            if (gtIdx == null || gtIdx < 0) {
+                throw new VariantQueryException("Missing GT at variant " + variant);
+            }
+            Map<String, Integer> samplesPosition = studyEntry.getSamplesPosition();
+            if (samplesPosition != lastSamplesPosition) {
+                lastSamplesPosition = samplesPosition;
+                lastSamplesIdx = new int[samples.size()];
+                for (int i = 0; i < samples.size(); i++) {
+                    lastSamplesIdx[i] = samplesPosition.getOrDefault(samples.get(i), -1);
+                }
+            }
+            int variantIdx = nextVariant(variant.toString(), variant);
+            List<List<String>> samplesData = studyEntry.getSamplesData();
+            for (int i = 0; i < lastSamplesIdx.length; i++) {
+                int sampleDataIdx = lastSamplesIdx[i];
+                String gt = sampleDataIdx < 0 ? null : samplesData.get(sampleDataIdx).get(gtIdx);
+                set(variantIdx, i, sampleDataIdx < 0 ? MISSING : encoder.encode(gt));
+            }
+            return this;
+        }
+
+        /**
+         * Add the genotypes of a variant.
+         *
+         * @param variantId Variant id
+         * @param gts       Genotypes, in the same order as the samples of the matrix
+         * @return this
+         */
+        public Builder add(String variantId, List<String> gts) {
+            if (gts.size() != samples.size()) {
+                throw new IllegalArgumentException("Expected " + samples.size() + " genotypes, found " + gts.size());
+            }
+            int variantIdx = nextVariant(variantId, null);
+            for (int i = 0; i < gts.size(); i++) {
+                set(variantIdx, i, encoder.encode(gts.get(i)));
+            }
+            return this;
+        }
+
+        /**
+         * Build the matrix. The matrix takes the ownership of the memory of this builder, which can not be used after this.
+         *
+         * @return Genotype matrix
+         */
+        public GenotypeMatrix build() {
+            checkOpen();
+            GenotypeMatrix matrix = new GenotypeMatrix(samples, variants, variantObjects, data, numWords);
+            data = null;
+            buffer = null;
+            return matrix;
+        }
+
+        private void discard() {
+            if (data != null) {
+                buffer = null;
+                free(data);
+                data = null;
+            }
+        }
+
+        private void checkOpen() {
+            if (data == null) {
+                throw new IllegalStateException("Genotype matrix already built");
+            }
+        }
+
+        private int nextVariant(String variantId, Variant variant) {
+            checkOpen();
+            int variantIdx = variants.size();
+            if (variantIdx == capacity) {
+                throw new IllegalStateException("Unable to add variant " + variantId + ". Genotype matrix full with "
+                        + capacity + " variants");
+            }
+            variants.add(variantId);
+            if (variantObjects != null) {
+                variantObjects.add(variant);
+            }
+            return variantIdx;
+        }
+
+        private void set(int variantIdx, int sampleIdx, int code) {
+            if (code > OTHER || code < MISSING) {
+                throw new IllegalArgumentException("Invalid genotype code " + code);
+            }
+            int word = variantIdx >>> 6;
+            long bit = 1L << variantIdx;
+            if (code == MISSING) {
+                setBit(index(sampleIdx, MISS, word, numWords), bit);
+            } else {
+                if ((code & 1) != 0) {
+                    setBit(index(sampleIdx, LOW, word, numWords), bit);
+                }
+                if ((code & 2) != 0) {
+                    setBit(index(sampleIdx, HIGH, word, numWords), bit);
+                }
+            }
+        }
+
+        private void setBit(int index, long bit) {
+            buffer.put(index, buffer.get(index) | bit);
+        }
+    }
+
+    /**
+     * Release a direct buffer without waiting for the garbage collector. There is no public API for this in Java 8, so the
+     * cleaner of the buffer is called by reflection. If not accessible, the memory is released by the garbage collector.
+     *
+     * @param data Direct buffer
+     */
+    private static void free(ByteBuffer data) {
+        try {
+            Method cleanerMethod = data.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(data);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Released by the garbage collector
+        }
+    }
+}
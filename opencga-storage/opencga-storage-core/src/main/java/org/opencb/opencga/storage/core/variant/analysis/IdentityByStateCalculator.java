@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.opencb.commons.io.DataWriter;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.opencb.opencga.storage.core.variant.analysis.GenotypeMatrix.*;
+
+/**
+ * Computes the identity by state (IBS0, IBS1, IBS2) and a kinship coefficient for every pair of samples of a {@link GenotypeMatrix}.
+ *
+ * Pairs are split in square tiles of samples, processed in parallel. Each pair is compared with popcounts over the bit planes of
+ * the matrix, so the memory used does not depend on the number of pairs, and the results are streamed to a writer.
+ *
+ * The kinship is the KING-robust estimator: (N_het_het - 2 * N_IBS0) / (N_het_1 + N_het_2), over the variants with calls
+ * in both samples.
+ */
+public class IdentityByStateCalculator {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final GenotypeMatrix matrix;
+    private final long[] variantsMask;
+    private final Logger logger = LoggerFactory.getLogger(IdentityByStateCalculator.class);
+
+    public IdentityByStateCalculator(GenotypeMatrix matrix) {
+        this(matrix, 0);
+    }
+
+    /**
+     * @param matrix Genotype matrix, built with the default encoder
+     * @param minMaf Skip variants with a minor allele frequency lower than this value
+     */
+    public IdentityByStateCalculator(GenotypeMatrix matrix, double minMaf) {
+        this.matrix = matrix;
+        variantsMask = minMaf > 0 ? matrix.getVariantsMask(minMaf) : null;
+    }
+
+    public SamplePair compare(int sampleIdx1, int sampleIdx2) {
+        int[] counts = new int[PAIR_COUNTS];
+        matrix.compare(sampleIdx1, sampleIdx2, variantsMask, counts);
+        return new SamplePair(matrix.getSamples().get(sampleIdx1), matrix.getSamples().get(sampleIdx2), counts);
+    }
+
+    /**
+     * Compare all the pairs of samples, writing the results in no particular order.
+     *
+     * @param writer     Writer of the results
+     * @param numThreads Number of threads
+     * @param tileSize   Number of samples per side of each tile
+     * @throws ExecutionException if there is an error computing or writing the results
+     */
+    public void run(DataWriter<SamplePair> writer, int numThreads, int tileSize) throws ExecutionException {
+        int numSamples = matrix.getNumSamples();
+        int numTiles = (numSamples + tileSize - 1) / tileSize;
+        long numPairs = ((long) numSamples) * (numSamples - 1) / 2;
+        logger.info("Computing IBS of {} pairs of samples over {} variants, in {} tiles of {} samples",
+                numPairs, matrix.getNumVariants(), (long) numTiles * (numTiles + 1) / 2, tileSize);
+
+        // Tiles (row, column) with row <= column
+        int[] next = {0, 0};
+        ParallelTaskRunner<int[], SamplePair> runner = new ParallelTaskRunner<>(
+                batchSize -> {
+                    List<int[]> tiles = new ArrayList<>(batchSize);
+                    while (tiles.size() < batchSize && next[0] < numTiles) {
+                        tiles.add(new int[]{next[0], next[1]});
+                        next[1]++;
+                        if (next[1] == numTiles) {
+                            next[0]++;
+                            next[1] = next[0];
+                        }
+                    }
+                    return tiles;
+                },
+                tiles -> {
+                    List<SamplePair> pairs = new ArrayList<>();
+                    for (int[] tile : tiles) {
+                        compareTile(tile[0] * tileSize, tile[1] * tileSize, tileSize, pairs);
+                    }
+                    return pairs;
+                },
+                writer,
+                ParallelTaskRunner.Config.builder().setNumTasks(numThreads).setBatchSize(1).setSorted(false).build());
+        runner.run();
+    }
+
+    /**
+     * Collect all the sample pairs in memory. For tests and small matrices.
+     *
+     * @param numThreads Number of threads
+     * @return List of sample pairs
+     * @throws ExecutionException if there is an error computing the results
+     */
+    public List<SamplePair> collect(int numThreads) throws ExecutionException {
+        List<SamplePair> pairs = Collections.synchronizedList(new ArrayList<>());
+        run(new DataWriter<SamplePair>() {
+            @Override
+            public boolean write(List<SamplePair> batch) {
+                return pairs.addAll(batch);
+            }
+        }, numThreads, DEFAULT_TILE_SIZE);
+        return pairs;
+    }
+
+    private void compareTile(int rowStart, int columnStart, int tileSize, List<SamplePair> pairs) {
+        int numSamples = matrix.getNumSamples();
+        int rowEnd = Math.min(rowStart + tileSize, numSamples);
+        int columnEnd = Math.min(columnStart + tileSize, numSamples);
+        // Copy the samples of the tile to the heap once
+        long[][] columnPlanes = new long[columnEnd - columnStart][];
+        for (int j = columnStart; j < columnEnd; j++) {
+            columnPlanes[j - columnStart] = matrix.getPlanes(j);
+        }
+        int[] counts = new int[PAIR_COUNTS];
+        List<String> samples = matrix.getSamples();
+        for (int i = rowStart; i < rowEnd; i++) {
+            long[] rowPlanes = rowStart == columnStart ? columnPlanes[i - columnStart] : matrix.getPlanes(i);
+            // Tiles in the diagonal only contain half of the pairs
+            for (int j = Math.max(columnStart, i + 1); j < columnEnd; j++) {
+                GenotypeMatrix.compare(rowPlanes, columnPlanes[j - columnStart], variantsMask, counts);
+                pairs.add(new SamplePair(samples.get(i), samples.get(j), counts));
+            }
+        }
+    }
+
+    /**
+     * Result of comparing two samples.
+     */
+    public static class SamplePair {
+        private final String sample1;
+        private final String sample2;
+        private final int ibs0;
+        private final int ibs1;
+        private final int ibs2;
+        private final int hetHet;
+        private final int het1;
+        private final int het2;
+
+        SamplePair(String sample1, String sample2, int[] counts) {
+            this.sample1 = sample1;
+            this.sample2 = sample2;
+            ibs0 = counts[IBS0];
+            ibs1 = counts[IBS1];
+            ibs2 = counts[IBS2];
+            hetHet = counts[HET_HET];
+            het1 = counts[HET_1];
+            het2 = counts[HET_2];
+        }
+
+        public String getSample1() {
+            return sample1;
+        }
+
+        public String getSample2() {
+            return sample2;
+        }
+
+        public int getIbs0() {
+            return ibs0;
+        }
+
+        public int getIbs1() {
+            return ibs1;
+        }
+
+        public int getIbs2() {
+            return ibs2;
+        }
+
+        public int getNumVariants() {
+            return ibs0 + ibs1 + ibs2;
+        }
+
+        /**
+         * @return IBS distance, as (IBS2 + 0.5 * IBS1) / N. NaN if there are no variants to compare
+         */
+        public double getDistance() {
+            return (ibs2 + 0.5 * ibs1) / getNumVariants();
+        }
+
+        /**
+         * @return KING-robust kinship coefficient. NaN if none of the samples has heterozygous calls
+         */
+        public double getKinship() {
+            return (hetHet - 2.0 * ibs0) / (het1 + het2);
+        }
+
+        @Override
+        public String toString() {
+            return sample1 + '\t' + sample2 + '\t' + ibs0 + '\t' + ibs1 + '\t' + ibs2 + '\t' + getDistance() + '\t' + getKinship();
+        }
+    }
+
+    /**
+     * Writes the sample pairs as tab separated values.
+     */
+    public static class TsvWriter implements DataWriter<SamplePair> {
+        public static final String HEADER = "#SAMPLE_1\tSAMPLE_2\tIBS0\tIBS1\tIBS2\tDISTANCE\tKINSHIP\n";
+
+        private final OutputStream outputStream;
+
+        public TsvWriter(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public boolean pre() {
+            return writeString(HEADER);
+        }
+
+        @Override
+        public boolean write(List<SamplePair> batch) {
+            StringBuilder sb = new StringBuilder();
+            for (SamplePair pair : batch) {
+                sb.append(pair).append('\n');
+            }
+            return writeString(sb.toString());
+        }
+
+        @Override
+        public boolean post() {
+            try {
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+
+        private boolean writeString(String s) {
+            try {
+                outputStream.write(s.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }
+    }
+}
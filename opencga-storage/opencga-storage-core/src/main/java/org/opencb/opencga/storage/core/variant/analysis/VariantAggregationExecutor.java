@@ -0,0 +1,423 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.metadata.adaptors.VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.*;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.AGGREGATION_CHUNK_SIZE;
+import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.AGGREGATION_THREADS;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.isValidParam;
+
+/**
+ * Computes aggregations over the variants of a query using only the {@link VariantDBAdaptor} iterator, so it works for any engine.
+ *
+ * The regions of the query are split in chunks, aggregated in parallel and then merged in genomic order. Each variant belongs to
+ * the chunk containing its start, so variants overlapping two chunks are only counted once. Variants overlapping two regions of the
+ * query are counted in the first one. Chromosomes with unknown length are split progressively until there are no more variants.
+ *
+ * Queries that can not be split in regions (by ID, gene or xref) are aggregated in one single chunk.
+ */
+public class VariantAggregationExecutor {
+
+    // Chunks created for chromosomes of unknown length before checking if there are more variants
+    private static final int PROBE_CHUNKS = 10;
+
+    private final VariantDBAdaptor dbAdaptor;
+    private final StudyConfigurationManager studyConfigurationManager;
+    private final int numThreads;
+    private final int chunkSize;
+    private final Logger logger = LoggerFactory.getLogger(VariantAggregationExecutor.class);
+
+    public VariantAggregationExecutor(VariantDBAdaptor dbAdaptor, StudyConfigurationManager studyConfigurationManager,
+                                      ObjectMap options) {
+        this.dbAdaptor = dbAdaptor;
+        this.studyConfigurationManager = studyConfigurationManager;
+        numThreads = Math.max(1, options.getInt(AGGREGATION_THREADS.key(), AGGREGATION_THREADS.defaultValue()));
+        chunkSize = Math.max(1, options.getInt(AGGREGATION_CHUNK_SIZE.key(), AGGREGATION_CHUNK_SIZE.defaultValue()));
+    }
+
+    public QueryResult<Long> count(Query query) {
+        StopWatch watch = StopWatch.createStarted();
+        long count = aggregate(query, coreFieldsOptions(), 1, Collectors.counting());
+        return new QueryResult<>("count", (int) watch.getTime(TimeUnit.MILLISECONDS), 1, 1, "", "", Collections.singletonList(count));
+    }
+
+    /**
+     * Count the variants in fixed size windows. Each variant is counted in the window containing its start.
+     *
+     * @param query    Query
+     * @param interval Size of the windows
+     * @return Non empty windows sorted by region, with the fields "chromosome", "start", "end" and "count"
+     */
+    public QueryResult<ObjectMap> histogram(Query query, int interval) {
+        StopWatch watch = StopWatch.createStarted();
+        Map<String, Map<Integer, Long>> counts = aggregate(query, coreFieldsOptions(), interval,
+                Collectors.groupingBy(Variant::getChromosome, LinkedHashMap::new,
+                        Collectors.groupingBy(variant -> variant.getStart() / interval, TreeMap::new, Collectors.counting())));
+
+        List<ObjectMap> windows = new ArrayList<>();
+        counts.forEach((chromosome, chromosomeCounts) -> chromosomeCounts.forEach((window, count) -> windows.add(
+                new ObjectMap("chromosome", chromosome)
+                        .append("start", window * interval)
+                        .append("end", window * interval + interval - 1)
+                        .append("count", count))));
+        return new QueryResult<>("histogram", (int) watch.getTime(TimeUnit.MILLISECONDS), windows.size(), windows.size(), "", "",
+                windows);
+    }
+
+    /**
+     * Count the variants of a region in fixed size windows, including empty windows.
+     * Same output as {@link VariantDBAdaptor#getFrequency}, with the count of each window in "features_count".
+     *
+     * @param query              Query
+     * @param region             Region
+     * @param regionIntervalSize Size of the windows. If not provided, the region is split in 200 windows
+     * @return One element per window
+     */
+    public QueryResult<ObjectMap> getFrequency(Query query, Region region, int regionIntervalSize) {
+        StopWatch watch = StopWatch.createStarted();
+        int interval = regionIntervalSize > 0 ? regionIntervalSize : Math.max(1, (region.getEnd() - region.getStart()) / 200);
+        Query regionQuery = new Query(query).append(VariantQueryParam.REGION.key(), region.toString());
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for (ObjectMap window : histogram(regionQuery, interval).getResult()) {
+            counts.put(window.getInt("start") / interval, window.getLong("count"));
+        }
+        // Whole chromosome regions end in the last window with variants
+        int lastWindow = region.getEnd() == Integer.MAX_VALUE
+                ? counts.keySet().stream().max(Integer::compare).orElse(region.getStart() / interval)
+                : region.getEnd() / interval;
+        List<ObjectMap> windows = new ArrayList<>();
+        for (int window = region.getStart() / interval; window <= lastWindow; window++) {
+            windows.add(new ObjectMap("_id", window)
+                    .append("chromosome", region.getChromosome())
+                    .append("start", window * interval)
+                    .append("end", window * interval + interval - 1)
+                    .append("features_count", counts.getOrDefault(window, 0L)));
+        }
+        return new QueryResult<>(region.toString(), (int) watch.getTime(TimeUnit.MILLISECONDS), windows.size(), windows.size(), "", "",
+                windows);
+    }
+
+    public QueryResult<ObjectMap> rank(Query query, String field, int numResults, boolean asc) {
+        return groupBy(query, field, new QueryOptions(QueryOptions.LIMIT, numResults).append("order", asc ? 1 : -1));
+    }
+
+    /**
+     * Count the variants for each value of a field. Each variant is counted once per value.
+     *
+     * Accepted fields are "chromosome", "type", "gene" or "ensemblGene", "ct" or "consequence_type", and "geneName" (default).
+     * Consequence types are returned as SO accession numbers, as in the MongoDB storage engine.
+     *
+     * @param query   Query
+     * @param field   Field to group by
+     * @param options Accepted values are "order" (1 ascending, -1 descending), {@link QueryOptions#SKIP} and
+     *                {@link QueryOptions#LIMIT} (10 by default)
+     * @return Values with the fields "id" and "count", sorted by count
+     */
+    public QueryResult<ObjectMap> groupBy(Query query, String field, QueryOptions options) {
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        StopWatch watch = StopWatch.createStarted();
+        QueryOptions projection;
+        Function<Variant, Collection<String>> extractor;
+        switch (field) {
+            case "chromosome":
+                projection = coreFieldsOptions();
+                extractor = variant -> Collections.singletonList(variant.getChromosome());
+                break;
+            case "type":
+                projection = coreFieldsOptions();
+                extractor = variant -> Collections.singletonList(variant.getType().toString());
+                break;
+            case "gene":
+            case "ensemblGene":
+                projection = consequenceTypesOptions();
+                extractor = consequenceTypeExtractor(ct -> Collections.singletonList(ct.getEnsemblGeneId()));
+                break;
+            case "ct":
+            case "consequence_type":
+                projection = consequenceTypesOptions();
+                extractor = consequenceTypeExtractor(ct -> ct.getSequenceOntologyTerms() == null
+                        ? Collections.emptyList()
+                        : ct.getSequenceOntologyTerms().stream()
+                                .map(VariantAggregationExecutor::getSoAccession)
+                                .collect(Collectors.toList()));
+                break;
+            default:
+                projection = consequenceTypesOptions();
+                extractor = consequenceTypeExtractor(ct -> Collections.singletonList(ct.getGeneName()));
+                break;
+        }
+
+        Map<String, Long> counts = aggregate(query, projection, 1, Collector.<Variant, Map<String, Long>>of(HashMap::new,
+                (map, variant) -> {
+                    for (String value : extractor.apply(variant)) {
+                        map.merge(value, 1L, Long::sum);
+                    }
+                },
+                (map1, map2) -> {
+                    map2.forEach((value, count) -> map1.merge(value, count, Long::sum));
+                    return map1;
+                }));
+
+        Comparator<Map.Entry<String, Long>> comparator = Map.Entry.comparingByValue();
+        if (options.getInt("order", -1) < 0) {
+            comparator = comparator.reversed();
+        }
+        int skip = Math.max(0, options.getInt(QueryOptions.SKIP, 0));
+        int limit = options.getInt(QueryOptions.LIMIT, -1) > 0 ? options.getInt(QueryOptions.LIMIT) : 10;
+        List<ObjectMap> result = counts.entrySet()
+                .stream()
+                .sorted(comparator.thenComparing(Map.Entry.comparingByKey()))
+                .skip(skip)
+                .limit(limit)
+                .map(entry -> new ObjectMap("id", isConsequenceType(field) ? (Object) Integer.valueOf(entry.getKey()) : entry.getKey())
+                        .append("count", entry.getValue()))
+                .collect(Collectors.toList());
+        return new QueryResult<>(field, (int) watch.getTime(TimeUnit.MILLISECONDS), result.size(), counts.size(), "", "", result);
+    }
+
+    /**
+     * Aggregate the variants of a query, splitting the query in region chunks processed in parallel.
+     *
+     * @param query     Query
+     * @param options   Query options, to define the projection of the variants
+     * @param alignment Chunk boundaries will be multiple of this value
+     * @param collector Collector applied to the variants of each chunk. Partial results are combined in genomic order
+     * @param <A>       Partial result type
+     * @param <R>       Result type
+     * @return Aggregated result
+     */
+    public <A, R> R aggregate(Query query, QueryOptions options, int alignment, Collector<Variant, A, R> collector) {
+        if (query == null) {
+            query = new Query();
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<A>> futures = new ArrayList<>();
+            Query finalQuery = query;
+            createChunks(query, options, alignment, chunk -> futures.add(executorService.submit(
+                    () -> aggregateChunk(finalQuery, options, chunk, collector))));
+            logger.debug("Aggregate {} chunks with {} threads", futures.size(), numThreads);
+
+            A result = collector.supplier().get();
+            for (Future<A> future : futures) {
+                result = collector.combiner().apply(result, future.get());
+            }
+            return collector.finisher().apply(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VariantQueryException("Interrupted aggregation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new VariantQueryException("Error aggregating variants", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private <A> A aggregateChunk(Query query, QueryOptions options, Chunk chunk, Collector<Variant, A, ?> collector) throws Exception {
+        A partial = collector.supplier().get();
+        Query chunkQuery = chunk.region == null
+                ? query
+                : new Query(query).append(VariantQueryParam.REGION.key(), chunk.region.toString());
+        try (VariantDBIterator iterator = dbAdaptor.iterator(chunkQuery, options)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                if (chunk.accept(variant)) {
+                    collector.accumulator().accept(partial, variant);
+                }
+            }
+        }
+        return partial;
+    }
+
+    private void createChunks(Query query, QueryOptions options, int alignment, Consumer<Chunk> consumer) {
+        // Adding a region to these filters would change the result of the query
+        if (isValidParam(query, VariantQueryParam.ID)
+                || isValidParam(query, VariantQueryParam.GENE)
+                || isValidParam(query, VariantQueryParam.ANNOT_XREF)
+                || isValidParam(query, VariantQueryUtils.ANNOT_GENE_REGIONS)) {
+            consumer.accept(new Chunk(null, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            return;
+        }
+        List<Region> regions;
+        if (isValidParam(query, VariantQueryParam.REGION)) {
+            regions = VariantQueryUtils.mergeRegions(Region.parseRegions(query.getString(VariantQueryParam.REGION.key())));
+        } else {
+            List<String> chromosomes = getLoadedChromosomes(studyConfigurationManager);
+            if (chromosomes.isEmpty()) {
+                logger.info("Unknown chromosomes. Unable to split the aggregation in region chunks");
+                consumer.accept(new Chunk(null, Integer.MIN_VALUE, Integer.MAX_VALUE));
+                return;
+            }
+            regions = chromosomes.stream().map(Region::new).collect(Collectors.toList());
+        }
+
+        // Chunk size multiple of the alignment
+        long size = Math.max(1, ((long) chunkSize + alignment - 1) / alignment) * alignment;
+        Region previousRegion = null;
+        for (Region region : regions) {
+            // The query returns the variants overlapping the region, which may start before it. Those starting within the previous
+            // region of the same chromosome were already counted there. Regions are sorted and merged, so they do not overlap
+            int regionAcceptStart = previousRegion != null && previousRegion.getChromosome().equals(region.getChromosome())
+                    ? previousRegion.getEnd() + 1
+                    : Integer.MIN_VALUE;
+            previousRegion = region;
+            boolean unbounded = region.getEnd() == Integer.MAX_VALUE;
+            int chunkStart = region.getStart();
+            for (int numChunks = 0;; numChunks++) {
+                if (unbounded && numChunks % PROBE_CHUNKS == 0
+                        && !hasVariants(query, options, region.getChromosome(), numChunks == 0 ? chunkStart : chunkStart - 1)) {
+                    break;
+                }
+                boolean first = chunkStart == region.getStart();
+                int chunkEnd = (int) Math.min((chunkStart / size + 1) * size - 1, region.getEnd());
+                boolean last = chunkEnd >= region.getEnd();
+                // Extend the query region by one position to find the insertions at the boundaries
+                Region chunkRegion = new Region(region.getChromosome(),
+                        first ? region.getStart() : chunkStart - 1,
+                        last ? region.getEnd() : chunkEnd + 1);
+                consumer.accept(new Chunk(chunkRegion, first ? regionAcceptStart : chunkStart, last ? Integer.MAX_VALUE : chunkEnd));
+                if (last) {
+                    break;
+                }
+                chunkStart = chunkEnd + 1;
+            }
+        }
+    }
+
+    private boolean hasVariants(Query query, QueryOptions options, String chromosome, int start) {
+        Query probeQuery = new Query(query)
+                .append(VariantQueryParam.REGION.key(), new Region(chromosome, start, Integer.MAX_VALUE).toString());
+        QueryOptions probeOptions = new QueryOptions(options).append(QueryOptions.LIMIT, 1);
+        try (VariantDBIterator iterator = dbAdaptor.iterator(probeQuery, probeOptions)) {
+            return iterator.hasNext();
+        } catch (Exception e) {
+            throw new VariantQueryException("Error querying variants", e);
+        }
+    }
+
+    /**
+     * Get the chromosomes of all the loaded files, from the file stats.
+     *
+     * @param studyConfigurationManager StudyConfigurationManager
+     * @return Chromosomes. Empty if any of the files has no chromosome stats.
+     */
+    public static List<String> getLoadedChromosomes(StudyConfigurationManager studyConfigurationManager) {
+        Set<String> chromosomes = new LinkedHashSet<>();
+        for (Integer studyId : studyConfigurationManager.getStudyIds(null)) {
+            Query fileQuery = new Query(VariantFileMetadataQueryParam.STUDY_ID.key(), studyId);
+            Iterator<VariantFileMetadata> iterator = studyConfigurationManager.variantFileMetadataIterator(fileQuery, new QueryOptions());
+            while (iterator.hasNext()) {
+                VariantFileMetadata fileMetadata = iterator.next();
+                if (fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeStats() == null
+                        || fileMetadata.getStats().getChromosomeStats().isEmpty()) {
+                    // Unknown chromosomes. Some variants could be missing
+                    return Collections.emptyList();
+                }
+                chromosomes.addAll(fileMetadata.getStats().getChromosomeStats().keySet());
+            }
+        }
+        return new ArrayList<>(chromosomes);
+    }
+
+    private static QueryOptions coreFieldsOptions() {
+        return new QueryOptions(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES, VariantField.ANNOTATION));
+    }
+
+    private static QueryOptions consequenceTypesOptions() {
+        return new QueryOptions(QueryOptions.INCLUDE, VariantField.ANNOTATION_CONSEQUENCE_TYPES.fieldName());
+    }
+
+    private static boolean isConsequenceType(String field) {
+        return field.equals("ct") || field.equals("consequence_type");
+    }
+
+    private static String getSoAccession(SequenceOntologyTerm term) {
+        Integer accession = null;
+        if (term.getAccession() != null && term.getAccession().toUpperCase().startsWith("SO:")) {
+            accession = Integer.valueOf(term.getAccession().substring("SO:".length()));
+        } else if (term.getName() != null) {
+            accession = ConsequenceTypeMappings.termToAccession.get(term.getName());
+        }
+        return accession == null ? null : accession.toString();
+    }
+
+    private static Function<Variant, Collection<String>> consequenceTypeExtractor(
+            Function<ConsequenceType, Collection<String>> function) {
+        return variant -> {
+            if (variant.getAnnotation() == null || variant.getAnnotation().getConsequenceTypes() == null) {
+                return Collections.emptySet();
+            }
+            Set<String> values = new HashSet<>();
+            for (ConsequenceType consequenceType : variant.getAnnotation().getConsequenceTypes()) {
+                for (String value : function.apply(consequenceType)) {
+                    if (value != null && !value.isEmpty()) {
+                        values.add(value);
+                    }
+                }
+            }
+            return values;
+        };
+    }
+
+    private static class Chunk {
+        // Region to query. Null for the whole query
+        private final Region region;
+        // Variants are assigned to the chunk containing their start
+        private final int acceptStart;
+        private final int acceptEnd;
+
+        Chunk(Region region, int acceptStart, int acceptEnd) {
+            this.region = region;
+            this.acceptStart = acceptStart;
+            this.acceptEnd = acceptEnd;
+        }
+
+        boolean accept(Variant variant) {
+            return variant.getStart() >= acceptStart && variant.getStart() <= acceptEnd;
+        }
+    }
+}
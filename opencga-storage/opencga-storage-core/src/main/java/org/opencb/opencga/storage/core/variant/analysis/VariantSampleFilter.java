@@ -16,18 +16,15 @@
 
 package org.opencb.opencga.storage.core.variant.analysis;
 
-import com.google.common.base.Throwables;
-import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
-import org.opencb.commons.datastore.core.QueryOptions;
-import org.opencb.opencga.storage.core.variant.adaptors.*;
-import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +34,10 @@ import java.util.stream.Collectors;
  */
 public class VariantSampleFilter {
 
+    // Genotype codes of the matrix
+    protected static final int NO_MATCH = 0;
+    protected static final int MATCH = 1;
+
     private final VariantIterable iterable;
     private int maxVariants;
     protected final Logger logger = LoggerFactory.getLogger(VariantSampleFilter.class);
@@ -56,31 +57,17 @@ public class VariantSampleFilter {
     }
 
     public Map<String, Set<Variant>> getSamplesInAnyVariants(Query query, List<String> genotypes) {
-
         Map<String, Set<Variant>> map = new HashMap<>();
-        Set<String> samples = new HashSet<>();
-
-        Set<String> genotypesSet = new HashSet<>(genotypes);
-        List<GenotypeClass> genotypeClasses = getGenotypeClasses(genotypesSet);
-
-        iterate(query, variant -> {
-            getSamplesSet(variant, samples);
-            for (String sample : samples) {
-                map.put(sample, new HashSet<>());
-            }
-        }, (variant, sample, gt) -> {
-            if (isValidGenotype(genotypesSet, genotypeClasses, gt)) {
-                map.get(sample).add(variant);
-            }
-            return true;
-        });
-
-        for (String sample : samples) {
-            if (map.get(sample).isEmpty()) {
-                map.remove(sample);
+        try (GenotypeMatrix matrix = buildMatrix(query, genotypes)) {
+            for (String sample : matrix.getSamplesInAnyVariant(MATCH)) {
+                BitSet variants = matrix.getVariants(matrix.getSampleIdx(sample), MATCH);
+                Set<Variant> set = new HashSet<>();
+                for (int i = variants.nextSetBit(0); i >= 0; i = variants.nextSetBit(i + 1)) {
+                    set.add(matrix.getVariant(i));
+                }
+                map.put(sample, set);
             }
         }
-
         return map;
     }
 
@@ -94,76 +81,23 @@ public class VariantSampleFilter {
     }
 
     public Collection<String> getSamplesInAllVariants(Query query, List<String> genotypes) {
-        Set<String> samples = new HashSet<>();
-        Set<String> genotypesSet = new HashSet<>(genotypes);
-        List<GenotypeClass> genotypeClasses = getGenotypeClasses(genotypesSet);
-        iterate(query, variant -> getSamplesSet(variant, samples),
-                (variant, sample, gt) -> {
-                    // Remove if not a valid genotype
-                    if (!isValidGenotype(genotypesSet, genotypeClasses, gt)) {
-                        if (samples.remove(sample)) {
-                            logger.debug("variant: {}, sample: {}, gt: {}", variant, sample, gt);
-                            if (sample.isEmpty()) {
-                                return false;
-                            }
-                        }
-                    }
-                    return true;
-                });
-        return samples;
-    }
-
-    @FunctionalInterface
-    interface GenotypeWalker {
-        boolean accept(Variant variant, String sample, String gt);
-    }
-
-    protected void iterate(Query query, Consumer<Variant> init, GenotypeWalker walker) {
-        QueryOptions options = new QueryOptions()
-                .append(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA))
-                .append(QueryOptions.LIMIT, maxVariants + 1);
-        try (VariantDBIterator iterator = iterable.iterator(query, options)) {
-            if (!iterator.hasNext()) {
-                return;
-            }
-            int numVariants = 0;
-            while (iterator.hasNext()) {
-                Variant variant = iterator.next();
-                if (numVariants == 0) {
-                    init.accept(variant);
-                } else if (numVariants == maxVariants) {
-                    throw new VariantQueryException("Error! Limit reached with more than " + maxVariants + " variants!");
-                }
-                numVariants++;
-                StudyEntry studyEntry = variant.getStudies().get(0);
-                Integer gtIdx = studyEntry.getFormatPositions().get("GT");
-                if (gtIdx == null || gtIdx < 0) {
-                    throw new VariantQueryException("Missing GT at variant " + variant);
-                }
-
-                int sampleIdx = 0;
-                for (String sample : studyEntry.getOrderedSamplesName()) {
-                    String gt = studyEntry.getSamplesData().get(sampleIdx).get(gtIdx);
-                    if (!walker.accept(variant, sample, gt)) {
-                        break;
-                    }
-                    sampleIdx++;
-                }
-            }
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+        try (GenotypeMatrix matrix = buildMatrix(query, genotypes)) {
+            return new LinkedHashSet<>(matrix.getSamplesInAllVariants(MATCH));
         }
     }
 
-    private Set<String> getSamplesSet(Variant variant, Set<String> samples) {
-        if (variant.getStudies().size() != 1) {
-            throw new VariantQueryException("Unable to process with " + variant.getStudies().size() + " studies.");
-        }
-        samples.addAll(variant.getStudies().get(0).getSamplesName());
-        if (samples.isEmpty()) {
-            throw new VariantQueryException("Unable to get samples!");
-        }
-        return samples;
+    /**
+     * Build a genotype matrix marking the calls matching any of the given genotypes.
+     *
+     * @param query     Query
+     * @param genotypes Genotypes or genotype classes
+     * @return Genotype matrix with codes {@link #MATCH} and {@link #NO_MATCH}, keeping the variants returned by the query
+     */
+    protected GenotypeMatrix buildMatrix(Query query, List<String> genotypes) {
+        Set<String> genotypesSet = new HashSet<>(genotypes);
+        List<GenotypeClass> genotypeClasses = getGenotypeClasses(genotypesSet);
+        return GenotypeMatrix.fromQuery(iterable, query,
+                gt -> isValidGenotype(genotypesSet, genotypeClasses, gt) ? MATCH : NO_MATCH, maxVariants, true);
     }
 
     private boolean isValidGenotype(Set<String> genotypesSet, List<GenotypeClass> genotypeClasses, String gt) {
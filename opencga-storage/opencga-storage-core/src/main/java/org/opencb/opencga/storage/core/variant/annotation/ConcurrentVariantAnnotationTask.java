@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Annotates batches of variants with a {@link VariantAnnotator}.
+ *
+ * Each batch is split in several requests, sent concurrently using the given executor, so the annotation
+ * is not limited by the latency of the annotator. Failed requests are retried with an exponential backoff.
+ * The order of the annotations is preserved.
+ */
+public class ConcurrentVariantAnnotationTask
+        implements ParallelTaskRunner.TaskWithException<Variant, VariantAnnotation, VariantAnnotatorException> {
+
+    private final VariantAnnotator variantAnnotator;
+    private final ExecutorService executorService;
+    private final int requestsPerBatch;
+    private final int retries;
+    private final long retryBackoff;
+    private static Logger logger = LoggerFactory.getLogger(ConcurrentVariantAnnotationTask.class);
+
+    /**
+     * Creates a new annotation task.
+     *
+     * @param variantAnnotator  Variant annotator
+     * @param executorService   Executor for the concurrent requests. If null, only one request per batch is sent.
+     * @param requestsPerBatch  Number of concurrent requests to split each batch
+     * @param retries           Number of times a failed request is retried
+     * @param retryBackoff      Milliseconds to wait before the first retry. Doubled on each retry.
+     */
+    public ConcurrentVariantAnnotationTask(VariantAnnotator variantAnnotator, ExecutorService executorService, int requestsPerBatch,
+                                           int retries, long retryBackoff) {
+        this.variantAnnotator = variantAnnotator;
+        this.executorService = executorService;
+        this.requestsPerBatch = executorService == null ? 1 : Math.max(1, requestsPerBatch);
+        this.retries = Math.max(0, retries);
+        this.retryBackoff = retryBackoff;
+    }
+
+    @Override
+    public List<VariantAnnotation> apply(List<Variant> variants) throws VariantAnnotatorException {
+        int numRequests = Math.min(requestsPerBatch, variants.size());
+        if (numRequests <= 1) {
+            return annotate(variants);
+        }
+
+        int requestSize = (variants.size() + numRequests - 1) / numRequests;
+        List<Future<List<VariantAnnotation>>> futures = new ArrayList<>(numRequests);
+        for (int i = 0; i < variants.size(); i += requestSize) {
+            List<Variant> subList = variants.subList(i, Math.min(variants.size(), i + requestSize));
+            futures.add(executorService.submit(() -> annotate(subList)));
+        }
+
+        List<VariantAnnotation> variantAnnotations = new ArrayList<>(variants.size());
+        try {
+            for (Future<List<VariantAnnotation>> future : futures) {
+                variantAnnotations.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new VariantAnnotatorException("Interrupted while annotating variants", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof VariantAnnotatorException) {
+                throw (VariantAnnotatorException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new VariantAnnotatorException("Error annotating variants", e.getCause());
+            }
+        }
+        return variantAnnotations;
+    }
+
+    private List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
+        int attempt = 0;
+        while (true) {
+            try {
+                return variantAnnotator.annotate(variants);
+            } catch (VariantAnnotatorException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                long wait = retryBackoff << attempt;
+                attempt++;
+                logger.warn("Error annotating batch of {} variants starting at {}. Retry {}/{} in {}ms : {}",
+                        variants.size(), variants.get(0), attempt, retries, wait, e.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -37,9 +37,11 @@ import org.opencb.commons.io.DataWriter;
 import org.opencb.commons.io.avro.AvroDataReader;
 import org.opencb.commons.io.avro.AvroDataWriter;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.AdaptiveBatchSizeController;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
@@ -59,6 +61,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.opencb.biodata.models.core.Region.normalizeChromosome;
@@ -80,6 +84,15 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
     public static final String BATCH_SIZE = "batchSize";
     public static final String NUM_WRITERS = "numWriters";
     public static final String NUM_THREADS = "numThreads";
+    // Number of annotation requests in flight. By default, one per thread.
+    public static final String CONCURRENT_REQUESTS = "annotation.concurrentRequests";
+    public static final String RETRIES = "annotation.retries";
+    public static final int RETRIES_DEFAULT = 3;
+    // Milliseconds to wait before retrying a failed annotation request. Doubled on each retry.
+    public static final String RETRY_BACKOFF = "annotation.retryBackoff";
+    public static final long RETRY_BACKOFF_DEFAULT = 1000;
+    // Load the annotations in the same run they are created, without intermediate file.
+    public static final String DIRECT_LOAD = "annotation.directLoad";
 
     protected VariantDBAdaptor dbAdaptor;
     protected VariantAnnotator variantAnnotator;
@@ -108,7 +121,9 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
             query.put(VariantQueryParam.ANNOTATION_EXISTS.key(), false);
         }
 
-        URI annotationFile;
+        boolean directLoad = doCreate && doLoad && params.getBoolean(DIRECT_LOAD, false);
+
+        URI annotationFile = null;
         if (doCreate) {
             dbAdaptor.getStudyConfigurationManager().lockAndUpdateProject(projectMetadata -> {
                 checkCurrentAnnotation(variantAnnotator, projectMetadata, overwrite);
@@ -116,13 +131,20 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
             });
 
             long start = System.currentTimeMillis();
-            logger.info("Starting annotation creation");
-            logger.info("Query : {} ", query.toJson());
-            annotationFile = createAnnotation(
-                    Paths.get(params.getString(OUT_DIR, "/tmp")),
-                    params.getString(FILE_NAME, "annotation_" + TimeUtils.getTime()),
-                    query, params);
-            logger.info("Finished annotation creation {}ms, generated file {}", System.currentTimeMillis() - start, annotationFile);
+            if (directLoad) {
+                logger.info("Starting annotation creation and load");
+                logger.info("Query : {} ", query.toJson());
+                createAndLoadAnnotation(query, params);
+                logger.info("Finished annotation creation and load {}ms", System.currentTimeMillis() - start);
+            } else {
+                logger.info("Starting annotation creation");
+                logger.info("Query : {} ", query.toJson());
+                annotationFile = createAnnotation(
+                        Paths.get(params.getString(OUT_DIR, "/tmp")),
+                        params.getString(FILE_NAME, "annotation_" + TimeUtils.getTime()),
+                        query, params);
+                logger.info("Finished annotation creation {}ms, generated file {}", System.currentTimeMillis() - start, annotationFile);
+            }
         } else {
             try {
                 annotationFile = UriUtils.createUri(annotationFileStr);
@@ -132,10 +154,12 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         }
 
         if (doLoad) {
-            long start = System.currentTimeMillis();
-            logger.info("Starting annotation load");
-            loadAnnotation(annotationFile, params);
-            logger.info("Finished annotation load {}ms", System.currentTimeMillis() - start);
+            if (!directLoad) {
+                long start = System.currentTimeMillis();
+                logger.info("Starting annotation load");
+                loadAnnotation(annotationFile, params);
+                logger.info("Finished annotation load {}ms", System.currentTimeMillis() - start);
+            }
 
             if (doCreate) {
                 dbAdaptor.getStudyConfigurationManager().lockAndUpdateProject(projectMetadata -> {
@@ -168,40 +192,15 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         /** Getting iterator from OpenCGA Variant database. **/
         QueryOptions iteratorQueryOptions = getIteratorQueryOptions(query, params);
 
-        int batchSize = 200;
-        int numThreads = 8;
-        if (params != null) { //Parse query options
-            batchSize = params.getInt(BATCH_SIZE, batchSize);
-            numThreads = params.getInt(NUM_THREADS, numThreads);
-        }
+        ObjectMap options = params == null ? new ObjectMap() : params;
+        int batchSize = options.getInt(BATCH_SIZE, 200);
+        int numThreads = options.getInt(NUM_THREADS, 8);
 
+        ExecutorService executorService = newAnnotationExecutorService(options, numThreads);
         try {
             DataReader<Variant> variantDataReader = new VariantDBReader(dbAdaptor, query, iteratorQueryOptions);
-            ProgressLogger progressLogger;
-            if (params != null && params.getBoolean(QueryOptions.SKIP_COUNT, false)) {
-                progressLogger = new ProgressLogger("Annotated variants:", iteratorQueryOptions.getLong(QueryOptions.LIMIT, 0), 200);
-            } else {
-                progressLogger = new ProgressLogger("Annotated variants:", () -> {
-                    long limit = iteratorQueryOptions.getLong(QueryOptions.LIMIT, 0);
-                    if (limit > 0) {
-                        return limit;
-                    }
-                    return dbAdaptor.count(query).first();
-                }, 200);
-            }
-            ParallelTaskRunner.TaskWithException<Variant, VariantAnnotation, VariantAnnotatorException> annotationTask = variantList -> {
-                List<VariantAnnotation> variantAnnotationList;
-                long start = System.currentTimeMillis();
-                logger.debug("Annotating batch of {} genomic variants.", variantList.size());
-                variantAnnotationList = variantAnnotator.annotate(variantList);
-                progressLogger.increment(variantList.size(),
-                        () -> ", up to position " + variantList.get(variantList.size() - 1).toString());
-                numAnnotationsToLoad.addAndGet(variantList.size());
-
-                logger.debug("Annotated batch of {} genomic variants. Time: {}s", variantList.size(),
-                        (System.currentTimeMillis() - start) / 1000.0);
-                return variantAnnotationList;
-            };
+            ProgressLogger progressLogger = newAnnotationProgressLogger(query, iteratorQueryOptions, options);
+            Task<Variant, VariantAnnotation> annotationTask = newAnnotationTask(progressLogger, executorService, options, numThreads);
 
             final DataWriter<VariantAnnotation> variantAnnotationDataWriter;
             if (avro) {
@@ -210,21 +209,140 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
                 variantAnnotationDataWriter = new VariantAnnotationJsonDataWriter(path, gzip);
             }
 
-            ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+            AdaptiveBatchSizeController batchSizeController = AdaptiveBatchSizeController.fromOptions("annotation",
+                    options, batchSize, numThreads);
+            ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
                     .setNumTasks(numThreads)
                     .setBatchSize(batchSize)
                     .setAbortOnFail(true)
-                    .setSorted(false).build();
-            ParallelTaskRunner<Variant, VariantAnnotation> parallelTaskRunner =
-                    new ParallelTaskRunner<>(variantDataReader, annotationTask, variantAnnotationDataWriter, config);
+                    .setSorted(false)).build();
+            ParallelTaskRunner<Variant, VariantAnnotation> parallelTaskRunner = new ParallelTaskRunner<>(
+                    batchSizeController.wrap(variantDataReader),
+                    batchSizeController.wrap(annotationTask),
+                    variantAnnotationDataWriter, config);
             parallelTaskRunner.run();
         } catch (ExecutionException e) {
             throw new VariantAnnotatorException("Error creating annotations", e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
         }
 
         return fileUri;
     }
 
+    /**
+     * Creates the variant annotations and loads them into the Variant DataBase in the same pipeline,
+     * without writing an intermediate file.
+     *
+     * @param query    Query for those variants to annotate.
+     * @param params   Specific params.
+     * @throws VariantAnnotatorException if there is a problem annotating the variants
+     * @throws StorageEngineException if there is a problem creating or running the {@link ParallelTaskRunner}
+     */
+    public void createAndLoadAnnotation(Query query, ObjectMap params) throws VariantAnnotatorException, StorageEngineException {
+        QueryOptions iteratorQueryOptions = getIteratorQueryOptions(query, params);
+
+        int batchSize = params.getInt(BATCH_SIZE, 200);
+        int numThreads = params.getInt(NUM_THREADS, 8);
+
+        ExecutorService executorService = newAnnotationExecutorService(params, numThreads);
+        try {
+            DataReader<Variant> variantDataReader = new VariantDBReader(dbAdaptor, query, iteratorQueryOptions);
+            ProgressLogger progressLogger = newAnnotationProgressLogger(query, iteratorQueryOptions, params);
+            Task<Variant, VariantAnnotation> annotationTask = newAnnotationTask(progressLogger, executorService, params, numThreads);
+
+            AdaptiveBatchSizeController batchSizeController = AdaptiveBatchSizeController.fromOptions("annotation and load",
+                    params, batchSize, numThreads);
+            ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
+                    .setNumTasks(numThreads)
+                    .setBatchSize(batchSize)
+                    .setAbortOnFail(true)
+                    .setSorted(false)).build();
+            ParallelTaskRunner<Variant, ?> ptr = buildAnnotateAndLoadParallelTaskRunner(
+                    batchSizeController.wrap(variantDataReader), annotationTask, config, params, batchSizeController);
+            ptr.run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error creating and loading variant annotation", e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Build the {@link ParallelTaskRunner} to annotate and load the annotations in the same run.
+     * The annotation progress is already logged by the annotation task.
+     *
+     * @param reader                Variants reader
+     * @param annotationTask        Task to annotate the variants
+     * @param config                ParallelTaskRunner config
+     * @param params                Specific params
+     * @param batchSizeController   Adaptive batch size controller
+     * @return  ParallelTaskRunner
+     */
+    protected ParallelTaskRunner<Variant, ?> buildAnnotateAndLoadParallelTaskRunner(
+            DataReader<Variant> reader, Task<Variant, VariantAnnotation> annotationTask, ParallelTaskRunner.Config config,
+            ObjectMap params, AdaptiveBatchSizeController batchSizeController) {
+        return new ParallelTaskRunner<>(reader,
+                () -> batchSizeController.wrap(annotationTask.then(newVariantAnnotationDBWriter(dbAdaptor, new QueryOptions(params)))),
+                null, config);
+    }
+
+    private ProgressLogger newAnnotationProgressLogger(Query query, QueryOptions iteratorQueryOptions, ObjectMap params) {
+        if (params.getBoolean(QueryOptions.SKIP_COUNT, false)) {
+            return new ProgressLogger("Annotated variants:", iteratorQueryOptions.getLong(QueryOptions.LIMIT, 0), 200);
+        } else {
+            return new ProgressLogger("Annotated variants:", () -> {
+                long limit = iteratorQueryOptions.getLong(QueryOptions.LIMIT, 0);
+                if (limit > 0) {
+                    return limit;
+                }
+                return dbAdaptor.count(query).first();
+            }, 200);
+        }
+    }
+
+    private ExecutorService newAnnotationExecutorService(ObjectMap params, int numThreads) {
+        int concurrentRequests = params.getInt(CONCURRENT_REQUESTS, numThreads);
+        if (concurrentRequests <= numThreads) {
+            // Each thread sends its own request.
+            return null;
+        } else {
+            logger.info("Annotating with {} concurrent requests", concurrentRequests);
+            return Executors.newFixedThreadPool(concurrentRequests, r -> {
+                Thread thread = new Thread(r, "annotation-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private Task<Variant, VariantAnnotation> newAnnotationTask(ProgressLogger progressLogger, ExecutorService executorService,
+                                                               ObjectMap params, int numThreads) {
+        int requestsPerBatch = (int) Math.ceil(params.getInt(CONCURRENT_REQUESTS, numThreads) / ((double) numThreads));
+        ConcurrentVariantAnnotationTask concurrentAnnotationTask = new ConcurrentVariantAnnotationTask(variantAnnotator,
+                executorService, requestsPerBatch,
+                params.getInt(RETRIES, RETRIES_DEFAULT),
+                params.getLong(RETRY_BACKOFF, RETRY_BACKOFF_DEFAULT));
+
+        return variantList -> {
+            List<VariantAnnotation> variantAnnotationList;
+            long start = System.currentTimeMillis();
+            logger.debug("Annotating batch of {} genomic variants.", variantList.size());
+            variantAnnotationList = concurrentAnnotationTask.apply(variantList);
+            progressLogger.increment(variantList.size(),
+                    () -> ", up to position " + variantList.get(variantList.size() - 1).toString());
+            numAnnotationsToLoad.addAndGet(variantList.size());
+
+            logger.debug("Annotated batch of {} genomic variants. Time: {}s", variantList.size(),
+                    (System.currentTimeMillis() - start) / 1000.0);
+            return variantAnnotationList;
+        };
+    }
+
     protected QueryOptions getIteratorQueryOptions(Query query, ObjectMap params) {
         QueryOptions iteratorQueryOptions;
         if (params == null) {
@@ -265,17 +383,20 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
         final int batchSize = params.getInt(DefaultVariantAnnotationManager.BATCH_SIZE, 100);
         final int numConsumers = params.getInt(DefaultVariantAnnotationManager.NUM_WRITERS, 6);
 
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+        AdaptiveBatchSizeController batchSizeController = AdaptiveBatchSizeController.fromOptions("load annotation",
+                params, batchSize, numConsumers);
+        ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
                 .setNumTasks(numConsumers)
                 .setBatchSize(batchSize)
                 .setAbortOnFail(true)
-                .setSorted(false).build();
+                .setSorted(false)).build();
         DataReader<VariantAnnotation> reader;
 
-        reader = newVariantAnnotationDataReader(uri);
+        reader = batchSizeController.wrap(newVariantAnnotationDataReader(uri));
         try {
             ProgressLogger progressLogger = new ProgressLogger("Loaded annotations: ", numAnnotationsToLoad.get());
-            ParallelTaskRunner<VariantAnnotation, ?> ptr = buildLoadAnnotationParallelTaskRunner(reader, config, progressLogger, params);
+            ParallelTaskRunner<VariantAnnotation, ?> ptr = buildLoadAnnotationParallelTaskRunner(reader, config, progressLogger, params,
+                    batchSizeController);
             ptr.run();
         } catch (ExecutionException e) {
             throw new StorageEngineException("Error loading variant annotation", e);
@@ -284,10 +405,11 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
     }
 
     protected ParallelTaskRunner<VariantAnnotation, ?> buildLoadAnnotationParallelTaskRunner(
-            DataReader<VariantAnnotation> reader, ParallelTaskRunner.Config config, ProgressLogger progressLogger, ObjectMap params) {
+            DataReader<VariantAnnotation> reader, ParallelTaskRunner.Config config, ProgressLogger progressLogger, ObjectMap params,
+            AdaptiveBatchSizeController batchSizeController) {
         return new ParallelTaskRunner<>(reader,
-                        () -> newVariantAnnotationDBWriter(dbAdaptor, new QueryOptions(params))
-                                .setProgressLogger(progressLogger), null, config);
+                        () -> batchSizeController.wrap(newVariantAnnotationDBWriter(dbAdaptor, new QueryOptions(params))
+                                .setProgressLogger(progressLogger)), null, config);
     }
 
     protected DataReader<VariantAnnotation> newVariantAnnotationDataReader(URI uri) {
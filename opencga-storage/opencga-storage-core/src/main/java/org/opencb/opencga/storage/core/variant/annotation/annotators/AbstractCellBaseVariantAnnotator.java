@@ -29,10 +29,11 @@ import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorExcept
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.GROUP_NAME;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.VARIANT_ID;
@@ -47,6 +48,11 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     public static final String ANNOTATOR_CELLBASE_EXCLUDE = "annotator.cellbase.exclude";
     // Imprecise variants supported by cellbase (REST only)
     public static final String ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS = "annotator.cellbase.imprecise_variants";
+    // Local disk-backed annotation cache, shared between projects annotated with the same CellBase
+    public static final String ANNOTATOR_CELLBASE_LOCAL_CACHE = "annotator.cellbase.local_cache";
+    public static final String ANNOTATOR_CELLBASE_LOCAL_CACHE_PATH = "annotator.cellbase.local_cache.path";
+    public static final String ANNOTATOR_CELLBASE_LOCAL_CACHE_MEMORY_SIZE = "annotator.cellbase.local_cache.memory_size";
+    public static final int ANNOTATOR_CELLBASE_LOCAL_CACHE_MEMORY_SIZE_DEFAULT = 50000;
     public static final int CELLBASE_VARIANT_THRESHOLD = 5000;
 
     protected static Logger logger = LoggerFactory.getLogger(AbstractCellBaseVariantAnnotator.class);
@@ -55,6 +61,8 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     protected final String cellbaseVersion;
     protected final QueryOptions queryOptions;
     protected final boolean impreciseVariants;
+    private final VariantAnnotationCache cache;
+    private volatile boolean cacheSourceVersionChecked = false;
 
     public AbstractCellBaseVariantAnnotator(StorageConfiguration storageConfiguration, ProjectMetadata projectMetadata, ObjectMap params)
             throws VariantAnnotatorException {
@@ -80,6 +88,30 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
         checkNotNull(species, "species");
         checkNotNull(assembly, "assembly");
 
+        cache = openCache(params);
+    }
+
+    private VariantAnnotationCache openCache(ObjectMap params) {
+        if (!params.getBoolean(ANNOTATOR_CELLBASE_LOCAL_CACHE, false)) {
+            return null;
+        }
+        String basePath = params.getString(ANNOTATOR_CELLBASE_LOCAL_CACHE_PATH,
+                Paths.get(System.getProperty("java.io.tmpdir"), "opencga-annotation-cache").toString());
+        // One cache for each combination of species, assembly, cellbase version and include/exclude
+        String include = queryOptions.getString(QueryOptions.INCLUDE, "");
+        String exclude = queryOptions.getString(QueryOptions.EXCLUDE, "");
+        String name = (species + '_' + assembly + '_' + cellbaseVersion).replaceAll("[^A-Za-z0-9._-]", "_")
+                + '_' + Integer.toHexString((include + '|' + exclude).hashCode());
+        Path path = Paths.get(basePath).resolve(name);
+        int memorySize = params.getInt(ANNOTATOR_CELLBASE_LOCAL_CACHE_MEMORY_SIZE, ANNOTATOR_CELLBASE_LOCAL_CACHE_MEMORY_SIZE_DEFAULT);
+        try {
+            VariantAnnotationCache cache = VariantAnnotationCache.open(path, memorySize);
+            logger.info("Using local annotation cache at {}", cache.getPath());
+            return cache;
+        } catch (IOException e) {
+            logger.warn("Unable to open local annotation cache at " + path + ". Annotating without local cache.", e);
+            return null;
+        }
     }
 
     protected static void checkNotNull(String value, String name) throws VariantAnnotatorException {
@@ -100,7 +132,99 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     @Override
     public final List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
         List<Variant> nonStructuralVariations = filterStructuralVariants(variants);
-        return getVariantAnnotationList(variants, annotateFiltered(nonStructuralVariations));
+        if (cache == null) {
+            return getVariantAnnotationList(variants, annotateFiltered(nonStructuralVariations));
+        } else {
+            return annotateWithCache(variants, nonStructuralVariations);
+        }
+    }
+
+    private List<VariantAnnotation> annotateWithCache(List<Variant> variants, List<Variant> nonStructuralVariations)
+            throws VariantAnnotatorException {
+        checkCacheSourceVersion();
+        try {
+            Map<String, VariantAnnotation> cached = cache.get(nonStructuralVariations.stream()
+                    .map(Variant::toString)
+                    .collect(Collectors.toList()));
+            List<Variant> missingVariants = nonStructuralVariations.stream()
+                    .filter(variant -> !cached.containsKey(variant.toString()))
+                    .collect(Collectors.toList());
+            logger.debug("Local annotation cache: {} hits, {} misses", cached.size(), missingVariants.size());
+
+            Map<String, VariantAnnotation> annotated = new HashMap<>(missingVariants.size());
+            if (!missingVariants.isEmpty()) {
+                List<VariantAnnotation> annotations = getVariantAnnotationList(missingVariants, annotateFiltered(missingVariants));
+                // Annotations are sorted, but some variants may have been skipped
+                Iterator<Variant> iterator = missingVariants.iterator();
+                for (VariantAnnotation annotation : annotations) {
+                    Variant variant = iterator.next();
+                    while (!sameVariant(variant, annotation)) {
+                        variant = iterator.next();
+                    }
+                    annotated.put(variant.toString(), annotation);
+                }
+                cache.put(annotated);
+            }
+
+            List<VariantAnnotation> variantAnnotationList = new ArrayList<>(variants.size());
+            for (Variant variant : variants) {
+                String key = variant.toString();
+                VariantAnnotation annotation = cached.get(key);
+                if (annotation == null) {
+                    annotation = annotated.get(key);
+                }
+                if (annotation != null) {
+                    variantAnnotationList.add(annotation);
+                }
+            }
+            return variantAnnotationList;
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error accessing local annotation cache at " + cache.getPath(), e);
+        }
+    }
+
+    /**
+     * Drop the local cache if the annotation sources changed since it was created. Checked only once per annotator.
+     *
+     * @throws VariantAnnotatorException if the source version can not be read
+     */
+    private void checkCacheSourceVersion() throws VariantAnnotatorException {
+        if (!cacheSourceVersionChecked) {
+            synchronized (this) {
+                if (!cacheSourceVersionChecked) {
+                    try {
+                        String sourceVersion = getVariantAnnotatorSourceVersion()
+                                .stream()
+                                .map(ObjectMap::toJson)
+                                .collect(Collectors.joining(","));
+                        cache.checkSourceVersion(sourceVersion);
+                    } catch (IOException e) {
+                        throw new VariantAnnotatorException("Unable to check the annotation source version of the local cache", e);
+                    }
+                    cacheSourceVersionChecked = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the annotation belongs to the given variant. Structural variants carry the original variant id,
+     * see {@link #getVariantAnnotationList}. Otherwise, compare the coordinates but the end, as CellBase may report
+     * a different end, e.g. for insertions.
+     */
+    private static boolean sameVariant(Variant variant, VariantAnnotation variantAnnotation) {
+        if (variantAnnotation.getAdditionalAttributes() != null
+                && variantAnnotation.getAdditionalAttributes().containsKey(GROUP_NAME.key())) {
+            String variantId = variantAnnotation.getAdditionalAttributes().get(GROUP_NAME.key()).getAttribute().get(VARIANT_ID.key());
+            if (variantId != null) {
+                return variantId.equals(variant.toString());
+            }
+        }
+        return !variant.isSV()
+                && variant.getChromosome().equals(variantAnnotation.getChromosome())
+                && variant.getStart().equals(variantAnnotation.getStart())
+                && variant.getReference().equals(variantAnnotation.getReference())
+                && variant.getAlternate().equals(variantAnnotation.getAlternate());
     }
 
     protected abstract List<QueryResult<VariantAnnotation>> annotateFiltered(List<Variant> variants) throws VariantAnnotatorException;
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation.annotators;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantAnnotationMixin;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local disk-backed cache of variant annotations, with an in-memory LRU in front of it.
+ *
+ * Annotations are stored in an embedded RocksDB, serialized as JSON. Each cache is a different directory, so annotations
+ * obtained with a different annotator configuration (version, species, assembly, include/exclude...) are never mixed.
+ * The whole cache is dropped when the version of the annotation sources changes. See {@link #checkSourceVersion(String)}.
+ *
+ * A RocksDB can only be opened once per process, so the caches are shared by all the annotators that point to the same
+ * directory. Use {@link #open(Path, int)} to get an instance.
+ */
+public final class VariantAnnotationCache {
+
+    private static final byte[] SOURCE_VERSION_KEY = "_SOURCE_VERSION".getBytes(StandardCharsets.UTF_8);
+    private static final Map<Path, VariantAnnotationCache> CACHES = new ConcurrentHashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(VariantAnnotationCache.class);
+
+    static {
+        RocksDB.loadLibrary();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> CACHES.values().forEach(VariantAnnotationCache::close)));
+    }
+
+    private final Path path;
+    // Keep the serialized annotations, so callers never share the same instance
+    private final Map<String, byte[]> lru;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ObjectReader objectReader;
+    private final ObjectWriter objectWriter;
+    private Options options;
+    private RocksDB db;
+
+    private VariantAnnotationCache(Path path, int memorySize) throws IOException {
+        this.path = path;
+        // Same codec in both directions. Avoid Avro's toString, as it does not use the mixin.
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.addMixIn(VariantAnnotation.class, VariantAnnotationMixin.class);
+        objectMapper.configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
+        objectReader = objectMapper.readerFor(VariantAnnotation.class);
+        objectWriter = objectMapper.writerFor(VariantAnnotation.class);
+        lru = new LinkedHashMap<String, byte[]>(Math.max(16, memorySize / 4), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > memorySize;
+            }
+        };
+        openDB();
+    }
+
+    /**
+     * Get the cache stored in the given directory. Creates the cache if needed.
+     *
+     * @param path          Directory of the cache
+     * @param memorySize    Max number of annotations to keep in memory
+     * @return              the cache
+     * @throws IOException  if the cache can not be opened. e.g. it is in use by another process
+     */
+    public static VariantAnnotationCache open(Path path, int memorySize) throws IOException {
+        Path absolutePath = path.toAbsolutePath().normalize();
+        synchronized (CACHES) {
+            VariantAnnotationCache cache = CACHES.get(absolutePath);
+            if (cache == null) {
+                cache = new VariantAnnotationCache(absolutePath, memorySize);
+                CACHES.put(absolutePath, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Drop all the cached annotations if the given source version is not the one used to build the cache.
+     *
+     * @param sourceVersion Version of the annotation sources
+     * @return              if the cache was dropped
+     * @throws IOException  on error accessing the cache
+     */
+    public boolean checkSourceVersion(String sourceVersion) throws IOException {
+        byte[] newSourceVersion = sourceVersion.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            byte[] currentSourceVersion = db.get(SOURCE_VERSION_KEY);
+            boolean drop = currentSourceVersion != null
+                    && !sourceVersion.equals(new String(currentSourceVersion, StandardCharsets.UTF_8));
+            if (drop) {
+                logger.info("Annotation sources changed. Drop local annotation cache at {}", path);
+                closeDB();
+                try (Options destroyOptions = new Options()) {
+                    RocksDB.destroyDB(path.toString(), destroyOptions);
+                }
+                synchronized (lru) {
+                    lru.clear();
+                }
+                openDB();
+            }
+            if (drop || currentSourceVersion == null) {
+                db.put(SOURCE_VERSION_KEY, newSourceVersion);
+            }
+            return drop;
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the cached annotations of the given variants.
+     *
+     * @param variants  Variant ids
+     * @return          Cached annotations. Variants not in the cache are not present in the map.
+     * @throws IOException  on error accessing the cache
+     */
+    public Map<String, VariantAnnotation> get(Collection<String> variants) throws IOException {
+        Map<String, byte[]> values = new HashMap<>(variants.size());
+        List<String> missing = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            synchronized (lru) {
+                for (String variant : variants) {
+                    byte[] value = lru.get(variant);
+                    if (value == null) {
+                        missing.add(variant);
+                    } else {
+                        values.put(variant, value);
+                    }
+                }
+            }
+            if (!missing.isEmpty()) {
+                List<byte[]> keys = new ArrayList<>(missing.size());
+                for (String variant : missing) {
+                    keys.add(variant.getBytes(StandardCharsets.UTF_8));
+                }
+                Map<String, byte[]> fromDisk = new HashMap<>();
+                for (Map.Entry<byte[], byte[]> entry : db.multiGet(keys).entrySet()) {
+                    fromDisk.put(new String(entry.getKey(), StandardCharsets.UTF_8), entry.getValue());
+                }
+                synchronized (lru) {
+                    lru.putAll(fromDisk);
+                }
+                values.putAll(fromDisk);
+            }
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, VariantAnnotation> annotations = new HashMap<>(values.size());
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            annotations.put(entry.getKey(), deserialize(entry.getValue()));
+        }
+        return annotations;
+    }
+
+    /**
+     * Add annotations to the cache.
+     *
+     * @param annotations   Annotations by variant id
+     * @throws IOException  on error accessing the cache
+     */
+    public void put(Map<String, VariantAnnotation> annotations) throws IOException {
+        if (annotations.isEmpty()) {
+            return;
+        }
+        lock.readLock().lock();
+        try (WriteBatch writeBatch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            Map<String, byte[]> values = new HashMap<>(annotations.size());
+            for (Map.Entry<String, VariantAnnotation> entry : annotations.entrySet()) {
+                byte[] value = serialize(entry.getValue());
+                values.put(entry.getKey(), value);
+                writeBatch.put(entry.getKey().getBytes(StandardCharsets.UTF_8), value);
+            }
+            db.write(writeOptions, writeBatch);
+            synchronized (lru) {
+                lru.putAll(values);
+            }
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private void close() {
+        lock.writeLock().lock();
+        try {
+            closeDB();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openDB() throws IOException {
+        Files.createDirectories(path);
+        options = new Options().setCreateIfMissing(true);
+        try {
+            db = RocksDB.open(options, path.toString());
+        } catch (RocksDBException e) {
+            options.close();
+            throw new IOException("Unable to open local annotation cache at " + path, e);
+        }
+    }
+
+    private void closeDB() {
+        if (db != null) {
+            db.close();
+            db = null;
+        }
+        if (options != null) {
+            options.close();
+            options = null;
+        }
+    }
+
+    private byte[] serialize(VariantAnnotation annotation) throws IOException {
+        return objectWriter.writeValueAsBytes(annotation);
+    }
+
+    private VariantAnnotation deserialize(byte[] bytes) throws IOException {
+        return objectReader.readValue(bytes);
+    }
+
+}
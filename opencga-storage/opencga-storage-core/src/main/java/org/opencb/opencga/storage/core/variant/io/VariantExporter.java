@@ -18,9 +18,12 @@ package org.opencb.opencga.storage.core.variant.io;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataWriter;
@@ -29,6 +32,10 @@ import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.analysis.VariantAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.slf4j.Logger;
@@ -40,11 +47,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.isValidParam;
+
 /**
  * Prints the result of a given query in the selected output format, and the associated metadata.
  *
@@ -56,6 +68,12 @@ import java.util.zip.GZIPOutputStream;
 public class VariantExporter {
 
     public static final String METADATA_FILE_EXTENSION = ".meta.json.gz";
+    public static final String MANIFEST_FILE_EXTENSION = ".manifest.json";
+    // Numerical chromosomes first, then sorted alphabetically.
+    private static final Comparator<Region> REGION_COMPARATOR = Comparator
+            .comparingInt((Region region) -> chromosomeAsInt(region.getChromosome()))
+            .thenComparing(Region::getChromosome)
+            .thenComparingInt(Region::getStart);
     protected final VariantStorageEngine engine;
     protected final VariantWriterFactory variantWriterFactory;
     protected final VariantMetadataFactory metadataFactory;
@@ -74,6 +92,11 @@ public class VariantExporter {
 
     /**
      * Exports the result of the given query and the associated metadata.
+     *
+     * If {@link VariantStorageEngine.Options#EXPORT_THREADS} is greater than 1, the query will be split in region shards,
+     * that will be exported in parallel. Depending on the output format, the shards will be concatenated in genomic order
+     * (VCF and JSON), or written as independent part files described by a manifest file (AVRO and FLAT_PARQUET).
+     *
      * @param outputFileUri Optional output file. If null or empty, will print into the Standard output. Won't export any metadata.
      * @param outputFormat  Variant Output format.
      * @param query         Query with the variants to export
@@ -89,10 +112,27 @@ public class VariantExporter {
             outputFile = outputFileUri.getPath();
         }
         outputFile = VariantWriterFactory.checkOutput(outputFile, outputFormat);
+        if (query == null) {
+            query = new Query();
+        }
+        if (queryOptions == null) {
+            queryOptions = new QueryOptions();
+        }
+
+        List<Region> shards;
+        if (VariantWriterFactory.isStandardOutput(outputFile)) {
+            shards = Collections.emptyList();
+        } else {
+            shards = getShards(outputFormat, query, queryOptions);
+        }
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat)) {
-            boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
-            exportData(os, outputFormat, query, queryOptions, logProgress);
+        if (shards.size() > 1) {
+            exportShards(outputFile, outputFormat, query, queryOptions, shards);
+        } else {
+            try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat)) {
+                boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
+                exportData(os, outputFormat, query, queryOptions, logProgress);
+            }
         }
         if (metadataFactory != null && !VariantWriterFactory.isStandardOutput(outputFile)) {
             VariantMetadata metadata = metadataFactory.makeVariantMetadata(query, queryOptions);
@@ -110,36 +150,45 @@ public class VariantExporter {
             queryOptions = new QueryOptions();
         }
 
+        ProgressLogger progressLogger = logProgress ? newProgressLogger(query, queryOptions) : null;
+
+        VariantDBReader variantDBReader = exportData(outputStream, outputFormat, query, queryOptions, progressLogger, true, null,
+                Integer.MIN_VALUE);
+
+        logger.info("Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+        logger.info("Time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+
+    }
+
+    private VariantDBReader exportData(OutputStream outputStream, VariantOutputFormat outputFormat, Query query,
+                                       QueryOptions queryOptions, @Nullable ProgressLogger progressLogger, boolean writeHeader,
+                                       @Nullable AtomicLong numVariants, int acceptStart)
+            throws StorageEngineException, IOException {
         // DataReader
         VariantDBReader variantDBReader = new VariantDBReader(engine, query, queryOptions);
 
         // Task<Variant, Variant>
-        Task<Variant, Variant> progressTask;
-        if (logProgress) {
-            final Query finalQuery = query;
-            final QueryOptions finalQueryOptions = queryOptions;
-            ProgressLogger progressLogger = new ProgressLogger("Export variants", () -> {
-                if (finalQueryOptions.getBoolean(QueryOptions.SKIP_COUNT)) {
-                    return 0L;
-                }
-                Long count = engine.count(finalQuery).first();
-                long limit = finalQueryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
-                long skip = finalQueryOptions.getLong(QueryOptions.SKIP, 0);
-                count = Math.min(limit, count - skip);
-                return count;
-            }, 200);
-            progressTask = batch -> {
+        Task<Variant, Variant> progressTask = variants -> {
+            List<Variant> batch = acceptStart == Integer.MIN_VALUE
+                    ? variants
+                    : variants.stream().filter(variant -> variant.getStart() >= acceptStart).collect(Collectors.toList());
+            if (numVariants != null) {
+                numVariants.addAndGet(batch.size());
+            }
+            if (progressLogger != null && !batch.isEmpty()) {
                 progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
-                return batch;
-            };
-        } else {
-            progressTask = batch -> batch;
-        }
+            }
+            return batch;
+        };
 
         // DataWriter
         DataWriter<Variant> variantDataWriter = variantWriterFactory.newDataWriter(outputFormat, outputStream, query, queryOptions);
+        if (!writeHeader && variantDataWriter instanceof VcfDataWriter) {
+            ((VcfDataWriter<Variant>) variantDataWriter).setWriteHeader(false);
+        }
 
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(1).setBatchSize(10).build();
+        int batchSize = getOptions(queryOptions).getInt(Options.EXPORT_BATCH_SIZE.key(), Options.EXPORT_BATCH_SIZE.defaultValue());
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(1).setBatchSize(batchSize).build();
 
         ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>(variantDBReader, progressTask, variantDataWriter, config);
         try {
@@ -147,10 +196,245 @@ public class VariantExporter {
         } catch (ExecutionException e) {
             throw new StorageEngineException("Error exporting variants", e);
         }
+        return variantDBReader;
+    }
 
-        logger.info("Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + 's');
-        logger.info("Time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+    /**
+     * Export each region shard in parallel.
+     *
+     * Formats with a plain stream layout (VCF, JSON) are written into temporary part files that are concatenated
+     * in order into the output file. Gzipped parts are independent gzip members, so they can be concatenated without
+     * being decompressed. These are not BGZF blocks, so the output can not be indexed with tabix.
+     * The VCF header is only written by the first shard.
+     *
+     * The query returns the variants overlapping each shard, which may start before it. Those starting within the previous
+     * shard of the same chromosome were already exported there, so they are skipped.
+     *
+     * Container formats (AVRO and FLAT_PARQUET) can not be concatenated, so each shard is written in its own part file,
+     * and a manifest file describing the parts is written next to the output file.
+     *
+     * @param outputFile    Output file
+     * @param outputFormat  Variant Output format.
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @param shards        Regions to export, in genomic order
+     * @throws IOException  If there is any IO error
+     * @throws StorageEngineException  If there is any error exporting variants
+     */
+    protected void exportShards(String outputFile, VariantOutputFormat outputFormat, Query query, QueryOptions queryOptions,
+                                List<Region> shards)
+            throws IOException, StorageEngineException {
+        int numThreads = Math.min(shards.size(), getExportThreads(queryOptions));
+        boolean writeParts = isPartsOutput(outputFormat);
+        logger.info("Export " + shards.size() + " region shards using " + numThreads + " threads into "
+                + (writeParts ? "independent part files" : "a single output file"));
+
+        ProgressLogger progressLogger = newProgressLogger(query, queryOptions);
+        List<String> partFiles = new ArrayList<>(shards.size());
+        List<AtomicLong> partNumVariants = new ArrayList<>(shards.size());
+        List<Future<VariantDBReader>> futures = new ArrayList<>(shards.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        boolean success = false;
+        try {
+            Region previousRegion = null;
+            for (int i = 0; i < shards.size(); i++) {
+                Region region = shards.get(i);
+                // Shards are sorted and merged, so they do not overlap
+                int acceptStart = previousRegion != null && previousRegion.getChromosome().equals(region.getChromosome())
+                        ? previousRegion.getEnd() + 1
+                        : Integer.MIN_VALUE;
+                previousRegion = region;
+                String partFile = writeParts ? getPartFileName(outputFile, outputFormat, i) : outputFile + ".part-" + i + ".tmp";
+                AtomicLong numVariants = new AtomicLong();
+                boolean writeHeader = writeParts || i == 0;
+                Query shardQuery = new Query(query);
+                shardQuery.put(VariantQueryParam.REGION.key(), region);
+                QueryOptions shardQueryOptions = new QueryOptions(queryOptions);
+
+                partFiles.add(partFile);
+                partNumVariants.add(numVariants);
+                futures.add(executor.submit(() -> {
+                    try (OutputStream os = VariantWriterFactory.getOutputStream(partFile, outputFormat)) {
+                        return exportData(os, outputFormat, shardQuery, shardQueryOptions, progressLogger, writeHeader, numVariants,
+                                acceptStart);
+                    }
+                }));
+            }
+            executor.shutdown();
+
+            for (int i = 0; i < futures.size(); i++) {
+                VariantDBReader variantDBReader = futures.get(i).get();
+                logger.info("Shard " + shards.get(i) + " : " + partNumVariants.get(i).get() + " variants."
+                        + " Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + "s,"
+                        + " time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+            }
+            success = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted exporting variants", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageEngineException) {
+                throw (StorageEngineException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new StorageEngineException("Error exporting variants", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (!writeParts) {
+                // Parts are concatenated only if all of them finished. Make sure no temporary file remains in case of error
+                concatenateParts(partFiles, outputFile, success);
+            }
+        }
+
+        if (writeParts) {
+            writeManifest(outputFile, outputFormat, shards, partFiles, partNumVariants);
+        }
+    }
+
+    private void concatenateParts(List<String> partFiles, String outputFile, boolean success) throws IOException {
+        try {
+            if (success) {
+                try (OutputStream os = new FileOutputStream(outputFile)) {
+                    for (String partFile : partFiles) {
+                        Files.copy(Paths.get(partFile), os);
+                    }
+                }
+            }
+        } finally {
+            for (String partFile : partFiles) {
+                Files.deleteIfExists(Paths.get(partFile));
+            }
+        }
+    }
+
+    protected void writeManifest(String outputFile, VariantOutputFormat outputFormat, List<Region> shards, List<String> partFiles,
+                                 List<AtomicLong> partNumVariants) throws IOException {
+        List<ObjectMap> parts = new ArrayList<>(partFiles.size());
+        for (int i = 0; i < partFiles.size(); i++) {
+            parts.add(new ObjectMap("file", Paths.get(partFiles.get(i)).getFileName().toString())
+                    .append("region", shards.get(i).toString())
+                    .append("numVariants", partNumVariants.get(i).get()));
+        }
+        ObjectMap manifest = new ObjectMap("format", outputFormat.toString())
+                .append("metadata", Paths.get(outputFile + METADATA_FILE_EXTENSION).getFileName().toString())
+                .append("parts", parts);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(Paths.get(outputFile + MANIFEST_FILE_EXTENSION).toFile(), manifest);
+        logger.info("Output manifest file : " + outputFile + MANIFEST_FILE_EXTENSION);
+    }
+
+    /**
+     * Split the query in region shards, sorted in genomic order.
+     *
+     * If the query already contains a list of regions, each region will be a shard. Otherwise, the chromosomes
+     * are obtained from the stats of the loaded files.
+     *
+     * @param outputFormat  Variant Output format.
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @return              List of shards. Empty if the query can not be split.
+     * @throws StorageEngineException  If there is any error reading the metadata
+     */
+    protected List<Region> getShards(VariantOutputFormat outputFormat, Query query, QueryOptions queryOptions)
+            throws StorageEngineException {
+        if (getExportThreads(queryOptions) <= 1 || !isShardable(outputFormat)) {
+            return Collections.emptyList();
+        }
+        // Adding a region to these filters would change the result of the query
+        if (isValidParam(query, VariantQueryParam.ID)
+                || isValidParam(query, VariantQueryParam.GENE)
+                || isValidParam(query, VariantQueryParam.ANNOT_XREF)
+                || isValidParam(query, VariantQueryUtils.ANNOT_GENE_REGIONS)) {
+            logger.info("Unable to split the export query in region shards");
+            return Collections.emptyList();
+        }
+        // Pagination and sorting are global to the whole query
+        if (queryOptions.containsKey(QueryOptions.LIMIT) || queryOptions.containsKey(QueryOptions.SKIP)
+                || queryOptions.getBoolean(QueryOptions.SORT)) {
+            return Collections.emptyList();
+        }
+
+        List<Region> regions;
+        if (isValidParam(query, VariantQueryParam.REGION)) {
+            regions = VariantQueryUtils.mergeRegions(Region.parseRegions(query.getString(VariantQueryParam.REGION.key())));
+        } else {
+            List<String> chromosomes = VariantAggregationExecutor.getLoadedChromosomes(engine.getStudyConfigurationManager());
+            if (chromosomes.isEmpty()) {
+                // Unknown chromosomes. Do not split, or some variants could be missing
+                logger.info("Missing chromosome stats. Unable to split the export query in region shards");
+                return Collections.emptyList();
+            }
+            regions = chromosomes.stream().map(Region::new).collect(Collectors.toList());
+        }
+        regions.sort(REGION_COMPARATOR);
+        return regions;
+    }
+
+    protected boolean isShardable(VariantOutputFormat outputFormat) {
+        switch (outputFormat) {
+            case VCF:
+            case VCF_GZ:
+            case JSON:
+            case JSON_GZ:
+            case AVRO:
+            case AVRO_GZ:
+            case AVRO_SNAPPY:
+            case FLAT_PARQUET:
+            case FLAT_PARQUET_GZ:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected boolean isPartsOutput(VariantOutputFormat outputFormat) {
+        switch (outputFormat) {
+            case AVRO:
+            case AVRO_GZ:
+            case AVRO_SNAPPY:
+            case FLAT_PARQUET:
+            case FLAT_PARQUET_GZ:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static String getPartFileName(String outputFile, VariantOutputFormat outputFormat, int part) {
+        String extension = '.' + outputFormat.getExtension();
+        String prefix = outputFile.endsWith(extension)
+                ? outputFile.substring(0, outputFile.length() - extension.length())
+                : outputFile;
+        return prefix + ".part-" + String.format("%05d", part) + extension;
+    }
+
+    private int getExportThreads(QueryOptions queryOptions) {
+        return getOptions(queryOptions).getInt(Options.EXPORT_THREADS.key(), Options.EXPORT_THREADS.defaultValue());
+    }
+
+    private ObjectMap getOptions(QueryOptions queryOptions) {
+        return engine.getMergedOptions(queryOptions);
+    }
+
+    private ProgressLogger newProgressLogger(Query query, QueryOptions queryOptions) {
+        return new ProgressLogger("Export variants", () -> {
+            if (queryOptions.getBoolean(QueryOptions.SKIP_COUNT)) {
+                return 0L;
+            }
+            Long count = engine.count(query).first();
+            long limit = queryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
+            long skip = queryOptions.getLong(QueryOptions.SKIP, 0);
+            count = Math.min(limit, count - skip);
+            return count;
+        }, 200);
+    }
 
+    private static int chromosomeAsInt(String chromosome) {
+        String chr = Region.normalizeChromosome(chromosome);
+        return StringUtils.isNumeric(chr) ? Integer.parseInt(chr) : Integer.MAX_VALUE;
     }
 
     protected void writeMetadata(VariantMetadata metadata, String output) throws IOException {
@@ -29,10 +29,12 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.io.avro.VariantAvroWriter;
 import org.opencb.opencga.storage.core.variant.io.json.VariantJsonWriter;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantParquetWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +44,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.INCLUDE_STUDY;
@@ -74,8 +77,10 @@ public class VariantWriterFactory {
         AVRO("avro"),
         AVRO_GZ("avro.gz"),
         AVRO_SNAPPY("avro.snappy"),
-        PARQUET("parquet"),
+        PARQUET("parquet"),                 // Avro schema. Only from the Hadoop MapReduce exporter
         PARQUET_GZ("parquet.gz"),
+        FLAT_PARQUET("flat.parquet"),       // Flat schema. See VariantParquetWriter
+        FLAT_PARQUET_GZ("flat.parquet.gz"),
         STATS("stats.tsv", false),
         STATS_GZ("stats.tsv.gz", false),
         CELLBASE("frequencies.json"),
@@ -200,7 +205,8 @@ public class VariantWriterFactory {
         }
 
         // If compressed a GZip output stream is used
-        if (gzip && outputFormat != VariantOutputFormat.AVRO_GZ) {
+        // Avro and Parquet compress the data internally
+        if (gzip && outputFormat != VariantOutputFormat.AVRO_GZ && outputFormat != VariantOutputFormat.FLAT_PARQUET_GZ) {
             outputStream = new GZIPOutputStream(outputStream);
         } else {
             outputStream = new BufferedOutputStream(outputStream);
@@ -250,6 +256,23 @@ public class VariantWriterFactory {
                 exporter = new VariantAvroWriter(VariantAvro.getClassSchema(), codecName, outputStream);
                 break;
 
+            case FLAT_PARQUET:
+            case FLAT_PARQUET_GZ:
+                Map<String, List<String>> samples = VariantQueryUtils.getSamplesMetadata(query, queryOptions, studyConfigurationManager);
+                exporter = new VariantParquetWriter(outputStream, outputFormat.isGzip(), samples,
+                        queryOptions.getInt(Options.EXPORT_PARQUET_ROW_GROUP_REGION_SIZE.key(),
+                                Options.EXPORT_PARQUET_ROW_GROUP_REGION_SIZE.defaultValue()),
+                        queryOptions.getInt(Options.EXPORT_PARQUET_ROW_GROUP_MAX_ROWS.key(),
+                                Options.EXPORT_PARQUET_ROW_GROUP_MAX_ROWS.defaultValue()),
+                        queryOptions.getInt(Options.EXPORT_PARQUET_ROW_GROUP_MAX_BYTES.key(),
+                                Options.EXPORT_PARQUET_ROW_GROUP_MAX_BYTES.defaultValue()));
+                break;
+
+            case PARQUET:
+            case PARQUET_GZ:
+                throw new IllegalArgumentException("Output format " + outputFormat + " not supported in local files. "
+                        + "Use " + VariantOutputFormat.FLAT_PARQUET + " instead");
+
             case STATS_GZ:
             case STATS:
                 StudyConfiguration sc = getStudyConfiguration(query, true);
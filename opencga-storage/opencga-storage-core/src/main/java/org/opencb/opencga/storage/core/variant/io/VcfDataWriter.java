@@ -31,6 +31,7 @@ public abstract class VcfDataWriter<T> implements DataWriter<T> {
     private final OutputStream outputStream;
     private VariantContextWriter variantContextWriter;
     private VariantContextConverter<T> converter;
+    private boolean writeHeader = true;
 
     protected VcfDataWriter(VariantMetadata metadata, List<String> annotations, OutputStream outputStream) {
         this.metadata = metadata;
@@ -38,6 +39,17 @@ public abstract class VcfDataWriter<T> implements DataWriter<T> {
         this.outputStream = outputStream;
     }
 
+    /**
+     * Skip the VCF header. Used when the output is going to be concatenated after another VCF.
+     *
+     * @param writeHeader   Write the header in {@link #pre()}
+     * @return              this
+     */
+    public VcfDataWriter<T> setWriteHeader(boolean writeHeader) {
+        this.writeHeader = writeHeader;
+        return this;
+    }
+
     public static VcfDataWriter<Variant> newWriterForAvro(VariantMetadata metadata, List<String> annotations, OutputStream outputStream) {
         return new VariantVcfDataWriter(metadata, annotations, outputStream);
     }
@@ -80,7 +92,11 @@ public abstract class VcfDataWriter<T> implements DataWriter<T> {
         VCFHeader vcfHeader = new VariantStudyMetadataToVCFHeaderConverter().convert(metadata.getStudies().get(0), annotations);
         variantContextWriter = VcfUtils.createVariantContextWriter(outputStream, vcfHeader.getSequenceDictionary(),
                 Options.ALLOW_MISSING_FIELDS_IN_HEADER);
-        variantContextWriter.writeHeader(vcfHeader);
+        if (writeHeader) {
+            variantContextWriter.writeHeader(vcfHeader);
+        } else {
+            variantContextWriter.setHeader(vcfHeader);
+        }
         converter = newConverter(study, samples, annotations);
 
         return true;
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.parquet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal writer of the Thrift compact protocol, enough to serialize the Parquet page headers and file footer.
+ */
+final class ThriftCompactWriter {
+
+    static final byte TYPE_I32 = 5;
+    static final byte TYPE_I64 = 6;
+    static final byte TYPE_BINARY = 8;
+    static final byte TYPE_LIST = 9;
+    static final byte TYPE_STRUCT = 12;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Deque<Short> lastFieldIds = new ArrayDeque<>();
+    private short lastFieldId = 0;
+
+    ThriftCompactWriter structBegin() {
+        lastFieldIds.push(lastFieldId);
+        lastFieldId = 0;
+        return this;
+    }
+
+    ThriftCompactWriter structEnd() {
+        // Field stop
+        out.write(0);
+        lastFieldId = lastFieldIds.pop();
+        return this;
+    }
+
+    ThriftCompactWriter fieldBegin(int fieldId, byte type) {
+        int delta = fieldId - lastFieldId;
+        if (delta > 0 && delta <= 15) {
+            out.write(delta << 4 | type);
+        } else {
+            out.write(type);
+            writeVarInt(zigzag32(fieldId));
+        }
+        lastFieldId = (short) fieldId;
+        return this;
+    }
+
+    ThriftCompactWriter listBegin(byte elementType, int size) {
+        if (size < 15) {
+            out.write(size << 4 | elementType);
+        } else {
+            out.write(0xF0 | elementType);
+            writeVarInt(size);
+        }
+        return this;
+    }
+
+    ThriftCompactWriter i32(int value) {
+        writeVarInt(zigzag32(value));
+        return this;
+    }
+
+    ThriftCompactWriter i64(long value) {
+        writeVarLong(value << 1 ^ value >> 63);
+        return this;
+    }
+
+    ThriftCompactWriter binary(byte[] value) {
+        writeVarInt(value.length);
+        out.write(value, 0, value.length);
+        return this;
+    }
+
+    ThriftCompactWriter string(String value) {
+        return binary(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append data already serialized, like a complete struct inside a list.
+     *
+     * @param data Serialized data
+     * @return this
+     */
+    ThriftCompactWriter raw(byte[] data) {
+        out.write(data, 0, data.length);
+        return this;
+    }
+
+    ThriftCompactWriter i32Field(int fieldId, int value) {
+        return fieldBegin(fieldId, TYPE_I32).i32(value);
+    }
+
+    ThriftCompactWriter i64Field(int fieldId, long value) {
+        return fieldBegin(fieldId, TYPE_I64).i64(value);
+    }
+
+    ThriftCompactWriter binaryField(int fieldId, byte[] value) {
+        return fieldBegin(fieldId, TYPE_BINARY).binary(value);
+    }
+
+    ThriftCompactWriter stringField(int fieldId, String value) {
+        return fieldBegin(fieldId, TYPE_BINARY).string(value);
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private static int zigzag32(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.parquet;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.variant.analysis.GenotypeMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes variants into a flat Parquet file, without depending on the Parquet or Hadoop libraries.
+ *
+ * Columns:
+ * <ul>
+ *     <li>chromosome, start, end, reference, alternate, type</li>
+ *     <li>annotation_id, genes, consequence_types : Selected annotation fields, as comma separated values. Null if not annotated</li>
+ *     <li>gt_{study} : One byte per sample with the encoded genotype. Null if the variant is not in the study.
+ *     Samples are listed in the key-value metadata "opencga.samples.gt_{study}"</li>
+ * </ul>
+ *
+ * A new row group is started for every chromosome and every genomic window of {@code rowGroupRegionSize} bases, or after
+ * {@code rowGroupMaxRows} rows or {@code rowGroupMaxBytes} buffered bytes. Each column chunk carries min/max statistics, so readers can skip row groups by
+ * chromosome and position. Each row group has one single PLAIN encoded data page per column.
+ */
+public class VariantParquetWriter implements DataWriter<Variant> {
+
+    public static final byte GT_HOM_REF = 0;
+    public static final byte GT_HET = 1;
+    public static final byte GT_HOM_ALT = 2;
+    public static final byte GT_MISSING = 3;
+    public static final byte GT_OTHER = 4;
+    public static final String GT_ENCODING = "0:HOM_REF,1:HET,2:HOM_ALT,3:MISSING,4:OTHER";
+    public static final String SAMPLES_METADATA_PREFIX = "opencga.samples.";
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    // Parquet format constants
+    private static final int TYPE_INT32 = 1;
+    private static final int TYPE_BYTE_ARRAY = 6;
+    private static final int REQUIRED = 0;
+    private static final int OPTIONAL = 1;
+    private static final int CONVERTED_TYPE_UTF8 = 0;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_RLE = 3;
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+    private static final int PAGE_TYPE_DATA = 0;
+
+    private final OutputStream outputStream;
+    private final boolean gzip;
+    private final Map<String, List<String>> samples;
+    private final int rowGroupRegionSize;
+    private final int rowGroupMaxRows;
+    private final long rowGroupMaxBytes;
+
+    private final List<Column> columns = new ArrayList<>();
+    private final Column chromosome;
+    private final Column start;
+    private final Column end;
+    private final Column reference;
+    private final Column alternate;
+    private final Column type;
+    private final Column annotationId;
+    private final Column genes;
+    private final Column consequenceTypes;
+    private final Map<String, Column> genotypes = new LinkedHashMap<>();
+    private final List<byte[]> rowGroups = new ArrayList<>();
+
+    private long position;
+    private long numRows;
+    private int rowGroupRows;
+    private String rowGroupChromosome;
+    private int rowGroupWindow;
+
+    protected Logger logger = LoggerFactory.getLogger(VariantParquetWriter.class);
+
+    /**
+     * @param outputStream       Output stream
+     * @param gzip               Compress data pages with GZIP
+     * @param samples            Samples to write for each study, in order
+     * @param rowGroupRegionSize Size in bases of the genomic window of each row group
+     * @param rowGroupMaxRows    Max number of rows of each row group
+     * @param rowGroupMaxBytes   Max number of uncompressed bytes buffered for each row group
+     */
+    public VariantParquetWriter(OutputStream outputStream, boolean gzip, Map<String, List<String>> samples,
+                                int rowGroupRegionSize, int rowGroupMaxRows, long rowGroupMaxBytes) {
+        this.outputStream = outputStream;
+        this.gzip = gzip;
+        this.samples = samples == null ? Collections.emptyMap() : samples;
+        this.rowGroupRegionSize = Math.max(rowGroupRegionSize, 1);
+        this.rowGroupMaxRows = Math.max(rowGroupMaxRows, 1);
+        this.rowGroupMaxBytes = Math.max(rowGroupMaxBytes, 1);
+
+        chromosome = addColumn("chromosome", TYPE_BYTE_ARRAY, false, true, true);
+        start = addColumn("start", TYPE_INT32, false, false, true);
+        end = addColumn("end", TYPE_INT32, false, false, true);
+        reference = addColumn("reference", TYPE_BYTE_ARRAY, false, true, true);
+        alternate = addColumn("alternate", TYPE_BYTE_ARRAY, false, true, true);
+        type = addColumn("type", TYPE_BYTE_ARRAY, false, true, true);
+        annotationId = addColumn("annotation_id", TYPE_BYTE_ARRAY, true, true, true);
+        genes = addColumn("genes", TYPE_BYTE_ARRAY, true, true, true);
+        consequenceTypes = addColumn("consequence_types", TYPE_BYTE_ARRAY, true, true, true);
+        for (String study : this.samples.keySet()) {
+            // Raw bytes, not text. Statistics over genotypes are useless
+            genotypes.put(study, addColumn(getGenotypeColumnName(study), TYPE_BYTE_ARRAY, true, false, false));
+        }
+    }
+
+    public static String getGenotypeColumnName(String study) {
+        return "gt_" + study.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    @Override
+    public boolean pre() {
+        try {
+            writeBytes(MAGIC);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<Variant> batch) {
+        try {
+            for (Variant variant : batch) {
+                writeVariant(variant);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            flushRowGroup();
+            byte[] footer = buildFooter();
+            writeBytes(footer);
+            writeBytes(new byte[]{
+                    (byte) footer.length,
+                    (byte) (footer.length >>> 8),
+                    (byte) (footer.length >>> 16),
+                    (byte) (footer.length >>> 24), });
+            writeBytes(MAGIC);
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.debug("Written {} variants in {} row groups", numRows, rowGroups.size());
+        return true;
+    }
+
+    protected void writeVariant(Variant variant) throws IOException {
+        int window = variant.getStart() / rowGroupRegionSize;
+        if (rowGroupRows > 0 && (rowGroupRows >= rowGroupMaxRows
+                || getBufferedBytes() >= rowGroupMaxBytes
+                || window != rowGroupWindow
+                || !variant.getChromosome().equals(rowGroupChromosome))) {
+            flushRowGroup();
+        }
+        if (rowGroupRows == 0) {
+            rowGroupChromosome = variant.getChromosome();
+            rowGroupWindow = window;
+        }
+
+        chromosome.add(variant.getChromosome());
+        start.add(variant.getStart());
+        end.add(variant.getEnd());
+        reference.add(variant.getReference());
+        alternate.add(variant.getAlternate());
+        type.add(variant.getType().toString());
+
+        VariantAnnotation annotation = variant.getAnnotation();
+        if (annotation == null) {
+            annotationId.add((String) null);
+            genes.add((String) null);
+            consequenceTypes.add((String) null);
+        } else {
+            annotationId.add(annotation.getId());
+            Set<String> geneNames = new LinkedHashSet<>();
+            Set<String> soNames = new LinkedHashSet<>();
+            if (annotation.getConsequenceTypes() != null) {
+                for (ConsequenceType consequenceType : annotation.getConsequenceTypes()) {
+                    if (consequenceType.getGeneName() != null) {
+                        geneNames.add(consequenceType.getGeneName());
+                    }
+                    if (consequenceType.getSequenceOntologyTerms() != null) {
+                        for (SequenceOntologyTerm term : consequenceType.getSequenceOntologyTerms()) {
+                            soNames.add(term.getName());
+                        }
+                    }
+                }
+            }
+            genes.add(String.join(",", geneNames));
+            consequenceTypes.add(String.join(",", soNames));
+        }
+
+        for (Map.Entry<String, Column> entry : genotypes.entrySet()) {
+            StudyEntry studyEntry = variant.getStudy(entry.getKey());
+            if (studyEntry == null) {
+                entry.getValue().add((byte[]) null);
+            } else {
+                entry.getValue().add(encodeGenotypes(studyEntry, samples.get(entry.getKey())));
+            }
+        }
+
+        rowGroupRows++;
+        numRows++;
+    }
+
+    protected static byte[] encodeGenotypes(StudyEntry studyEntry, List<String> sampleNames) {
+        byte[] gts = new byte[sampleNames.size()];
+        Integer gtPosition = studyEntry.getFormatPositions().get("GT");
+        Map<String, Integer> samplesPosition = studyEntry.getSamplesPosition();
+        for (int i = 0; i < gts.length; i++) {
+            Integer samplePosition = samplesPosition.get(sampleNames.get(i));
+            if (gtPosition == null || samplePosition == null) {
+                gts[i] = GT_MISSING;
+            } else {
+                List<String> sampleData = studyEntry.getSamplesData().get(samplePosition);
+                gts[i] = gtPosition < sampleData.size() ? encodeGenotype(sampleData.get(gtPosition)) : GT_MISSING;
+            }
+        }
+        return gts;
+    }
+
+    /**
+     * Encode a genotype into one single byte, using {@link GenotypeMatrix#encodeGenotype}. Phase is lost.
+     *
+     * @param gt Genotype
+     * @return Genotype code
+     */
+    public static byte encodeGenotype(String gt) {
+        switch (GenotypeMatrix.encodeGenotype(gt)) {
+            case GenotypeMatrix.HOM_REF:
+                return GT_HOM_REF;
+            case GenotypeMatrix.HET:
+                return GT_HET;
+            case GenotypeMatrix.HOM_ALT:
+                return GT_HOM_ALT;
+            case GenotypeMatrix.MISSING:
+                return GT_MISSING;
+            default:
+                return GT_OTHER;
+        }
+    }
+
+    private long getBufferedBytes() {
+        long bytes = 0;
+        for (Column column : columns) {
+            bytes += column.values.size() + column.definitionLevels.size();
+        }
+        return bytes;
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (rowGroupRows == 0) {
+            return;
+        }
+        ThriftCompactWriter rowGroup = new ThriftCompactWriter().structBegin();
+        rowGroup.fieldBegin(1, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_STRUCT, columns.size());
+        long totalByteSize = 0;
+        for (Column column : columns) {
+            totalByteSize += writeColumnChunk(column, rowGroup);
+            column.reset();
+        }
+        rowGroup.i64Field(2, totalByteSize)
+                .i64Field(3, rowGroupRows)
+                .structEnd();
+        rowGroups.add(rowGroup.toByteArray());
+        rowGroupRows = 0;
+    }
+
+    /**
+     * Write the column chunk of the current row group as a single data page, and its metadata into the RowGroup.
+     *
+     * @param column   Column to write
+     * @param rowGroup RowGroup metadata being serialized
+     * @return Uncompressed size of the column chunk
+     * @throws IOException on error writing the data page
+     */
+    private long writeColumnChunk(Column column, ThriftCompactWriter rowGroup) throws IOException {
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+        if (column.optional) {
+            byte[] definitionLevels = column.encodeDefinitionLevels();
+            writeIntLittleEndian(page, definitionLevels.length);
+            page.write(definitionLevels);
+        }
+        column.values.writeTo(page);
+        byte[] uncompressed = page.toByteArray();
+        byte[] compressed;
+        if (gzip) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(bos)) {
+                gzipOutputStream.write(uncompressed);
+            }
+            compressed = bos.toByteArray();
+        } else {
+            compressed = uncompressed;
+        }
+
+        byte[] pageHeader = new ThriftCompactWriter().structBegin()
+                .i32Field(1, PAGE_TYPE_DATA)
+                .i32Field(2, uncompressed.length)
+                .i32Field(3, compressed.length)
+                .fieldBegin(5, ThriftCompactWriter.TYPE_STRUCT).structBegin()
+                .i32Field(1, column.numValues)
+                .i32Field(2, ENCODING_PLAIN)
+                .i32Field(3, ENCODING_RLE)
+                .i32Field(4, ENCODING_RLE)
+                .structEnd()
+                .structEnd()
+                .toByteArray();
+
+        long dataPageOffset = position;
+        writeBytes(pageHeader);
+        writeBytes(compressed);
+
+        // ColumnChunk
+        rowGroup.structBegin()
+                .i64Field(2, dataPageOffset)
+                .fieldBegin(3, ThriftCompactWriter.TYPE_STRUCT).structBegin();
+        // ColumnMetaData
+        rowGroup.i32Field(1, column.type)
+                .fieldBegin(2, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_I32, 2)
+                .i32(ENCODING_PLAIN).i32(ENCODING_RLE)
+                .fieldBegin(3, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_BINARY, 1)
+                .string(column.name)
+                .i32Field(4, gzip ? CODEC_GZIP : CODEC_UNCOMPRESSED)
+                .i64Field(5, column.numValues)
+                .i64Field(6, pageHeader.length + uncompressed.length)
+                .i64Field(7, pageHeader.length + compressed.length)
+                .i64Field(9, dataPageOffset);
+        if (column.statistics) {
+            rowGroup.fieldBegin(12, ThriftCompactWriter.TYPE_STRUCT).structBegin();
+            if (column.min != null) {
+                if (column.type == TYPE_INT32) {
+                    // Deprecated min/max. Only valid for signed types
+                    rowGroup.binaryField(1, column.max).binaryField(2, column.min);
+                }
+                rowGroup.i64Field(3, column.nullCount);
+                rowGroup.binaryField(5, column.max).binaryField(6, column.min);
+            } else {
+                rowGroup.i64Field(3, column.nullCount);
+            }
+            rowGroup.structEnd();
+        }
+        rowGroup.structEnd().structEnd();
+        return pageHeader.length + uncompressed.length;
+    }
+
+    private byte[] buildFooter() {
+        ThriftCompactWriter footer = new ThriftCompactWriter().structBegin();
+        footer.i32Field(1, 1);
+
+        // Schema
+        footer.fieldBegin(2, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_STRUCT, columns.size() + 1);
+        footer.structBegin().stringField(4, "variant").i32Field(5, columns.size()).structEnd();
+        for (Column column : columns) {
+            footer.structBegin()
+                    .i32Field(1, column.type)
+                    .i32Field(3, column.optional ? OPTIONAL : REQUIRED)
+                    .stringField(4, column.name);
+            if (column.utf8) {
+                footer.i32Field(6, CONVERTED_TYPE_UTF8);
+            }
+            footer.structEnd();
+        }
+
+        footer.i64Field(3, numRows);
+
+        // Row groups are already serialized
+        footer.fieldBegin(4, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_STRUCT, rowGroups.size());
+        for (byte[] rowGroup : rowGroups) {
+            footer.raw(rowGroup);
+        }
+
+        // Key value metadata
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        keyValues.put("opencga.genotype.encoding", GT_ENCODING);
+        keyValues.put("opencga.rowGroup.regionSize", String.valueOf(rowGroupRegionSize));
+        for (Map.Entry<String, List<String>> entry : samples.entrySet()) {
+            keyValues.put("opencga.study." + getGenotypeColumnName(entry.getKey()), entry.getKey());
+            keyValues.put(SAMPLES_METADATA_PREFIX + getGenotypeColumnName(entry.getKey()), String.join(",", entry.getValue()));
+        }
+        footer.fieldBegin(5, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_STRUCT, keyValues.size());
+        for (Map.Entry<String, String> entry : keyValues.entrySet()) {
+            footer.structBegin().stringField(1, entry.getKey()).stringField(2, entry.getValue()).structEnd();
+        }
+
+        footer.stringField(6, "opencga-storage");
+
+        // Column orders. Required to use min_value and max_value statistics of binary columns
+        footer.fieldBegin(7, ThriftCompactWriter.TYPE_LIST).listBegin(ThriftCompactWriter.TYPE_STRUCT, columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            footer.structBegin()
+                    .fieldBegin(1, ThriftCompactWriter.TYPE_STRUCT).structBegin().structEnd()
+                    .structEnd();
+        }
+        return footer.structEnd().toByteArray();
+    }
+
+    private Column addColumn(String name, int type, boolean optional, boolean utf8, boolean statistics) {
+        Column column = new Column(name, type, optional, utf8, statistics);
+        columns.add(column);
+        return column;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        position += bytes.length;
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream os, int value) {
+        os.write(value);
+        os.write(value >>> 8);
+        os.write(value >>> 16);
+        os.write(value >>> 24);
+    }
+
+    private static final class Column {
+        private final String name;
+        private final int type;
+        private final boolean optional;
+        private final boolean utf8;
+        private final boolean statistics;
+        private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+        // One byte per value. 1 if defined, 0 if null
+        private final ByteArrayOutputStream definitionLevels = new ByteArrayOutputStream();
+        private int numValues;
+        private int nullCount;
+        private byte[] min;
+        private byte[] max;
+        private int minInt;
+        private int maxInt;
+
+        private Column(String name, int type, boolean optional, boolean utf8, boolean statistics) {
+            this.name = name;
+            this.type = type;
+            this.optional = optional;
+            this.utf8 = utf8;
+            this.statistics = statistics;
+        }
+
+        private void add(int value) {
+            writeIntLittleEndian(values, value);
+            definitionLevels.write(1);
+            numValues++;
+            if (statistics) {
+                if (min == null || value < minInt) {
+                    minInt = value;
+                    min = toLittleEndian(value);
+                }
+                if (max == null || value > maxInt) {
+                    maxInt = value;
+                    max = toLittleEndian(value);
+                }
+            }
+        }
+
+        private void add(String value) {
+            add(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void add(byte[] value) {
+            numValues++;
+            if (value == null) {
+                definitionLevels.write(0);
+                nullCount++;
+                return;
+            }
+            definitionLevels.write(1);
+            writeIntLittleEndian(values, value.length);
+            values.write(value, 0, value.length);
+            if (statistics) {
+                if (min == null || compareUnsigned(value, min) < 0) {
+                    min = value;
+                }
+                if (max == null || compareUnsigned(value, max) > 0) {
+                    max = value;
+                }
+            }
+        }
+
+        /**
+         * Encode the definition levels with the RLE/bit-packed hybrid encoding, using only RLE runs of bit width 1.
+         *
+         * @return Encoded definition levels
+         */
+        private byte[] encodeDefinitionLevels() {
+            byte[] levels = definitionLevels.toByteArray();
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            int i = 0;
+            while (i < levels.length) {
+                int runStart = i;
+                while (i < levels.length && levels[i] == levels[runStart]) {
+                    i++;
+                }
+                int header = (i - runStart) << 1;
+                while ((header & ~0x7F) != 0) {
+                    os.write((header & 0x7F) | 0x80);
+                    header >>>= 7;
+                }
+                os.write(header);
+                os.write(levels[runStart]);
+            }
+            return os.toByteArray();
+        }
+
+        private void reset() {
+            values.reset();
+            definitionLevels.reset();
+            numValues = 0;
+            nullCount = 0;
+            min = null;
+            max = null;
+        }
+
+        private static byte[] toLittleEndian(int value) {
+            return new byte[]{(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)};
+        }
+
+        private static int compareUnsigned(byte[] a, byte[] b) {
+            for (int i = 0; i < Math.min(a.length, b.length); i++) {
+                int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(a.length, b.length);
+        }
+    }
+}
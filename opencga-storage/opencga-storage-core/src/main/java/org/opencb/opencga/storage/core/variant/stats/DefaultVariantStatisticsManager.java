@@ -45,6 +45,7 @@ import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.opencb.opencga.storage.core.variant.io.db.VariantStatsDBWriter;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
@@ -207,6 +208,11 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
 
         studyConfiguration = preCalculateStats(cohorts, studyConfiguration, overwrite, updateStats, options);
 
+        CohortStatsDelta delta = getCohortStatsDelta(cohorts, studyConfiguration, overwrite, options);
+        if (delta != null) {
+            return createIncrementalStats(variantDBAdaptor, output, delta, studyConfiguration, options);
+        }
+
         overwrite = checkOverwrite(cohorts, studyConfiguration, overwrite);
 
         VariantSourceStats variantSourceStats = new VariantSourceStats(null/*FILE_ID*/, Integer.toString(studyConfiguration.getStudyId()));
@@ -250,6 +256,194 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         return output;
     }
 
+    /**
+     * Get the samples added to and removed from an invalid cohort since its stats were calculated.
+     * <p>
+     * The stats can be updated incrementally only if there is one single cohort, the stats were not requested to be overwritten,
+     * the genotypes of all the changed samples are still loaded, and the changed samples are fewer than the samples in the cohort.
+     *
+     * @param cohorts            Cohorts to calculate, with their samples
+     * @param studyConfiguration Study configuration, after registering the cohorts
+     * @param overwrite          Overwrite stats, as requested by the user
+     * @param options            Other options
+     * @return Samples changed in the cohort, or null if the stats have to be calculated from every sample
+     */
+    protected CohortStatsDelta getCohortStatsDelta(Map<String, Set<String>> cohorts, StudyConfiguration studyConfiguration,
+                                                   boolean overwrite, ObjectMap options) {
+        if (overwrite || cohorts.size() != 1 || AggregationUtils.isAggregated(getAggregation(studyConfiguration, options))
+                || !options.getBoolean(Options.INCREMENTAL_STATS.key(), Options.INCREMENTAL_STATS.defaultValue())) {
+            return null;
+        }
+        String cohortName = cohorts.keySet().iterator().next();
+        Integer cohortId = studyConfiguration.getCohortIds().get(cohortName);
+        Set<Integer> calculatedSamples = studyConfiguration.getCalculatedStatsSamples().get(cohortId);
+        if (!studyConfiguration.getInvalidStats().contains(cohortId) || calculatedSamples == null) {
+            return null;
+        }
+        Set<Integer> samples = studyConfiguration.getCohorts().get(cohortId);
+        Set<Integer> addedSamples = new LinkedHashSet<>(samples);
+        addedSamples.removeAll(calculatedSamples);
+        Set<Integer> removedSamples = new LinkedHashSet<>(calculatedSamples);
+        removedSamples.removeAll(samples);
+
+        if (addedSamples.size() + removedSamples.size() >= samples.size()) {
+            logger.info("Cohort \"{}\" changed in {} of {} samples. Calculate stats from every sample",
+                    cohortName, addedSamples.size() + removedSamples.size(), samples.size());
+            return null;
+        }
+        // Genotypes from removed samples are required to subtract them from the stats
+        if (!StudyConfiguration.getIndexedSamples(studyConfiguration).values().containsAll(removedSamples)) {
+            logger.info("Cohort \"{}\" has removed samples without loaded genotypes. Calculate stats from every sample", cohortName);
+            return null;
+        }
+
+        Map<Integer, String> sampleNames = studyConfiguration.getSampleIds().inverse();
+        return new CohortStatsDelta(cohortName, calculatedSamples.size(),
+                addedSamples.stream().map(sampleNames::get).collect(Collectors.toCollection(LinkedHashSet::new)),
+                removedSamples.stream().map(sampleNames::get).collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    /**
+     * Updates the stats of a cohort reading only the genotypes of the changed samples, and writes them to the output URI.
+     * <p>
+     * Variants with stats of the cohort are updated from the stored genotype counts. Variants without stats of the cohort, e.g.
+     * variants from a new file, and variants with stored counts not matching the changed samples, are calculated from every
+     * sample in the cohort.
+     *
+     * @param variantDBAdaptor   to obtain the Variants
+     * @param output             where to write the VariantStats
+     * @param delta              Samples changed in the cohort
+     * @param studyConfiguration Study configuration object
+     * @param options            Other options
+     * @return outputUri prefix for the file names (without the "._type_.stats.json.gz")
+     * @throws IOException If any error occurs
+     * @throws StorageEngineException If any error occurs
+     */
+    protected URI createIncrementalStats(VariantDBAdaptor variantDBAdaptor, URI output, CohortStatsDelta delta,
+                                         StudyConfiguration studyConfiguration, QueryOptions options)
+            throws IOException, StorageEngineException {
+        int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), Options.LOAD_BATCH_SIZE.defaultValue());
+        int numTasks = options.getInt(Options.LOAD_THREADS.key(), Options.LOAD_THREADS.defaultValue());
+        String cohort = delta.getCohort();
+        String studyName = studyConfiguration.getStudyName();
+        Map<String, Set<String>> cohorts = Collections.singletonMap(cohort, studyConfiguration.getCohorts()
+                .get(studyConfiguration.getCohortIds().get(cohort))
+                .stream()
+                .map(studyConfiguration.getSampleIds().inverse()::get)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(numTasks).setBatchSize(batchSize).build();
+        QueryOptions readerOptions = new QueryOptions(QueryOptions.SORT, true)
+                .append(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
+        // Read the genotypes as stored in the genotype counts, so the changed samples are merged with the same keys
+        String unknownGenotype = getUnknownGenotype();
+
+        logger.info("Updating stats of cohort \"{}\" with {} added and {} removed samples",
+                cohort, delta.getAddedSamples().size(), delta.getRemovedSamples().size());
+        long start = System.currentTimeMillis();
+        Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_SUFFIX);
+        try (OutputStream outputStream = getOutputStream(variantStatsPath, options)) {
+            // Variants with stats. Read only the changed samples
+            Set<Integer> changedSamples = new LinkedHashSet<>();
+            delta.getAddedSamples().forEach(sample -> changedSamples.add(studyConfiguration.getSampleIds().get(sample)));
+            delta.getRemovedSamples().forEach(sample -> changedSamples.add(studyConfiguration.getSampleIds().get(sample)));
+            List<VariantStatisticsCalculator> calculators = new ArrayList<>(numTasks);
+            if (!changedSamples.isEmpty()) {
+                Query readerQuery = VariantStatisticsManager.buildInputQuery(studyConfiguration, cohorts.keySet(), true, false, options)
+                        .append(VariantQueryParam.COHORT.key(), studyName + ':' + cohort)
+                        .append(VariantQueryParam.UNKNOWN_GENOTYPE.key(), unknownGenotype);
+                VariantStatisticsManager.addIncludeSamples(readerQuery, studyConfiguration, changedSamples);
+                logger.info("ReaderQuery: " + readerQuery.toJson());
+                ObjectWriter variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
+                ProgressLogger progressLogger = buildCreateStatsProgressLogger(variantDBAdaptor, readerQuery, options);
+                List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
+                for (int i = 0; i < numTasks; i++) {
+                    VariantStatisticsCalculator calculator = new VariantStatisticsCalculator();
+                    calculators.add(calculator);
+                    tasks.add(variants -> {
+                        List<String> strings = new ArrayList<>(variants.size());
+                        for (VariantStatsWrapper wrapper : calculator.updateBatch(variants, studyName, cohort,
+                                delta.getNumCalculatedSamples(), delta.getAddedSamples(), delta.getRemovedSamples())) {
+                            strings.add(variantsWriter.writeValueAsString(wrapper));
+                        }
+                        if (!variants.isEmpty()) {
+                            progressLogger.increment(variants.size(), () -> ", up to position "
+                                    + variants.get(variants.size() - 1).getChromosome()
+                                    + ":"
+                                    + variants.get(variants.size() - 1).getStart());
+                        }
+                        return strings;
+                    });
+                }
+                runStats(new VariantDBReader(studyConfiguration, variantDBAdaptor, readerQuery, readerOptions), tasks,
+                        new StringDataWriter(outputStream, true), config);
+            }
+
+            // Variants with stale stats. Read all the samples from the cohort
+            List<String> staleVariants = new ArrayList<>();
+            for (VariantStatisticsCalculator calculator : calculators) {
+                staleVariants.addAll(calculator.getStaleVariants());
+            }
+            if (!staleVariants.isEmpty()) {
+                logger.warn("Unable to update the stats of {} variants from the changed samples. Calculate from every sample",
+                        staleVariants.size());
+                ProgressLogger progressLogger = new ProgressLogger("Calculated stats:", staleVariants.size());
+                for (int i = 0; i < staleVariants.size(); i += batchSize) {
+                    Query readerQuery = VariantStatisticsManager.buildInputQuery(studyConfiguration, cohorts.keySet(), true, false,
+                            options);
+                    readerQuery.remove(VariantQueryParam.REGION.key());
+                    readerQuery.append(VariantQueryParam.UNKNOWN_GENOTYPE.key(), unknownGenotype);
+                    readerQuery.append(VariantQueryParam.ID.key(),
+                            staleVariants.subList(i, Math.min(i + batchSize, staleVariants.size())));
+                    VariantSourceStats variantSourceStats = new VariantSourceStats(null,
+                            Integer.toString(studyConfiguration.getStudyId()));
+                    List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
+                    for (int t = 0; t < numTasks; t++) {
+                        tasks.add(new VariantStatsWrapperTask(true, cohorts, studyConfiguration, variantSourceStats, null,
+                                progressLogger, Aggregation.NONE));
+                    }
+                    runStats(new VariantDBReader(studyConfiguration, variantDBAdaptor, readerQuery, readerOptions), tasks,
+                            new StringDataWriter(outputStream, true), config);
+                }
+            }
+
+            // Variants without stats. Read all the samples from the cohort
+            Query readerQuery = VariantStatisticsManager.buildInputQuery(studyConfiguration, cohorts.keySet(), false, true, options)
+                    .append(VariantQueryParam.UNKNOWN_GENOTYPE.key(), unknownGenotype);
+            logger.info("ReaderQuery: " + readerQuery.toJson());
+            VariantSourceStats variantSourceStats = new VariantSourceStats(null, Integer.toString(studyConfiguration.getStudyId()));
+            ProgressLogger progressLogger = buildCreateStatsProgressLogger(variantDBAdaptor, readerQuery, options);
+            List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(new VariantStatsWrapperTask(true, cohorts, studyConfiguration, variantSourceStats, null, progressLogger,
+                        Aggregation.NONE));
+            }
+            runStats(new VariantDBReader(studyConfiguration, variantDBAdaptor, readerQuery, readerOptions), tasks,
+                    new StringDataWriter(outputStream, true), config);
+        }
+        logger.info("finishing stats update, time: {}ms", System.currentTimeMillis() - start);
+
+        variantDBAdaptor.getStudyConfigurationManager().updateStudyConfiguration(studyConfiguration, options);
+        return output;
+    }
+
+    /**
+     * Genotype used for the unknown genotypes in the genotype counts written by this manager.
+     *
+     * @return the unknown genotype
+     */
+    protected String getUnknownGenotype() {
+        return VariantStatisticsManager.UNKNOWN_GENOTYPE;
+    }
+
+    private void runStats(VariantDBReader reader, List<Task<Variant, String>> tasks, StringDataWriter writer,
+                          ParallelTaskRunner.Config config) throws StorageEngineException {
+        try {
+            new ParallelTaskRunner<>(reader, tasks, writer, config).run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Unable to calculate statistics.", e);
+        }
+    }
+
     protected StudyConfiguration preCalculateStats(Map<String, Set<String>> cohorts, StudyConfiguration studyConfiguration,
                                                    boolean overwrite, boolean updateStats, ObjectMap options)
             throws StorageEngineException {
@@ -360,6 +554,39 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         }
     }
 
+    /**
+     * Samples added to and removed from a cohort since its stats were calculated.
+     */
+    protected static class CohortStatsDelta {
+        private final String cohort;
+        private final int numCalculatedSamples;
+        private final Set<String> addedSamples;
+        private final Set<String> removedSamples;
+
+        CohortStatsDelta(String cohort, int numCalculatedSamples, Set<String> addedSamples, Set<String> removedSamples) {
+            this.cohort = cohort;
+            this.numCalculatedSamples = numCalculatedSamples;
+            this.addedSamples = addedSamples;
+            this.removedSamples = removedSamples;
+        }
+
+        public String getCohort() {
+            return cohort;
+        }
+
+        public int getNumCalculatedSamples() {
+            return numCalculatedSamples;
+        }
+
+        public Set<String> getAddedSamples() {
+            return addedSamples;
+        }
+
+        public Set<String> getRemovedSamples() {
+            return removedSamples;
+        }
+    }
+
     public void loadStats(VariantDBAdaptor variantDBAdaptor, URI uri, String study, QueryOptions options) throws
             IOException, StorageEngineException {
         StudyConfigurationManager studyConfigurationManager = variantDBAdaptor.getStudyConfigurationManager();
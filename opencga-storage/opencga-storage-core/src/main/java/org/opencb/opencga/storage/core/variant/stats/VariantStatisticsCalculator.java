@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.storage.core.variant.stats;
 
+import org.opencb.biodata.models.feature.Genotype;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.Aggregation;
@@ -31,6 +32,8 @@ import java.util.*;
 public class VariantStatisticsCalculator {
 
     private int skippedFiles;
+    // Variants that could not be updated incrementally, and need to be calculated from every sample
+    private final List<String> staleVariants = new ArrayList<>();
     private boolean overwrite;
     private VariantAggregatedStatsCalculator aggregatedCalculator;
     private Aggregation aggregation;
@@ -52,6 +55,13 @@ public class VariantStatisticsCalculator {
         this.skippedFiles = skippedFiles;
     }
 
+    /**
+     * @return Variants not updated by {@link #updateBatch}, because of missing or inconsistent stored stats
+     */
+    public List<String> getStaleVariants() {
+        return staleVariants;
+    }
+
     /**
      * if the study is aggregated i.e. it doesn't have sample data, call this before calculate. It is not needed if the
      * study does have samples.
@@ -153,6 +163,96 @@ public class VariantStatisticsCalculator {
         return variantStatsWrappers;
     }
 
+    /**
+     * Updates the stats of a cohort from the genotypes of the samples added to and removed from the cohort since the stats were
+     * calculated. Variants must contain the current stats of the cohort, and the genotypes of, at least, the changed samples.
+     * Variants without stats of the cohort, or with stats not matching the calculated samples, are not updated, and are
+     * added to the {@link #getStaleVariants() stale variants}.
+     *
+     * @param variants             variants to update the stats from
+     * @param studyId              needed to choose the VariantSourceEntry in the variants
+     * @param cohort               cohort name
+     * @param numCalculatedSamples number of samples used to calculate the current stats
+     * @param addedSamples         samples added to the cohort
+     * @param removedSamples       samples removed from the cohort
+     * @return list of VariantStatsWrapper. may be shorter than the list of variants if there is no source for some variant, or if
+     *         the stats of some variant could not be updated
+     */
+    public List<VariantStatsWrapper> updateBatch(List<Variant> variants, String studyId, String cohort, int numCalculatedSamples,
+                                                 Set<String> addedSamples, Set<String> removedSamples) {
+        List<VariantStatsWrapper> variantStatsWrappers = new ArrayList<>(variants.size());
+
+        for (Variant variant : variants) {
+            StudyEntry study = variant.getStudy(studyId);
+            if (study == null) {
+                skippedFiles++;
+                continue;
+            }
+            VariantStats stats = study.getStats(cohort) == null
+                    ? null
+                    : updateStats(variant, study, study.getStats(cohort), numCalculatedSamples, addedSamples, removedSamples);
+            if (stats == null) {
+                staleVariants.add(variant.toString());
+                continue;
+            }
+            Map<String, VariantStats> cohortStats = new HashMap<>();
+            cohortStats.put(cohort, stats);
+            study.setStats(cohortStats);
+            variantStatsWrappers.add(new VariantStatsWrapper(variant, cohortStats));
+        }
+        return variantStatsWrappers;
+    }
+
+    /**
+     * The genotype counts are sufficient statistics of the cohort. The counts of the added samples are summed to the stored counts,
+     * the counts of the removed samples are subtracted, and the frequencies, MAF, MGF and missing counts are derived again from
+     * the merged counts.
+     * <p>
+     * The stored counts must add up to the number of samples used to calculate them, and must contain the genotypes of the removed
+     * samples. Otherwise, the stored stats are stale, and can not be updated.
+     *
+     * @param variant              variant
+     * @param study                study with the genotypes of the changed samples
+     * @param stats                stats of the cohort before the change
+     * @param numCalculatedSamples number of samples used to calculate the stats before the change
+     * @param addedSamples         samples added to the cohort
+     * @param removedSamples       samples removed from the cohort
+     * @return new stats of the cohort, or null if the stats have to be calculated from every sample
+     */
+    public static VariantStats updateStats(Variant variant, StudyEntry study, VariantStats stats, int numCalculatedSamples,
+                                           Set<String> addedSamples, Set<String> removedSamples) {
+        Map<String, Integer> gtCount = new HashMap<>();
+        addGenotypeCount(gtCount, stats.getGenotypeCount(), 1);
+        if (gtCount.values().stream().mapToInt(Integer::intValue).sum() != numCalculatedSamples) {
+            return null;
+        }
+        if (!addedSamples.isEmpty()) {
+            addGenotypeCount(gtCount, VariantStatsCalculator.calculate(variant, study, addedSamples).getGenotypeCount(), 1);
+        }
+        if (!removedSamples.isEmpty()) {
+            addGenotypeCount(gtCount, VariantStatsCalculator.calculate(variant, study, removedSamples).getGenotypeCount(), -1);
+        }
+
+        Map<Genotype, Integer> gtCountMap = new HashMap<>(gtCount.size());
+        for (Map.Entry<String, Integer> entry : gtCount.entrySet()) {
+            if (entry.getValue() < 0) {
+                // Genotype removed more times than counted
+                return null;
+            } else if (entry.getValue() > 0) {
+                gtCountMap.put(new Genotype(entry.getKey()), entry.getValue());
+            }
+        }
+        return VariantStatsCalculator.calculate(variant, gtCountMap);
+    }
+
+    private static void addGenotypeCount(Map<String, Integer> gtCount, Map<Genotype, Integer> genotypes, int sign) {
+        if (genotypes != null) {
+            for (Map.Entry<Genotype, Integer> entry : genotypes.entrySet()) {
+                gtCount.merge(entry.getKey().toString(), sign * entry.getValue(), Integer::sum);
+            }
+        }
+    }
+
     @Deprecated
     public static Map<String, String> removeAttributePrefix(Map<String, String> attributes)
             throws IllegalArgumentException {
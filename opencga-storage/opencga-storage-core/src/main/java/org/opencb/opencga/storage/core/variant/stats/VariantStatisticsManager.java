@@ -81,6 +81,9 @@ public interface VariantStatisticsManager {
             } else {
                 studyConfiguration.getCalculatedStats().add(cohortId);
             }
+            // Keep the samples used to calculate the stats, to be able to update them incrementally if the cohort changes
+            studyConfiguration.getCalculatedStatsSamples()
+                    .put(cohortId, new LinkedHashSet<>(studyConfiguration.getCohorts().getOrDefault(cohortId, Collections.emptySet())));
         }
     }
 
@@ -111,14 +114,7 @@ public interface VariantStatisticsManager {
         }
 
         if (!sampleIds.isEmpty()) {
-            readerQuery.put(VariantQueryParam.INCLUDE_SAMPLE.key(), sampleIds);
-            Set<Integer> fileIds = new HashSet<>();
-            for (Map.Entry<Integer, LinkedHashSet<Integer>> entry : studyConfiguration.getSamplesInFiles().entrySet()) {
-                if (studyConfiguration.getIndexedFiles().contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), sampleIds)) {
-                    fileIds.add(entry.getKey());
-                }
-            }
-            readerQuery.put(VariantQueryParam.INCLUDE_FILE.key(), fileIds);
+            addIncludeSamples(readerQuery, studyConfiguration, sampleIds);
         }
 
 
@@ -128,6 +124,18 @@ public interface VariantStatisticsManager {
         return readerQuery;
     }
 
+    static Query addIncludeSamples(Query readerQuery, StudyConfiguration studyConfiguration, Set<Integer> sampleIds) {
+        readerQuery.put(VariantQueryParam.INCLUDE_SAMPLE.key(), sampleIds);
+        Set<Integer> fileIds = new HashSet<>();
+        for (Map.Entry<Integer, LinkedHashSet<Integer>> entry : studyConfiguration.getSamplesInFiles().entrySet()) {
+            if (studyConfiguration.getIndexedFiles().contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), sampleIds)) {
+                fileIds.add(entry.getKey());
+            }
+        }
+        readerQuery.put(VariantQueryParam.INCLUDE_FILE.key(), fileIds);
+        return readerQuery;
+    }
+
     static Properties getAggregationMappingProperties(QueryOptions options) {
         return options.get(VariantStorageEngine.Options.AGGREGATION_MAPPING_PROPERTIES.key(), Properties.class, null);
     }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.io.DataReader;
+import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchSizeControllerTest {
+
+    @Test
+    public void testDisabled() {
+        AdaptiveBatchSizeController controller = AdaptiveBatchSizeController.fromOptions("test", new ObjectMap(), 100, 4);
+        DataReader<Integer> reader = newReader(1000);
+        Task<Integer, Integer> task = batch -> batch;
+
+        assertFalse(controller.isEnabled());
+        assertSame(reader, controller.wrap(reader));
+        assertSame(task, controller.wrap(task));
+    }
+
+    @Test
+    public void testIncreaseBatchSize() throws Exception {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", true, 10, 1, 1, 1000,
+                1, TimeUnit.SECONDS, 0);
+        // Very fast task. Should grow up to the max batch size
+        runPipeline(controller, 100000, 0);
+
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void testDecreaseBatchSize() throws Exception {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", true, 100, 1, 5, 1000,
+                10, TimeUnit.MILLISECONDS, 0);
+        // 1ms per element. Should go down to 10 elements per batch
+        runPipeline(controller, 1000, 1);
+
+        assertEquals(10, controller.getBatchSize());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        AdaptiveBatchSizeController controller = new AdaptiveBatchSizeController("test", true, 100, 1, 50, 1000,
+                1, TimeUnit.MILLISECONDS, 0);
+        runPipeline(controller, 1000, 1);
+
+        assertEquals(50, controller.getBatchSize());
+    }
+
+    @Test
+    public void testFromOptions() {
+        ObjectMap options = new ObjectMap(VariantStorageEngine.Options.ADAPTIVE_BATCH_SIZE.key(), true)
+                .append(VariantStorageEngine.Options.ADAPTIVE_BATCH_SIZE_MAX.key(), 50);
+        AdaptiveBatchSizeController controller = AdaptiveBatchSizeController.fromOptions("test", options, 100, 4);
+        assertTrue(controller.isEnabled());
+        assertEquals(50, controller.getBatchSize());
+    }
+
+    /**
+     * Run a pipeline over a synthetic clock. Each batch advances the clock by the given time per element.
+     */
+    private void runPipeline(AdaptiveBatchSizeController controller, int numElements, int millisPerElement) throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        controller.setClock(clock::get);
+        ParallelTaskRunner.Config config = controller.configure(ParallelTaskRunner.Config.builder().setNumTasks(1)).build();
+        ParallelTaskRunner<Integer, Integer> ptr = new ParallelTaskRunner<>(
+                controller.wrap(newReader(numElements)),
+                controller.wrap((Task<Integer, Integer>) batch -> {
+                    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millisPerElement) * batch.size());
+                    count.addAndGet(batch.size());
+                    return batch;
+                }), null, config);
+        ptr.run();
+        assertEquals(numElements, count.get());
+    }
+
+    private DataReader<Integer> newReader(int numElements) {
+        AtomicInteger next = new AtomicInteger();
+        return batchSize -> {
+            List<Integer> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && next.get() < numElements) {
+                batch.add(next.getAndIncrement());
+            }
+            return batch;
+        };
+    }
+}
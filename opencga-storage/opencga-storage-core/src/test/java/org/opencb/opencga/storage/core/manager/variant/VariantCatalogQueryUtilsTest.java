@@ -12,6 +12,8 @@ import org.opencb.commons.datastore.core.Query;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.managers.CatalogManagerExternalResource;
+import org.opencb.opencga.catalog.managers.FileManager;
+import org.opencb.opencga.catalog.managers.SampleManager;
 import org.opencb.opencga.core.models.*;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
@@ -24,6 +26,8 @@ import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
 import static org.opencb.biodata.models.clinical.interpretation.DiseasePanel.GenePanel;
 import static org.opencb.opencga.storage.core.manager.variant.VariantCatalogQueryUtils.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
@@ -309,6 +313,39 @@ public class VariantCatalogQueryUtilsTest {
         queryUtils.parseQuery(new Query(STUDY.key(), "s1").append(PANEL.key(), "MyPanel_wrong"), sessionId);
     }
 
+    @Test
+    public void resolutionCache() throws Exception {
+        CatalogManager catalogSpy = spy(catalog);
+        SampleManager sampleManager = spy(catalog.getSampleManager());
+        FileManager fileManager = spy(catalog.getFileManager());
+        doReturn(sampleManager).when(catalogSpy).getSampleManager();
+        doReturn(fileManager).when(catalogSpy).getFileManager();
+        VariantCatalogQueryUtils cachedQueryUtils = new VariantCatalogQueryUtils(catalogSpy);
+        CatalogResolutionCache cache = cachedQueryUtils.getResolutionCache();
+        Query query = new Query(STUDY.key(), "s1")
+                .append(SAMPLE.key(), "sample1")
+                .append(INCLUDE_SAMPLE.key(), "sample1,sample2")
+                .append(FILE.key(), file1.getPath());
+
+        String expected = cachedQueryUtils.parseQuery(new Query(query), sessionId).toJson();
+        // The first lookup resolves the samples and files from catalog
+        assertFalse(mockingDetails(sampleManager).getInvocations().isEmpty());
+        assertFalse(mockingDetails(fileManager).getInvocations().isEmpty());
+        clearInvocations(sampleManager, fileManager);
+        long hits = cache.getStats().getLong("hits");
+        long misses = cache.getStats().getLong("misses");
+
+        assertEquals(expected, cachedQueryUtils.parseQuery(new Query(query), sessionId).toJson());
+        assertEquals(misses, cache.getStats().getLong("misses"));
+        assertTrue(cache.getStats().getLong("hits") > hits);
+        // The second lookup is resolved from the cache, without touching catalog
+        verifyZeroInteractions(sampleManager, fileManager);
+
+        // Without cache
+        VariantCatalogQueryUtils noCacheQueryUtils = new VariantCatalogQueryUtils(catalog, new CatalogResolutionCache(0, 0));
+        assertEquals(expected, noCacheQueryUtils.parseQuery(new Query(query), sessionId).toJson());
+    }
+
     @Test
     public void getAnyStudy() throws Exception {
         assertEquals("user@p1:s1", queryUtils.getAnyStudy(new Query(PROJECT.key(), "p1"), sessionId));
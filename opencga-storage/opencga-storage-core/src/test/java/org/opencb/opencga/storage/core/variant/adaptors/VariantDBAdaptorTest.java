@@ -44,6 +44,7 @@ import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.CellBaseRestVariantAnnotator;
 import org.opencb.opencga.storage.core.variant.stats.DefaultVariantStatisticsManager;
@@ -1788,6 +1789,68 @@ public abstract class VariantDBAdaptorTest extends VariantStorageBaseTest {
         }
     }
 
+    @Test
+    public void aggregationExecutor_count() throws Exception {
+        VariantAggregationExecutor executor = newAggregationExecutor();
+        assertEquals(count(new Query()), executor.count(new Query()).first());
+
+        Query query = new Query(REGION.key(), "1:1000000-5000000,2");
+        assertEquals(count(query), executor.count(query).first());
+
+        // Variants overlapping two regions of the same chromosome are counted once
+        query = new Query(REGION.key(), "1:1000000-2000000,1:2000001-2000010,1:2000020-5000000");
+        assertEquals(count(query), executor.count(query).first());
+    }
+
+    @Test
+    public void aggregationExecutor_histogram() throws Exception {
+        VariantAggregationExecutor executor = newAggregationExecutor();
+        Query query = new Query(REGION.key(), "1");
+        QueryResult<ObjectMap> histogram = executor.histogram(query, 50000);
+
+        long total = 0;
+        for (ObjectMap window : histogram.getResult()) {
+            assertEquals(0, window.getInt("start") % 50000);
+            Query windowQuery = new Query(REGION.key(), "1:" + window.getInt("start") + "-" + window.getInt("end"));
+            assertTrue(count(windowQuery) >= window.getLong("count"));
+            total += window.getLong("count");
+        }
+        assertEquals(count(query).longValue(), total);
+    }
+
+    @Test
+    public void aggregationExecutor_rank_gene() throws Exception {
+        VariantAggregationExecutor executor = newAggregationExecutor();
+        QueryResult<ObjectMap> queryResult_rank = executor.rank(new Query(), "gene", 20, false);
+
+        assertEquals(20, queryResult_rank.getNumResults());
+        for (ObjectMap map : queryResult_rank.getResult()) {
+            Long variantQueryResult = count(new Query(GENE.key(), map.getString("id")));
+            assertEquals(variantQueryResult.longValue(), map.getLong("count"));
+        }
+    }
+
+    @Test
+    public void aggregationExecutor_rank_ct() throws Exception {
+        VariantAggregationExecutor executor = newAggregationExecutor();
+        QueryResult<ObjectMap> queryResult_rank = executor.rank(new Query(), "ct", 20, false);
+
+        assertEquals(20, queryResult_rank.getNumResults());
+        for (ObjectMap map : queryResult_rank.getResult()) {
+            // SO accession numbers, as in the rank of the MongoDB storage engine
+            assertTrue(map.get("id") instanceof Integer);
+            Long variantQueryResult = count(new Query(ANNOT_CONSEQUENCE_TYPE.key(), map.get("id")));
+            assertEquals(variantQueryResult.longValue(), map.getLong("count"));
+        }
+    }
+
+    private VariantAggregationExecutor newAggregationExecutor() {
+        // Small chunks, to test the merge of many partial results
+        return new VariantAggregationExecutor(dbAdaptor, dbAdaptor.getStudyConfigurationManager(), new ObjectMap()
+                .append(VariantStorageEngine.Options.AGGREGATION_CHUNK_SIZE.key(), 200000)
+                .append(VariantStorageEngine.Options.AGGREGATION_THREADS.key(), 4));
+    }
+
     @Test
     public void testGetAllVariants_maf() throws Exception {
 
@@ -0,0 +1,176 @@
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.opencb.opencga.storage.core.variant.analysis.GenotypeMatrix.*;
+
+public class GenotypeMatrixTest {
+
+    private GenotypeMatrix matrix;
+
+    @Before
+    public void setUp() throws Exception {
+        matrix = new GenotypeMatrix.Builder(Arrays.asList("S1", "S2", "S3"), GenotypeMatrix.DEFAULT_ENCODER, 4)
+                .add("1:100:A:C", Arrays.asList("0/0", "0/1", "1/1"))
+                .add("1:101:A:C", Arrays.asList("0|1", "./.", "1|1"))
+                .add("1:102:A:C", Arrays.asList("1/2", "0/0", "0/1"))
+                .add("1:103:A:C", Arrays.asList("0/0", "1/1", "."))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        matrix.close();
+    }
+
+    @Test
+    public void testEncodeGenotype() throws Exception {
+        assertEquals(HOM_REF, encodeGenotype("0/0"));
+        assertEquals(HOM_REF, encodeGenotype("0"));
+        assertEquals(HET, encodeGenotype("1|0"));
+        assertEquals(HOM_ALT, encodeGenotype("1/1"));
+        assertEquals(HOM_ALT, encodeGenotype("1"));
+        assertEquals(OTHER, encodeGenotype("0/2"));
+        assertEquals(OTHER, encodeGenotype("0/1/1"));
+        assertEquals(MISSING, encodeGenotype("./."));
+        assertEquals(MISSING, encodeGenotype(null));
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        assertEquals(4, matrix.getNumVariants());
+        assertEquals(3, matrix.getNumSamples());
+        assertEquals(HOM_REF, matrix.get(0, 0));
+        assertEquals(HET, matrix.get(0, 1));
+        assertEquals(HOM_ALT, matrix.get(0, 2));
+        assertEquals(MISSING, matrix.get(1, 1));
+        assertEquals(OTHER, matrix.get(2, 0));
+        assertEquals(MISSING, matrix.get(3, 2));
+    }
+
+    @Test
+    public void testCounts() throws Exception {
+        assertEquals(2, matrix.count(0, HOM_REF));
+        assertEquals(1, matrix.count(1, MISSING));
+        assertEquals(3, matrix.count(2, HET, HOM_ALT));
+        assertArrayEquals(new int[]{1, 1, 2}, matrix.countPerSample(HOM_ALT, OTHER));
+
+        int[][] counts = matrix.genotypeCounts();
+        assertArrayEquals(new int[]{1, 1, 1, 0, 0}, counts[0]);
+        assertArrayEquals(new int[]{0, 1, 1, 0, 1}, counts[1]);
+        assertArrayEquals(new int[]{1, 1, 0, 1, 0}, counts[2]);
+        assertArrayEquals(new int[]{1, 0, 1, 0, 1}, counts[3]);
+    }
+
+    @Test
+    public void testFilterSamples() throws Exception {
+        assertEquals(Arrays.asList("S2", "S3"), matrix.getSamplesInAnyVariant(HOM_ALT));
+        assertEquals(Collections.singletonList("S3"), matrix.getSamplesInAllVariants(HET, HOM_ALT, MISSING));
+        assertEquals(Collections.emptyList(), matrix.getSamplesInAllVariants(HOM_REF));
+
+        BitSet variants = matrix.getVariants(matrix.getSampleIdx("S1"), HOM_REF);
+        assertEquals(BitSet.valueOf(new long[]{0b1001}), variants);
+    }
+
+    @Test
+    public void testIdentityByState() throws Exception {
+        // S1 vs S3 : 0/0-1/1 (IBS0), 0|1-1|1 (IBS1), 1/2-0/1 (IBS1), missing
+        assertArrayEquals(new int[]{1, 2, 0}, matrix.identityByState(0, 2));
+        // S2 vs S3 : 0/1-1/1 (IBS1), missing, 0/0-0/1 (IBS1), missing
+        assertArrayEquals(new int[]{0, 2, 0}, matrix.identityByState(1, 2));
+        assertArrayEquals(new int[]{0, 0, 4}, matrix.identityByState(0, 0));
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        int numVariants = 5000;
+        GenotypeMatrix.Builder builder = new GenotypeMatrix.Builder(Arrays.asList("S1", "S2"), GenotypeMatrix.DEFAULT_ENCODER,
+                numVariants);
+        for (int i = 0; i < numVariants; i++) {
+            List<String> gts = new ArrayList<>();
+            gts.add(i % 3 == 0 ? "1/1" : "0/0");
+            gts.add(i % 7 == 0 ? "./." : "0/1");
+            builder.add("1:" + (i + 1) + ":A:C", gts);
+        }
+        try {
+            builder.add("2:1:A:C", Arrays.asList("0/0", "0/0"));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Matrix full
+        }
+        try (GenotypeMatrix matrix = builder.build()) {
+            assertEquals(numVariants, matrix.getNumVariants());
+            assertEquals((numVariants + 2) / 3, matrix.count(0, HOM_ALT));
+            assertEquals((numVariants + 6) / 7, matrix.count(1, MISSING));
+            assertEquals(HOM_ALT, matrix.get(4998, 0));
+            assertEquals(MISSING, matrix.get(4998, 1));
+            assertEquals(numVariants - (numVariants + 6) / 7, matrix.identityByState(0, 1)[1]);
+        }
+    }
+
+    @Test
+    public void testKeepVariants() throws Exception {
+        Variant variant = new Variant("1:100:A:C");
+        StudyEntry studyEntry = new StudyEntry("s1");
+        studyEntry.setFormat(Collections.singletonList("GT"));
+        Map<String, Integer> samplesPosition = new LinkedHashMap<>();
+        samplesPosition.put("S1", 0);
+        samplesPosition.put("S2", 1);
+        studyEntry.setSamplesPosition(samplesPosition);
+        studyEntry.setSamplesData(Arrays.asList(Collections.singletonList("0/1"), Collections.singletonList("1/1")));
+        variant.addStudyEntry(studyEntry);
+        VariantAnnotation annotation = new VariantAnnotation();
+        annotation.setId("rs1");
+        variant.setAnnotation(annotation);
+
+        try (GenotypeMatrix matrix = new GenotypeMatrix.Builder(Arrays.asList("S1", "S2"), DEFAULT_ENCODER, 2, true)
+                .add(variant)
+                .add("1:200:A:C", Arrays.asList("0/0", "0/0"))
+                .build()) {
+            assertSame(variant, matrix.getVariant(0));
+            assertEquals("rs1", matrix.getVariant(0).getAnnotation().getId());
+            assertEquals(HET, matrix.get(0, 0));
+            assertEquals(HOM_ALT, matrix.get(0, 1));
+            // Added by id
+            assertEquals("1:200:A:C", matrix.getVariant(1).toString());
+        }
+
+        try (GenotypeMatrix matrix = new GenotypeMatrix.Builder(Arrays.asList("S1", "S2"), DEFAULT_ENCODER, 1)
+                .add(variant)
+                .build()) {
+            assertNotSame(variant, matrix.getVariant(0));
+            assertEquals(variant.toString(), matrix.getVariant(0).toString());
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        matrix.close();
+        // Closing twice is allowed
+        matrix.close();
+        try {
+            matrix.get(0, 0);
+            fail("Expected NullPointerException");
+        } catch (NullPointerException e) {
+            // Released
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.junit.Test;
+import org.opencb.opencga.storage.core.variant.analysis.IdentityByStateCalculator.SamplePair;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IdentityByStateCalculatorTest {
+
+    @Test
+    public void testCompare() throws Exception {
+        GenotypeMatrix matrix = new GenotypeMatrix.Builder(Arrays.asList("S1", "S2", "S3"), GenotypeMatrix.DEFAULT_ENCODER, 4)
+                .add("1:100:A:C", Arrays.asList("0/0", "0/1", "1/1"))
+                .add("1:101:A:C", Arrays.asList("0/1", "0/1", "0/0"))
+                .add("1:102:A:C", Arrays.asList("0/1", "./.", "0/1"))
+                .add("1:103:A:C", Arrays.asList("0/0", "0/0", "0/0"))
+                .build();
+
+        IdentityByStateCalculator calculator = new IdentityByStateCalculator(matrix);
+        SamplePair pair = calculator.compare(0, 2);
+        assertEquals(1, pair.getIbs0());
+        assertEquals(1, pair.getIbs1());
+        assertEquals(2, pair.getIbs2());
+        assertEquals((2 + 0.5) / 4, pair.getDistance(), 0.0001);
+        // hetHet = 1, het1 = 2, het2 = 1
+        assertEquals((1 - 2.0) / 3, pair.getKinship(), 0.0001);
+
+        pair = calculator.compare(0, 1);
+        assertEquals(3, pair.getNumVariants());
+        assertEquals(0, pair.getIbs0());
+        assertEquals(1, pair.getIbs1());
+        assertEquals(2, pair.getIbs2());
+
+        // Variant 1:103 is monomorphic
+        calculator = new IdentityByStateCalculator(matrix, 0.1);
+        assertEquals(3, calculator.compare(0, 2).getNumVariants());
+    }
+
+    @Test
+    public void testAllPairs() throws Exception {
+        int numSamples = 150;
+        int numVariants = 200;
+        List<String> samples = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            samples.add("S" + i);
+        }
+        Random random = new Random(1);
+        String[] gts = {"0/0", "0/1", "1/1", "./."};
+        GenotypeMatrix.Builder builder = new GenotypeMatrix.Builder(samples, GenotypeMatrix.DEFAULT_ENCODER, numVariants);
+        for (int v = 0; v < numVariants; v++) {
+            List<String> row = new ArrayList<>(numSamples);
+            for (int i = 0; i < numSamples; i++) {
+                row.add(gts[random.nextInt(gts.length)]);
+            }
+            builder.add("1:" + (v + 1) + ":A:C", row);
+        }
+        GenotypeMatrix matrix = builder.build();
+        IdentityByStateCalculator calculator = new IdentityByStateCalculator(matrix);
+
+        List<SamplePair> pairs = calculator.collect(4);
+        assertEquals(numSamples * (numSamples - 1) / 2, pairs.size());
+        Set<String> uniquePairs = new HashSet<>();
+        for (SamplePair pair : pairs) {
+            assertTrue(uniquePairs.add(pair.getSample1() + "-" + pair.getSample2()));
+            int[] ibs = matrix.identityByState(matrix.getSampleIdx(pair.getSample1()), matrix.getSampleIdx(pair.getSample2()));
+            assertEquals(ibs[0], pair.getIbs0());
+            assertEquals(ibs[1], pair.getIbs1());
+            assertEquals(ibs[2], pair.getIbs2());
+        }
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        calculator.run(new IdentityByStateCalculator.TsvWriter(os), 2, 16);
+        String[] lines = os.toString().split("\n");
+        assertEquals(IdentityByStateCalculator.TsvWriter.HEADER.trim(), lines[0]);
+        assertEquals(pairs.size() + 1, lines.length);
+    }
+}
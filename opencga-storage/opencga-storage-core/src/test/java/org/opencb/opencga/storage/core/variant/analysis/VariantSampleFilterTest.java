@@ -78,6 +78,11 @@ public class VariantSampleFilterTest {
         System.out.println("samplesInAllVariants = " + samples);
 
         assertEquals(new HashSet<>(Arrays.asList(S1, S3)), samples.keySet());
+        // Returns the variants from the query, not only the ids
+        for (Variant variant : samples.get(S1)) {
+            assertEquals("1:104:A:C", variant.toString());
+            assertEquals(STUDY, variant.getStudies().get(0).getStudyId());
+        }
     }
 
     @Test
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConcurrentVariantAnnotationTaskTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    private ExecutorService executorService;
+
+    @Before
+    public void setUp() throws Exception {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        FailingAnnotator annotator = new FailingAnnotator(2);
+        ConcurrentVariantAnnotationTask task = new ConcurrentVariantAnnotationTask(annotator, null, 1, 3, 1);
+
+        List<Variant> variants = variants(10);
+        List<VariantAnnotation> annotations = task.apply(variants);
+
+        assertEquals(3, annotator.calls.get());
+        assertEquals(toIds(variants), annotations.stream().map(VariantAnnotation::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRetryFail() throws Exception {
+        FailingAnnotator annotator = new FailingAnnotator(Integer.MAX_VALUE);
+        ConcurrentVariantAnnotationTask task = new ConcurrentVariantAnnotationTask(annotator, null, 1, 2, 1);
+
+        thrown.expect(VariantAnnotatorException.class);
+        thrown.expectMessage(FailingAnnotator.MESSAGE);
+        try {
+            task.apply(variants(10));
+        } finally {
+            // First attempt plus two retries
+            assertEquals(3, annotator.calls.get());
+        }
+    }
+
+    @Test
+    public void testRetryFailNoRetries() throws Exception {
+        FailingAnnotator annotator = new FailingAnnotator(1);
+        ConcurrentVariantAnnotationTask task = new ConcurrentVariantAnnotationTask(annotator, null, 1, 0, 1);
+
+        thrown.expect(VariantAnnotatorException.class);
+        thrown.expectMessage(FailingAnnotator.MESSAGE);
+        try {
+            task.apply(variants(10));
+        } finally {
+            assertEquals(1, annotator.calls.get());
+        }
+    }
+
+    @Test
+    public void testConcurrentRetry() throws Exception {
+        // The first 4 calls fail, from any of the 4 concurrent requests
+        FailingAnnotator annotator = new FailingAnnotator(4);
+        ConcurrentVariantAnnotationTask task = new ConcurrentVariantAnnotationTask(annotator, executorService, 4, 4, 1);
+
+        List<Variant> variants = variants(20);
+        List<VariantAnnotation> annotations = task.apply(variants);
+
+        assertEquals(8, annotator.calls.get());
+        assertEquals(toIds(variants), annotations.stream().map(VariantAnnotation::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testConcurrentRetryFail() throws Exception {
+        FailingAnnotator annotator = new FailingAnnotator(Integer.MAX_VALUE);
+        ConcurrentVariantAnnotationTask task = new ConcurrentVariantAnnotationTask(annotator, executorService, 4, 2, 1);
+
+        thrown.expect(VariantAnnotatorException.class);
+        thrown.expectMessage(FailingAnnotator.MESSAGE);
+        task.apply(variants(20));
+    }
+
+    private static List<Variant> variants(int size) {
+        List<Variant> variants = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            variants.add(new Variant("1:" + (1000 + i) + ":A:C"));
+        }
+        return variants;
+    }
+
+    private static List<String> toIds(List<Variant> variants) {
+        return variants.stream().map(Variant::toString).collect(Collectors.toList());
+    }
+
+    /**
+     * Annotator failing the first N calls.
+     */
+    public static class FailingAnnotator extends VariantAnnotator {
+
+        public static final String MESSAGE = "Fail because reasons";
+        private final AtomicInteger failures;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        public FailingAnnotator(int failures) throws VariantAnnotatorException {
+            super(null, null, new ObjectMap());
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                throw new VariantAnnotatorException(MESSAGE);
+            }
+            return variants.stream().map(v -> {
+                VariantAnnotation a = new VariantAnnotation();
+                a.setChromosome(v.getChromosome());
+                a.setStart(v.getStart());
+                a.setEnd(v.getEnd());
+                a.setReference(v.getReference());
+                a.setAlternate(v.getAlternate());
+                a.setId(v.toString());
+                return a;
+            }).collect(Collectors.toList());
+        }
+
+        @Override
+        public ProjectMetadata.VariantAnnotatorProgram getVariantAnnotatorProgram() throws IOException {
+            return new ProjectMetadata.VariantAnnotatorProgram("failing", "1", null);
+        }
+
+        @Override
+        public List<ObjectMap> getVariantAnnotatorSourceVersion() throws IOException {
+            return Collections.emptyList();
+        }
+    }
+}
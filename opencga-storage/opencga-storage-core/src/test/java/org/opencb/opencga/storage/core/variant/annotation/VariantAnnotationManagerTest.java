@@ -91,6 +91,25 @@ public abstract class VariantAnnotationManagerTest extends VariantStorageBaseTes
         assertEquals("v2", variantStorageEngine.getStudyConfigurationManager().getProjectMetadata().first().getAnnotation().getCurrent().getAnnotator().getVersion());
     }
 
+    @Test
+    public void testDirectLoadConcurrentRequests() throws Exception {
+        VariantStorageEngine variantStorageEngine = getVariantStorageEngine();
+        runDefaultETL(smallInputUri, variantStorageEngine, newStudyConfiguration(),
+                new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false));
+
+        variantStorageEngine.getOptions()
+                .append(VARIANT_ANNOTATOR_CLASSNAME, TestAnnotator.class.getName())
+                .append(ANNOTATOR, VariantAnnotatorFactory.AnnotationSource.OTHER);
+
+        variantStorageEngine.annotate(new Query(), new ObjectMap(TestAnnotator.ANNOT_KEY, "v1")
+                .append(DefaultVariantAnnotationManager.DIRECT_LOAD, true)
+                .append(DefaultVariantAnnotationManager.NUM_THREADS, 2)
+                .append(DefaultVariantAnnotationManager.CONCURRENT_REQUESTS, 8));
+
+        assertEquals("v1", variantStorageEngine.getStudyConfigurationManager().getProjectMetadata().first().getAnnotation().getCurrent().getAnnotator().getVersion());
+        checkAnnotationSnapshot(variantStorageEngine, VariantAnnotationManager.CURRENT, VariantAnnotationManager.CURRENT, "v1", null);
+    }
+
     @Test
     public void testMultiAnnotations() throws Exception {
 
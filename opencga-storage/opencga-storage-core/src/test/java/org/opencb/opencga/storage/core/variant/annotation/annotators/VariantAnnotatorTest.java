@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.commons.datastore.core.ObjectMap;
@@ -14,7 +15,9 @@ import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -30,6 +33,8 @@ public class VariantAnnotatorTest {
 
     @Rule
     public ExpectedException thrown = ExpectedException.none();
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
     private ProjectMetadata projectMetadata;
 
     @Before
@@ -99,6 +104,117 @@ public class VariantAnnotatorTest {
         testAnnotator.annotate(Arrays.asList(new Variant("10:999:A:C"), new Variant("10:1000:A:C"), new Variant("10:1001:A:C")));
     }
 
+    @Test
+    public void testLocalCache() throws Exception {
+        ObjectMap options = new ObjectMap(VariantAnnotationManager.ANNOTATOR, VariantAnnotatorFactory.AnnotationSource.OTHER.toString())
+                .append(VariantAnnotationManager.VARIANT_ANNOTATOR_CLASSNAME, TestLocalCacheVariantAnnotator.class.getName())
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE, true)
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE_PATH, temporaryFolder.newFolder().getAbsolutePath())
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE_MEMORY_SIZE, 1);
+        TestLocalCacheVariantAnnotator annotator = (TestLocalCacheVariantAnnotator) VariantAnnotatorFactory.buildVariantAnnotator(storageConfiguration, storageConfiguration.getDefaultStorageEngineId(), projectMetadata, options);
+
+        List<VariantAnnotation> annotations = annotator.annotate(Arrays.asList(new Variant("10:999:A:C"), new Variant("10:1000:A:C")));
+        assertEquals(2, annotations.size());
+        assertEquals(Arrays.asList("10:999:A:C", "10:1000:A:C"), annotator.annotated);
+
+        // Only the misses are sent to the annotator. Result keeps the order of the input
+        annotator.annotated.clear();
+        annotations = annotator.annotate(Arrays.asList(new Variant("10:1001:A:C"), new Variant("10:999:A:C"), new Variant("10:1000:A:C")));
+        assertEquals(Arrays.asList("10:1001:A:C"), annotator.annotated);
+        assertEquals(Arrays.asList(1001, 999, 1000), annotations.stream().map(VariantAnnotation::getStart).collect(Collectors.toList()));
+
+        // New annotators with the same configuration share the cache
+        annotator = (TestLocalCacheVariantAnnotator) VariantAnnotatorFactory.buildVariantAnnotator(storageConfiguration, storageConfiguration.getDefaultStorageEngineId(), projectMetadata, options);
+        annotator.annotate(Arrays.asList(new Variant("10:999:A:C"), new Variant("10:1000:A:C")));
+        assertEquals(Collections.emptyList(), annotator.annotated);
+
+        // Invalidate cache if the source version changes
+        annotator = (TestLocalCacheVariantAnnotator) VariantAnnotatorFactory.buildVariantAnnotator(storageConfiguration, storageConfiguration.getDefaultStorageEngineId(), projectMetadata, options);
+        annotator.sourceVersion = "v2";
+        annotator.annotate(Arrays.asList(new Variant("10:999:A:C"), new Variant("10:1000:A:C")));
+        assertEquals(Arrays.asList("10:999:A:C", "10:1000:A:C"), annotator.annotated);
+    }
+
+    @Test
+    public void testLocalCacheSkippedVariants() throws Exception {
+        ObjectMap options = new ObjectMap(VariantAnnotationManager.ANNOTATOR, VariantAnnotatorFactory.AnnotationSource.OTHER.toString())
+                .append(VariantAnnotationManager.VARIANT_ANNOTATOR_CLASSNAME, TestLocalCacheVariantAnnotator.class.getName())
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE, true)
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE_PATH, temporaryFolder.newFolder().getAbsolutePath());
+        TestLocalCacheVariantAnnotator annotator = (TestLocalCacheVariantAnnotator) VariantAnnotatorFactory.buildVariantAnnotator(storageConfiguration, storageConfiguration.getDefaultStorageEngineId(), projectMetadata, options);
+
+        // Same chromosome, start, reference and alternate. Only the end is different
+        Variant sv1 = new Variant("10:2000-3000:A:<DEL>");
+        Variant sv2 = new Variant("10:2000-4000:A:<DEL>");
+        annotator.skip.add(sv1.toString());
+        List<VariantAnnotation> annotations = annotator.annotate(Arrays.asList(sv1, sv2));
+        assertEquals(1, annotations.size());
+        assertEquals(4000, annotations.get(0).getEnd().intValue());
+
+        // Read from the cache, with the same content
+        annotator.annotated.clear();
+        annotations = annotator.annotate(Arrays.asList(sv1, sv2));
+        assertEquals(Collections.singletonList(sv1.toString()), annotator.annotated);
+        assertEquals(1, annotations.size());
+        assertEquals(4000, annotations.get(0).getEnd().intValue());
+        assertEquals("id_" + sv2, annotations.get(0).getId());
+    }
+
+    @Test
+    public void testLocalCacheDifferentEnd() throws Exception {
+        ObjectMap options = new ObjectMap(VariantAnnotationManager.ANNOTATOR, VariantAnnotatorFactory.AnnotationSource.OTHER.toString())
+                .append(VariantAnnotationManager.VARIANT_ANNOTATOR_CLASSNAME, TestLocalCacheVariantAnnotator.class.getName())
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE, true)
+                .append(AbstractCellBaseVariantAnnotator.ANNOTATOR_CELLBASE_LOCAL_CACHE_PATH, temporaryFolder.newFolder().getAbsolutePath());
+        TestLocalCacheVariantAnnotator annotator = (TestLocalCacheVariantAnnotator) VariantAnnotatorFactory.buildVariantAnnotator(storageConfiguration, storageConfiguration.getDefaultStorageEngineId(), projectMetadata, options);
+
+        // CellBase reports a different end for the insertion
+        Variant insertion = new Variant("10:1000:-:AT");
+        Variant snv = new Variant("10:1001:A:C");
+        annotator.endShift = 1;
+        List<VariantAnnotation> annotations = annotator.annotate(Arrays.asList(insertion, snv));
+        assertEquals(Arrays.asList("id_" + insertion, "id_" + snv),
+                annotations.stream().map(VariantAnnotation::getId).collect(Collectors.toList()));
+    }
+
+    public static class TestLocalCacheVariantAnnotator extends CellBaseRestVariantAnnotator {
+
+        private final List<String> annotated = new ArrayList<>();
+        private final Set<String> skip = new HashSet<>();
+        private String sourceVersion = "v1";
+        private int endShift = 0;
+
+        public TestLocalCacheVariantAnnotator(StorageConfiguration storageConfiguration, ProjectMetadata projectMetadata, ObjectMap options) throws VariantAnnotatorException {
+            super(storageConfiguration, projectMetadata, options);
+        }
+
+        @Override
+        protected List<QueryResult<VariantAnnotation>> annotateFiltered(List<Variant> variants) {
+            List<QueryResult<VariantAnnotation>> queryResults = new ArrayList<>(variants.size());
+            for (Variant variant : variants) {
+                annotated.add(variant.toString());
+                if (skip.contains(variant.toString())) {
+                    queryResults.add(new QueryResult<>(variant.toString(), 0, 0, 0, "", "", Collections.emptyList()));
+                    continue;
+                }
+                VariantAnnotation annotation = new VariantAnnotation();
+                annotation.setId("id_" + variant);
+                annotation.setChromosome(variant.getChromosome());
+                annotation.setStart(variant.getStart());
+                annotation.setEnd(variant.getEnd() + endShift);
+                annotation.setReference(variant.getReference());
+                annotation.setAlternate(variant.getAlternate());
+                queryResults.add(new QueryResult<>(variant.toString(), 0, 1, 1, "", "", Collections.singletonList(annotation)));
+            }
+            return queryResults;
+        }
+
+        @Override
+        public List<ObjectMap> getVariantAnnotatorSourceVersion() throws IOException {
+            return Collections.singletonList(new ObjectMap("version", sourceVersion));
+        }
+    }
+
     public static class TestCellBaseRestVariantAnnotator extends CellBaseRestVariantAnnotator {
 
         private final Set<String> skipvariants;
@@ -16,25 +16,29 @@
 
 package org.opencb.opencga.storage.core.variant.io;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.dummy.DummyProjectMetadataAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -88,4 +92,58 @@ public class VariantExporterTest extends VariantStorageBaseTest implements Dummy
         }
     }
 
+    @Test
+    public void exportStudyShardedJsonTest() throws Exception {
+        URI output = newOutputUri().resolve("variant.json.gz");
+        URI outputSharded = output.resolve("variant.sharded.json.gz");
+        variantStorageEngine.exportData(output, VariantOutputFormat.JSON_GZ, new Query(), new QueryOptions());
+        variantStorageEngine.exportData(outputSharded, VariantOutputFormat.JSON_GZ, new Query(),
+                new QueryOptions(VariantStorageEngine.Options.EXPORT_THREADS.key(), 4));
+
+        assertTrue(Paths.get(outputSharded).toFile().exists());
+        assertTrue(Paths.get(outputSharded.getPath() + VariantExporter.METADATA_FILE_EXTENSION).toFile().exists());
+        assertEquals(readLines(output).stream().sorted().collect(Collectors.toList()),
+                readLines(outputSharded).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void exportStudyShardedRegionsJsonTest() throws Exception {
+        URI output = newOutputUri().resolve("variant.json.gz");
+        URI outputSharded = output.resolve("variant.sharded.json.gz");
+        // Variants overlapping two regions of the same chromosome are exported once
+        Query query = new Query(VariantQueryParam.REGION.key(), "1:1000000-2000000,1:2000001-2000010,1:2000020-5000000");
+        variantStorageEngine.exportData(output, VariantOutputFormat.JSON_GZ, query, new QueryOptions());
+        variantStorageEngine.exportData(outputSharded, VariantOutputFormat.JSON_GZ, query,
+                new QueryOptions(VariantStorageEngine.Options.EXPORT_THREADS.key(), 4));
+
+        assertEquals(readLines(output).stream().sorted().collect(Collectors.toList()),
+                readLines(outputSharded).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void exportStudyShardedAvroTest() throws Exception {
+        URI output = newOutputUri().resolve("variant.avro");
+        variantStorageEngine.exportData(output, VariantOutputFormat.AVRO, new Query(),
+                new QueryOptions(VariantStorageEngine.Options.EXPORT_THREADS.key(), 4));
+
+        File manifest = Paths.get(output.getPath() + VariantExporter.MANIFEST_FILE_EXTENSION).toFile();
+        assertTrue(manifest.exists());
+        ObjectMap manifestMap = new ObjectMapper().readValue(manifest, ObjectMap.class);
+        List<ObjectMap> parts = manifestMap.getAsList("parts", ObjectMap.class);
+        assertTrue(parts.size() > 1);
+        long numVariants = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            String partFile = VariantExporter.getPartFileName(output.getPath(), VariantOutputFormat.AVRO, i);
+            assertTrue(Paths.get(partFile).toFile().exists());
+            numVariants += parts.get(i).getLong("numVariants");
+        }
+        assertEquals(variantStorageEngine.count(new Query()).first().longValue(), numVariants);
+    }
+
+    private List<String> readLines(URI output) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(output.getPath()))))) {
+            return br.lines().collect(Collectors.toList());
+        }
+    }
+
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.parquet;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencb.opencga.storage.core.variant.io.parquet.VariantParquetWriter.*;
+
+public class VariantParquetWriterTest {
+
+    @Test
+    public void testEncodeGenotype() {
+        assertEquals(GT_HOM_REF, encodeGenotype("0/0"));
+        assertEquals(GT_HOM_REF, encodeGenotype("0|0"));
+        assertEquals(GT_HOM_REF, encodeGenotype("0"));
+        assertEquals(GT_HET, encodeGenotype("0/1"));
+        assertEquals(GT_HET, encodeGenotype("1|0"));
+        assertEquals(GT_HOM_ALT, encodeGenotype("1/1"));
+        assertEquals(GT_HOM_ALT, encodeGenotype("1"));
+        assertEquals(GT_MISSING, encodeGenotype("./."));
+        assertEquals(GT_MISSING, encodeGenotype("."));
+        assertEquals(GT_MISSING, encodeGenotype(null));
+        assertEquals(GT_OTHER, encodeGenotype("1/2"));
+        assertEquals(GT_OTHER, encodeGenotype("0/0/1"));
+    }
+
+    @Test
+    public void testWriteFileLayout() {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        VariantParquetWriter writer = new VariantParquetWriter(os, true, Collections.emptyMap(), 1000, 10, 1024 * 1024);
+        writer.open();
+        writer.pre();
+        writer.write(Arrays.asList(
+                new Variant("1:100:A:T"),
+                new Variant("1:200:A:T"),
+                new Variant("1:1500:A:T"),
+                new Variant("2:100:A:T")));
+        writer.post();
+        writer.close();
+
+        byte[] bytes = os.toByteArray();
+        assertEquals("PAR1", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("PAR1", new String(bytes, bytes.length - 4, 4, StandardCharsets.US_ASCII));
+        int footerLength = ByteBuffer.wrap(bytes, bytes.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        assertTrue(footerLength > 0 && footerLength < bytes.length - 12);
+    }
+}
@@ -159,6 +159,72 @@ public abstract class VariantStatisticsManagerTest extends VariantStorageBaseTes
 
     }
 
+    @Test
+    public void calculateStatsIncrementalTest() throws Exception {
+        QueryOptions options = new QueryOptions();
+        options.put(VariantStorageEngine.Options.LOAD_BATCH_SIZE.key(), 100);
+        List<String> samples = new ArrayList<>(studyConfiguration.getSampleIds().keySet());
+
+        Map<String, Set<String>> cohorts = new HashMap<>();
+        cohorts.put("cohort1", new HashSet<>(samples.subList(0, 4)));
+        StudyConfiguration studyConfiguration = stats(options, this.studyConfiguration, cohorts, outputUri.resolve("cohort1.stats"));
+        int cohortId = studyConfiguration.getCohortIds().get("cohort1");
+        assertEquals(studyConfiguration.getCohorts().get(cohortId), studyConfiguration.getCalculatedStatsSamples().get(cohortId));
+        checkCohorts(dbAdaptor, studyConfiguration);
+
+        // Add one sample and remove another one. Stats are updated from the changed samples
+        Set<String> cohort1 = new HashSet<>(samples.subList(1, 4));
+        cohort1.add(samples.get(5));
+        cohorts.put("cohort1", cohort1);
+        studyConfiguration = stats(options, studyConfiguration, cohorts, outputUri.resolve("cohort1.incremental.stats"));
+
+        assertThat(studyConfiguration.getCalculatedStats(), hasItem(cohortId));
+        assertFalse(studyConfiguration.getInvalidStats().contains(cohortId));
+        Set<Integer> sampleIds = cohort1.stream().map(studyConfiguration.getSampleIds()::get).collect(Collectors.toSet());
+        assertEquals(sampleIds, studyConfiguration.getCohorts().get(cohortId));
+        assertEquals(sampleIds, studyConfiguration.getCalculatedStatsSamples().get(cohortId));
+        checkCohorts(dbAdaptor, studyConfiguration);
+    }
+
+    @Test
+    public void calculateStatsIncrementalStaleTest() throws Exception {
+        QueryOptions options = new QueryOptions();
+        options.put(VariantStorageEngine.Options.LOAD_BATCH_SIZE.key(), 100);
+        List<String> samples = new ArrayList<>(studyConfiguration.getSampleIds().keySet());
+        String removedSample = samples.get(0);
+
+        Map<String, Set<String>> cohorts = new HashMap<>();
+        cohorts.put("cohort1", new HashSet<>(samples.subList(0, 5)));
+        StudyConfiguration studyConfiguration = stats(options, this.studyConfiguration, cohorts, outputUri.resolve("cohort1.stats"));
+        checkCohorts(dbAdaptor, studyConfiguration);
+
+        // Overwrite the stored stats of two variants with inconsistent genotype counts
+        List<VariantStatsWrapper> staleStats = new ArrayList<>();
+        VariantDBIterator iterator = dbAdaptor.iterator(new Query(), new QueryOptions());
+        // Counts not adding up to the number of samples in the cohort
+        Variant variant = iterator.next();
+        VariantStats stats = VariantStatsCalculator.calculate(variant, new HashMap<>(Collections.singletonMap(new Genotype("0/0"), 7)));
+        staleStats.add(new VariantStatsWrapper(variant, Collections.singletonMap("cohort1", stats)));
+        // Counts without the genotype of the removed sample
+        variant = iterator.next();
+        String gt = variant.getStudies().get(0).getSampleData(removedSample, "GT");
+        stats = VariantStatsCalculator.calculate(variant,
+                new HashMap<>(Collections.singletonMap(new Genotype(gt.equals("0/0") ? "1/1" : "0/0"), 5)));
+        staleStats.add(new VariantStatsWrapper(variant, Collections.singletonMap("cohort1", stats)));
+        iterator.close();
+        dbAdaptor.updateStats(staleStats, studyConfiguration, System.currentTimeMillis(), new QueryOptions());
+
+        // Remove one sample. Variants with stale stats are calculated from every sample
+        Set<String> cohort1 = new HashSet<>(samples.subList(1, 5));
+        cohorts.put("cohort1", cohort1);
+        studyConfiguration = stats(options, studyConfiguration, cohorts, outputUri.resolve("cohort1.stale.stats"));
+
+        int cohortId = studyConfiguration.getCohortIds().get("cohort1");
+        Set<Integer> sampleIds = cohort1.stream().map(studyConfiguration.getSampleIds()::get).collect(Collectors.toSet());
+        assertEquals(sampleIds, studyConfiguration.getCalculatedStatsSamples().get(cohortId));
+        checkCohorts(dbAdaptor, studyConfiguration);
+    }
+
     public StudyConfiguration stats(QueryOptions options, StudyConfiguration studyConfiguration, Map<String, Set<String>> cohorts,
                                     URI output) throws IOException, StorageEngineException {
         options.put(DefaultVariantStatisticsManager.OUTPUT, output.toString());
@@ -18,12 +18,15 @@ package org.opencb.opencga.storage.hadoop.utils;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
 import org.slf4j.Logger;
@@ -398,6 +401,30 @@ public class HBaseManager implements AutoCloseable {
         });
     }
 
+    /**
+     * Bulk load a directory of HFiles into a table. The directory must contain one subdirectory per column family.
+     * HFiles spanning more than one region are split before loading them. Loaded HFiles are moved out of the directory.
+     *
+     * @param tableName HBase table name
+     * @param hFilesDir Directory with the HFiles
+     * @throws IOException If any IO problem occurs
+     */
+    public void bulkLoad(String tableName, Path hFilesDir) throws IOException {
+        LoadIncrementalHFiles loadIncrementalHFiles;
+        try {
+            loadIncrementalHFiles = new LoadIncrementalHFiles(conf);
+        } catch (Exception e) {
+            throw new IOException("Unable to bulk load HFiles into table " + tableName, e);
+        }
+        act(tableName, (table, admin) -> {
+            try (RegionLocator regionLocator = getConnection().getRegionLocator(table.getName())) {
+                LOGGER.info("Bulk load HFiles from {} into table {}", hFilesDir, tableName);
+                loadIncrementalHFiles.doBulkLoad(hFilesDir, admin, table, regionLocator);
+            }
+            return null;
+        });
+    }
+
     public static Configuration addHBaseSettings(Configuration conf, String credentialsStr) throws URISyntaxException {
         HBaseCredentials credentials = new HBaseCredentials(credentialsStr);
         return addHBaseSettings(conf, credentials);
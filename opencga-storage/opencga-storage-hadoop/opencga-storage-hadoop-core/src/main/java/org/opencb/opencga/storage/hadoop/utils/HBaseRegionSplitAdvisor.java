@@ -0,0 +1,252 @@
+package org.opencb.opencga.storage.hadoop.utils;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.*;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.commons.datastore.core.ObjectMap;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Reports the size skew between the regions of a table, and proposes a plan of splits and merges to balance it.
+ *
+ * Regions bigger than split_factor times the target size should be split, and adjacent regions that together are smaller than
+ * merge_factor times the target size should be merged. The target size is the mean region size, unless target_region_size_mb is
+ * given. The plan is printed as HBase shell commands, and never executed.
+ *
+ * Executed from the admin command line with "opencga-admin.sh storage region-split-advisor".
+ */
+public final class HBaseRegionSplitAdvisor {
+
+    public static final String TARGET_REGION_SIZE_MB = "target_region_size_mb";
+    public static final String SPLIT_FACTOR = "split_factor";
+    public static final double DEFAULT_SPLIT_FACTOR = 2;
+    public static final String MERGE_FACTOR = "merge_factor";
+    public static final double DEFAULT_MERGE_FACTOR = 0.5;
+
+    public static class RegionStats {
+        private final String encodedName;
+        private final byte[] startKey;
+        private final byte[] endKey;
+        private final long sizeMB;
+        private final long requests;
+
+        public RegionStats(String encodedName, byte[] startKey, byte[] endKey, long sizeMB, long requests) {
+            this.encodedName = encodedName;
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.sizeMB = sizeMB;
+            this.requests = requests;
+        }
+
+        public String getEncodedName() {
+            return encodedName;
+        }
+
+        public byte[] getStartKey() {
+            return startKey;
+        }
+
+        public byte[] getEndKey() {
+            return endKey;
+        }
+
+        public long getSizeMB() {
+            return sizeMB;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+    }
+
+    public static class Plan {
+        // Region to split, and number of expected daughter regions
+        private final Map<RegionStats, Integer> splits = new LinkedHashMap<>();
+        // Pairs of adjacent regions to merge
+        private final List<List<RegionStats>> merges = new ArrayList<>();
+        private double targetSizeMB;
+
+        public Map<RegionStats, Integer> getSplits() {
+            return splits;
+        }
+
+        public List<List<RegionStats>> getMerges() {
+            return merges;
+        }
+
+        public double getTargetSizeMB() {
+            return targetSizeMB;
+        }
+    }
+
+    private HBaseRegionSplitAdvisor() {
+    }
+
+    /**
+     * Read the regions of the table, and print the report and the proposed plan.
+     *
+     * @param table   Table name
+     * @param options HBase configuration parameters, plus {@link #TARGET_REGION_SIZE_MB}, {@link #SPLIT_FACTOR} and
+     *                {@link #MERGE_FACTOR}
+     * @param out     Output stream
+     * @return Plan
+     * @throws IOException on error reading the cluster status
+     */
+    public static Plan advise(String table, ObjectMap options, PrintStream out) throws IOException {
+        Configuration conf = HBaseConfiguration.create();
+        for (String key : options.keySet()) {
+            if (options.get(key) != null) {
+                conf.set(key, options.getString(key));
+            }
+        }
+
+        List<RegionStats> regions = getRegionStats(conf, table);
+        Plan plan = plan(regions, conf.getDouble(TARGET_REGION_SIZE_MB, -1),
+                conf.getDouble(SPLIT_FACTOR, DEFAULT_SPLIT_FACTOR), conf.getDouble(MERGE_FACTOR, DEFAULT_MERGE_FACTOR));
+        printReport(out, table, regions, plan);
+        return plan;
+    }
+
+    /**
+     * Read the current size and number of requests of each region of the table, sorted by start key.
+     *
+     * @param conf  HBase configuration
+     * @param table Table name
+     * @return List of regions. Regions not reported by any region server have size -1
+     * @throws IOException on error reading the cluster status
+     */
+    public static List<RegionStats> getRegionStats(Configuration conf, String table) throws IOException {
+        List<RegionStats> regions = new ArrayList<>();
+        try (Connection con = ConnectionFactory.createConnection(conf);
+             Admin admin = con.getAdmin();
+             RegionLocator locator = con.getRegionLocator(TableName.valueOf(table))) {
+            Map<String, RegionLoad> loads = new HashMap<>();
+            ClusterStatus clusterStatus = admin.getClusterStatus();
+            for (ServerName serverName : clusterStatus.getServers()) {
+                for (Map.Entry<byte[], RegionLoad> entry : clusterStatus.getLoad(serverName).getRegionsLoad().entrySet()) {
+                    loads.put(Bytes.toStringBinary(entry.getKey()), entry.getValue());
+                }
+            }
+            for (HRegionLocation location : locator.getAllRegionLocations()) {
+                HRegionInfo regionInfo = location.getRegionInfo();
+                RegionLoad load = loads.get(Bytes.toStringBinary(regionInfo.getRegionName()));
+                long sizeMB = load == null ? -1 : load.getStorefileSizeMB() + load.getMemStoreSizeMB();
+                long requests = load == null ? 0 : load.getReadRequestsCount() + load.getWriteRequestsCount();
+                regions.add(new RegionStats(regionInfo.getEncodedName(), regionInfo.getStartKey(), regionInfo.getEndKey(),
+                        sizeMB, requests));
+            }
+        }
+        regions.sort((r1, r2) -> Bytes.compareTo(r1.getStartKey(), r2.getStartKey()));
+        return regions;
+    }
+
+    /**
+     * Propose a plan of splits and merges for the given regions.
+     *
+     * @param regions      Regions of the table, sorted by start key
+     * @param targetSizeMB Target region size. If not positive, use the mean region size
+     * @param splitFactor  Split regions bigger than splitFactor * targetSizeMB
+     * @param mergeFactor  Merge adjacent regions smaller than mergeFactor * targetSizeMB
+     * @return Plan
+     */
+    public static Plan plan(List<RegionStats> regions, double targetSizeMB, double splitFactor, double mergeFactor) {
+        Plan plan = new Plan();
+        if (targetSizeMB <= 0) {
+            targetSizeMB = regions.stream().filter(r -> r.getSizeMB() >= 0).mapToLong(RegionStats::getSizeMB).average().orElse(0);
+        }
+        plan.targetSizeMB = targetSizeMB;
+        if (targetSizeMB <= 0) {
+            return plan;
+        }
+
+        List<RegionStats> currentMerge = new ArrayList<>();
+        long currentMergeSize = 0;
+        for (RegionStats region : regions) {
+            if (region.getSizeMB() < 0) {
+                // Unknown size
+                addMerge(plan, currentMerge);
+                currentMerge = new ArrayList<>();
+                currentMergeSize = 0;
+            } else if (region.getSizeMB() > splitFactor * targetSizeMB) {
+                addMerge(plan, currentMerge);
+                currentMerge = new ArrayList<>();
+                currentMergeSize = 0;
+                plan.splits.put(region, (int) Math.ceil(region.getSizeMB() / targetSizeMB));
+            } else if (currentMergeSize + region.getSizeMB() < mergeFactor * targetSizeMB) {
+                currentMerge.add(region);
+                currentMergeSize += region.getSizeMB();
+                if (currentMerge.size() == 2) {
+                    // HBase merges regions in pairs
+                    addMerge(plan, currentMerge);
+                    currentMerge = new ArrayList<>();
+                    currentMergeSize = 0;
+                }
+            } else {
+                addMerge(plan, currentMerge);
+                currentMerge = new ArrayList<>();
+                currentMergeSize = 0;
+                if (region.getSizeMB() < mergeFactor * targetSizeMB) {
+                    currentMerge.add(region);
+                    currentMergeSize = region.getSizeMB();
+                }
+            }
+        }
+        addMerge(plan, currentMerge);
+        return plan;
+    }
+
+    private static void addMerge(Plan plan, List<RegionStats> regions) {
+        if (regions.size() > 1) {
+            plan.merges.add(regions);
+        }
+    }
+
+    public static void printReport(PrintStream out, String table, List<RegionStats> regions, Plan plan) {
+        LongSummaryStatistics sizes = regions.stream().filter(r -> r.getSizeMB() >= 0).mapToLong(RegionStats::getSizeMB)
+                .summaryStatistics();
+        double mean = sizes.getAverage();
+        double variance = regions.stream().filter(r -> r.getSizeMB() >= 0)
+                .mapToDouble(r -> Math.pow(r.getSizeMB() - mean, 2)).average().orElse(0);
+
+        out.println("# Table " + table);
+        out.println("#   Regions          : " + regions.size());
+        out.println("#   Total size (MB)  : " + sizes.getSum());
+        if (sizes.getCount() == 0) {
+            out.println("#   Missing region sizes. Unable to propose a plan");
+            return;
+        }
+        out.println("#   Region size (MB) : min " + sizes.getMin() + ", max " + sizes.getMax()
+                + ", mean " + String.format("%.1f", mean) + ", stdev " + String.format("%.1f", Math.sqrt(variance)));
+        out.println("#   Skew (max/mean)  : " + (mean > 0 ? String.format("%.2f", sizes.getMax() / mean) : "-"));
+        out.println("#   Target size (MB) : " + String.format("%.1f", plan.getTargetSizeMB()));
+        out.println("#");
+        out.println("# ENCODED_NAME\tSTART_KEY\tEND_KEY\tSIZE_MB\tREQUESTS");
+        for (RegionStats region : regions) {
+            out.println("# " + region.getEncodedName()
+                    + "\t" + Bytes.toStringBinary(region.getStartKey())
+                    + "\t" + Bytes.toStringBinary(region.getEndKey())
+                    + "\t" + region.getSizeMB()
+                    + "\t" + region.getRequests());
+        }
+        out.println("#");
+        out.println("# " + plan.getSplits().size() + " splits and " + plan.getMerges().size() + " merges proposed");
+        for (Map.Entry<RegionStats, Integer> entry : plan.getSplits().entrySet()) {
+            RegionStats region = entry.getKey();
+            out.println("# Split region of " + region.getSizeMB() + "MB into " + entry.getValue() + " regions."
+                    + " Repeat on the daughter regions if needed");
+            out.println("split '" + region.getEncodedName() + "'");
+        }
+        for (List<RegionStats> merge : plan.getMerges()) {
+            out.println("# Merge adjacent regions of " + merge.get(0).getSizeMB() + "MB and " + merge.get(1).getSizeMB() + "MB");
+            out.println("merge_region '" + merge.get(0).getEncodedName() + "', '" + merge.get(1).getEncodedName() + "'");
+        }
+    }
+
+}
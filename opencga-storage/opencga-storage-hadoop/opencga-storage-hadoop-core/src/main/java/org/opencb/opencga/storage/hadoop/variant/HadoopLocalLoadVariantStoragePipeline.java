@@ -26,10 +26,12 @@ import org.opencb.biodata.tools.variant.VariantDeduplicationTask;
 import org.opencb.biodata.tools.variant.converters.proto.VcfSliceToVariantListConverter;
 import org.opencb.commons.ProgressLogger;
 import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.io.DataWriter;
 import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.AdaptiveBatchSizeController;
 import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
@@ -39,6 +41,7 @@ import org.opencb.opencga.storage.core.variant.transform.DiscardDuplicatedVarian
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveDataWriter;
+import org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveHFileWriter;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHadoopDBWriter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantSliceReader;
@@ -170,7 +173,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
             throws StorageEngineException {
         long counter = 0;
 
-        VariantHBaseArchiveDataWriter archiveWriter = new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager());
+        DataWriter<VcfSlice> archiveWriter = newArchiveWriter(helper, table);
         VcfSliceToVariantListConverter converter = new VcfSliceToVariantListConverter(helper.getStudyMetadata());
         VariantHadoopDBWriter variantsWriter = newVariantHadoopDBWriter();
         List<Integer> sampleIds = new ArrayList<>(getStudyConfiguration().getSamplesInFiles().get(helper.getFileId()));
@@ -180,7 +183,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         } else {
             sampleIndexDBLoader = new SampleIndexDBLoader(dbAdaptor.getHBaseManager(),
                     dbAdaptor.getTableNameGenerator().getSampleIndexTableName(helper.getStudyId()), sampleIds,
-                    dbAdaptor.getGenomeHelper().getColumnFamily());
+                    dbAdaptor.getGenomeHelper().getColumnFamily(), densityProfile);
         }
 
 //        ((Task<VcfSlice, VcfSlice>) t -> t)
@@ -245,10 +248,12 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         int fileId = Integer.valueOf(helper.getFileMetadata().getId());
 
         // Config
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+        // Each element of the batch is a whole archive slice
+        AdaptiveBatchSizeController batchSizeController = AdaptiveBatchSizeController.fromOptions("load", options, 1, 1);
+        ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
                 .setNumTasks(1) // Increasing the numTasks may produce wrong results writing the sampleIndex
                 .setBatchSize(1)
-                .setReadQueuePutTimeout(1000).build();
+                .setReadQueuePutTimeout(1000)).build();
 
         // Reader
         VariantDeduplicationTask dedupTask = new VariantDeduplicationTask(new DiscardDuplicatedVariantsResolver(fileId));
@@ -256,7 +261,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
                 helper.getChunkSize(), variantReader.then(dedupTask), studyId, fileId, progressLogger);
 
         // Archive Writer
-        VariantHBaseArchiveDataWriter archiveWriter = new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager());
+        DataWriter<VcfSlice> archiveWriter = newArchiveWriter(helper, table);
         // Variants Writer
         VariantHadoopDBWriter hadoopDBWriter = newVariantHadoopDBWriter();
         // Sample Index Writer
@@ -267,7 +272,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         } else {
             sampleIndexDBLoader = new SampleIndexDBLoader(dbAdaptor.getHBaseManager(),
                     dbAdaptor.getTableNameGenerator().getSampleIndexTableName(studyId), sampleIds,
-                    dbAdaptor.getGenomeHelper().getColumnFamily());
+                    dbAdaptor.getGenomeHelper().getColumnFamily(), densityProfile);
         }
 
         // Task
@@ -278,7 +283,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
 
         ParallelTaskRunner<ImmutablePair<Long, List<Variant>>, VcfSlice> ptr =
-                new ParallelTaskRunner<>(sliceReader, task, null, config);
+                new ParallelTaskRunner<>(batchSizeController.wrap(sliceReader), batchSizeController.wrap(task), null, config);
         try {
             ptr.run();
         } catch (ExecutionException e) {
@@ -341,6 +346,17 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         StudyConfigurationManager.setStatus(studyConfiguration, BatchFileOperation.Status.READY, OPERATION_NAME, fileIds);
     }
 
+    private DataWriter<VcfSlice> newArchiveWriter(ArchiveTableHelper helper, String table) {
+        if (options.getBoolean(ARCHIVE_LOAD_BULK, DEFAULT_ARCHIVE_LOAD_BULK)) {
+            org.apache.hadoop.fs.Path outputDir = new org.apache.hadoop.fs.Path(
+                    options.getString(ARCHIVE_LOAD_BULK_DIRECTORY, DEFAULT_ARCHIVE_LOAD_BULK_DIRECTORY), table + '_' + helper.getFileId());
+            logger.info("Bulk load archive slices using HFiles at {}", outputDir);
+            return new VariantHBaseArchiveHFileWriter(helper, table, dbAdaptor.getHBaseManager(), outputDir);
+        } else {
+            return new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager());
+        }
+    }
+
     private VariantHadoopDBWriter newVariantHadoopDBWriter() throws StorageEngineException {
         StudyConfiguration studyConfiguration = getStudyConfiguration();
         boolean includeReferenceVariantsData = getOptions().getBoolean(VARIANT_TABLE_LOAD_REFERENCE, false);
@@ -354,16 +370,16 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
     protected static class GroupedVariantsTask implements Task<ImmutablePair<Long, List<Variant>>, VcfSlice> {
         private final VariantToVcfSliceConverterTask converterTask;
-        private final VariantHBaseArchiveDataWriter archiveWriter;
+        private final DataWriter<VcfSlice> archiveWriter;
         private final VariantHadoopDBWriter hadoopDBWriter;
         private final SampleIndexDBLoader sampleIndexDBLoader;
 
-        GroupedVariantsTask(VariantHBaseArchiveDataWriter archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
+        GroupedVariantsTask(DataWriter<VcfSlice> archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
                             SampleIndexDBLoader sampleIndexDBLoader, ProgressLogger progressLogger) {
             this(archiveWriter, hadoopDBWriter, sampleIndexDBLoader, progressLogger, null, null);
         }
 
-        GroupedVariantsTask(VariantHBaseArchiveDataWriter archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
+        GroupedVariantsTask(DataWriter<VcfSlice> archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
                             SampleIndexDBLoader sampleIndexDBLoader, ProgressLogger progressLogger, String fields, String nonRefFilter) {
             this.converterTask = new VariantToVcfSliceConverterTask(progressLogger, fields, nonRefFilter);
             this.archiveWriter = Objects.requireNonNull(archiveWriter);
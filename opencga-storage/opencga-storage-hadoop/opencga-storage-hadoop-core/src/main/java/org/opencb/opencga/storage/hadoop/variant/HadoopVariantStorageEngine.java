@@ -70,6 +70,7 @@ import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.executors.ExternalMRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsDriver;
+import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsLocalRunner;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsFromArchiveMapper;
 import org.opencb.opencga.storage.hadoop.variant.gaps.PrepareFillMissingDriver;
 import org.opencb.opencga.storage.hadoop.variant.gaps.write.FillMissingHBaseWriterDriver;
@@ -84,6 +85,7 @@ import org.opencb.opencga.storage.hadoop.variant.search.HadoopVariantSearchLoadL
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopDefaultVariantStatisticsManager;
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopMRVariantStatisticsManager;
 import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -164,6 +166,14 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final String HBASE_COLUMN_FAMILY = "opencga.hbase.column_family";
     public static final String EXPECTED_FILES_NUMBER = "expected_files_number";
     public static final int DEFAULT_EXPECTED_FILES_NUMBER = 5000;
+    // Tab separated file with the expected variant density, used to pre-split the new tables. See VariantDensityProfile
+    public static final String PRESPLIT_DENSITY_PROFILE = "opencga.storage.hadoop.presplit.density.profile";
+    // Pre-split the new tables using the chromosome stats of the first loaded file. Human chromosome lengths are used otherwise
+    public static final String PRESPLIT_DENSITY_FROM_FILE = "opencga.storage.hadoop.presplit.density.from-file";
+    public static final boolean DEFAULT_PRESPLIT_DENSITY_FROM_FILE = true;
+    // Size of the genomic bins counted while transforming a file, used to pre-split the new tables
+    public static final String PRESPLIT_DENSITY_BIN_SIZE = "opencga.storage.hadoop.presplit.density.bin-size";
+    public static final int DEFAULT_PRESPLIT_DENSITY_BIN_SIZE = VariantDensityProfile.DEFAULT_BIN_SIZE;
 
     // Variant table configuration
     public static final String VARIANT_TABLE_COMPRESSION = "opencga.variant.table.compression";
@@ -183,11 +193,20 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final int DEFAULT_ARCHIVE_FILE_BATCH_SIZE = 1000;
     public static final String ARCHIVE_FIELDS = "opencga.archive.fields";
     public static final String ARCHIVE_NON_REF_FILTER = "opencga.archive.non-ref.filter";
+    // Write the archive slices into HFiles and bulk load them, instead of sending Puts to the region servers
+    public static final String ARCHIVE_LOAD_BULK = "opencga.archive.load.bulk";
+    public static final boolean DEFAULT_ARCHIVE_LOAD_BULK = false;
+    // Temporary directory for the HFiles. Must be in a filesystem accessible by the region servers
+    public static final String ARCHIVE_LOAD_BULK_DIRECTORY = "opencga.archive.load.bulk.directory";
+    public static final String DEFAULT_ARCHIVE_LOAD_BULK_DIRECTORY = "/tmp/opencga/archive_bulk_load";
 
     // Sample index table configuration
     public static final String SAMPLE_INDEX_TABLE_COMPRESSION = "opencga.sample-index.table.compression";
     public static final String SAMPLE_INDEX_TABLE_PRESPLIT_SIZE = "opencga.sample-index.table.presplit.size";
     public static final int DEFAULT_SAMPLE_INDEX_TABLE_PRESPLIT_SIZE = 15;
+    // Number of regions per sample batch, split following the density profile
+    public static final String SAMPLE_INDEX_TABLE_PRESPLIT_REGIONS = "opencga.sample-index.table.presplit.regions";
+    public static final int DEFAULT_SAMPLE_INDEX_TABLE_PRESPLIT_REGIONS = 1;
 
     public static final String EXTERNAL_MR_EXECUTOR = "opencga.external.mr.executor";
     public static final String STATS_LOCAL = "stats.local";
@@ -195,6 +214,10 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final String DBADAPTOR_PHOENIX_FETCH_SIZE = "dbadaptor.phoenix.fetch_size";
     public static final String MISSING_GENOTYPES_UPDATED = "missing_genotypes_updated";
     public static final int FILL_GAPS_MAX_SAMPLES = 100;
+    // Execute FillGaps and FillMissing in this process, without MapReduce. See FillGapsLocalRunner
+    public static final String FILL_GAPS_LOCAL = "fill_gaps.local";
+    public static final String FILL_GAPS_LOCAL_THREADS = "fill_gaps.local.threads";
+    public static final int DEFAULT_FILL_GAPS_LOCAL_THREADS = 4;
 
     public static final EnumSet<VariantType> TARGET_VARIANT_TYPE_SET = EnumSet.of(
             VariantType.SNV, VariantType.SNP,
@@ -478,7 +501,8 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
             return sc;
         });
 
-        if (!fillGaps) {
+        boolean local = options.getBoolean(FILL_GAPS_LOCAL, false);
+        if (!fillGaps && !local) {
             URI directory = URI.create(options.getString(INTERMEDIATE_HDFS_DIRECTORY));
             if (directory.getScheme() != null && !directory.getScheme().equals("hdfs")) {
                 throw new StorageEngineException("Output must be in HDFS");
@@ -521,12 +545,25 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
             // Execute main operation
             String taskDescription = jobOperationName + " of samples " + (fillGaps ? sampleIds.toString() : "\"ALL\"")
                     + " into variants table '" + getVariantTableName() + '\'';
-            getMRExecutor().run(FillGapsDriver.class, args, options, taskDescription);
+            if (local) {
+                // Write results directly into the variants table. No intermediate file needed
+                logger.info("=================================================");
+                logger.info("Execute " + taskDescription + " locally");
+                logger.info("=================================================");
+                Configuration conf = getHadoopConfiguration(options);
+                new FillGapsLocalRunner(getDBAdaptor().getHBaseManager(), new GenomeHelper(conf),
+                        getArchiveTableName(studyId), getVariantTableName(),
+                        getDBAdaptor().getTableNameGenerator().getSampleIndexTableName(studyId),
+                        studyConfiguration, fileIds, sampleIds, fillGaps, overwrite,
+                        options.getLong(AbstractVariantsTableDriver.TIMESTAMP), options).run();
+            } else {
+                getMRExecutor().run(FillGapsDriver.class, args, options, taskDescription);
 
-            // Write results
-            if (!fillGaps) {
-                taskDescription = "Write results in variants table for " + FILL_MISSING_OPERATION_NAME;
-                getMRExecutor().run(FillMissingHBaseWriterDriver.class, args, options, taskDescription);
+                // Write results
+                if (!fillGaps) {
+                    taskDescription = "Write results in variants table for " + FILL_MISSING_OPERATION_NAME;
+                    getMRExecutor().run(FillMissingHBaseWriterDriver.class, args, options, taskDescription);
+                }
             }
 
             // Consolidate sample index table
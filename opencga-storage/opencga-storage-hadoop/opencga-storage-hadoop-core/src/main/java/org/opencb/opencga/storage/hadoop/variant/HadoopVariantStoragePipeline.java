@@ -19,6 +19,7 @@ package org.opencb.opencga.storage.hadoop.variant;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
@@ -58,6 +59,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantSliceReader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantToVcfSliceConverterTask;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -90,6 +92,7 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
     protected final Configuration conf;
     protected final HBaseCredentials variantsTableCredentials;
     protected MRExecutor mrExecutor = null;
+    protected VariantDensityProfile densityProfile;
 
     private final Logger logger = LoggerFactory.getLogger(HadoopVariantStoragePipeline.class);
 
@@ -157,6 +160,9 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
 
         // Stats calculator
         VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(String.valueOf(getStudyId()), fileMetadata);
+        // Variants per genomic bin, used to pre-split the tables
+        VariantDensityProfile.Counter densityCounter = new VariantDensityProfile.Counter(
+                options.getInt(PRESPLIT_DENSITY_BIN_SIZE, DEFAULT_PRESPLIT_DENSITY_BIN_SIZE));
 
         final VariantReader dataReader;
         String studyId = String.valueOf(getStudyId());
@@ -189,10 +195,12 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
             Supplier<Task<ImmutablePair<Long, List<Variant>>, VcfSliceProtos.VcfSlice>> supplier =
                     () -> ((Task<ImmutablePair<Long, List<Variant>>, ImmutablePair<Long, List<Variant>>>) ((batch) -> {
                         for (ImmutablePair<Long, List<Variant>> pair : batch) {
-                            statsCalculator.apply(pair.getRight()
+                            List<Variant> variants = pair.getRight()
                                     .stream()
                                     .filter(variant -> variant.getStart() >= pair.getKey())
-                                    .collect(Collectors.toList()));
+                                    .collect(Collectors.toList());
+                            statsCalculator.apply(variants);
+                            densityCounter.add(variants);
                         }
                         return batch;
                     })).then(new VariantToVcfSliceConverterTask(progressLogger));
@@ -236,6 +244,7 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
                 while (!read.isEmpty()) {
                     progressLogger.increment(read.size());
                     statsCalculator.apply(read);
+                    densityCounter.add(read);
                     List<VcfSliceProtos.VcfSlice> slices = transformTask.apply(read);
                     t[1] += System.nanoTime() - last;
                     last = System.nanoTime();
@@ -273,6 +282,10 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
             }
         }
 
+        if (fileMetadata.getAttributes() != null) {
+            fileMetadata.getAttributes().put(VariantDensityProfile.FILE_METADATA_ATTRIBUTE, densityCounter.toProfile().write());
+        }
+
         ObjectMapper jsonObjectMapper = new ObjectMapper();
         jsonObjectMapper.addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
 
@@ -290,15 +303,16 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
     public URI preLoad(URI input, URI output) throws StorageEngineException {
         super.preLoad(input, output);
 
+        densityProfile = readDensityProfile(input);
         try {
             ArchiveTableHelper.createArchiveTableIfNeeded(dbAdaptor.getGenomeHelper(), getArchiveTable(),
-                    dbAdaptor.getConnection());
+                    dbAdaptor.getConnection(), densityProfile);
         } catch (IOException e) {
             throw new StorageHadoopException("Issue creating table " + getArchiveTable(), e);
         }
         try {
             VariantTableHelper.createVariantTableIfNeeded(dbAdaptor.getGenomeHelper(), variantsTableCredentials.getTable(),
-                    dbAdaptor.getConnection());
+                    dbAdaptor.getConnection(), densityProfile);
         } catch (IOException e) {
             throw new StorageHadoopException("Issue creating table " + variantsTableCredentials.getTable(), e);
         }
@@ -306,6 +320,41 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
         return input;
     }
 
+    /**
+     * Read the expected variant density, used to pre-split the tables if they don't exist yet.
+     * Use the profile given with {@link HadoopVariantStorageEngine#PRESPLIT_DENSITY_PROFILE}, if any, or the variants per
+     * genomic bin counted while transforming the file being loaded.
+     *
+     * @param input Input file
+     * @return Density profile, or null to use the default human pre-splits
+     * @throws StorageEngineException if the density profile file can not be read
+     */
+    protected VariantDensityProfile readDensityProfile(URI input) throws StorageEngineException {
+        String profileFile = options.getString(PRESPLIT_DENSITY_PROFILE);
+        if (StringUtils.isNotEmpty(profileFile)) {
+            try {
+                return VariantDensityProfile.read(Paths.get(profileFile));
+            } catch (IOException e) {
+                throw new StorageHadoopException("Unable to read density profile " + profileFile, e);
+            }
+        }
+        if (options.getBoolean(PRESPLIT_DENSITY_FROM_FILE, DEFAULT_PRESPLIT_DENSITY_FROM_FILE)) {
+            VariantDensityProfile profile;
+            try {
+                profile = VariantDensityProfile.fromFileMetadata(readVariantFileMetadata(input));
+            } catch (IOException e) {
+                throw new StorageHadoopException("Unable to read density profile from file " + input, e);
+            }
+            // Files split by chromosome are not representative of the whole genome
+            if (profile.getChromosomes().size() > 1) {
+                return profile;
+            }
+            logger.info("Missing chromosome stats for file {}, or single chromosome file. "
+                    + "Pre-split tables using human chromosome lengths", input);
+        }
+        return null;
+    }
+
     @Override
     protected void securePreLoad(StudyConfiguration studyConfiguration, VariantFileMetadata fileMetadata) throws StorageEngineException {
         super.securePreLoad(studyConfiguration, fileMetadata);
@@ -328,9 +328,13 @@ public class VariantHBaseQueryParser {
         }
 
         if (selectElements.getFields().contains(VariantField.STUDIES)) {
+            // The fill missing column is only used to build the samples data
+            boolean includeSamplesData = selectElements.getFields().contains(VariantField.STUDIES_SAMPLES_DATA);
             for (Integer studyId : selectElements.getStudies()) {
                 scan.addColumn(family, VariantPhoenixHelper.getStudyColumn(studyId).bytes());
-                scan.addColumn(family, VariantPhoenixHelper.getFillMissingColumn(studyId).bytes());
+                if (includeSamplesData) {
+                    scan.addColumn(family, VariantPhoenixHelper.getFillMissingColumn(studyId).bytes());
+                }
             }
 
             if (selectElements.getFields().contains(VariantField.STUDIES_STATS)) {
@@ -346,17 +350,23 @@ public class VariantHBaseQueryParser {
                 }
             }
 
-            selectElements.getSamples().forEach((studyId, sampleIds) -> {
-                scan.addColumn(family, VariantPhoenixHelper.getStudyColumn(studyId).bytes());
-                for (Integer sampleId : sampleIds) {
-                    scan.addColumn(family, buildSampleColumnKey(studyId, sampleId));
-                }
-                Set<Integer> fileIds = StudyConfigurationManager.getFileIdsFromSampleIds(
-                        selectElements.getStudyConfigurations().get(studyId), sampleIds);
-                for (Integer fileId : fileIds) {
-                    scan.addColumn(family, buildFileColumnKey(studyId, fileId));
-                }
-            });
+            if (includeSamplesData) {
+                selectElements.getSamples().forEach((studyId, sampleIds) -> {
+                    if (sampleIds.isEmpty()) {
+                        return;
+                    }
+                    scan.addColumn(family, VariantPhoenixHelper.getStudyColumn(studyId).bytes());
+                    for (Integer sampleId : sampleIds) {
+                        scan.addColumn(family, buildSampleColumnKey(studyId, sampleId));
+                    }
+                    // Files from the returned samples are required to rearrange the genotypes with multiple secondary alternates
+                    Set<Integer> fileIds = StudyConfigurationManager.getFileIdsFromSampleIds(
+                            selectElements.getStudyConfigurations().get(studyId), sampleIds);
+                    for (Integer fileId : fileIds) {
+                        scan.addColumn(family, buildFileColumnKey(studyId, fileId));
+                    }
+                });
+            }
 
             selectElements.getFiles().forEach((studyId, fileIds) -> {
                 scan.addColumn(family, VariantPhoenixHelper.getStudyColumn(studyId).bytes());
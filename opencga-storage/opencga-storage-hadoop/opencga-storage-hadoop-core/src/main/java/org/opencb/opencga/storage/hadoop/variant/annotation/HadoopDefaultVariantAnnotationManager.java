@@ -18,6 +18,7 @@ package org.opencb.opencga.storage.hadoop.variant.annotation;
 
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.schema.PTableType;
+import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.commons.ProgressLogger;
 import org.opencb.commons.datastore.core.ObjectMap;
@@ -25,7 +26,9 @@ import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataReader;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.AdaptiveBatchSizeController;
 import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
@@ -64,7 +67,8 @@ public class HadoopDefaultVariantAnnotationManager extends DefaultVariantAnnotat
 
     @Override
     protected ParallelTaskRunner<VariantAnnotation, ?> buildLoadAnnotationParallelTaskRunner(
-            DataReader<VariantAnnotation> reader, ParallelTaskRunner.Config config, ProgressLogger progressLogger, ObjectMap params) {
+            DataReader<VariantAnnotation> reader, ParallelTaskRunner.Config config, ProgressLogger progressLogger, ObjectMap params,
+            AdaptiveBatchSizeController batchSizeController) {
 
         if (VariantPhoenixHelper.DEFAULT_TABLE_TYPE == PTableType.VIEW
                 || params.getBoolean(HadoopVariantStorageEngine.VARIANT_TABLE_INDEXES_SKIP, false)) {
@@ -77,11 +81,35 @@ public class HadoopDefaultVariantAnnotationManager extends DefaultVariantAnnotat
                     dbAdaptor.getHBaseManager(),
                     dbAdaptor.getVariantTable(),
                     dbAdaptor.getGenomeHelper().getColumnFamily());
-            return new ParallelTaskRunner<>(reader, task, writer, config);
+            return new ParallelTaskRunner<>(reader, batchSizeController.wrap(task), writer, config);
         } else {
             return new ParallelTaskRunner<>(reader,
-                    () -> dbAdaptor.newAnnotationLoader(new QueryOptions(params))
-                            .setProgressLogger(progressLogger), null, config);
+                    () -> batchSizeController.wrap(dbAdaptor.newAnnotationLoader(new QueryOptions(params))
+                            .setProgressLogger(progressLogger)), null, config);
+        }
+    }
+
+    @Override
+    protected ParallelTaskRunner<Variant, ?> buildAnnotateAndLoadParallelTaskRunner(
+            DataReader<Variant> reader, Task<Variant, VariantAnnotation> annotationTask, ParallelTaskRunner.Config config,
+            ObjectMap params, AdaptiveBatchSizeController batchSizeController) {
+
+        if (VariantPhoenixHelper.DEFAULT_TABLE_TYPE == PTableType.VIEW
+                || params.getBoolean(HadoopVariantStorageEngine.VARIANT_TABLE_INDEXES_SKIP, false)) {
+            int currentAnnotationId = dbAdaptor.getStudyConfigurationManager().getProjectMetadata().first()
+                    .getAnnotation().getCurrent().getId();
+            VariantAnnotationToHBaseConverter task =
+                    new VariantAnnotationToHBaseConverter(dbAdaptor.getGenomeHelper(), null, currentAnnotationId);
+
+            VariantAnnotationHadoopDBWriter writer = new VariantAnnotationHadoopDBWriter(
+                    dbAdaptor.getHBaseManager(),
+                    dbAdaptor.getVariantTable(),
+                    dbAdaptor.getGenomeHelper().getColumnFamily());
+            return new ParallelTaskRunner<>(reader, batchSizeController.wrap(annotationTask.then(task)), writer, config);
+        } else {
+            return new ParallelTaskRunner<>(reader,
+                    () -> batchSizeController.wrap(annotationTask.then(dbAdaptor.newAnnotationLoader(new QueryOptions(params)))),
+                    null, config);
         }
     }
 
@@ -29,9 +29,17 @@ import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.GenericOptionsParser;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -45,6 +53,7 @@ import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.archive.mr.VariantToVcfSliceMapper;
 import org.opencb.opencga.storage.hadoop.variant.archive.mr.VcfSliceCombiner;
+import org.opencb.opencga.storage.hadoop.variant.archive.mr.VcfSliceHFileReducer;
 import org.opencb.opencga.storage.hadoop.variant.archive.mr.VcfSliceReducer;
 import org.opencb.opencga.storage.hadoop.variant.archive.mr.VcfSliceWritable;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantFileMetadataDBAdaptor;
@@ -120,9 +129,35 @@ public class ArchiveDriver extends Configured implements Tool {
         job.setCombinerClass(VcfSliceCombiner.class);
 
 
-        TableMapReduceUtil.initTableReducerJob(tableName, VcfSliceReducer.class, job, null, null, null, null,
-                conf.getBoolean(HadoopVariantStorageEngine.MAPREDUCE_ADD_DEPENDENCY_JARS, true));
-        job.setMapOutputValueClass(VcfSliceWritable.class);
+        boolean bulkLoad = conf.getBoolean(HadoopVariantStorageEngine.ARCHIVE_LOAD_BULK,
+                HadoopVariantStorageEngine.DEFAULT_ARCHIVE_LOAD_BULK);
+        Path hFilesDir = null;
+        if (bulkLoad) {
+            hFilesDir = new Path(conf.get(HadoopVariantStorageEngine.ARCHIVE_LOAD_BULK_DIRECTORY,
+                    HadoopVariantStorageEngine.DEFAULT_ARCHIVE_LOAD_BULK_DIRECTORY), tableName + '_' + fileId);
+            FileSystem fs = hFilesDir.getFileSystem(conf);
+            if (fs.exists(hFilesDir)) {
+                LOGGER.info("Delete HFiles from previous executions at {}", hFilesDir);
+                fs.delete(hFilesDir, true);
+            }
+            LOGGER.info("Write HFiles at {} to bulk load into table '{}'", hFilesDir, tableName);
+
+            job.setMapOutputKeyClass(ImmutableBytesWritable.class);
+            job.setMapOutputValueClass(VcfSliceWritable.class);
+            TableName table = TableName.valueOf(tableName);
+            try (Connection con = ConnectionFactory.createConnection(conf);
+                 Table htable = con.getTable(table);
+                 RegionLocator regionLocator = con.getRegionLocator(table)) {
+                // Sets one reducer per region, with a total order partitioner
+                HFileOutputFormat2.configureIncrementalLoad(job, htable, regionLocator);
+            }
+            job.setReducerClass(VcfSliceHFileReducer.class);
+            FileOutputFormat.setOutputPath(job, hFilesDir);
+        } else {
+            TableMapReduceUtil.initTableReducerJob(tableName, VcfSliceReducer.class, job, null, null, null, null,
+                    conf.getBoolean(HadoopVariantStorageEngine.MAPREDUCE_ADD_DEPENDENCY_JARS, true));
+            job.setMapOutputValueClass(VcfSliceWritable.class);
+        }
 
         Thread hook = new Thread(() -> {
             try {
@@ -137,6 +172,16 @@ public class ArchiveDriver extends Configured implements Tool {
         boolean succeed = job.waitForCompletion(true);
         Runtime.getRuntime().removeShutdownHook(hook);
 
+        if (bulkLoad) {
+            try (HBaseManager hBaseManager = new HBaseManager(conf)) {
+                if (succeed) {
+                    hBaseManager.bulkLoad(tableName, hFilesDir);
+                }
+            } finally {
+                hFilesDir.getFileSystem(conf).delete(hFilesDir, true);
+            }
+        }
+
         try (HBaseVariantFileMetadataDBAdaptor manager = new HBaseVariantFileMetadataDBAdaptor(conf)) {
             manager.updateLoadedFilesSummary(studyId, Collections.singletonList(fileId));
         }
@@ -33,6 +33,7 @@ import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantFileMetadataDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -186,9 +187,29 @@ public class ArchiveTableHelper extends GenomeHelper {
     }
 
     public static boolean createArchiveTableIfNeeded(GenomeHelper genomeHelper, String tableName, Connection con) throws IOException {
+        return createArchiveTableIfNeeded(genomeHelper, tableName, con, null);
+    }
+
+    /**
+     * Create the archive table, if it does not exist.
+     *
+     * @param genomeHelper   Genome helper
+     * @param tableName      Archive table name
+     * @param con            HBase connection
+     * @param densityProfile Expected variant density, used to pre-split the table. If null, use the human chromosome lengths.
+     * @return true if the table was created
+     * @throws IOException on error creating the table
+     */
+    public static boolean createArchiveTableIfNeeded(GenomeHelper genomeHelper, String tableName, Connection con,
+                                                     VariantDensityProfile densityProfile) throws IOException {
         Compression.Algorithm compression = Compression.getCompressionAlgorithmByName(
                 genomeHelper.getConf().get(HadoopVariantStorageEngine.ARCHIVE_TABLE_COMPRESSION, Compression.Algorithm.SNAPPY.getName()));
-        final List<byte[]> preSplits = generateArchiveTableBootPreSplitHuman(genomeHelper.getConf());
+        final List<byte[]> preSplits;
+        if (densityProfile == null) {
+            preSplits = generateArchiveTableBootPreSplitHuman(genomeHelper.getConf());
+        } else {
+            preSplits = generateArchiveTablePreSplit(genomeHelper.getConf(), densityProfile);
+        }
         return HBaseManager.createTableIfNeeded(con, tableName, genomeHelper.getColumnFamily(), preSplits, compression);
     }
 
@@ -211,6 +232,25 @@ public class ArchiveTableHelper extends GenomeHelper {
         return preSplits;
     }
 
+    public static List<byte[]> generateArchiveTablePreSplit(Configuration conf, VariantDensityProfile densityProfile) {
+        ArchiveRowKeyFactory rowKeyFactory = new ArchiveRowKeyFactory(conf);
+
+        int nSplits = conf.getInt(
+                HadoopVariantStorageEngine.ARCHIVE_TABLE_PRESPLIT_SIZE,
+                HadoopVariantStorageEngine.DEFAULT_ARCHIVE_TABLE_PRESPLIT_SIZE);
+        int expectedNumBatches = rowKeyFactory.getFileBatch(conf.getInt(
+                HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER,
+                HadoopVariantStorageEngine.DEFAULT_EXPECTED_FILES_NUMBER));
+
+        final List<byte[]> preSplits = new ArrayList<>(nSplits * expectedNumBatches);
+        for (int batch = 0; batch <= expectedNumBatches; batch++) {
+            int finalBatch = batch;
+            preSplits.addAll(densityProfile.generateSplits(nSplits, (chr, position) ->
+                    Bytes.toBytes(rowKeyFactory.generateBlockIdFromSliceAndBatch(finalBatch, chr, rowKeyFactory.getSliceId(position)))));
+        }
+        return preSplits;
+    }
+
     public VariantFileMetadata getFileMetadata() {
         return meta.get();
     }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveDataWriter.isRefSlice;
+
+/**
+ * Writes the archive slices of a file into HFiles, and bulk loads them into the archive table at the end, skipping the memstore
+ * and the compactions of the region servers.
+ *
+ * Slices are expected sorted by chromosome and position. As the row keys of different chromosomes are not sorted in the same
+ * order as the input, a new HFile is started every time a row key is not greater than the previous one. HFiles spanning more
+ * than one region are split at bulk load.
+ *
+ * Nothing is visible in the archive table until the whole file has been written. Then, all the HFiles are loaded together in the
+ * post step, atomically for each region. A failed load can be repeated, as the loaded cells are overwritten.
+ */
+public class VariantHBaseArchiveHFileWriter implements DataWriter<VcfSlice> {
+
+    private static final Comparator<Cell> COLUMN_COMPARATOR = (c1, c2) -> {
+        int compare = Bytes.compareTo(
+                c1.getFamilyArray(), c1.getFamilyOffset(), c1.getFamilyLength(),
+                c2.getFamilyArray(), c2.getFamilyOffset(), c2.getFamilyLength());
+        if (compare == 0) {
+            compare = Bytes.compareTo(
+                    c1.getQualifierArray(), c1.getQualifierOffset(), c1.getQualifierLength(),
+                    c2.getQualifierArray(), c2.getQualifierOffset(), c2.getQualifierLength());
+        }
+        return compare;
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(VariantHBaseArchiveHFileWriter.class);
+    private final ArchiveTableHelper helper;
+    private final String tableName;
+    private final HBaseManager hBaseManager;
+    private final Path outputDir;
+    private final long timestamp;
+
+    private FileSystem fs;
+    private Path familyDir;
+    private CacheConfig cacheConfig;
+    private HFileContext hFileContext;
+    private HFile.Writer writer;
+    private int numHFiles;
+    private byte[] lastRow;
+    private byte[] currentRow;
+    private final TreeSet<Cell> currentRowCells = new TreeSet<>(COLUMN_COMPARATOR);
+
+    /**
+     * @param helper       Archive table helper of the file to load
+     * @param tableName    Archive table name
+     * @param hBaseManager HBase manager
+     * @param outputDir    Temporary directory for the HFiles of this file. Removed at the end
+     */
+    public VariantHBaseArchiveHFileWriter(ArchiveTableHelper helper, String tableName, HBaseManager hBaseManager, Path outputDir) {
+        this.helper = helper;
+        this.tableName = tableName;
+        this.hBaseManager = new HBaseManager(hBaseManager.getConf());
+        this.outputDir = outputDir;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    @Override
+    public boolean open() {
+        Configuration conf = hBaseManager.getConf();
+        try {
+            fs = outputDir.getFileSystem(conf);
+            if (fs.exists(outputDir)) {
+                // Discard HFiles from previous executions
+                logger.info("Delete HFiles from previous executions at {}", outputDir);
+                fs.delete(outputDir, true);
+            }
+            familyDir = new Path(outputDir, Bytes.toString(helper.getColumnFamily()));
+            fs.mkdirs(familyDir);
+
+            HColumnDescriptor family = hBaseManager.act(tableName,
+                    table -> table.getTableDescriptor().getFamily(helper.getColumnFamily()));
+            hFileContext = new HFileContextBuilder()
+                    .withCompression(family.getCompressionType())
+                    .withBlockSize(family.getBlocksize())
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Do not use the block cache. Same as HFileOutputFormat2
+        Configuration cacheConf = new Configuration(conf);
+        cacheConf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+        cacheConfig = new CacheConfig(cacheConf);
+        return true;
+    }
+
+    @Override
+    public boolean write(List<VcfSlice> batch) {
+        try {
+            for (VcfSlice slice : batch) {
+                Put put = helper.wrap(slice, isRefSlice(slice));
+                if (currentRow != null && !Bytes.equals(currentRow, put.getRow())) {
+                    flushRow();
+                }
+                currentRow = put.getRow();
+                for (Cell cell : toKeyValues(put, timestamp)) {
+                    // Last value wins
+                    currentRowCells.remove(cell);
+                    currentRowCells.add(cell);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            if (currentRow != null) {
+                flushRow();
+            }
+            closeWriter();
+            if (numHFiles == 0) {
+                logger.info("Nothing to load into table {}", tableName);
+            } else {
+                logger.info("Bulk load {} HFiles for file {} into table {}", numHFiles, helper.getFileId(), tableName);
+                hBaseManager.bulkLoad(tableName, outputDir);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            closeWriter();
+            if (fs != null && fs.exists(outputDir)) {
+                fs.delete(outputDir, true);
+            }
+            hBaseManager.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Converts a Put into a list of KeyValues with the given timestamp, sorted as required by the HFiles.
+     *
+     * @param put       Put to convert
+     * @param timestamp Timestamp for cells without explicit timestamp
+     * @return Sorted list of KeyValues
+     */
+    public static List<KeyValue> toKeyValues(Put put, long timestamp) {
+        List<KeyValue> keyValues = new ArrayList<>();
+        for (List<Cell> cells : put.getFamilyCellMap().values()) {
+            for (Cell cell : cells) {
+                long ts = cell.getTimestamp() == HConstants.LATEST_TIMESTAMP ? timestamp : cell.getTimestamp();
+                keyValues.add(new KeyValue(CellUtil.cloneRow(cell), CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), ts,
+                        CellUtil.cloneValue(cell)));
+            }
+        }
+        keyValues.sort(COLUMN_COMPARATOR);
+        return keyValues;
+    }
+
+    private void flushRow() throws IOException {
+        if (writer == null || Bytes.compareTo(currentRow, lastRow) <= 0) {
+            // HFiles must be sorted. Start a new one
+            rollWriter();
+        }
+        for (Cell cell : currentRowCells) {
+            writer.append(cell);
+        }
+        lastRow = currentRow;
+        currentRow = null;
+        currentRowCells.clear();
+    }
+
+    private void rollWriter() throws IOException {
+        closeWriter();
+        Path path = new Path(familyDir, helper.getFileId() + "_" + numHFiles);
+        logger.debug("Create HFile {}", path);
+        writer = HFile.getWriterFactory(hBaseManager.getConf(), cacheConfig)
+                .withPath(fs, path)
+                .withFileContext(hFileContext)
+                .create();
+        numHFiles++;
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+}
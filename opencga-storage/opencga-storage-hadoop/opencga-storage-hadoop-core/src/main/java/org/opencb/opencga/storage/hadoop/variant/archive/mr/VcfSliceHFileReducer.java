@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive.mr;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.biodata.tools.variant.converters.proto.VariantToVcfSliceConverter;
+import org.opencb.biodata.tools.variant.converters.proto.VcfSliceToVariantListConverter;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
+import org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveHFileWriter;
+
+import java.io.IOException;
+
+/**
+ * Same as {@link VcfSliceReducer}, but emitting sorted KeyValues to be written into HFiles by HFileOutputFormat2.
+ *
+ * Rows arrive sorted and partitioned by region, so each reducer writes the HFiles of one region.
+ */
+public class VcfSliceHFileReducer extends Reducer<ImmutableBytesWritable, VcfSliceWritable, ImmutableBytesWritable, KeyValue> {
+
+    private ArchiveTableHelper helper;
+    private long timestamp;
+
+    private VcfSliceToVariantListConverter converterFromSlice;
+    private VariantToVcfSliceConverter converterToSlice;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+
+        helper = new ArchiveTableHelper(context.getConfiguration());
+        timestamp = System.currentTimeMillis();
+        converterFromSlice = new VcfSliceToVariantListConverter(helper.getFileMetadata()
+                .toVariantStudyMetadata(String.valueOf(helper.getStudyId())));
+        converterToSlice = new VariantToVcfSliceConverter();
+    }
+
+    @Override
+    protected void reduce(ImmutableBytesWritable key, Iterable<VcfSliceWritable> values, Context context)
+            throws IOException, InterruptedException {
+        VcfSlice joinedSlice = VcfSliceReducer.join(values, converterFromSlice, converterToSlice, context);
+
+        for (KeyValue keyValue : VariantHBaseArchiveHFileWriter.toKeyValues(helper.wrap(joinedSlice), timestamp)) {
+            context.write(key, keyValue);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.opencb.opencga.storage.hadoop.variant.archive.mr;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableReducer;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
 import org.opencb.biodata.tools.variant.converters.proto.VariantToVcfSliceConverter;
@@ -57,6 +58,26 @@ public class VcfSliceReducer extends TableReducer<ImmutableBytesWritable, VcfSli
     protected void reduce(ImmutableBytesWritable key, Iterable<VcfSliceWritable> values, Context context)
             throws IOException, InterruptedException {
 
+        VcfSlice joinedSlice = join(values, converterFromSlice, converterToSlice, context);
+
+        Put put = helper.wrap(joinedSlice);
+
+        context.write(key, put);
+
+
+    }
+
+    /**
+     * Join all the slices from the same row into one single slice.
+     *
+     * @param values             Slices to join
+     * @param converterFromSlice Converter from slice to variants
+     * @param converterToSlice   Converter from variants to slice
+     * @param context            Task context, to increment the counters
+     * @return Joined slice
+     */
+    static VcfSlice join(Iterable<VcfSliceWritable> values, VcfSliceToVariantListConverter converterFromSlice,
+                         VariantToVcfSliceConverter converterToSlice, TaskInputOutputContext<?, ?, ?, ?> context) {
         List<VcfSlice> slices = new LinkedList<>();
 
         for (VcfSliceWritable vcfSlice : values) {
@@ -78,12 +99,7 @@ public class VcfSliceReducer extends TableReducer<ImmutableBytesWritable, VcfSli
 
         context.getCounter("OPENCGA.HBASE", "VCF_REDUCE_COUNT").increment(1);
         context.getCounter("OPENCGA.HBASE", "VCF_REDUCE_COUNT_" + slices.size()).increment(1);
-
-        Put put = helper.wrap(joinedSlice);
-
-        context.write(key, put);
-
-
+        return joinedSlice;
     }
 
     @Override
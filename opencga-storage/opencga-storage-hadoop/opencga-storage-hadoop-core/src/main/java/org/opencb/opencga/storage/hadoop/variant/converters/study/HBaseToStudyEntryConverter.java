@@ -38,6 +38,7 @@ import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.hadoop.variant.converters.AbstractPhoenixConverter;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
@@ -51,6 +52,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.opencb.biodata.models.variant.VariantBuilder.REF_ONLY_ALT;
@@ -77,8 +79,10 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
 
     private final StudyConfigurationManager scm;
     private final HBaseToVariantStatsConverter statsConverter;
-    private final Map<Integer, LinkedHashMap<String, Integer>> returnedSamplesPositionMap = new HashMap<>();
-    private Map<Pair<Integer, Integer>, List<Boolean>> missingUpdatedSamplesMap = new HashMap<>();
+    // Converters may be shared by multiple threads. See VariantHBaseScanIterator
+    private final Map<Integer, LinkedHashMap<String, Integer>> returnedSamplesPositionMap = new ConcurrentHashMap<>();
+    private final Map<Integer, StudyProjection> studyProjectionMap = new ConcurrentHashMap<>();
+    private Map<Pair<Integer, Integer>, List<Boolean>> missingUpdatedSamplesMap = new ConcurrentHashMap<>();
     private Map<Integer, String> fileIds = new HashMap<>();
 
     private boolean studyNameAsStudyId = false;
@@ -135,6 +139,7 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         } else {
             this.unknownGenotype = unknownGenotype;
         }
+        studyProjectionMap.clear();
         return this;
     }
 
@@ -156,11 +161,13 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
      */
     public HBaseToStudyEntryConverter setFormats(List<String> formats) {
         this.expectedFormat = formats;
+        studyProjectionMap.clear();
         return this;
     }
 
     public void setSelectVariantElements(VariantQueryUtils.SelectVariantElements selectVariantElements) {
         this.selectVariantElements = selectVariantElements;
+        studyProjectionMap.clear();
     }
 
     protected StudyConfiguration getStudyConfiguration(Integer studyId) {
@@ -177,6 +184,14 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         }
     }
 
+    private StudyProjection getStudyProjection(int studyId) {
+        return studyProjectionMap.computeIfAbsent(studyId, id -> new StudyProjection(getStudyConfiguration(id)));
+    }
+
+    private StudyProjection getStudyProjection(StudyConfiguration studyConfiguration) {
+        return studyProjectionMap.computeIfAbsent(studyConfiguration.getStudyId(), id -> new StudyProjection(studyConfiguration));
+    }
+
     public Map<Integer, StudyEntry> convert(ResultSet resultSet) {
         try {
             ResultSetMetaData metaData = resultSet.getMetaData();
@@ -193,9 +208,12 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
                     Integer sampleId = getSampleId(split);
                     PhoenixArray value = (PhoenixArray) resultSet.getArray(i);
                     if (value != null) {
-                        List<String> sampleData = toModifiableList(value);
                         studies.add(studyId);
-                        sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
+                        StudyProjection projection = getStudyProjection(studyId);
+                        if (projection.isIncludedSample(sampleId)) {
+                            List<String> sampleData = projection.readSampleData(value);
+                            sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
+                        }
                     }
                 } else if (columnName.endsWith(VariantPhoenixHelper.FILE_SUFIX)) {
                     String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
@@ -204,7 +222,9 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
                     PhoenixArray array = (PhoenixArray) resultSet.getArray(i);
                     if (array != null) {
                         studies.add(studyId);
-                        filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(fileId, array));
+                        if (getStudyProjection(studyId).isReadFile(Integer.parseInt(fileId))) {
+                            filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(fileId, array));
+                        }
                     }
                 } else if (columnName.endsWith(VariantPhoenixHelper.STUDY_SUFIX)) {
                     Integer studyId = VariantPhoenixHelper.extractStudyId(columnName, true);
@@ -224,11 +244,11 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
             HashMap<Integer, StudyEntry> map = new HashMap<>();
             for (Integer studyId : studies) {
                 int fillMissingColumnValue = resultSet.getInt(VariantPhoenixHelper.getFillMissingColumn(studyId).column());
-                StudyConfiguration studyConfiguration = getStudyConfiguration(studyId);
-                StudyEntry studyEntry = convert(
+                StudyProjection projection = getStudyProjection(studyId);
+                StudyEntry studyEntry = convert(projection,
                         sampleDataMap.getOrDefault(studyId, Collections.emptyList()),
-                        filesMap.getOrDefault(studyId, Collections.emptyList()), variant, studyConfiguration, fillMissingColumnValue);
-                BiMap<Integer, String> cohortIdMap = studyConfiguration.getCohortIds().inverse();
+                        filesMap.getOrDefault(studyId, Collections.emptyList()), variant, fillMissingColumnValue);
+                BiMap<Integer, String> cohortIdMap = projection.studyConfiguration.getCohortIds().inverse();
                 for (Map.Entry<Integer, VariantStats> entry : stats.getOrDefault(studyId, Collections.emptyMap()).entrySet()) {
                     studyEntry.setStats(cohortIdMap.get(entry.getKey()), entry.getValue());
                 }
@@ -253,26 +273,26 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
                 continue;
             }
             if (endsWith(qualifier, VariantPhoenixHelper.SAMPLE_DATA_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                Integer studyId = getStudyId(split);
-                Integer sampleId = getSampleId(split);
-                PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
-                List<String> sampleData = toModifiableList(array);
+                int studyId = readColumnKeyId(qualifier, 0);
+                int sampleId = readColumnKeyId(qualifier, 1);
                 studies.add(studyId);
-                sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
+                // Do not decode samples that are not going to be returned. e.g. samples only used for filtering
+                StudyProjection projection = getStudyProjection(studyId);
+                if (projection.isIncludedSample(sampleId)) {
+                    PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
+                    List<String> sampleData = projection.readSampleData(array);
+                    sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
+                }
             } else if (endsWith(qualifier, VariantPhoenixHelper.FILE_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                Integer studyId = getStudyId(split);
-                String fileId = getFileId(split);
+                int studyId = readColumnKeyId(qualifier, 0);
+                int fileId = readColumnKeyId(qualifier, 1);
                 studies.add(studyId);
-                PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
-                filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(fileId, array));
+                if (getStudyProjection(studyId).isReadFile(fileId)) {
+                    PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
+                    filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(String.valueOf(fileId), array));
+                }
             } else if (endsWith(qualifier, VariantPhoenixHelper.STUDY_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                Integer studyId = VariantPhoenixHelper.extractStudyId(columnName, true);
-                studies.add(studyId);
+                studies.add(readColumnKeyId(qualifier, 0));
             }
         }
 
@@ -281,14 +301,14 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
 
         HashMap<Integer, StudyEntry> map = new HashMap<>();
         for (Integer studyId : studies) {
-            StudyConfiguration studyConfiguration = getStudyConfiguration(studyId);
+            StudyProjection projection = getStudyProjection(studyId);
             byte[] bytes = result.getValue(columnFamily,
                     VariantPhoenixHelper.getFillMissingColumn(studyId).bytes());
             Integer fillMissingColumnValue = bytes == null || bytes.length == 0 ? -1 : (Integer) PInteger.INSTANCE.toObject(bytes);
-            StudyEntry studyEntry = convert(
+            StudyEntry studyEntry = convert(projection,
                     sampleDataMap.getOrDefault(studyId, Collections.emptyList()),
-                    filesMap.getOrDefault(studyId, Collections.emptyList()), variant, studyConfiguration, fillMissingColumnValue);
-            BiMap<Integer, String> cohortIdMap = studyConfiguration.getCohortIds().inverse();
+                    filesMap.getOrDefault(studyId, Collections.emptyList()), variant, fillMissingColumnValue);
+            BiMap<Integer, String> cohortIdMap = projection.studyConfiguration.getCohortIds().inverse();
             for (Map.Entry<Integer, VariantStats> entry : stats.getOrDefault(studyId, Collections.emptyMap()).entrySet()) {
                 studyEntry.setStats(cohortIdMap.get(entry.getKey()), entry.getValue());
             }
@@ -307,26 +327,44 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
     protected StudyEntry convert(List<Pair<Integer, List<String>>> sampleDataMap,
                                  List<Pair<String, PhoenixArray>> filesMap,
                                  Variant variant, StudyConfiguration studyConfiguration, int fillMissingColumnValue) {
-        List<String> fixedFormat = HBaseToVariantConverter.getFixedFormat(studyConfiguration);
-        StudyEntry studyEntry = newStudyEntry(studyConfiguration, fixedFormat);
+        StudyProjection projection = getStudyProjection(studyConfiguration);
+        List<Pair<Integer, List<String>>> remappedSampleDataMap = new ArrayList<>(sampleDataMap.size());
+        for (Pair<Integer, List<String>> pair : sampleDataMap) {
+            remappedSampleDataMap.add(Pair.of(pair.getKey(), projection.remapSampleData(pair.getValue())));
+        }
+        return convert(projection, remappedSampleDataMap, filesMap, variant, fillMissingColumnValue);
+    }
 
-        int[] formatsMap = getFormatsMap(fixedFormat);
+    /**
+     * Builds the StudyEntry from the values read from the columns of one study.
+     *
+     * @param projection             Elements to read from the study
+     * @param sampleDataMap          Sample data of the returned samples, already in the expected format
+     * @param filesMap               Read file columns
+     * @param variant                Variant coordinates
+     * @param fillMissingColumnValue Value of the fill missing column
+     * @return the StudyEntry
+     */
+    private StudyEntry convert(StudyProjection projection, List<Pair<Integer, List<String>>> sampleDataMap,
+                               List<Pair<String, PhoenixArray>> filesMap, Variant variant, int fillMissingColumnValue) {
+        StudyConfiguration studyConfiguration = projection.studyConfiguration;
+        StudyEntry studyEntry = newStudyEntry(studyConfiguration, projection.fixedFormat);
 
         for (Pair<Integer, List<String>> pair : sampleDataMap) {
             Integer sampleId = pair.getKey();
             List<String> sampleData = pair.getValue();
-            addMainSampleDataColumn(studyConfiguration, studyEntry, formatsMap, sampleId, sampleData);
+            addMainSampleDataColumn(studyConfiguration, studyEntry, projection.gtIdx, sampleId, sampleData);
         }
 
         Map<String, List<String>> alternateFileMap = new HashMap<>();
         for (Pair<String, PhoenixArray> pair : filesMap) {
             String fileId = pair.getKey();
             PhoenixArray fileColumn = pair.getValue();
-            addFileEntry(studyConfiguration, variant, studyEntry, fileId, fileColumn, alternateFileMap);
+            addFileEntry(projection, variant, studyEntry, fileId, fileColumn, alternateFileMap);
         }
         addSecondaryAlternates(variant, studyEntry, studyConfiguration, alternateFileMap);
 
-        fillEmptySamplesData(studyEntry, studyConfiguration, fillMissingColumnValue);
+        fillEmptySamplesData(projection, studyEntry, fillMissingColumnValue);
 
         return studyEntry;
     }
@@ -357,11 +395,9 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
     }
 
     protected void addMainSampleDataColumn(StudyConfiguration studyConfiguration, StudyEntry studyEntry,
-                                           int[] formatsMap, Integer sampleId, List<String> sampleData) {
-        sampleData = remapSamplesData(sampleData, formatsMap);
-        Integer gtIdx = studyEntry.getFormatPositions().get("GT");
+                                           int gtIdx, Integer sampleId, List<String> sampleData) {
         // Replace UNKNOWN_GENOTYPE, if any
-        if (gtIdx != null && GenotypeClass.UNKNOWN_GENOTYPE.equals(sampleData.get(gtIdx))) {
+        if (gtIdx >= 0 && GenotypeClass.UNKNOWN_GENOTYPE.equals(sampleData.get(gtIdx))) {
             sampleData.set(gtIdx, unknownGenotype);
         }
 
@@ -382,29 +418,9 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         return formatsMap;
     }
 
-    private List<String> remapSamplesData(List<String> sampleData, int[] formatsMap) {
-        if (formatsMap == null) {
-            // Nothing to do!
-            return sampleData;
-        } else {
-            List<String> filteredSampleData = new ArrayList<>(formatsMap.length);
-            for (int i : formatsMap) {
-                if (i < 0) {
-                    filteredSampleData.add(UNKNOWN_SAMPLE_DATA);
-                } else {
-                    if (i < sampleData.size()) {
-                        filteredSampleData.add(sampleData.get(i));
-                    } else {
-                        filteredSampleData.add(UNKNOWN_SAMPLE_DATA);
-                    }
-                }
-            }
-            return filteredSampleData;
-        }
-    }
-
-    private void addFileEntry(StudyConfiguration studyConfiguration, Variant variant, StudyEntry studyEntry, String fileIdStr,
+    private void addFileEntry(StudyProjection projection, Variant variant, StudyEntry studyEntry, String fileIdStr,
                               PhoenixArray fileColumn, Map<String, List<String>> alternateFileMap) {
+        StudyConfiguration studyConfiguration = projection.studyConfiguration;
         int fileId = Integer.parseInt(fileIdStr);
         String alternate = normalizeNonRefAlternateCoordinate(variant, (String) (fileColumn.getElement(FILE_SEC_ALTS_IDX)));
         String fileName = studyConfiguration.getFileIds().inverse().get(fileId);
@@ -412,7 +428,7 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         // Add all combinations of secondary alternates, even the combination of "none secondary alternates", i.e. empty string
         alternateFileMap.computeIfAbsent(alternate, (key) -> new ArrayList<>()).add(fileName);
         String call = (String) (fileColumn.getElement(FILE_CALL_IDX));
-        if (!selectVariantElements.getFiles().get(studyConfiguration.getStudyId()).contains(fileId)) {
+        if (!projection.isIncludedFile(fileId)) {
             // TODO: Should we return the original CALL?
 //            if (call != null && !call.isEmpty()) {
 //                studyEntry.getFiles().add(new FileEntry(fileName, call, Collections.emptyMap()));
@@ -430,9 +446,8 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
             attributes.put(StudyEntry.FILTER, filter);
         }
 
-        List<String> fixedAttributes = HBaseToVariantConverter.getFixedAttributes(studyConfiguration);
         int i = FILE_INFO_START_IDX;
-        for (String attribute : fixedAttributes) {
+        for (String attribute : projection.fixedAttributes) {
             if (i >= fileColumn.getDimensions()) {
                 break;
             }
@@ -446,23 +461,11 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         studyEntry.getFiles().add(new FileEntry(fileName, call, attributes));
     }
 
-    private void fillEmptySamplesData(StudyEntry studyEntry, StudyConfiguration studyConfiguration, int fillMissingColumnValue) {
-        List<String> format = studyEntry.getFormat();
-        List<String> emptyData = new ArrayList<>(format.size());
-        List<String> emptyDataReferenceGenotype = new ArrayList<>(format.size());
-        String defaultGenotype = getDefaultGenotype(studyConfiguration);
-        for (String formatKey : format) {
-            if (VariantMerger.GT_KEY.equals(formatKey)) {
-                emptyData.add(defaultGenotype);
-                emptyDataReferenceGenotype.add("0/0");
-            } else {
-                emptyData.add(UNKNOWN_SAMPLE_DATA);
-                emptyDataReferenceGenotype.add(UNKNOWN_SAMPLE_DATA);
-            }
-        }
-        // Make unmodifiable. All samples will share this information
-        List<String> unmodifiableEmptyData = Collections.unmodifiableList(emptyData);
-        List<String> unmodifiableEmptyDataReferenceGenotype = Collections.unmodifiableList(emptyDataReferenceGenotype);
+    private void fillEmptySamplesData(StudyProjection projection, StudyEntry studyEntry, int fillMissingColumnValue) {
+        StudyConfiguration studyConfiguration = projection.studyConfiguration;
+        // Unmodifiable. All samples will share this information
+        List<String> unmodifiableEmptyData = projection.emptyData;
+        List<String> unmodifiableEmptyDataReferenceGenotype = projection.emptyDataReferenceGenotype;
 
         Set<Integer> filesInThisVariant = studyEntry.getFiles().stream()
                 .map(FileEntry::getFileId)
@@ -805,4 +808,134 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         return split[1];
     }
 
+    /**
+     * Reads a numeric id from a column key, without building the column name.
+     * e.g. the field 1 of the sample column "{studyId}_{sampleId}_S" is the sampleId.
+     *
+     * @param columnKey Column key
+     * @param field     Field to read, separated by {@link VariantPhoenixHelper#COLUMN_KEY_SEPARATOR}
+     * @return the id
+     */
+    protected static int readColumnKeyId(byte[] columnKey, int field) {
+        int i = 0;
+        for (int separators = 0; separators < field; i++) {
+            if (columnKey[i] == VariantPhoenixHelper.COLUMN_KEY_SEPARATOR) {
+                separators++;
+            }
+        }
+        int id = 0;
+        for (; i < columnKey.length && columnKey[i] != VariantPhoenixHelper.COLUMN_KEY_SEPARATOR; i++) {
+            id = id * 10 + (columnKey[i] - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Elements to read from the columns of one study, given the {@link VariantQueryUtils.SelectVariantElements} and the
+     * expected format. Built once per study, and shared by all the converted rows.
+     */
+    private final class StudyProjection {
+        private final StudyConfiguration studyConfiguration;
+        private final List<String> fixedFormat;
+        private final List<String> fixedAttributes;
+        // Position of each expected format in the stored sample data. Null if the stored format is the expected one.
+        private final int[] formatsMap;
+        private final int gtIdx;
+        // Null for all samples or files
+        private final Set<Integer> includeSampleIds;
+        private final Set<Integer> includeFileIds;
+        private final boolean includeSamplesData;
+        private final boolean includeSecondaryAlternates;
+        private final List<String> emptyData;
+        private final List<String> emptyDataReferenceGenotype;
+
+        private StudyProjection(StudyConfiguration studyConfiguration) {
+            this.studyConfiguration = studyConfiguration;
+            int studyId = studyConfiguration.getStudyId();
+            if (selectVariantElements == null) {
+                includeSampleIds = null;
+                includeFileIds = null;
+                includeSamplesData = true;
+                includeSecondaryAlternates = true;
+            } else {
+                Set<VariantField> fields = selectVariantElements.getFields();
+                includeSampleIds = new HashSet<>(selectVariantElements.getSamples().getOrDefault(studyId, Collections.emptyList()));
+                includeFileIds = new HashSet<>(selectVariantElements.getFiles().getOrDefault(studyId, Collections.emptyList()));
+                includeSamplesData = fields.contains(VariantField.STUDIES_SAMPLES_DATA);
+                includeSecondaryAlternates = fields.contains(VariantField.STUDIES_SECONDARY_ALTERNATES);
+            }
+
+            fixedFormat = HBaseToVariantConverter.getFixedFormat(studyConfiguration);
+            formatsMap = getFormatsMap(fixedFormat);
+            if (includeFileIds == null || !includeFileIds.isEmpty()) {
+                fixedAttributes = HBaseToVariantConverter.getFixedAttributes(studyConfiguration);
+            } else {
+                fixedAttributes = Collections.emptyList();
+            }
+
+            List<String> format = expectedFormat == null ? fixedFormat : expectedFormat;
+            gtIdx = format.indexOf(VariantMerger.GT_KEY);
+            List<String> emptyData = new ArrayList<>(format.size());
+            List<String> emptyDataReferenceGenotype = new ArrayList<>(format.size());
+            String defaultGenotype = getDefaultGenotype(studyConfiguration);
+            for (String formatKey : format) {
+                if (VariantMerger.GT_KEY.equals(formatKey)) {
+                    emptyData.add(defaultGenotype);
+                    emptyDataReferenceGenotype.add("0/0");
+                } else {
+                    emptyData.add(UNKNOWN_SAMPLE_DATA);
+                    emptyDataReferenceGenotype.add(UNKNOWN_SAMPLE_DATA);
+                }
+            }
+            this.emptyData = Collections.unmodifiableList(emptyData);
+            this.emptyDataReferenceGenotype = Collections.unmodifiableList(emptyDataReferenceGenotype);
+        }
+
+        boolean isIncludedSample(int sampleId) {
+            return includeSamplesData && (includeSampleIds == null || includeSampleIds.contains(sampleId));
+        }
+
+        boolean isIncludedFile(int fileId) {
+            return includeFileIds == null || includeFileIds.contains(fileId);
+        }
+
+        // Files not returned are still needed to read the secondary alternates, and to rearrange the genotypes
+        // of the returned samples when there are multiple secondary alternates.
+        boolean isReadFile(int fileId) {
+            return includeSecondaryAlternates || includeSamplesData || isIncludedFile(fileId);
+        }
+
+        // Read only the expected formats from the stored sample data
+        List<String> readSampleData(PhoenixArray array) {
+            if (formatsMap == null) {
+                return toModifiableList(array);
+            }
+            List<String> sampleData = new ArrayList<>(formatsMap.length);
+            for (int i : formatsMap) {
+                if (i < 0 || i >= array.getDimensions()) {
+                    sampleData.add(UNKNOWN_SAMPLE_DATA);
+                } else {
+                    sampleData.add((String) array.getElement(i));
+                }
+            }
+            return sampleData;
+        }
+
+        List<String> remapSampleData(List<String> sampleData) {
+            if (formatsMap == null) {
+                // Nothing to do!
+                return sampleData;
+            }
+            List<String> filteredSampleData = new ArrayList<>(formatsMap.length);
+            for (int i : formatsMap) {
+                if (i < 0 || i >= sampleData.size()) {
+                    filteredSampleData.add(UNKNOWN_SAMPLE_DATA);
+                } else {
+                    filteredSampleData.add(sampleData.get(i));
+                }
+            }
+            return filteredSampleData;
+        }
+    }
+
 }
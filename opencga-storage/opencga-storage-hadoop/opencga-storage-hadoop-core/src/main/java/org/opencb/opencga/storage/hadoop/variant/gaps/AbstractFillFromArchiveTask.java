@@ -1,6 +1,7 @@
 package org.opencb.opencga.storage.hadoop.variant.gaps;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
@@ -177,15 +178,6 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
             if (vcfSlicePair == null) {
                 continue;
             }
-            VcfSlice nonRefVcfSlice = vcfSlicePair.getNonRefVcfSlice();
-            ListIterator<VcfSliceProtos.VcfRecord> nonRefIterator = nonRefVcfSlice == null
-                    ? Collections.<VcfSliceProtos.VcfRecord>emptyList().listIterator()
-                    : nonRefVcfSlice.getRecordsList().listIterator();
-            VcfSlice refVcfSlice = vcfSlicePair.getRefVcfSlice();
-            ListIterator<VcfSliceProtos.VcfRecord> refIterator = refVcfSlice == null
-                    ? Collections.<VcfSliceProtos.VcfRecord>emptyList().listIterator()
-                    : refVcfSlice.getRecordsList().listIterator();
-
 
             Set<Integer> sampleIds = studyConfiguration.getSamplesInFiles().get(fileId);
             for (Variant variant : variants) {
@@ -193,7 +185,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
 
                 StopWatch stopWatch = new StopWatch().start();
                 VariantOverlappingStatus overlappingStatus = fillGapsTask.fillGaps(variant, sampleIds, put, sampleIndexPuts, fileId,
-                        nonRefVcfSlice, nonRefIterator, refVcfSlice, refIterator);
+                        vcfSlicePair);
                 increment("OVERLAPPING_STATUS_" + String.valueOf(overlappingStatus), context.fileBatch, 1);
                 increment("OVERLAPPING_STATUS_" + String.valueOf(overlappingStatus), context.fileBatch, stopWatch);
             }
@@ -279,6 +271,21 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
             return filesMap.get(fileId);
         }
 
+        /**
+         * Create a VcfSlicePair from the raw data of the archive table. Each VcfSlice is parsed on first access.
+         *
+         * @param nonRefData Raw data from the nonRef column. May be null
+         * @param refData    Raw data from the ref column. May be null
+         * @return VcfSlicePair, or null if there is no data
+         */
+        protected VcfSlicePair newVcfSlicePair(byte[] nonRefData, byte[] refData) {
+            if (ArrayUtils.isEmpty(nonRefData) && ArrayUtils.isEmpty(refData)) {
+                return null;
+            } else {
+                return new VcfSlicePair(nonRefData, refData, this::parseVcfSlice);
+            }
+        }
+
         public VcfSlice parseVcfSlice(byte[] data) throws IOException {
             VcfSlice vcfSlice;
             if (data != null && data.length != 0) {
@@ -307,22 +314,67 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
         public abstract TreeMap<Variant, Set<Integer>> getVariantsToFill() throws IOException;
     }
 
+    @FunctionalInterface
+    public interface VcfSliceParser {
+        VcfSlice parse(byte[] data) throws IOException;
+    }
+
+    /**
+     * Pair of nonRef and ref VcfSlices for one file.
+     *
+     * If created from the raw data, each VcfSlice is only parsed when requested, so reference blocks are not parsed
+     * for files without gaps to fill.
+     */
     public static class VcfSlicePair {
-        private final VcfSlice nonRefVcfSlice;
-        private final VcfSlice refVcfSlice;
+        private final VcfSliceParser parser;
+        private byte[] nonRefData;
+        private byte[] refData;
+        private VcfSlice nonRefVcfSlice;
+        private VcfSlice refVcfSlice;
+        private VcfSliceIndex nonRefIndex;
+        private VcfSliceIndex refIndex;
 
         public VcfSlicePair(VcfSlice nonRefVcfSlice, VcfSlice refVcfSlice) {
+            this.parser = null;
             this.nonRefVcfSlice = nonRefVcfSlice;
             this.refVcfSlice = refVcfSlice;
         }
 
-        public VcfSlice getNonRefVcfSlice() {
+        public VcfSlicePair(byte[] nonRefData, byte[] refData, VcfSliceParser parser) {
+            this.parser = parser;
+            this.nonRefData = nonRefData;
+            this.refData = refData;
+        }
+
+        public VcfSlice getNonRefVcfSlice() throws IOException {
+            if (nonRefData != null) {
+                nonRefVcfSlice = parser.parse(nonRefData);
+                nonRefData = null;
+            }
             return nonRefVcfSlice;
         }
 
-        public VcfSlice getRefVcfSlice() {
+        public VcfSlice getRefVcfSlice() throws IOException {
+            if (refData != null) {
+                refVcfSlice = parser.parse(refData);
+                refData = null;
+            }
             return refVcfSlice;
         }
+
+        public VcfSliceIndex getNonRefIndex() throws IOException {
+            if (nonRefIndex == null && getNonRefVcfSlice() != null) {
+                nonRefIndex = new VcfSliceIndex(nonRefVcfSlice);
+            }
+            return nonRefIndex;
+        }
+
+        public VcfSliceIndex getRefIndex() throws IOException {
+            if (refIndex == null && getRefVcfSlice() != null) {
+                refIndex = new VcfSliceIndex(refVcfSlice);
+            }
+            return refIndex;
+        }
     }
 
     protected static Scan buildScan(Configuration conf) {
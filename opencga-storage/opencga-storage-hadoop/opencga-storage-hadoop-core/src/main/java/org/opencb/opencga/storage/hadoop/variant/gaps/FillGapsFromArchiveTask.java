@@ -167,16 +167,10 @@ public class FillGapsFromArchiveTask extends AbstractFillFromArchiveTask {
         }
 
         protected VcfSlicePair getVcfSlicePairFromResult(Integer fileId, Result result) throws IOException {
-            VcfSliceProtos.VcfSlice nonRefVcfSlice = parseVcfSlice(
-                    result.getValue(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId)));
-            VcfSliceProtos.VcfSlice refVcfSlice = parseVcfSlice(
+            // Reference blocks are only parsed if there is any variant to fill from this file
+            return newVcfSlicePair(
+                    result.getValue(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId)),
                     result.getValue(helper.getColumnFamily(), fileToRefColumnMap.get(fileId)));
-
-            if (nonRefVcfSlice == null && refVcfSlice == null) {
-                return null;
-            } else {
-                return new VcfSlicePair(nonRefVcfSlice, refVcfSlice);
-            }
         }
 
     }
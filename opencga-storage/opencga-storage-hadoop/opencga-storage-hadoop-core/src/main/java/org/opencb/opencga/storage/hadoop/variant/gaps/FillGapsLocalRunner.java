@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.gaps;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.hadoop.utils.HBaseDataWriter;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the FillGaps or FillMissing operation in this process, without MapReduce.
+ *
+ * The archive table is split in shards, intersecting the scans from {@link FillGapsFromArchiveTask#buildScan} or
+ * {@link FillMissingFromArchiveTask#buildScan} with the regions of the archive table. As the archive table is pre-split by file
+ * batch, each shard reads from one single file batch. Shards are processed in parallel, each one with its own task and its own
+ * writers for the variants and the sample index tables.
+ */
+public class FillGapsLocalRunner {
+
+    private final Logger logger = LoggerFactory.getLogger(FillGapsLocalRunner.class);
+
+    private final HBaseManager hBaseManager;
+    private final GenomeHelper helper;
+    private final String archiveTableName;
+    private final String variantsTableName;
+    private final String sampleIndexTableName;
+    private final StudyConfiguration studyConfiguration;
+    private final Collection<Integer> fileIds;
+    private final Collection<Integer> sampleIds;
+    private final boolean fillGaps;
+    private final boolean overwrite;
+    private final long timestamp;
+    private final ObjectMap options;
+
+    private final Map<String, Long> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param hBaseManager          HBase manager
+     * @param helper                Genome helper
+     * @param archiveTableName      Archive table to read from
+     * @param variantsTableName     Variants table to write into
+     * @param sampleIndexTableName  Sample index table to write into
+     * @param studyConfiguration    Study configuration
+     * @param fileIds               Files to process
+     * @param sampleIds             Samples to fill. Only for FillGaps
+     * @param fillGaps              Execute FillGaps if true, or FillMissing otherwise
+     * @param overwrite             Overwrite previous FillMissing executions. Only for FillMissing
+     * @param timestamp             Timestamp of the operation
+     * @param options               Other options
+     */
+    public FillGapsLocalRunner(HBaseManager hBaseManager, GenomeHelper helper, String archiveTableName, String variantsTableName,
+                               String sampleIndexTableName, StudyConfiguration studyConfiguration, Collection<Integer> fileIds,
+                               Collection<Integer> sampleIds, boolean fillGaps, boolean overwrite, long timestamp, ObjectMap options) {
+        this.hBaseManager = hBaseManager;
+        this.helper = helper;
+        this.archiveTableName = archiveTableName;
+        this.variantsTableName = variantsTableName;
+        this.sampleIndexTableName = sampleIndexTableName;
+        this.studyConfiguration = studyConfiguration;
+        this.fileIds = fileIds;
+        this.sampleIds = sampleIds;
+        this.fillGaps = fillGaps;
+        this.overwrite = overwrite;
+        this.timestamp = timestamp;
+        this.options = options;
+    }
+
+    public void run() throws StorageEngineException {
+        List<Scan> shards;
+        try {
+            shards = buildShards();
+        } catch (IOException e) {
+            throw new StorageEngineException("Error reading regions from archive table " + archiveTableName, e);
+        }
+        int numThreads = options.getInt(HadoopVariantStorageEngine.FILL_GAPS_LOCAL_THREADS,
+                HadoopVariantStorageEngine.DEFAULT_FILL_GAPS_LOCAL_THREADS);
+        logger.info("Run " + (fillGaps ? "FillGaps" : "FillMissing") + " locally with " + shards.size() + " shards"
+                + " and " + numThreads + " threads");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        AtomicInteger finishedShards = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            Scan scan = shards.get(i);
+            String shardName = "[" + (i + 1) + "/" + shards.size() + "] "
+                    + Bytes.toStringBinary(scan.getStartRow()) + " - " + Bytes.toStringBinary(scan.getStopRow());
+            futures.add(executor.submit(() -> {
+                runShard(shardName, scan);
+                logger.info("Finished " + finishedShards.incrementAndGet() + " out of " + shards.size() + " shards");
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error executing " + (fillGaps ? "FillGaps" : "FillMissing"), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        new TreeMap<>(stats).forEach((key, value) -> logger.info(" - " + key + " : " + value));
+    }
+
+    /**
+     * Intersect the scans of the operation with the regions of the archive table.
+     *
+     * @return Scans for each shard
+     * @throws IOException on error reading the table regions
+     */
+    protected List<Scan> buildShards() throws IOException {
+        String regionStr = options.getString(VariantQueryParam.REGION.key());
+        List<Scan> scans;
+        if (fillGaps) {
+            scans = Collections.singletonList(FillGapsFromArchiveTask.buildScan(fileIds, regionStr, helper.getConf()));
+        } else {
+            scans = FillMissingFromArchiveTask.buildScan(fileIds, regionStr, helper.getConf());
+        }
+
+        Pair<byte[][], byte[][]> startEndKeys;
+        try (RegionLocator regionLocator = hBaseManager.getConnection().getRegionLocator(TableName.valueOf(archiveTableName))) {
+            startEndKeys = regionLocator.getStartEndKeys();
+        }
+
+        int caching = options.getInt(HadoopVariantStorageEngine.MAPREDUCE_HBASE_SCAN_CACHING, 50);
+        List<Scan> shards = new ArrayList<>();
+        for (Scan scan : scans) {
+            for (int i = 0; i < startEndKeys.getFirst().length; i++) {
+                byte[] start = max(scan.getStartRow(), startEndKeys.getFirst()[i]);
+                byte[] stop = min(scan.getStopRow(), startEndKeys.getSecond()[i]);
+                if (stop.length == 0 || Bytes.compareTo(start, stop) < 0) {
+                    Scan shard = new Scan(scan);
+                    shard.setStartRow(start);
+                    shard.setStopRow(stop);
+                    shard.setCaching(caching);
+                    shard.setCacheBlocks(false);
+                    shards.add(shard);
+                }
+            }
+        }
+        return shards;
+    }
+
+    protected void runShard(String shardName, Scan scan) throws IOException {
+        logger.info("Start shard " + shardName);
+        long start = System.currentTimeMillis();
+        AbstractFillFromArchiveTask task;
+        if (fillGaps) {
+            task = new FillGapsFromArchiveTask(hBaseManager, archiveTableName, studyConfiguration, helper, sampleIds);
+        } else {
+            task = new FillMissingFromArchiveTask(studyConfiguration, helper, overwrite);
+        }
+        task.setTimestamp(timestamp);
+        task.setQuiet(true);
+
+        HBaseDataWriter<Put> variantsWriter = new HBaseDataWriter<>(hBaseManager, variantsTableName);
+        HBaseDataWriter<Put> sampleIndexWriter = new HBaseDataWriter<>(hBaseManager, sampleIndexTableName);
+        long rows = 0;
+        long variantPuts = 0;
+        long sampleIndexPuts = 0;
+
+        task.pre();
+        variantsWriter.open();
+        sampleIndexWriter.open();
+        variantsWriter.pre();
+        sampleIndexWriter.pre();
+        try (Table table = hBaseManager.getConnection().getTable(TableName.valueOf(archiveTableName));
+             ResultScanner scanner = table.getScanner(scan)) {
+            for (Result result : scanner) {
+                AbstractFillFromArchiveTask.FillResult fillResult = task.apply(result);
+                variantsWriter.write(fillResult.getVariantPuts());
+                sampleIndexWriter.write(fillResult.getSamplesIndexPuts());
+                rows++;
+                variantPuts += fillResult.getVariantPuts().size();
+                sampleIndexPuts += fillResult.getSamplesIndexPuts().size();
+            }
+            variantsWriter.post();
+            sampleIndexWriter.post();
+        } finally {
+            variantsWriter.close();
+            sampleIndexWriter.close();
+            task.post();
+            task.takeStats().forEach((key, value) -> stats.merge(key, value, Long::sum));
+        }
+        logger.info("Finish shard " + shardName + " in " + (System.currentTimeMillis() - start) / 1000.0 + "s : "
+                + rows + " archive rows, " + variantPuts + " variant puts, " + sampleIndexPuts + " sample index puts");
+    }
+
+    private static byte[] max(byte[] a, byte[] b) {
+        return Bytes.compareTo(a, b) >= 0 ? a : b;
+    }
+
+    // Min of two stop rows. Empty stop rows are the end of the table
+    private static byte[] min(byte[] a, byte[] b) {
+        if (a.length == 0) {
+            return b;
+        } else if (b.length == 0) {
+            return a;
+        } else {
+            return Bytes.compareTo(a, b) <= 0 ? a : b;
+        }
+    }
+
+}
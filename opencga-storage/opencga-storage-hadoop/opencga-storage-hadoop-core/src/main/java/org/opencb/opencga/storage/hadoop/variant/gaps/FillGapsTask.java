@@ -24,6 +24,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoade
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -77,8 +78,6 @@ public class FillGapsTask {
                                              Integer fileId,
                                              VcfSliceProtos.VcfSlice nonRefVcfSlice, ListIterator<VcfSliceProtos.VcfRecord> nonRefIterator,
                                              VcfSliceProtos.VcfSlice refVcfSlice, ListIterator<VcfSliceProtos.VcfRecord> refIterator) {
-        final VariantOverlappingStatus overlappingStatus;
-
         // Three scenarios:
         //  Overlap with NO_VARIATION,
         //  Overlap with another variant
@@ -100,6 +99,37 @@ public class FillGapsTask {
             }
         }
 
+        return processOverlappingRecords(variant, missingSamples, put, sampleIndexPuts, fileId, overlappingRecords);
+    }
+
+    public VariantOverlappingStatus fillGaps(Variant variant, Set<Integer> missingSamples, Put put, List<Put> sampleIndexPuts,
+                                             Integer fileId, AbstractFillFromArchiveTask.VcfSlicePair vcfSlicePair)
+            throws IOException {
+        List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> overlappingRecords = new ArrayList<>(1);
+        VcfSliceIndex nonRefIndex = vcfSlicePair.getNonRefIndex();
+        if (nonRefIndex != null) {
+            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, nonRefIndex, overlappingRecords);
+            if (isVariantAlreadyLoaded) {
+                return VariantOverlappingStatus.NONE;
+            }
+        }
+        // Reference blocks are only decoded if the variant was not found in the nonRef slice
+        VcfSliceIndex refIndex = vcfSlicePair.getRefIndex();
+        if (refIndex != null) {
+            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, refIndex, overlappingRecords);
+            if (isVariantAlreadyLoaded) {
+                logger.warn("Found that the variant " + variant + " was already loaded in refVcfSlice!");
+            }
+        }
+
+        return processOverlappingRecords(variant, missingSamples, put, sampleIndexPuts, fileId, overlappingRecords);
+    }
+
+    private VariantOverlappingStatus processOverlappingRecords(Variant variant, Set<Integer> missingSamples, Put put,
+                                                               List<Put> sampleIndexPuts, Integer fileId,
+                                                               List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>>
+                                                                       overlappingRecords) {
+        final VariantOverlappingStatus overlappingStatus;
         final VcfSliceProtos.VcfRecord vcfRecord;
         final VcfSliceProtos.VcfSlice vcfSlice;
         if (overlappingRecords.isEmpty()) {
@@ -402,6 +432,36 @@ public class FillGapsTask {
         return isAlreadyPresent;
     }
 
+    /**
+     * Find the records overlapping with the variant using the position index of the VcfSlice.
+     *
+     * Same as {@link #getOverlappingVariants(Variant, int, VcfSliceProtos.VcfSlice, ListIterator, List)}, but without
+     * requiring the variants to be processed in order.
+     *
+     * @param variant            Variant to fill
+     * @param vcfSliceIndex      Position index of the VcfSlice
+     * @param overlappingRecords List to add the overlapping records
+     * @return true if the variant was already loaded from this VcfSlice
+     */
+    public boolean getOverlappingVariants(Variant variant, VcfSliceIndex vcfSliceIndex,
+                                          List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> overlappingRecords) {
+        VcfSliceProtos.VcfSlice vcfSlice = vcfSliceIndex.getVcfSlice();
+        String chromosome = vcfSlice.getChromosome();
+        for (int idx : vcfSliceIndex.getOverlappingCandidates(variant.getStart(), variant.getEnd())) {
+            VcfSliceProtos.VcfRecord vcfRecord = vcfSliceIndex.getRecord(idx);
+            int start = vcfSliceIndex.getStart(idx);
+            int end = vcfSliceIndex.getEnd(idx);
+            if (overlapsWith(variant, chromosome, start, end)) {
+                if (isVariantAlreadyLoaded(variant, vcfSlice, vcfRecord, chromosome, start, end,
+                        vcfRecord.getReference(), vcfRecord.getAlternate())) {
+                    return true;
+                }
+                overlappingRecords.add(ImmutablePair.of(vcfSlice, vcfRecord));
+            }
+        }
+        return false;
+    }
+
     /**
      * Check if this VcfRecord is already loaded in the variant that is being processed.
      *
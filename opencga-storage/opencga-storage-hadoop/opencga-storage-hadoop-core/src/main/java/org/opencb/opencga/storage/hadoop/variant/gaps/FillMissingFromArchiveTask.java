@@ -11,7 +11,6 @@ import org.apache.hadoop.hbase.filter.*;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.schema.types.PInteger;
 import org.opencb.biodata.models.variant.Variant;
-import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
@@ -71,14 +70,7 @@ public class FillMissingFromArchiveTask extends AbstractFillFromArchiveTask {
 
         @Override
         protected VcfSlicePair getVcfSlicePairFromResult(Integer fileId) throws IOException {
-            VcfSliceProtos.VcfSlice nonRefVcfSlice = parseVcfSlice(result.getValue(helper.getColumnFamily(),
-                    fileToNonRefColumnMap.get(fileId)));
-
-            if (nonRefVcfSlice == null) {
-                return null;
-            } else {
-                return new VcfSlicePair(nonRefVcfSlice, null);
-            }
+            return newVcfSlicePair(result.getValue(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId)), null);
         }
 
         @Override
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.gaps;
+
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfRecord;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.biodata.tools.variant.converters.proto.VcfRecordProtoToVariantConverter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Position index over the records of a decoded {@link VcfSlice}, to find overlapping records without scanning the whole slice.
+ *
+ * Records are sorted by start, keeping for each one the maximum end of all the previous records. Any overlapping record must
+ * start before the end of the query, and is found walking backwards from there until the maximum end is before the start of the
+ * query. This is equivalent to a static interval tree, but stored in flat arrays.
+ *
+ * Insertions have end = start - 1, so each record is indexed by the interval [min(start, end), max(start, end)].
+ */
+public class VcfSliceIndex {
+
+    private final VcfSlice vcfSlice;
+    // Sorted by low
+    private final int[] recordIdx;
+    private final int[] low;
+    private final int[] maxHigh;
+    // By record index
+    private final int[] starts;
+    private final int[] ends;
+
+    public VcfSliceIndex(VcfSlice vcfSlice) {
+        this.vcfSlice = vcfSlice;
+        List<VcfRecord> records = vcfSlice.getRecordsList();
+        int size = records.size();
+        int position = vcfSlice.getPosition();
+        starts = new int[size];
+        ends = new int[size];
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            VcfRecord record = records.get(i);
+            starts[i] = VcfRecordProtoToVariantConverter.getStart(record, position);
+            ends[i] = VcfRecordProtoToVariantConverter.getEnd(record, position);
+            sorted[i] = i;
+        }
+        // Stable sort. Records with the same low position keep the original order
+        Arrays.sort(sorted, Comparator.comparingInt(i -> Math.min(starts[i], ends[i])));
+
+        recordIdx = new int[size];
+        low = new int[size];
+        maxHigh = new int[size];
+        for (int i = 0; i < size; i++) {
+            int idx = sorted[i];
+            recordIdx[i] = idx;
+            low[i] = Math.min(starts[idx], ends[idx]);
+            int high = Math.max(starts[idx], ends[idx]);
+            maxHigh[i] = i == 0 ? high : Math.max(maxHigh[i - 1], high);
+        }
+    }
+
+    public VcfSlice getVcfSlice() {
+        return vcfSlice;
+    }
+
+    public int size() {
+        return recordIdx.length;
+    }
+
+    public VcfRecord getRecord(int idx) {
+        return vcfSlice.getRecords(idx);
+    }
+
+    public int getStart(int idx) {
+        return starts[idx];
+    }
+
+    public int getEnd(int idx) {
+        return ends[idx];
+    }
+
+    /**
+     * Get the records that may overlap with the given region, sorted as in the VcfSlice.
+     *
+     * @param start Start of the region
+     * @param end   End of the region. May be start - 1 for insertions
+     * @return Indexes of the candidate records in the VcfSlice
+     */
+    public int[] getOverlappingCandidates(int start, int end) {
+        int queryLow = Math.min(start, end);
+        int queryHigh = Math.max(start, end);
+
+        // Last element with low <= queryHigh
+        int i = upperBound(queryHigh) - 1;
+        int[] candidates = new int[Math.min(i + 1, 4)];
+        int numCandidates = 0;
+        for (; i >= 0 && maxHigh[i] >= queryLow; i--) {
+            int idx = recordIdx[i];
+            if (Math.max(starts[idx], ends[idx]) >= queryLow) {
+                if (numCandidates == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidates.length * 2);
+                }
+                candidates[numCandidates++] = idx;
+            }
+        }
+        candidates = Arrays.copyOf(candidates, numCandidates);
+        Arrays.sort(candidates);
+        return candidates;
+    }
+
+    // First element with low > value
+    private int upperBound(int value) {
+        int from = 0;
+        int to = low.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (low[mid] <= value) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+}
@@ -39,6 +39,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHel
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantStorageMetadataDBAdaptorFactory;
 import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
@@ -89,6 +90,21 @@ public class VariantTableHelper extends GenomeHelper {
     }
     public static boolean createVariantTableIfNeeded(GenomeHelper genomeHelper, String tableName, Connection con)
             throws IOException {
+        return createVariantTableIfNeeded(genomeHelper, tableName, con, null);
+    }
+
+    /**
+     * Create the variants table, if it does not exist.
+     *
+     * @param genomeHelper   Genome helper
+     * @param tableName      Variants table name
+     * @param con            HBase connection
+     * @param densityProfile Expected variant density, used to pre-split the table. If null, use the human chromosome lengths.
+     * @return true if the table was created
+     * @throws IOException on error creating the table
+     */
+    public static boolean createVariantTableIfNeeded(GenomeHelper genomeHelper, String tableName, Connection con,
+                                                     VariantDensityProfile densityProfile) throws IOException {
         VariantPhoenixHelper variantPhoenixHelper = new VariantPhoenixHelper(genomeHelper);
 
         String namespace = SchemaUtil.getSchemaNameFromFullName(tableName);
@@ -103,9 +119,14 @@ public class VariantTableHelper extends GenomeHelper {
         }
 
         int nsplits = genomeHelper.getConf().getInt(HadoopVariantStorageEngine.VARIANT_TABLE_PRESPLIT_SIZE, 100);
-        List<byte[]> splitList = generateBootPreSplitsHuman(
-                nsplits,
-                VariantPhoenixKeyFactory::generateVariantRowKey);
+        List<byte[]> splitList;
+        if (densityProfile == null) {
+            splitList = generateBootPreSplitsHuman(
+                    nsplits,
+                    VariantPhoenixKeyFactory::generateVariantRowKey);
+        } else {
+            splitList = densityProfile.generateSplits(nsplits, VariantPhoenixKeyFactory::generateVariantRowKey);
+        }
         boolean newTable = HBaseManager.createTableIfNeeded(con, tableName, genomeHelper.getColumnFamily(),
                 splitList, Compression.getCompressionAlgorithmByName(
                         genomeHelper.getConf().get(
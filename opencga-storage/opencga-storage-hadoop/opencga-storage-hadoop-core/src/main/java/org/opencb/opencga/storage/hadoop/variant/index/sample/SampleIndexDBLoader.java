@@ -7,6 +7,7 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.opencga.storage.hadoop.utils.AbstractHBaseDataWriter;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -29,11 +30,26 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Put> {
     // Map from IndexChunk -> List (following sampleIds order) of Map<Genotype, StringBuilder>
     private final Map<IndexChunk, List<Map<String, Set<String>>>> buffer = new LinkedHashMap<>();
     private final HashSet<String> genotypes = new HashSet<>();
+    private final VariantDensityProfile densityProfile;
 
     public SampleIndexDBLoader(HBaseManager hBaseManager, String tableName, List<Integer> sampleIds, byte[] family) {
+        this(hBaseManager, tableName, sampleIds, family, null);
+    }
+
+    /**
+     * @param hBaseManager   HBase manager
+     * @param tableName      Sample index table name
+     * @param sampleIds      Samples to index, in the same order as in the variants
+     * @param family         Column family
+     * @param densityProfile Expected variant density, used to split each batch of samples into
+     *                       SAMPLE_INDEX_TABLE_PRESPLIT_REGIONS regions when creating the table. May be null.
+     */
+    public SampleIndexDBLoader(HBaseManager hBaseManager, String tableName, List<Integer> sampleIds, byte[] family,
+                               VariantDensityProfile densityProfile) {
         super(hBaseManager, tableName);
         this.sampleIds = sampleIds;
         this.family = family;
+        this.densityProfile = densityProfile;
     }
 
     private class IndexChunk {
@@ -72,10 +88,20 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Put> {
             int files = hBaseManager.getConf().getInt(EXPECTED_FILES_NUMBER, DEFAULT_EXPECTED_FILES_NUMBER);
             int preSplitSize = hBaseManager.getConf().getInt(SAMPLE_INDEX_TABLE_PRESPLIT_SIZE, DEFAULT_SAMPLE_INDEX_TABLE_PRESPLIT_SIZE);
 
+            int regionsPerBatch = densityProfile == null
+                    ? 1
+                    : hBaseManager.getConf().getInt(SAMPLE_INDEX_TABLE_PRESPLIT_REGIONS, DEFAULT_SAMPLE_INDEX_TABLE_PRESPLIT_REGIONS);
+
             int splits = files / preSplitSize;
-            ArrayList<byte[]> preSplits = new ArrayList<>(splits);
+            ArrayList<byte[]> preSplits = new ArrayList<>(splits * regionsPerBatch);
             for (int i = 0; i < splits; i++) {
-                preSplits.add(SampleIndexConverter.toRowKey(i * preSplitSize));
+                int sampleBatchStart = i * preSplitSize;
+                preSplits.add(SampleIndexConverter.toRowKey(sampleBatchStart));
+                if (regionsPerBatch > 1) {
+                    // Split the batch of samples following the variant density of its first sample
+                    preSplits.addAll(densityProfile.generateSplits(regionsPerBatch, (chromosome, position) ->
+                            SampleIndexConverter.toRowKey(sampleBatchStart, chromosome, (position / BATCH_SIZE) * BATCH_SIZE)));
+                }
             }
 
             hBaseManager.createTableIfNeeded(tableName, family, preSplits, Compression.getCompressionAlgorithmByName(
@@ -49,6 +49,12 @@ public class HadoopVariantExporter extends VariantExporter {
         if (outputFileUri == null || StringUtils.isEmpty(outputFileUri.getScheme()) || outputFileUri.getScheme().equals("file")) {
             super.export(outputFileUri, outputFormat, query, queryOptions);
         } else if (outputFileUri.getScheme().equals("hdfs")) {
+            if (outputFormat == VariantWriterFactory.VariantOutputFormat.FLAT_PARQUET
+                    || outputFormat == VariantWriterFactory.VariantOutputFormat.FLAT_PARQUET_GZ) {
+                // Only written by the local exporter. Use PARQUET for the Avro schema
+                throw new IllegalArgumentException("Output format " + outputFormat + " not supported in HDFS. "
+                        + "Use " + VariantWriterFactory.VariantOutputFormat.PARQUET + " instead");
+            }
             VariantHadoopDBAdaptor dbAdaptor = ((VariantHadoopDBAdaptor) engine.getDBAdaptor());
             FileSystem fileSystem = FileSystem.get(dbAdaptor.getConfiguration());
             Path outputPath = new Path(outputFileUri);
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
+import org.opencb.biodata.models.variant.metadata.ChromosomeStats;
+import org.opencb.biodata.models.variant.metadata.VariantFileHeaderComplexLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Distribution of variants along the genome, used to pre-split the HBase tables so each region receives a similar amount of data.
+ *
+ * The profile is a list of weighted bins. Split points are placed at the quantiles of the accumulated weight, interpolating linearly
+ * within each bin. Bins of unknown length (end == start) can only produce split points at their start.
+ *
+ * Profile files are tab separated, with one bin per line. Lines starting with '#' are ignored.
+ * <ul>
+ *     <li>{@code chromosome  length}: A whole chromosome, weighted by its length</li>
+ *     <li>{@code chromosome  start  end  count}: A bin with the given number of variants</li>
+ * </ul>
+ *
+ * The transformed files store the number of variants per genomic bin in the attribute {@link #FILE_METADATA_ATTRIBUTE}, using the
+ * same format. See {@link Counter}.
+ */
+public class VariantDensityProfile {
+
+    public static final String FILE_METADATA_ATTRIBUTE = "variantDensityProfile";
+    public static final int DEFAULT_BIN_SIZE = 1000000;
+
+    private static final String[] HUMAN_CHROMOSOMES = new String[]{"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13",
+            "14", "15", "16", "17", "18", "19", "20", "21", "22", "X", "Y", };
+    private static final long[] HUMAN_CHROMOSOME_LENGTHS = new long[]{249250621, 243199373, 198022430, 191154276, 180915260, 171115067,
+            159138663, 146364022, 141213431, 135534747, 135006516, 133851895, 115169878, 107349540, 102531392, 90354753,
+            81195210, 78077248, 59128983, 63025520, 48129895, 51304566, 155270560, 59373566, };
+
+    private final Map<String, List<Bin>> bins = new HashMap<>();
+
+    public static class Bin {
+        private final int start;
+        private final int end;
+        private final double weight;
+
+        public Bin(int start, int end, double weight) {
+            this.start = start;
+            this.end = end;
+            this.weight = weight;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Add a new bin to the profile. Bins with no weight are discarded.
+     *
+     * @param chromosome Chromosome
+     * @param start      Start position
+     * @param end        End position. Same as start if unknown
+     * @param weight     Weight of the bin, usually the number of variants
+     * @return this
+     */
+    public VariantDensityProfile add(String chromosome, int start, int end, double weight) {
+        if (weight > 0) {
+            bins.computeIfAbsent(Region.normalizeChromosome(chromosome), k -> new ArrayList<>())
+                    .add(new Bin(start, Math.max(start, end), weight));
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return bins.isEmpty();
+    }
+
+    public Set<String> getChromosomes() {
+        return Collections.unmodifiableSet(bins.keySet());
+    }
+
+    public List<Bin> getBins(String chromosome) {
+        return Collections.unmodifiableList(bins.getOrDefault(Region.normalizeChromosome(chromosome), Collections.emptyList()));
+    }
+
+    public double getTotalWeight() {
+        return bins.values().stream().flatMap(List::stream).mapToDouble(Bin::getWeight).sum();
+    }
+
+    /**
+     * Profile with the length of the human chromosomes, assuming a uniform density.
+     *
+     * @return Human profile
+     */
+    public static VariantDensityProfile human() {
+        VariantDensityProfile profile = new VariantDensityProfile();
+        for (int i = 0; i < HUMAN_CHROMOSOMES.length; i++) {
+            profile.add(HUMAN_CHROMOSOMES[i], 0, (int) HUMAN_CHROMOSOME_LENGTHS[i], HUMAN_CHROMOSOME_LENGTHS[i]);
+        }
+        return profile;
+    }
+
+    /**
+     * Build a profile from the metadata of a file. Use the bins counted while transforming the file, if any. Otherwise, each
+     * chromosome is weighted by its number of variants from the file stats, and extends to the length defined by the "contig"
+     * lines of the header, if any.
+     *
+     * @param fileMetadata File metadata
+     * @return Profile of the file. Empty if the file has no chromosome stats.
+     * @throws IOException if the stored profile is malformed
+     */
+    public static VariantDensityProfile fromFileMetadata(VariantFileMetadata fileMetadata) throws IOException {
+        if (fileMetadata.getAttributes() != null && StringUtils.isNotEmpty(fileMetadata.getAttributes().get(FILE_METADATA_ATTRIBUTE))) {
+            try (BufferedReader reader = new BufferedReader(new StringReader(fileMetadata.getAttributes().get(FILE_METADATA_ATTRIBUTE)))) {
+                return read(reader, "from file " + fileMetadata.getId());
+            }
+        }
+        VariantDensityProfile profile = new VariantDensityProfile();
+        if (fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeStats() == null) {
+            return profile;
+        }
+        Map<String, Integer> lengths = new HashMap<>();
+        if (fileMetadata.getHeader() != null && fileMetadata.getHeader().getComplexLines() != null) {
+            for (VariantFileHeaderComplexLine line : fileMetadata.getHeader().getComplexLines()) {
+                if (line.getKey().equals("contig") && line.getGenericFields() != null
+                        && StringUtils.isNumeric(line.getGenericFields().get("length"))) {
+                    lengths.put(Region.normalizeChromosome(line.getId()), Integer.valueOf(line.getGenericFields().get("length")));
+                }
+            }
+        }
+        for (Map.Entry<String, ChromosomeStats> entry : fileMetadata.getStats().getChromosomeStats().entrySet()) {
+            String chromosome = Region.normalizeChromosome(entry.getKey());
+            if (entry.getValue() != null && entry.getValue().getCount() != null) {
+                profile.add(chromosome, 0, lengths.getOrDefault(chromosome, 0), entry.getValue().getCount());
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Read a profile from a tab separated file.
+     *
+     * @param path Profile file
+     * @return Profile read
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public static VariantDensityProfile read(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            return read(reader, path.toString());
+        }
+    }
+
+    private static VariantDensityProfile read(BufferedReader reader, String source) throws IOException {
+        VariantDensityProfile profile = new VariantDensityProfile();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] split = line.split("\t");
+            try {
+                if (split.length == 2) {
+                    int length = Integer.parseInt(split[1]);
+                    profile.add(split[0], 0, length, length);
+                } else if (split.length == 4) {
+                    profile.add(split[0], Integer.parseInt(split[1]), Integer.parseInt(split[2]), Double.parseDouble(split[3]));
+                } else {
+                    throw new IOException("Malformed density profile " + source + " at line " + lineNumber
+                            + ". Expected 2 or 4 columns, found " + split.length);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed density profile " + source + " at line " + lineNumber, e);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Write the profile as a tab separated text, with one bin per line, that can be read again with {@link #read}.
+     *
+     * @return Profile as text
+     */
+    public String write() {
+        StringBuilder sb = new StringBuilder();
+        List<String> chromosomes = new ArrayList<>(bins.keySet());
+        Collections.sort(chromosomes);
+        for (String chromosome : chromosomes) {
+            List<Bin> chromosomeBins = new ArrayList<>(bins.get(chromosome));
+            chromosomeBins.sort(Comparator.comparingInt(Bin::getStart));
+            for (Bin bin : chromosomeBins) {
+                sb.append(chromosome).append('\t')
+                        .append(bin.getStart()).append('\t')
+                        .append(bin.getEnd()).append('\t')
+                        .append((long) bin.getWeight()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generate the split points for a table, sorted as HBase will sort them, so every region receives the same weight.
+     *
+     * @param numberOfRegions Expected number of regions. Generates up to numberOfRegions - 1 split points
+     * @param keyGenerator    Row key generator from chromosome and position
+     * @return Sorted list of split points, without duplicates
+     */
+    public List<byte[]> generateSplits(int numberOfRegions, BiFunction<String, Integer, byte[]> keyGenerator) {
+        // Sort chromosomes as will sort HBase given the row_key generator
+        List<String> chromosomes = new ArrayList<>(bins.keySet());
+        chromosomes.sort((c1, c2) -> Bytes.compareTo(keyGenerator.apply(c1, 0), keyGenerator.apply(c2, 0)));
+
+        List<byte[]> splits = new ArrayList<>(Math.max(numberOfRegions - 1, 0));
+        double total = getTotalWeight();
+        if (numberOfRegions <= 1 || total <= 0) {
+            return splits;
+        }
+        double chunkWeight = total / numberOfRegions;
+        double nextSplit = chunkWeight;
+        int remainingSplits = numberOfRegions - 1;
+        double accumulated = 0;
+        byte[] lastSplit = null;
+        for (String chromosome : chromosomes) {
+            List<Bin> chromosomeBins = new ArrayList<>(bins.get(chromosome));
+            chromosomeBins.sort(Comparator.comparingInt(Bin::getStart));
+            for (Bin bin : chromosomeBins) {
+                while (remainingSplits > 0 && nextSplit < accumulated + bin.getWeight()) {
+                    double fraction = (nextSplit - accumulated) / bin.getWeight();
+                    int position = bin.getStart() + (int) (fraction * (bin.getEnd() - bin.getStart()));
+                    byte[] split = keyGenerator.apply(chromosome, position);
+                    // Skip split points falling into the same row key
+                    if (lastSplit == null || Bytes.compareTo(lastSplit, split) < 0) {
+                        splits.add(split);
+                        lastSplit = split;
+                    }
+                    nextSplit += chunkWeight;
+                    remainingSplits--;
+                }
+                accumulated += bin.getWeight();
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * Counts the number of variants in fixed size genomic bins, to build a profile that captures the density changes within each
+     * chromosome. Thread safe.
+     */
+    public static class Counter {
+        private final int binSize;
+        private final Map<String, Map<Integer, Long>> counts = new HashMap<>();
+
+        public Counter() {
+            this(DEFAULT_BIN_SIZE);
+        }
+
+        public Counter(int binSize) {
+            this.binSize = binSize;
+        }
+
+        public synchronized Counter add(List<Variant> variants) {
+            for (Variant variant : variants) {
+                counts.computeIfAbsent(variant.getChromosome(), k -> new HashMap<>())
+                        .merge(variant.getStart() / binSize, 1L, Long::sum);
+            }
+            return this;
+        }
+
+        public synchronized VariantDensityProfile toProfile() {
+            VariantDensityProfile profile = new VariantDensityProfile();
+            for (Map.Entry<String, Map<Integer, Long>> entry : counts.entrySet()) {
+                for (Map.Entry<Integer, Long> bin : entry.getValue().entrySet()) {
+                    int start = bin.getKey() * binSize;
+                    profile.add(entry.getKey(), start, start + binSize, bin.getValue());
+                }
+            }
+            return profile;
+        }
+    }
+
+}
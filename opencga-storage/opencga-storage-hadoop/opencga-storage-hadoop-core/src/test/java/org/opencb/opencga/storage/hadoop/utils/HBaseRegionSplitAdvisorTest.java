@@ -0,0 +1,114 @@
+package org.opencb.opencga.storage.hadoop.utils;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencb.opencga.storage.hadoop.utils.HBaseRegionSplitAdvisor.*;
+
+public class HBaseRegionSplitAdvisorTest {
+
+    @Test
+    public void testPlan() {
+        List<RegionStats> regions = regions(10, 20, 300, 40, 30, -1, 10);
+
+        Plan plan = plan(regions, 100, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertEquals(100, plan.getTargetSizeMB(), 0.0001);
+        assertEquals(Collections.singletonMap("r2", 3), names(plan.getSplits()));
+        // 40 + 30 is bigger than the merge threshold. The last region has no adjacent small region.
+        assertEquals(Collections.singletonList(Arrays.asList("r0", "r1")), names(plan.getMerges()));
+    }
+
+    @Test
+    public void testPlanSplits() {
+        List<RegionStats> regions = regions(100, 201, 200, 1000);
+
+        Plan plan = plan(regions, 100, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("r1", 3);
+        expected.put("r3", 10);
+        assertEquals(expected, names(plan.getSplits()));
+        assertTrue(plan.getMerges().isEmpty());
+    }
+
+    @Test
+    public void testPlanMergePairs() {
+        // HBase merges regions in pairs. The fifth small region is left alone.
+        List<RegionStats> regions = regions(5, 5, 5, 5, 5);
+
+        Plan plan = plan(regions, 100, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertEquals(Arrays.asList(Arrays.asList("r0", "r1"), Arrays.asList("r2", "r3")), names(plan.getMerges()));
+        assertTrue(plan.getSplits().isEmpty());
+    }
+
+    @Test
+    public void testPlanMergeAfterBigRegion() {
+        // A region too big to be merged with the previous one may be merged with the next one
+        List<RegionStats> regions = regions(10, 45, 4);
+
+        Plan plan = plan(regions, 100, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertEquals(Collections.singletonList(Arrays.asList("r1", "r2")), names(plan.getMerges()));
+    }
+
+    @Test
+    public void testPlanUnknownSizes() {
+        // Regions of unknown size are never merged nor split, and break the adjacency
+        List<RegionStats> regions = regions(5, -1, 5, -1, 500);
+
+        Plan plan = plan(regions, 100, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertTrue(plan.getMerges().isEmpty());
+        assertEquals(Collections.singletonMap("r4", 5), names(plan.getSplits()));
+    }
+
+    @Test
+    public void testPlanMeanTargetSize() {
+        // Target size from the mean of the known region sizes
+        List<RegionStats> regions = regions(100, -1, 100, 1000);
+
+        Plan plan = plan(regions, -1, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertEquals(400, plan.getTargetSizeMB(), 0.0001);
+        assertEquals(Collections.singletonMap("r3", 3), names(plan.getSplits()));
+        assertTrue(plan.getMerges().isEmpty());
+    }
+
+    @Test
+    public void testPlanAllUnknownSizes() {
+        Plan plan = plan(regions(-1, -1, -1), -1, DEFAULT_SPLIT_FACTOR, DEFAULT_MERGE_FACTOR);
+
+        assertEquals(0, plan.getTargetSizeMB(), 0.0001);
+        assertTrue(plan.getSplits().isEmpty());
+        assertTrue(plan.getMerges().isEmpty());
+    }
+
+    private static List<RegionStats> regions(long... sizes) {
+        List<RegionStats> regions = new ArrayList<>(sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] startKey = i == 0 ? new byte[0] : Bytes.toBytes(String.format("%03d", i));
+            byte[] endKey = i == sizes.length - 1 ? new byte[0] : Bytes.toBytes(String.format("%03d", i + 1));
+            regions.add(new RegionStats("r" + i, startKey, endKey, sizes[i], 0));
+        }
+        return regions;
+    }
+
+    private static Map<String, Integer> names(Map<RegionStats, Integer> splits) {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        splits.forEach((region, daughters) -> names.put(region.getEncodedName(), daughters));
+        return names;
+    }
+
+    private static List<List<String>> names(List<List<RegionStats>> merges) {
+        return merges.stream()
+                .map(merge -> merge.stream().map(RegionStats::getEncodedName).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+}
@@ -22,11 +22,18 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.utils.VariantDensityProfile;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -84,6 +91,69 @@ public class GenomeHelperTest {
         assertOrder(GenomeHelper.generateBootPreSplitsHuman(30, VariantPhoenixKeyFactory::generateVariantRowKey), 30);
     }
 
+    @Test
+    public void testGenerateSplitDensityProfile() throws Exception {
+        VariantDensityProfile profile = new VariantDensityProfile()
+                .add("chr1", 0, 1000, 10)
+                .add("1", 1000, 2000, 90)
+                .add("2", 0, 1000, 100);
+
+        List<byte[]> splits = profile.generateSplits(4, (chr, pos) -> Bytes.toBytes(chr + ":" + pos));
+        assertEquals(Arrays.asList("1:1444", "2:0", "2:500"), splits.stream().map(Bytes::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGenerateSplitDensityProfileUnknownLength() throws Exception {
+        // Only one split per chromosome if the length is unknown
+        VariantDensityProfile profile = new VariantDensityProfile()
+                .add("1", 0, 0, 100)
+                .add("2", 0, 0, 100);
+
+        List<byte[]> splits = profile.generateSplits(10, (chr, pos) -> Bytes.toBytes(chr + ":" + pos));
+        assertEquals(Arrays.asList("1:0", "2:0"), splits.stream().map(Bytes::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGenerateSplitDensityProfileFromBins() throws Exception {
+        // Skewed density within chromosome 1. Splits should fall where the variants are
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            variants.add(new Variant("1:" + (100 + i) + ":A:C"));
+        }
+        for (int i = 0; i < 90; i++) {
+            variants.add(new Variant("1:" + (5000 + i) + ":A:C"));
+        }
+        for (int i = 0; i < 100; i++) {
+            variants.add(new Variant("2:" + (10 + i) + ":A:C"));
+        }
+        VariantDensityProfile.Counter counter = new VariantDensityProfile.Counter(1000).add(variants);
+
+        // Stored in the file metadata as text
+        VariantFileMetadata fileMetadata = new VariantFileMetadata("1", "file.vcf");
+        fileMetadata.setAttributes(new HashMap<>());
+        fileMetadata.getAttributes().put(VariantDensityProfile.FILE_METADATA_ATTRIBUTE, counter.toProfile().write());
+        VariantDensityProfile profile = VariantDensityProfile.fromFileMetadata(fileMetadata);
+
+        assertEquals(2, profile.getBins("1").size());
+        assertEquals(200, profile.getTotalWeight(), 0.0001);
+        List<byte[]> splits = profile.generateSplits(4, (chr, pos) -> Bytes.toBytes(chr + ":" + pos));
+        assertEquals(Arrays.asList("1:5444", "2:0", "2:500"), splits.stream().map(Bytes::toString).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGenerateSplitVariantsDensityProfile() throws Exception {
+        assertOrder(VariantDensityProfile.human().generateSplits(30, VariantPhoenixKeyFactory::generateVariantRowKey), 29);
+    }
+
+    @Test
+    public void testGenerateSplitArchiveDensityProfileMultipleBatches() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_TABLE_PRESPLIT_SIZE, 10);
+        conf.setInt(HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER, 4500);
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 1000);
+        assertOrder(ArchiveTableHelper.generateArchiveTablePreSplit(conf, VariantDensityProfile.human()), 45);
+    }
+
     void assertOrder(List<byte[]> bytes, int expectedSize) {
         String prev = "0";
         for (byte[] bytesKey : bytes) {
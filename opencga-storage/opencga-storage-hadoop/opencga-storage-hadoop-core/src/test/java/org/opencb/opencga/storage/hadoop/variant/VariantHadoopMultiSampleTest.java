@@ -139,6 +139,55 @@ public class VariantHadoopMultiSampleTest extends VariantStorageBaseTest impleme
 
     }
 
+    @Test
+    public void testTwoFilesArchiveBulkLoad() throws Exception {
+        ObjectMap params = new ObjectMap();
+        params.put(HadoopVariantStorageEngine.HADOOP_LOAD_DIRECT, true);
+        params.put(HadoopVariantStorageEngine.ARCHIVE_LOAD_BULK, true);
+
+        StudyConfiguration studyConfiguration = VariantStorageBaseTest.newStudyConfiguration();
+        VariantHadoopDBAdaptor dbAdaptor = getVariantStorageEngine().getDBAdaptor();
+        loadFile("s1.genome.vcf", studyConfiguration, params);
+        studyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyConfiguration.getStudyId(), null).first();
+        loadFile("s2.genome.vcf", studyConfiguration, params);
+
+        printVariants(studyConfiguration, dbAdaptor, newOutputUri());
+        checkLoadedFilesS1S2(studyConfiguration, dbAdaptor);
+
+        // Load the same files in a second study, without bulk load
+        int expectedStudyId = STUDY_ID + 1;
+        clearDB(getVariantStorageEngine().getArchiveTableName(expectedStudyId));
+        params.put(HadoopVariantStorageEngine.ARCHIVE_LOAD_BULK, false);
+        StudyConfiguration expectedStudyConfiguration = new StudyConfiguration(expectedStudyId, "study_" + expectedStudyId);
+        loadFile("s1.genome.vcf", expectedStudyConfiguration, params);
+        expectedStudyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(expectedStudyId, null).first();
+        loadFile("s2.genome.vcf", expectedStudyConfiguration, params);
+
+        Map<String, List<String>> expectedSlices = readArchiveSlices(dbAdaptor, expectedStudyId);
+        Map<String, List<String>> slices = readArchiveSlices(dbAdaptor, studyConfiguration.getStudyId());
+        assertFalse(slices.isEmpty());
+        assertEquals(expectedSlices, slices);
+    }
+
+    private Map<String, List<String>> readArchiveSlices(VariantHadoopDBAdaptor dbAdaptor, int studyId) throws IOException {
+        byte[] columnFamily = dbAdaptor.getGenomeHelper().getColumnFamily();
+        return dbAdaptor.getHBaseManager().act(dbAdaptor.getArchiveTableName(studyId), table -> {
+            Map<String, List<String>> slices = new TreeMap<>();
+            for (Result r : table.getScanner(new Scan())) {
+                List<String> columns = new ArrayList<>();
+                for (Map.Entry<byte[], byte[]> entry : r.getFamilyMap(columnFamily).entrySet()) {
+                    // File ids may change between studies. Compare the content of the slices
+                    VcfSliceProtos.VcfSlice vcfSlice = VcfSliceProtos.VcfSlice.parseFrom(entry.getValue());
+                    boolean ref = Bytes.toString(entry.getKey()).endsWith(ArchiveTableHelper.REF_COLUMN_SUFIX);
+                    columns.add((ref ? "ref:" : "") + vcfSlice.getChromosome() + ':' + vcfSlice.getPosition() + ':'
+                            + vcfSlice.getRecordsCount());
+                }
+                slices.put(Bytes.toString(r.getRow()), columns);
+            }
+            return slices;
+        });
+    }
+
     @Test
     public void testTwoFilesBasicFillMissing() throws Exception {
         ObjectMap params = new ObjectMap();
@@ -2,7 +2,13 @@ package org.opencb.opencga.storage.hadoop.variant.converters.study;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.types.PUnsignedInt;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.schema.types.PVarcharArray;
 import org.apache.phoenix.schema.types.PhoenixArray;
 import org.junit.Assert;
 import org.junit.Before;
@@ -14,15 +20,17 @@ import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.dummy.DummyProjectMetadataAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.converters.stats.HBaseToVariantStatsConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.List;
+import java.util.*;
 
 /**
  * Created on 06/10/17.
@@ -34,6 +42,7 @@ public class HBaseToStudyEntryConverterTest {
     private HBaseToStudyEntryConverter converter;
     private StudyConfiguration sc;
     private StudyConfigurationManager scm;
+    private GenomeHelper genomeHelper;
 
     @Before
     public void setUp() throws Exception {
@@ -54,7 +63,7 @@ public class HBaseToStudyEntryConverterTest {
 
         scm.updateStudyConfiguration(sc, null);
 
-        final GenomeHelper genomeHelper = new GenomeHelper(new Configuration());
+        genomeHelper = new GenomeHelper(new Configuration());
         converter = new HBaseToStudyEntryConverter(genomeHelper.getColumnFamily(), scm, null);
 
     }
@@ -160,6 +169,41 @@ public class HBaseToStudyEntryConverterTest {
         Assert.assertEquals(s.toString(), expected, s);
     }
 
+    @Test
+    public void testConvertResultIncludeSamplesAndFormats() throws Exception {
+        sc.getAttributes().put(VariantStorageEngine.Options.EXTRA_GENOTYPE_FIELDS.key(), "AD,DP");
+        scm.updateStudyConfiguration(sc, null);
+        converter = new HBaseToStudyEntryConverter(genomeHelper.getColumnFamily(), scm, new HBaseToVariantStatsConverter(genomeHelper));
+        converter.setSelectVariantElements(new VariantQueryUtils.SelectVariantElements(sc, listOf(3, 1), Collections.emptyList()));
+        converter.setFormats(listOf("DP", "GT"));
+
+        Variant variant = new Variant("1:1000:A:C");
+        byte[] row = VariantPhoenixKeyFactory.generateVariantRowKey(variant);
+        List<Cell> cells = new ArrayList<>();
+        cells.add(sampleCell(row, 1, "0/0", "1,2", "10"));
+        // Sample not returned. Should not be decoded
+        cells.add(new KeyValue(row, genomeHelper.getColumnFamily(), VariantPhoenixHelper.buildSampleColumnKey(1, 2),
+                Bytes.toBytes("not an array")));
+        cells.add(sampleCell(row, 3, "0/1", "3,4", "20"));
+        cells.add(new KeyValue(row, genomeHelper.getColumnFamily(), VariantPhoenixHelper.getStudyColumn(1).bytes(),
+                PUnsignedInt.INSTANCE.toBytes(0)));
+
+        Map<Integer, StudyEntry> map = converter.convert(Result.create(cells));
+        StudyEntry expected = new StudyEntry("1", Collections.emptyList(), listOf("DP", "GT"))
+                .addSampleData("S3", listOf("20", "0/1"))
+                .addSampleData("S1", listOf("10", "0/0"));
+        Assert.assertEquals(1, map.size());
+        Assert.assertEquals(map.get(1).toString(), expected, map.get(1));
+    }
+
+    @Test
+    public void testReadColumnKeyId() {
+        Assert.assertEquals(12, HBaseToStudyEntryConverter.readColumnKeyId(VariantPhoenixHelper.buildSampleColumnKey(12, 345), 0));
+        Assert.assertEquals(345, HBaseToStudyEntryConverter.readColumnKeyId(VariantPhoenixHelper.buildSampleColumnKey(12, 345), 1));
+        Assert.assertEquals(6, HBaseToStudyEntryConverter.readColumnKeyId(VariantPhoenixHelper.buildFileColumnKey(7, 6), 1));
+        Assert.assertEquals(7, HBaseToStudyEntryConverter.readColumnKeyId(VariantPhoenixHelper.getStudyColumn(7).bytes(), 0));
+    }
+
     @Test
     public void testGetAlternateCoordinate() {
         Assert.assertEquals(new AlternateCoordinate("1", 10035, 10035, "A", "<NON_REF>", VariantType.NO_VARIATION),
@@ -173,6 +217,11 @@ public class HBaseToStudyEntryConverterTest {
 
     }
 
+    private Cell sampleCell(byte[] row, int sampleId, String... values) {
+        return new KeyValue(row, genomeHelper.getColumnFamily(), VariantPhoenixHelper.buildSampleColumnKey(1, sampleId),
+                PhoenixHelper.toBytes(Arrays.asList(values), PVarcharArray.INSTANCE));
+    }
+
     private PhoenixArray arrayOf(String... values) {
         return new PhoenixArray(PVarchar.INSTANCE, values);
     }
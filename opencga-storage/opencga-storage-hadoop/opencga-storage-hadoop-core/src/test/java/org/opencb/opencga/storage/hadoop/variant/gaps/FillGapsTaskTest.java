@@ -119,6 +119,12 @@ public class FillGapsTaskTest extends VariantStorageBaseTest implements HadoopVa
         testFillGapsPlatinumFiles(new ObjectMap(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 2));
     }
 
+    @Test
+    public void testFillGapsPlatinumFilesLocal() throws Exception {
+        testFillGapsPlatinumFiles(new ObjectMap(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 2)
+                .append(HadoopVariantStorageEngine.FILL_GAPS_LOCAL, true));
+    }
+
     public void testFillGapsPlatinumFiles(ObjectMap options) throws Exception {
         StudyConfiguration studyConfiguration = loadPlatinum(options
                         .append(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC), 4);
@@ -258,7 +264,16 @@ public class FillGapsTaskTest extends VariantStorageBaseTest implements HadoopVa
 
     @Test
     public void testFillMissingPlatinumFiles() throws Exception {
-        ObjectMap options = new ObjectMap()
+        testFillMissingPlatinumFiles(new ObjectMap());
+    }
+
+    @Test
+    public void testFillMissingPlatinumFilesLocal() throws Exception {
+        testFillMissingPlatinumFiles(new ObjectMap(HadoopVariantStorageEngine.FILL_GAPS_LOCAL, true));
+    }
+
+    public void testFillMissingPlatinumFiles(ObjectMap extraOptions) throws Exception {
+        ObjectMap options = new ObjectMap(extraOptions)
                 .append(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC)
                 .append(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 2);
 
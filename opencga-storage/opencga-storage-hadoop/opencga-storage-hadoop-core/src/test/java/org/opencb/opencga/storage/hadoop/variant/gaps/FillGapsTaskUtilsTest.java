@@ -10,9 +10,11 @@ import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 
+import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 
@@ -90,6 +92,51 @@ public class FillGapsTaskUtilsTest {
         }
     }
 
+    @Test
+    public void testGetOverlappingVariantsFromIndex() {
+        FillGapsTask a = new FillGapsTask(new StudyConfiguration(1, "a"), new GenomeHelper(new Configuration()), true);
+
+        VcfSliceProtos.VcfSlice vcfSlice = buildVcfSlice(
+                "2:182562500-182562580:N:",
+                "2:182562574-182562573::T",
+                "2:182562574-182562573::TT",
+                "2:182562574-182562576:TTT:",
+                "2:182562581-182562700:N:",
+                "2:182562683:A:G"
+        );
+        VcfSliceIndex index = new VcfSliceIndex(vcfSlice);
+
+        List<Variant> variants = Arrays.asList(
+                new Variant("2:182562400:C:T"),
+                new Variant("2:182562571:CTG:"),
+                new Variant("2:182562572::T"),
+                new Variant("2:182562574:TTT:"),
+                new Variant("2:182562574::T"),
+                new Variant("2:182562574::TT"),
+                new Variant("2:182562576:T:C"),
+                new Variant("2:182562580:TAC:"),
+                new Variant("2:182562683:A:G"),
+                new Variant("2:182562683:A:C"),
+                new Variant("2:182562701:A:G")
+        );
+
+        // Shuffled, as the index does not require sorted variants
+        List<Variant> shuffled = new ArrayList<>(variants);
+        Collections.reverse(shuffled);
+        for (Variant variant : shuffled) {
+            List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> expected = new ArrayList<>();
+            boolean expectedLoaded = a.getOverlappingVariants(variant, 1, vcfSlice, vcfSlice.getRecordsList().listIterator(), expected);
+
+            List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> actual = new ArrayList<>();
+            boolean actualLoaded = a.getOverlappingVariants(variant, index, actual);
+
+            assertEquals(variant.toString(), expectedLoaded, actualLoaded);
+            assertEquals(variant.toString(), expected, actual);
+        }
+        assertEquals(0, index.getOverlappingCandidates(182562400, 182562400).length);
+        assertEquals(0, index.getOverlappingCandidates(182562701, 182562701).length);
+    }
+
     private VcfSliceProtos.VcfSlice buildVcfSlice(String... variants) {
         Variant variant = new Variant(variants[0]);
         int position = (variant.getStart() / 1000) * 1000;
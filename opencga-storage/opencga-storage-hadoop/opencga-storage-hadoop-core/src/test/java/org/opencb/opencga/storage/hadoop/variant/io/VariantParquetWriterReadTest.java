@@ -0,0 +1,192 @@
+package org.opencb.opencga.storage.hadoop.variant.io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.statistics.IntStatistics;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Type;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantParquetWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.io.parquet.VariantParquetWriter.*;
+
+/**
+ * Reads the files written by the {@link VariantParquetWriter} with parquet-hadoop.
+ */
+public class VariantParquetWriterReadTest {
+
+    private static final String STUDY = "s1";
+    private static final List<String> SAMPLES = Arrays.asList("S1", "S2");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        testRoundTrip(false);
+    }
+
+    @Test
+    public void testRoundTripGzip() throws Exception {
+        testRoundTrip(true);
+    }
+
+    private void testRoundTrip(boolean gzip) throws Exception {
+        List<Variant> variants = Arrays.asList(
+                variant("1:100:A:T", "ID1", "0/1", "1/1"),
+                variant("1:200:A:T", null, "0/0", "./."),
+                variant("1:1500:A:T", "ID3", "0|1", "1/2"),
+                variant("2:100:A:T", null, "0/0", "0/0"));
+        Path path = write(variants, gzip, 1000, 10, 1024 * 1024);
+        Configuration conf = new Configuration();
+
+        // Schema
+        ParquetMetadata footer = ParquetFileReader.readFooter(conf, path);
+        MessageType schema = footer.getFileMetaData().getSchema();
+        assertEquals(OriginalType.UTF8, schema.getType("chromosome").getOriginalType());
+        assertEquals(Type.Repetition.REQUIRED, schema.getType("chromosome").getRepetition());
+        assertEquals(PrimitiveType.PrimitiveTypeName.INT32, schema.getType("start").asPrimitiveType().getPrimitiveTypeName());
+        assertNull(schema.getType("start").getOriginalType());
+        assertEquals(Type.Repetition.OPTIONAL, schema.getType("annotation_id").getRepetition());
+        Type gtType = schema.getType(getGenotypeColumnName(STUDY));
+        assertEquals(PrimitiveType.PrimitiveTypeName.BINARY, gtType.asPrimitiveType().getPrimitiveTypeName());
+        // Raw bytes. Not a string
+        assertNull(gtType.getOriginalType());
+        assertEquals("S1,S2", footer.getFileMetaData().getKeyValueMetaData()
+                .get(SAMPLES_METADATA_PREFIX + getGenotypeColumnName(STUDY)));
+
+        // Statistics. One row group per chromosome and genomic window
+        List<BlockMetaData> blocks = footer.getBlocks();
+        assertEquals(3, blocks.size());
+        assertEquals(2, blocks.get(0).getRowCount());
+        assertEquals(1, blocks.get(1).getRowCount());
+        assertEquals(1, blocks.get(2).getRowCount());
+        IntStatistics startStats = (IntStatistics) getColumn(blocks.get(0), "start").getStatistics();
+        assertEquals(100, startStats.getMin());
+        assertEquals(200, startStats.getMax());
+        assertEquals(1, getColumn(blocks.get(0), "annotation_id").getStatistics().getNumNulls());
+        assertEquals(0, getColumn(blocks.get(1), "annotation_id").getStatistics().getNumNulls());
+        startStats = (IntStatistics) getColumn(blocks.get(2), "start").getStatistics();
+        assertEquals(100, startStats.getMin());
+        assertEquals(100, startStats.getMax());
+
+        // Values
+        List<Group> rows = read(path);
+        assertEquals(variants.size(), rows.size());
+        for (int i = 0; i < variants.size(); i++) {
+            Variant variant = variants.get(i);
+            Group row = rows.get(i);
+            assertEquals(variant.getChromosome(), row.getString("chromosome", 0));
+            assertEquals(variant.getStart().intValue(), row.getInteger("start", 0));
+            assertEquals(variant.getEnd().intValue(), row.getInteger("end", 0));
+            assertEquals(variant.getReference(), row.getString("reference", 0));
+            assertEquals(variant.getAlternate(), row.getString("alternate", 0));
+            assertEquals(variant.getType().toString(), row.getString("type", 0));
+            if (variant.getAnnotation() == null) {
+                assertEquals(0, row.getFieldRepetitionCount("annotation_id"));
+            } else {
+                assertEquals(variant.getAnnotation().getId(), row.getString("annotation_id", 0));
+            }
+        }
+        assertArrayEquals(new byte[]{GT_HET, GT_HOM_ALT}, getGenotypes(rows.get(0)));
+        assertArrayEquals(new byte[]{GT_HOM_REF, GT_MISSING}, getGenotypes(rows.get(1)));
+        assertArrayEquals(new byte[]{GT_HET, GT_OTHER}, getGenotypes(rows.get(2)));
+        assertArrayEquals(new byte[]{GT_HOM_REF, GT_HOM_REF}, getGenotypes(rows.get(3)));
+    }
+
+    @Test
+    public void testRowGroupMaxBytes() throws Exception {
+        List<Variant> variants = Arrays.asList(
+                variant("1:100:A:T", null, "0/1", "1/1"),
+                variant("1:101:A:T", null, "0/1", "1/1"),
+                variant("1:102:A:T", null, "0/1", "1/1"));
+
+        // Any buffered row exceeds the limit
+        Path path = write(variants, false, 1000, 10, 1);
+
+        ParquetMetadata footer = ParquetFileReader.readFooter(new Configuration(), path);
+        assertEquals(3, footer.getBlocks().size());
+        assertEquals(3, read(path).size());
+    }
+
+    private Path write(List<Variant> variants, boolean gzip, int regionSize, int maxRows, long maxBytes) throws IOException {
+        File file = temporaryFolder.newFile("variants.parquet");
+        try (OutputStream os = new FileOutputStream(file)) {
+            VariantParquetWriter writer = new VariantParquetWriter(os, gzip, Collections.singletonMap(STUDY, SAMPLES),
+                    regionSize, maxRows, maxBytes);
+            writer.open();
+            writer.pre();
+            writer.write(variants);
+            writer.post();
+            writer.close();
+        }
+        return new Path(file.toURI());
+    }
+
+    private static List<Group> read(Path path) throws IOException {
+        List<Group> rows = new ArrayList<>();
+        try (ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), path).build()) {
+            Group group;
+            while ((group = reader.read()) != null) {
+                rows.add(group);
+            }
+        }
+        return rows;
+    }
+
+    private static ColumnChunkMetaData getColumn(BlockMetaData block, String name) {
+        for (ColumnChunkMetaData column : block.getColumns()) {
+            if (column.getPath().toDotString().equals(name)) {
+                return column;
+            }
+        }
+        throw new AssertionError("Column " + name + " not found");
+    }
+
+    private static byte[] getGenotypes(Group row) {
+        return row.getBinary(getGenotypeColumnName(STUDY), 0).getBytes();
+    }
+
+    private static Variant variant(String id, String annotationId, String... gts) {
+        Variant variant = new Variant(id);
+        StudyEntry studyEntry = new StudyEntry(STUDY);
+        studyEntry.setFormat(Collections.singletonList("GT"));
+        Map<String, Integer> samplesPosition = new LinkedHashMap<>();
+        List<List<String>> samplesData = new ArrayList<>();
+        for (int i = 0; i < gts.length; i++) {
+            samplesPosition.put(SAMPLES.get(i), i);
+            samplesData.add(Collections.singletonList(gts[i]));
+        }
+        studyEntry.setSamplesPosition(samplesPosition);
+        studyEntry.setSamplesData(samplesData);
+        variant.addStudyEntry(studyEntry);
+        if (annotationId != null) {
+            VariantAnnotation annotation = new VariantAnnotation();
+            annotation.setId(annotationId);
+            annotation.setConsequenceTypes(Collections.emptyList());
+            variant.setAnnotation(annotation);
+        }
+        return variant;
+    }
+}
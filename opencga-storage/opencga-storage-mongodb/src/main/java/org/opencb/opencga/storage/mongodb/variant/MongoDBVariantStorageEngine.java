@@ -81,6 +81,8 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
      * This field defaultValue must be the same that the one at storage-configuration.yml
      */
     public static final String STORAGE_ENGINE_ID = "mongodb";
+    public static final String COMPACT_GENOTYPES_OPERATION_NAME = "compactGenotypes";
+    public static final String EXPAND_GENOTYPES_OPERATION_NAME = "expandGenotypes";
 
     // Connection to MongoDB.
     private MongoDataStoreManager mongoDataStoreManager = null;
@@ -98,6 +100,7 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         COLLECTION_TRASH("collection.trash", "trash"),
         BULK_SIZE("bulkSize",  100),
         DEFAULT_GENOTYPE("defaultGenotype", Arrays.asList("0/0", "0|0")),
+        COMPACT_GENOTYPES("compactGenotypes", false),       // Study attribute. Dense genotypes are stored as bitmaps
         ALREADY_LOADED_VARIANTS("alreadyLoadedVariants", 0),
 
         PARALLEL_WRITE("parallel.write", false),
@@ -115,6 +118,8 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         MERGE_RESUME("merge.resume", false),
         MERGE_IGNORE_OVERLAPPING_VARIANTS("merge.ignore-overlapping-variants", false),   //Do not look for overlapping variants
         MERGE_PARALLEL_WRITE("merge.parallel.write", false),
+        //Number of documents fetched from the stage collection at once
+        MERGE_STAGE_CURSOR_BATCH_SIZE("merge.stage.cursor.batch.size", 20),
         MERGE_BATCH_SIZE("merge.batch.size", 10);          //Number of files to merge directly from first to second collection
 
         private final String key;
@@ -242,6 +247,12 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
 
     @Override
     public void removeFiles(String study, List<String> files) throws StorageEngineException {
+        StudyConfiguration sc = getStudyConfigurationManager().getStudyConfiguration(study, null).first();
+        if (sc != null && sc.getAttributes().getBoolean(COMPACT_GENOTYPES.key(), COMPACT_GENOTYPES.defaultValue())) {
+            // Samples can not be pulled from the compacted genotypes
+            throw new StorageEngineException("Unable to remove files from study '" + study + "' with compacted genotypes. "
+                    + "Expand the genotypes first");
+        }
 
         BatchFileOperation batchFileOperation = preRemoveFiles(study, files);
         List<Integer> fileIds = batchFileOperation.getFileIds();
@@ -264,6 +275,57 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         }
     }
 
+    /**
+     * Compact the genotypes of a study, storing the dense sample lists of each genotype as bitmaps,
+     * or expand them back to sample arrays.
+     *
+     * Registered as a {@link BatchFileOperation} in the study, so no files can be loaded while running.
+     *
+     * @param study   Study
+     * @param compact Compact or expand the genotypes
+     * @return Number of modified documents
+     * @throws StorageEngineException if there is another operation in progress in the study
+     */
+    public long compactGenotypes(String study, boolean compact) throws StorageEngineException {
+        StudyConfigurationManager scm = getStudyConfigurationManager();
+        String operationName = compact ? COMPACT_GENOTYPES_OPERATION_NAME : EXPAND_GENOTYPES_OPERATION_NAME;
+        // Mark the study as compacted before starting, so the queries look for the compacted genotypes while running
+        StudyConfiguration studyConfiguration = scm.lockAndUpdate(study, sc -> {
+            boolean resume = getOptions().getBoolean(RESUME.key(), RESUME.defaultValue());
+            StudyConfigurationManager.addBatchOperation(sc, operationName, Collections.emptyList(), resume,
+                    BatchFileOperation.Type.OTHER);
+            if (compact) {
+                sc.getAttributes().put(COMPACT_GENOTYPES.key(), true);
+            }
+            return sc;
+        });
+        int studyId = studyConfiguration.getStudyId();
+
+        Thread hook = scm.buildShutdownHook(operationName, studyId, Collections.emptyList());
+        try {
+            Runtime.getRuntime().addShutdownHook(hook);
+            QueryOptions options = new QueryOptions(getOptions());
+            long modifiedDocuments = getDBAdaptor().compactGenotypes(studyConfiguration, compact, options).first();
+
+            scm.lockAndUpdate(study, sc -> {
+                if (!compact) {
+                    sc.getAttributes().put(COMPACT_GENOTYPES.key(), false);
+                }
+                StudyConfigurationManager.setStatus(sc, BatchFileOperation.Status.READY, operationName, Collections.emptyList());
+                return sc;
+            });
+            return modifiedDocuments;
+        } catch (Exception e) {
+            scm.lockAndUpdate(study, sc -> {
+                StudyConfigurationManager.setStatus(sc, BatchFileOperation.Status.ERROR, operationName, Collections.emptyList());
+                return sc;
+            });
+            throw e;
+        } finally {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        }
+    }
+
     @Override
     public void removeStudy(String studyName) throws StorageEngineException {
         StudyConfigurationManager scm = getStudyConfigurationManager();
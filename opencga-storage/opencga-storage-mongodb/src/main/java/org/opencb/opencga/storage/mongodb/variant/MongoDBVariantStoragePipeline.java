@@ -35,6 +35,7 @@ import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.AdaptiveBatchSizeController;
 import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
@@ -648,6 +649,7 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             // Read only files to load when MergeMode is BASIC
             reader.setFileIds(fileIds);
         }
+        reader.setCursorBatchSize(options.getInt(MERGE_STAGE_CURSOR_BATCH_SIZE.key(), MERGE_STAGE_CURSOR_BATCH_SIZE.defaultValue()));
         boolean resume = isResumeMerge(options);
         boolean cleanWhileLoading = options.getBoolean(STAGE_CLEAN_WHILE_LOAD.key(), STAGE_CLEAN_WHILE_LOAD.defaultValue());
         ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
@@ -663,16 +665,19 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                 studyConfiguration, fileIds, resume, cleanWhileLoading, progressLogger);
 
         ParallelTaskRunner<Document, MongoDBOperations> ptrMerge;
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+        AdaptiveBatchSizeController batchSizeController = AdaptiveBatchSizeController.fromOptions("merge", options, batchSize, loadThreads);
+        ParallelTaskRunner.Config config = batchSizeController.configure(ParallelTaskRunner.Config.builder()
                 .setReadQueuePutTimeout(20 * 60)
                 .setNumTasks(loadThreads)
                 .setBatchSize(batchSize)
-                .setAbortOnFail(true).build();
+                .setAbortOnFail(true)).build();
         try {
             if (isMergeParallelWrite(options)) {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger.then(variantLoader), null, config);
+                ptrMerge = new ParallelTaskRunner<>(batchSizeController.wrap(reader),
+                        batchSizeController.wrap(variantMerger.then(variantLoader)), null, config);
             } else {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger, variantLoader, config);
+                ptrMerge = new ParallelTaskRunner<>(batchSizeController.wrap(reader),
+                        batchSizeController.wrap(variantMerger), variantLoader, config);
             }
         } catch (RuntimeException e) {
             throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
@@ -1039,6 +1039,63 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         return variantsCollection.update(query, update, new QueryOptions(MULTI, true));
     }
 
+    /**
+     * Compact or expand the genotypes of all the variants from a study.
+     * See {@link DocumentToSamplesConverter#compactGenotypes(Document, boolean)}.
+     *
+     * Must not be executed while loading new files into the study.
+     *
+     * @param studyConfiguration Study
+     * @param compact            Compact or expand the genotypes
+     * @param options            Options. Accepted values are: bulkSize
+     * @return A QueryResult with the number of modified documents
+     */
+    public QueryResult<Long> compactGenotypes(StudyConfiguration studyConfiguration, boolean compact, QueryOptions options) {
+        long start = System.currentTimeMillis();
+        int studyId = studyConfiguration.getStudyId();
+        int bulkSize = options.getInt(BULK_SIZE.key(), BULK_SIZE.defaultValue());
+
+        Bson query = eq(DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD, studyId);
+        Bson projection = Projections.include(
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD,
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + GENOTYPES_FIELD,
+                DocumentToVariantConverter.STUDIES_FIELD + '.' + COMPACT_GENOTYPES_FIELD);
+        MongoPersistentCursor iterator = new MongoPersistentCursor(variantsCollection, query, projection, new QueryOptions());
+
+        long modifiedDocuments = 0;
+        List<Bson> queries = new ArrayList<>(bulkSize);
+        List<Bson> updates = new ArrayList<>(bulkSize);
+        while (iterator.hasNext()) {
+            Document document = iterator.next();
+            for (Document study : (List<Document>) document.get(DocumentToVariantConverter.STUDIES_FIELD)) {
+                if (study.getInteger(STUDYID_FIELD) != studyId) {
+                    continue;
+                }
+                Map<String, Object> fields = DocumentToSamplesConverter.compactGenotypes(study, compact);
+                if (!fields.isEmpty()) {
+                    List<Bson> update = new ArrayList<>(fields.size());
+                    fields.forEach((field, value) -> {
+                        String key = DocumentToVariantConverter.STUDIES_FIELD + ".$." + field;
+                        update.add(value == null ? unset(key) : set(key, value));
+                    });
+                    queries.add(and(eq("_id", document.get("_id")), eq(DocumentToVariantConverter.STUDIES_FIELD + '.' + STUDYID_FIELD,
+                            studyId)));
+                    updates.add(combine(update));
+                }
+            }
+            if (queries.size() >= bulkSize || (!iterator.hasNext() && !queries.isEmpty())) {
+                modifiedDocuments += variantsCollection.update(queries, updates, new QueryOptions()).first().getModifiedCount();
+                queries.clear();
+                updates.clear();
+            }
+        }
+        logger.info((compact ? "Compacted" : "Expanded") + " genotypes of " + modifiedDocuments + " documents from study '"
+                + studyConfiguration.getStudyName() + "'");
+
+        return new QueryResult<>("compactGenotypes", ((int) (System.currentTimeMillis() - start)), 1, 1, "", "",
+                Collections.singletonList(modifiedDocuments));
+    }
+
     @Override
     public QueryResult updateAnnotations(List<VariantAnnotation> variantAnnotations, long timestamp, QueryOptions queryOptions) {
         List<Bson> queries = new LinkedList<>();
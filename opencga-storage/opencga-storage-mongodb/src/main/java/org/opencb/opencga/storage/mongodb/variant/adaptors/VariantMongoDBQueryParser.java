@@ -54,6 +54,7 @@ import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Optio
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.SEARCH_INDEX_LAST_TIMESTAMP;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.COMPACT_GENOTYPES;
 import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.INDEX_FIELD;
 
@@ -686,7 +687,10 @@ public class VariantMongoDBQueryParser {
 
                 List<String> defaultGenotypes;
                 List<String> loadedGenotypes;
+                boolean compactGenotypes = false;
                 if (defaultStudyConfiguration != null) {
+                    compactGenotypes = defaultStudyConfiguration.getAttributes()
+                            .getBoolean(COMPACT_GENOTYPES.key(), COMPACT_GENOTYPES.defaultValue());
                     defaultGenotypes = defaultStudyConfiguration.getAttributes().getAsStringList(DEFAULT_GENOTYPE.key());
                     loadedGenotypes = defaultStudyConfiguration.getAttributes().getAsStringList(LOADED_GENOTYPES.key());
                     loadedGenotypes.replaceAll(DocumentToSamplesConverter::genotypeToDataModelType);
@@ -778,10 +782,7 @@ public class VariantMongoDBQueryParser {
                                     if (defaultGenotypes.contains(otherGenotype)) {
                                         continue;
                                     }
-                                    String key = studyQueryPrefix
-                                            + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD
-                                            + '.' + DocumentToSamplesConverter.genotypeToStorageType(otherGenotype);
-                                    genotypesBuilder.or(new BasicDBObject(key, sampleId));
+                                    genotypesBuilder.or(genotypeQuery(studyQueryPrefix, otherGenotype, sampleId, compactGenotypes));
                                 }
                             } else {
                                 QueryBuilder andBuilder = QueryBuilder.start();
@@ -789,25 +790,18 @@ public class VariantMongoDBQueryParser {
                                     if (defaultGenotypes.contains(otherGenotype)) {
                                         continue;
                                     }
-                                    String key = studyQueryPrefix
-                                            + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD
-                                            + '.' + DocumentToSamplesConverter.genotypeToStorageType(otherGenotype);
-                                    andBuilder.and(new BasicDBObject(key,
-                                            new Document("$ne", sampleId)));
+                                    andBuilder.and(negatedGenotypeQuery(studyQueryPrefix, otherGenotype, sampleId, compactGenotypes));
                                 }
                                 genotypesBuilder.or(andBuilder.get());
                             }
                         } else {
-                            String s = studyQueryPrefix
-                                    + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD
-                                    + '.' + DocumentToSamplesConverter.genotypeToStorageType(genotype);
                             if (negated) {
                                 //and [ {"gt.0|1" : { $ne : <sampleId> } } ]
-                                genotypesBuilder.and(new BasicDBObject(s, new BasicDBObject("$ne", sampleId)));
+                                genotypesBuilder.and(negatedGenotypeQuery(studyQueryPrefix, genotype, sampleId, compactGenotypes));
 
                             } else {
                                 //or [ {"gt.0|1" : <sampleId> } ]
-                                genotypesBuilder.or(new BasicDBObject(s, sampleId));
+                                genotypesBuilder.or(genotypeQuery(studyQueryPrefix, genotype, sampleId, compactGenotypes));
                             }
                         }
                     }
@@ -885,6 +879,52 @@ public class VariantMongoDBQueryParser {
         }
     }
 
+    /**
+     * Filter variants where the sample has the given genotype. If the genotypes of the study are compacted, the sample can
+     * be either in the array or in the bitmap of the genotype.
+     *
+     * @param studyQueryPrefix Study query prefix
+     * @param genotype         Genotype
+     * @param sampleId         Sample id
+     * @param compactGenotypes If the genotypes of the study are compacted
+     * @return Query
+     */
+    private DBObject genotypeQuery(String studyQueryPrefix, String genotype, int sampleId, boolean compactGenotypes) {
+        String gt = DocumentToSamplesConverter.genotypeToStorageType(genotype);
+        DBObject query = new BasicDBObject(studyQueryPrefix + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD + '.' + gt, sampleId);
+        if (compactGenotypes) {
+            //or [ {"gt.0|1" : <sampleId> }, {"cgt.0|1" : { $bitsAllSet : [ <sampleId> ] } } ]
+            return QueryBuilder.start().or(query,
+                    new BasicDBObject(studyQueryPrefix + DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD + '.' + gt,
+                            new BasicDBObject("$bitsAllSet", Collections.singletonList(sampleId)))).get();
+        } else {
+            return query;
+        }
+    }
+
+    /**
+     * Filter variants where the sample does not have the given genotype.
+     *
+     * @param studyQueryPrefix Study query prefix
+     * @param genotype         Genotype
+     * @param sampleId         Sample id
+     * @param compactGenotypes If the genotypes of the study are compacted
+     * @return Query
+     */
+    private DBObject negatedGenotypeQuery(String studyQueryPrefix, String genotype, int sampleId, boolean compactGenotypes) {
+        String gt = DocumentToSamplesConverter.genotypeToStorageType(genotype);
+        DBObject query = new BasicDBObject(studyQueryPrefix + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD + '.' + gt,
+                new BasicDBObject("$ne", sampleId));
+        if (compactGenotypes) {
+            //and [ {"gt.0|1" : { $ne : <sampleId> } }, {"cgt.0|1" : { $not : { $bitsAllSet : [ <sampleId> ] } } } ]
+            return QueryBuilder.start().and(query,
+                    new BasicDBObject(studyQueryPrefix + DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD + '.' + gt,
+                            new BasicDBObject("$not", new BasicDBObject("$bitsAllSet", Collections.singletonList(sampleId))))).get();
+        } else {
+            return query;
+        }
+    }
+
     private void addFileGroupsFilter(QueryBuilder builder, String studyQueryPrefix, QueryOperation operation,
                                      Set<List<Integer>> fileIdGroups, List<Integer> negatedFiles) {
         if (operation == QueryOperation.OR) {
@@ -1108,6 +1148,8 @@ public class VariantMongoDBQueryParser {
                     if (format.equals(GT)) {
                         projection.put(DocumentToVariantConverter.STUDIES_FIELD + '.'
                                 + DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, 1);
+                        projection.put(DocumentToVariantConverter.STUDIES_FIELD + '.'
+                                + DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, 1);
                     } else {
                         projection.put(DocumentToVariantConverter.STUDIES_FIELD + '.'
                                 + DocumentToStudyVariantEntryConverter.FILES_FIELD + '.'
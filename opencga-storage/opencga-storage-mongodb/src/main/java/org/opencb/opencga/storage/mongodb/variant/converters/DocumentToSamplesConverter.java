@@ -203,6 +203,7 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         final LinkedHashMap<String, Integer> samplesPositionToReturn = getSamplesPosition(studyConfiguration);
 
         boolean excludeGenotypes = !object.containsKey(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD)
+                && !object.containsKey(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD)
                 || studyConfiguration.getAttributes().getBoolean(Options.EXCLUDE_GENOTYPES.key(), Options.EXCLUDE_GENOTYPES.defaultValue());
         boolean compressExtraParams = studyConfiguration.getAttributes()
                 .getBoolean(Options.EXTRA_GENOTYPE_FIELDS_COMPRESS.key(),
@@ -283,17 +284,33 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         Map<Integer, String> idSamples = getIndexedSamplesIdMap(studyId).inverse();
         if (!excludeGenotypes) {
             Document mongoGenotypes = (Document) object.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD);
-            for (Map.Entry<String, Object> dbo : mongoGenotypes.entrySet()) {
-                final String genotype;
-                if (dbo.getKey().equals(UNKNOWN_GENOTYPE)) {
-                    // Skip this legacy genotype!
-                    continue;
-                } else {
-                    genotype = genotypeToDataModelType(dbo.getKey());
+            if (mongoGenotypes != null) {
+                for (Map.Entry<String, Object> dbo : mongoGenotypes.entrySet()) {
+                    final String genotype;
+                    if (dbo.getKey().equals(UNKNOWN_GENOTYPE)) {
+                        // Skip this legacy genotype!
+                        continue;
+                    } else {
+                        genotype = genotypeToDataModelType(dbo.getKey());
+                    }
+                    for (Integer sampleId : (List<Integer>) dbo.getValue()) {
+                        if (idSamples.containsKey(sampleId)) {
+                            samplesData.get(samplesPositionToReturn.get(idSamples.get(sampleId))).set(0, genotype);
+                        }
+                    }
                 }
-                for (Integer sampleId : (List<Integer>) dbo.getValue()) {
-                    if (idSamples.containsKey(sampleId)) {
-                        samplesData.get(samplesPositionToReturn.get(idSamples.get(sampleId))).set(0, genotype);
+            }
+            // Compacted genotypes are not decoded. Only the bits of the returned samples are checked.
+            // "0|1" : BinData(0, "AAIA")
+            Document compactGenotypes = (Document) object.get(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD);
+            if (compactGenotypes != null) {
+                for (Map.Entry<String, Object> dbo : compactGenotypes.entrySet()) {
+                    String genotype = genotypeToDataModelType(dbo.getKey());
+                    byte[] bitmap = ((Binary) dbo.getValue()).getData();
+                    for (Map.Entry<Integer, String> entry : idSamples.entrySet()) {
+                        if (containsSampleId(bitmap, entry.getKey())) {
+                            samplesData.get(samplesPositionToReturn.get(entry.getValue())).set(0, genotype);
+                        }
                     }
                 }
             }
@@ -708,6 +725,112 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         return __samplesPosition.get(studyConfiguration.getStudyId());
     }
 
+    /**
+     * Encode a list of sample ids as a bitmap, where the bit N is set if the sample with id N is in the list.
+     * The bits are stored in little endian order, so the bitmap can be queried with the bitwise operators
+     * of MongoDB, e.g. <code>{ "cgt.0/1" : { $bitsAllSet : [ sampleId ] } }</code>.
+     *
+     * @param sampleIds Sample ids
+     * @return Bitmap
+     */
+    public static Binary compactSampleIds(Collection<Integer> sampleIds) {
+        BitSet bitSet = new BitSet();
+        for (Integer sampleId : sampleIds) {
+            bitSet.set(sampleId);
+        }
+        return new Binary(bitSet.toByteArray());
+    }
+
+    /**
+     * Decode all the sample ids from a bitmap.
+     *
+     * @param bitmap Bitmap created with {@link #compactSampleIds}
+     * @return Sorted list of sample ids
+     */
+    public static List<Integer> expandSampleIds(byte[] bitmap) {
+        return BitSet.valueOf(bitmap).stream().boxed().collect(Collectors.toList());
+    }
+
+    public static boolean containsSampleId(byte[] bitmap, int sampleId) {
+        int idx = sampleId >> 3;
+        return sampleId >= 0 && idx < bitmap.length && (bitmap[idx] & (1 << (sampleId & 7))) != 0;
+    }
+
+    /**
+     * Check if a list of sample ids should be stored as a bitmap. Like the containers of a Roaring bitmap, sparse lists
+     * are kept as arrays, and dense lists are compacted if the bitmap takes less space than the BSON array.
+     *
+     * @param sampleIds Sample ids
+     * @return If the bitmap is smaller than the array
+     */
+    public static boolean isCompactable(Collection<Integer> sampleIds) {
+        int maxSampleId = -1;
+        for (Integer sampleId : sampleIds) {
+            if (sampleId < 0) {
+                return false;
+            }
+            maxSampleId = Math.max(maxSampleId, sampleId);
+        }
+        // Each array element takes 1 byte for the type, 2 to 4 for the index as a cstring, and 4 for the value.
+        long arraySize = 7L * sampleIds.size();
+        // Binary length and subtype
+        long bitmapSize = 5L + (maxSampleId >> 3) + 1;
+        return bitmapSize < arraySize;
+    }
+
+    /**
+     * Move the sample lists of a study subdocument between the {@link DocumentToStudyVariantEntryConverter#GENOTYPES_FIELD} arrays
+     * and the {@link DocumentToStudyVariantEntryConverter#COMPACT_GENOTYPES_FIELD} bitmaps.
+     *
+     * When compacting, the arrays added after a previous compaction are merged into the existing bitmaps,
+     * and only the dense arrays are compacted. When expanding, all the bitmaps are converted back to arrays.
+     *
+     * @param studyDocument Study subdocument. Is not modified.
+     * @param compact       Compact or expand the genotypes
+     * @return Fields to update, relative to the study subdocument, with its new value, or null if the field has to be removed.
+     *         Empty if there is nothing to update.
+     */
+    public static Map<String, Object> compactGenotypes(Document studyDocument, boolean compact) {
+        Document genotypes = studyDocument.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
+        Document compactGenotypes = studyDocument.get(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, Document.class);
+        if (genotypes == null) {
+            genotypes = new Document();
+        }
+        if (compactGenotypes == null) {
+            compactGenotypes = new Document();
+        }
+        Map<String, Object> update = new LinkedHashMap<>();
+        if (compact) {
+            for (Map.Entry<String, Object> entry : genotypes.entrySet()) {
+                List<Integer> sampleIds = (List<Integer>) entry.getValue();
+                if (entry.getKey().equals(UNKNOWN_GENOTYPE) || sampleIds.isEmpty()) {
+                    continue;
+                }
+                Binary bitmap = compactGenotypes.get(entry.getKey(), Binary.class);
+                if (bitmap != null || isCompactable(sampleIds)) {
+                    Set<Integer> allSampleIds = new HashSet<>(sampleIds);
+                    if (bitmap != null) {
+                        allSampleIds.addAll(expandSampleIds(bitmap.getData()));
+                    }
+                    update.put(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD + '.' + entry.getKey(),
+                            compactSampleIds(allSampleIds));
+                    update.put(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD + '.' + entry.getKey(), null);
+                }
+            }
+        } else if (!compactGenotypes.isEmpty()) {
+            for (Map.Entry<String, Object> entry : compactGenotypes.entrySet()) {
+                TreeSet<Integer> allSampleIds = new TreeSet<>(expandSampleIds(((Binary) entry.getValue()).getData()));
+                List<Integer> sampleIds = genotypes.get(entry.getKey(), List.class);
+                if (sampleIds != null) {
+                    allSampleIds.addAll(sampleIds);
+                }
+                update.put(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD + '.' + entry.getKey(), new ArrayList<>(allSampleIds));
+            }
+            update.put(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, null);
+        }
+        return update;
+    }
+
     public static String genotypeToDataModelType(String genotype) {
         return StringUtils.replace(genotype, "-1", ".");
     }
@@ -40,6 +40,7 @@ public class DocumentToStudyVariantEntryConverter {
     public static final String STUDYID_FIELD = "sid";
     //    public static final String FORMAT_FIELD = "fm";
     public static final String GENOTYPES_FIELD = "gt";
+    public static final String COMPACT_GENOTYPES_FIELD = "cgt";
 
     public static final String FILES_FIELD = "files";
     public static final String FILEID_FIELD = "fid";
@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.*;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.MERGE_STAGE_CURSOR_BATCH_SIZE;
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.STUDY_FILE_FIELD;
 
 /**
@@ -53,6 +54,7 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
     private final Collection<String> chromosomes;
     private MongoPersistentCursor iterator;
     private Document next = null;   // Pending variant
+    private int cursorBatchSize = MERGE_STAGE_CURSOR_BATCH_SIZE.defaultValue();
 
     private final Logger logger = LoggerFactory.getLogger(MongoDBVariantStageReader.class);
 
@@ -73,6 +75,11 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         return this;
     }
 
+    public MongoDBVariantStageReader setCursorBatchSize(int cursorBatchSize) {
+        this.cursorBatchSize = cursorBatchSize;
+        return this;
+    }
+
     public long countNumVariants() {
         return stageCollection.nativeQuery().count(getQuery());
     }
@@ -93,7 +100,7 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         QueryOptions options = getQueryOptions();
         Bson query = getQuery();
         iterator = new MongoPersistentCursor(stageCollection, query, null, options)
-                .setBatchSize(20);
+                .setBatchSize(cursorBatchSize);
         return true;
     }
 
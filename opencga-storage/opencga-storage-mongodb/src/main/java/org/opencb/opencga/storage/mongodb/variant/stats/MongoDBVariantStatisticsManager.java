@@ -32,10 +32,22 @@ import java.util.stream.Collectors;
  */
 public class MongoDBVariantStatisticsManager extends DefaultVariantStatisticsManager {
 
+    private static final String STATS_UNKNOWN_GENOTYPE = "./.";
+
     public MongoDBVariantStatisticsManager(VariantMongoDBAdaptor dbAdaptor) {
         super(dbAdaptor);
     }
 
+    /**
+     * The {@link MongoDBVariantStatsCalculator} counts the unknown genotypes as "./.".
+     *
+     * @return the unknown genotype
+     */
+    @Override
+    protected String getUnknownGenotype() {
+        return STATS_UNKNOWN_GENOTYPE;
+    }
+
     @Override
     public URI createStats(VariantDBAdaptor variantDBAdaptor, URI output, Map<String, Set<String>> cohorts,
                            Map<String, Integer> cohortIdsMap, StudyConfiguration studyConfiguration, QueryOptions options)
@@ -60,6 +72,12 @@ public class MongoDBVariantStatisticsManager extends DefaultVariantStatisticsMan
         }
 
         studyConfiguration = preCalculateStats(cohorts, studyConfiguration, overwrite, updateStats, options);
+
+        CohortStatsDelta delta = getCohortStatsDelta(cohorts, studyConfiguration, overwrite, options);
+        if (delta != null) {
+            return createIncrementalStats(variantDBAdaptor, output, delta, studyConfiguration, options);
+        }
+
         overwrite = checkOverwrite(cohorts, studyConfiguration, overwrite);
 
 //        VariantSourceStats variantSourceStats = new VariantSourceStats(/*FILE_ID*/, Integer.toString(studyConfiguration.getStudyId()));
@@ -85,7 +103,7 @@ public class MongoDBVariantStatisticsManager extends DefaultVariantStatisticsMan
             List<Task<Document, String>> tasks = new ArrayList<>(numTasks);
             ProgressLogger progressLogger = buildCreateStatsProgressLogger(variantDBAdaptor, readerQuery, options);
             for (int i = 0; i < numTasks; i++) {
-                tasks.add(new MongoDBVariantStatsCalculator(studyConfiguration, cohortIds, "./.")
+                tasks.add(new MongoDBVariantStatsCalculator(studyConfiguration, cohortIds, getUnknownGenotype())
                         .then((Task<VariantStatsWrapper, VariantStatsWrapper>) batch -> {
                             progressLogger.increment(batch.size(), () -> ", up to position "
                                     + batch.get(batch.size() - 1).getChromosome()
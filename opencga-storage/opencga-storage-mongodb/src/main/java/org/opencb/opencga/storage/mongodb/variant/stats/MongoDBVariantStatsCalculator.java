@@ -1,6 +1,7 @@
 package org.opencb.opencga.storage.mongodb.variant.stats;
 
 import org.bson.Document;
+import org.bson.types.Binary;
 import org.opencb.biodata.models.feature.Genotype;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.stats.VariantStats;
@@ -10,6 +11,7 @@ import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.opencb.opencga.storage.mongodb.variant.converters.AbstractDocumentConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 
@@ -76,11 +78,20 @@ public class MongoDBVariantStatsCalculator extends AbstractDocumentConverter imp
         VariantStatsWrapper statsWrapper = new VariantStatsWrapper(variant, new HashMap<>(cohortIds.size()));
 
         Document gt = study.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, Document.class);
+        Document compactGt = study.get(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, Document.class);
 
         // Make a Set from the lists of genotypes for fast indexOf
-        Map<String, Set<Integer>> gtsMap = new HashMap<>(gt.size());
-        for (Map.Entry<String, Object> entry : gt.entrySet()) {
-            gtsMap.put(entry.getKey(), new HashSet<>((Collection) entry.getValue()));
+        Map<String, Set<Integer>> gtsMap = new HashMap<>();
+        if (gt != null) {
+            for (Map.Entry<String, Object> entry : gt.entrySet()) {
+                gtsMap.put(entry.getKey(), new HashSet<>((Collection) entry.getValue()));
+            }
+        }
+        if (compactGt != null) {
+            for (Map.Entry<String, Object> entry : compactGt.entrySet()) {
+                gtsMap.computeIfAbsent(entry.getKey(), key -> new HashSet<>())
+                        .addAll(DocumentToSamplesConverter.expandSampleIds(((Binary) entry.getValue()).getData()));
+            }
         }
 
         for (Integer cohortId : cohortIds) {
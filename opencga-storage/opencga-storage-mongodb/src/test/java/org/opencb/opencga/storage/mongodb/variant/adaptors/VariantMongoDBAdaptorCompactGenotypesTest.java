@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.COMPACT_GENOTYPES_OPERATION_NAME;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.COMPACT_GENOTYPES;
+
+/**
+ * Runs the genotype and sample filters over a study with the genotypes compacted as bitmaps,
+ * comparing with the results from the expanded genotypes.
+ */
+public class VariantMongoDBAdaptorCompactGenotypesTest extends VariantStorageBaseTest implements MongoDBVariantStorageTest {
+
+    private MongoDBVariantStorageEngine variantStorageEngine;
+    private VariantMongoDBAdaptor dbAdaptor;
+    private StudyConfigurationManager scm;
+
+    @Before
+    public void setUp() throws Exception {
+        variantStorageEngine = getVariantStorageEngine();
+        dbAdaptor = variantStorageEngine.getDBAdaptor();
+        scm = dbAdaptor.getStudyConfigurationManager();
+        runDefaultETL(smallInputUri, variantStorageEngine, newStudyConfiguration(), new ObjectMap()
+                .append(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        closeConnections();
+    }
+
+    @Test
+    public void testCompactGenotypesQuery() throws Exception {
+        List<Query> queries = Arrays.asList(
+                new Query(GENOTYPE.key(), "NA19600" + IS + "0|1"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + "1|1"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + "0|1" + OR + "1|0" + OR + "1|1"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + "1|1" + AND + "NA19685" + IS + "0|0"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + NOT + "0|1"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + NOT + "0|0"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + NOT + "0|1" + OR + NOT + "1|0"),
+                new Query(GENOTYPE.key(), "NA19600" + IS + "1|1" + AND + "NA19685" + IS + NOT + "1|1"),
+                new Query(SAMPLE.key(), "NA19600"),
+                new Query(SAMPLE.key(), "NA19600" + AND + "NA19685"),
+                new Query(SAMPLE.key(), "NA19600" + OR + "NA19685"));
+
+        List<List<String>> expected = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            List<String> variants = query(query);
+            System.out.println(query.toJson() + " : " + variants.size());
+            expected.add(variants);
+        }
+        // Something to compare with
+        assertFalse(expected.get(0).isEmpty());
+        assertFalse(expected.get(4).isEmpty());
+        assertFalse(expected.get(8).isEmpty());
+
+        assertTrue(variantStorageEngine.compactGenotypes(STUDY_NAME, true) > 0);
+        StudyConfiguration studyConfiguration = getStudyConfiguration();
+        assertTrue(studyConfiguration.getAttributes().getBoolean(COMPACT_GENOTYPES.key()));
+        assertEquals(BatchFileOperation.Status.READY, getLastBatch(studyConfiguration).currentStatus());
+        assertEquals(COMPACT_GENOTYPES_OPERATION_NAME, getLastBatch(studyConfiguration).getOperationName());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i).toJson(), expected.get(i), query(queries.get(i)));
+        }
+
+        assertTrue(variantStorageEngine.compactGenotypes(STUDY_NAME, false) > 0);
+        studyConfiguration = getStudyConfiguration();
+        assertFalse(studyConfiguration.getAttributes().getBoolean(COMPACT_GENOTYPES.key()));
+        assertEquals(BatchFileOperation.Status.READY, getLastBatch(studyConfiguration).currentStatus());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i).toJson(), expected.get(i), query(queries.get(i)));
+        }
+    }
+
+    @Test
+    public void testCompactGenotypesWithOperationInProgress() throws Exception {
+        scm.lockAndUpdate(STUDY_NAME, sc -> {
+            StudyConfigurationManager.addBatchOperation(sc, "load", Collections.singletonList(1000), false,
+                    BatchFileOperation.Type.LOAD);
+            return sc;
+        });
+
+        thrown.expect(StorageEngineException.class);
+        variantStorageEngine.compactGenotypes(STUDY_NAME, true);
+    }
+
+    private List<String> query(Query query) {
+        return dbAdaptor.get(new Query(query).append(STUDY.key(), STUDY_NAME), new QueryOptions(QueryOptions.SORT, true))
+                .getResult()
+                .stream()
+                .map(Variant::toString)
+                .collect(Collectors.toList());
+    }
+
+    private StudyConfiguration getStudyConfiguration() {
+        return scm.getStudyConfiguration(STUDY_NAME, null).first();
+    }
+
+    private static BatchFileOperation getLastBatch(StudyConfiguration studyConfiguration) {
+        List<BatchFileOperation> batches = studyConfiguration.getBatches();
+        return batches.get(batches.size() - 1);
+    }
+}
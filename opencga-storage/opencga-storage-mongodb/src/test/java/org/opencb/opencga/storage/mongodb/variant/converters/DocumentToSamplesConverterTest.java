@@ -16,9 +16,17 @@
 
 package org.opencb.opencga.storage.mongodb.variant.converters;
 
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.junit.Test;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
 
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import static org.junit.Assert.*;
 
 /**
@@ -68,6 +76,93 @@ public class DocumentToSamplesConverterTest {
 
     }
 
+    @Test
+    public void testCompactSampleIds() throws Exception {
+        List<Integer> sampleIds = Arrays.asList(0, 3, 8, 17, 1000);
+        byte[] bitmap = DocumentToSamplesConverter.compactSampleIds(sampleIds).getData();
+        assertEquals(sampleIds, DocumentToSamplesConverter.expandSampleIds(bitmap));
+        for (int sampleId = 0; sampleId < 1100; sampleId++) {
+            assertEquals(sampleIds.contains(sampleId), DocumentToSamplesConverter.containsSampleId(bitmap, sampleId));
+        }
+
+        // Same bit order as the MongoDB bitwise query operators
+        assertArrayEquals(new byte[]{0x22}, DocumentToSamplesConverter.compactSampleIds(Arrays.asList(1, 5)).getData());
+    }
+
+    @Test
+    public void testIsCompactable() throws Exception {
+        assertFalse(DocumentToSamplesConverter.isCompactable(Collections.singletonList(1000)));
+        assertFalse(DocumentToSamplesConverter.isCompactable(Arrays.asList(1, -1)));
+        assertTrue(DocumentToSamplesConverter.isCompactable(range(0, 100)));
+    }
+
+    @Test
+    public void testCompactGenotypes() throws Exception {
+        Document study = new Document(DocumentToStudyVariantEntryConverter.STUDYID_FIELD, 1)
+                .append(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                        .append("0/1", range(0, 100))
+                        .append("1/1", Collections.singletonList(1000)));
+
+        Map<String, Object> update = DocumentToSamplesConverter.compactGenotypes(study, true);
+        assertEquals(new HashSet<>(Arrays.asList("cgt.0/1", "gt.0/1")), update.keySet());
+        assertNull(update.get("gt.0/1"));
+        assertEquals(range(0, 100), DocumentToSamplesConverter.expandSampleIds(((Binary) update.get("cgt.0/1")).getData()));
+
+        // New samples merged after the compaction are added to the bitmap
+        Document compacted = new Document(DocumentToStudyVariantEntryConverter.STUDYID_FIELD, 1)
+                .append(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                        .append("0/1", Collections.singletonList(500))
+                        .append("1/1", Collections.singletonList(1000)))
+                .append(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, new Document()
+                        .append("0/1", update.get("cgt.0/1")));
+        update = DocumentToSamplesConverter.compactGenotypes(compacted, true);
+        List<Integer> expected = range(0, 100);
+        expected.add(500);
+        assertEquals(expected, DocumentToSamplesConverter.expandSampleIds(((Binary) update.get("cgt.0/1")).getData()));
+
+        update = DocumentToSamplesConverter.compactGenotypes(compacted, false);
+        assertEquals(new HashSet<>(Arrays.asList("gt.0/1", "cgt")), update.keySet());
+        assertEquals(expected, update.get("gt.0/1"));
+        assertNull(update.get("cgt"));
+
+        assertTrue(DocumentToSamplesConverter.compactGenotypes(study, false).isEmpty());
+    }
+
+    @Test
+    public void testConvertCompactGenotypes() throws Exception {
+        int studyId = 1;
+        int fileId = 1;
+        StudyConfiguration studyConfiguration = new StudyConfiguration(studyId, "study");
+        Map<String, Integer> sampleIds = new HashMap<>();
+        for (Integer sampleId : range(0, 1001)) {
+            sampleIds.put("S" + sampleId, sampleId);
+        }
+        studyConfiguration.setSampleIds(sampleIds);
+        studyConfiguration.getIndexedFiles().add(fileId);
+        studyConfiguration.getSamplesInFiles().put(fileId, new LinkedHashSet<>(range(0, 1001)));
+        studyConfiguration.getAttributes().put(MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE.key(),
+                Collections.singleton("0/0"));
+
+        Document study = new Document(DocumentToStudyVariantEntryConverter.STUDYID_FIELD, studyId)
+                .append(DocumentToStudyVariantEntryConverter.FILES_FIELD, Collections.singletonList(
+                        new Document(DocumentToStudyVariantEntryConverter.FILEID_FIELD, fileId)))
+                .append(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD, new Document()
+                        .append("0/1", Collections.singletonList(500))
+                        .append("1/1", Collections.singletonList(1000)))
+                .append(DocumentToStudyVariantEntryConverter.COMPACT_GENOTYPES_FIELD, new Document()
+                        .append("0/1", DocumentToSamplesConverter.compactSampleIds(range(0, 100))));
+
+        DocumentToSamplesConverter converter = new DocumentToSamplesConverter(studyConfiguration);
+        converter.setIncludeSamples(Collections.singletonMap(studyId, Arrays.asList(5, 200, 500, 1000)));
+        List<List<String>> samplesData = converter.convertToDataModelType(study, studyId);
+        assertEquals(Arrays.asList("0/1", "0/0", "0/1", "1/1"),
+                samplesData.stream().map(sampleData -> sampleData.get(0)).collect(Collectors.toList()));
+    }
+
+    private static List<Integer> range(int startInclusive, int endExclusive) {
+        return IntStream.range(startInclusive, endExclusive).boxed().collect(Collectors.toList());
+    }
+
     public void testInteger(String dataModelType) {
         assertEquals(dataModelType, DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToStorageType(dataModelType)));
     }
@@ -16,12 +16,80 @@
 
 package org.opencb.opencga.storage.mongodb.variant.stats;
 
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManagerTest;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
 
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
 /**
  * Created by hpccoll1 on 01/06/15.
  */
 public class MongoVariantStatisticsManagerTest extends VariantStatisticsManagerTest implements MongoDBVariantStorageTest {
 
+    @Test
+    public void calculateStatsIncrementalNewFileTest() throws Exception {
+        VariantDBAdaptor dbAdaptor = getVariantStorageEngine().getDBAdaptor();
+        StudyConfigurationManager scm = dbAdaptor.getStudyConfigurationManager();
+        StudyConfiguration studyConfiguration = scm.getStudyConfiguration(STUDY_NAME, null).first();
+        List<String> samples = new ArrayList<>(studyConfiguration.getSampleIds().keySet());
+        QueryOptions options = new QueryOptions(VariantStorageEngine.Options.LOAD_BATCH_SIZE.key(), 100);
+
+        Map<String, Set<String>> cohorts = new HashMap<>();
+        cohorts.put("cohort1", new HashSet<>(samples.subList(0, 4)));
+        studyConfiguration = stats(options, studyConfiguration, cohorts, outputUri.resolve("cohort1.stats"));
+
+        // New file with a new sample. Its genotypes for the variants of the first file are unknown
+        runDefaultETL(getPlatinumFile(0), getVariantStorageEngine(), studyConfiguration,
+                new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false));
+        studyConfiguration = scm.getStudyConfiguration(STUDY_NAME, null).first();
+        Set<String> newSamples = new HashSet<>(studyConfiguration.getSampleIds().keySet());
+        newSamples.removeAll(samples);
+        assertEquals(1, newSamples.size());
+
+        // Add the new sample. Stats are updated from the new sample
+        Set<String> cohort1 = new HashSet<>(samples.subList(0, 4));
+        cohort1.addAll(newSamples);
+        cohorts = new HashMap<>();
+        cohorts.put("cohort1", cohort1);
+        studyConfiguration = stats(options, studyConfiguration, cohorts, outputUri.resolve("cohort1.incremental.stats"));
+
+        // Same samples, calculated from scratch
+        cohorts = new HashMap<>();
+        cohorts.put("cohort2", cohort1);
+        stats(options, studyConfiguration, cohorts, outputUri.resolve("cohort2.stats"));
+
+        int numVariants = 0;
+        try (VariantDBIterator iterator = dbAdaptor.iterator(new Query(), new QueryOptions())) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                StudyEntry studyEntry = variant.getStudy(STUDY_NAME);
+                VariantStats incremental = studyEntry.getStats().get("cohort1");
+                VariantStats full = studyEntry.getStats().get("cohort2");
+                incremental.getGenotypeCount().entrySet().removeIf(e -> e.getValue() == 0);
+                full.getGenotypeCount().entrySet().removeIf(e -> e.getValue() == 0);
+
+                assertEquals(variant.toString(), full.getGenotypeCount(), incremental.getGenotypeCount());
+                assertEquals(variant.toString(), full.getMaf(), incremental.getMaf());
+                assertEquals(variant.toString(), full.getMgf(), incremental.getMgf());
+                numVariants++;
+            }
+        }
+        assertFalse(numVariants == 0);
+    }
+
 }